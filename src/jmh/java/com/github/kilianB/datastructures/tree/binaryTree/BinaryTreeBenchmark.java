@@ -0,0 +1,132 @@
+package com.github.kilianB.datastructures.tree.binaryTree;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.kilianB.datastructures.tree.Result;
+import com.jstarcraft.dip.hash.Hash;
+
+/**
+ * Time inserting into and querying a binary tree holding a large number of
+ * random hashes. Queries are created by flipping a few bits of hashes contained
+ * in the tree, therefore every query has at least one match.
+ * <p>
+ *
+ * A tree of 1 million 64 bit hashes requires several gigabytes of heap.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms8g", "-Xmx8g" })
+public class BinaryTreeBenchmark {
+
+	private static final int QUERIES = 256;
+
+	@Param({ "1000000" })
+	public int entries;
+
+	@Param({ "32", "64" })
+	public int bitResolution;
+
+	/** Maximum hamming distance of range queries */
+	@Param({ "2", "6" })
+	public int distance;
+
+	private Hash[] hashes;
+
+	private Hash[] queries;
+
+	private int[] distances;
+
+	private BinaryTree<Integer> tree;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		hashes = new Hash[entries];
+		for (int index = 0; index < entries; index++) {
+			hashes[index] = new Hash(new BigInteger(bitResolution, random), bitResolution, 0);
+		}
+		queries = new Hash[QUERIES];
+		for (int index = 0; index < QUERIES; index++) {
+			BigInteger value = hashes[random.nextInt(entries)].getHashValue();
+			for (int bit = 0; bit < distance / 2; bit++) {
+				value = value.flipBit(random.nextInt(bitResolution));
+			}
+			queries[index] = new Hash(value, bitResolution, 0);
+		}
+		distances = new int[QUERIES];
+		Arrays.fill(distances, distance);
+		tree = createTree();
+	}
+
+	private BinaryTree<Integer> createTree() {
+		BinaryTree<Integer> tree = new BinaryTree<>(true);
+		for (int index = 0; index < hashes.length; index++) {
+			tree.addHash(hashes[index], index);
+		}
+		return tree;
+	}
+
+	/**
+	 * Build a tree containing all entries
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BinaryTree<Integer> insert() {
+		return createTree();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int range() {
+		int matches = 0;
+		for (Hash query : queries) {
+			matches += tree.getElementsWithinHammingDistance(query, distance).size();
+		}
+		return matches;
+	}
+
+	/**
+	 * Answer all queries in a single traversal of the tree
+	 */
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public List<PriorityQueue<Result<Integer>>> rangeBatch() {
+		return tree.getElementsWithinHammingDistance(Arrays.asList(queries), distances);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public int nearestNeighbour() {
+		int matches = 0;
+		for (Hash query : queries) {
+			matches += tree.getNearestNeighbour(query).size();
+		}
+		return matches;
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.github.kilianB.pcg;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.kilianB.pcg.cas.PcgRRCas;
+import com.github.kilianB.pcg.cas.PcgRSCas;
+import com.github.kilianB.pcg.fast.PcgRSFast;
+import com.github.kilianB.pcg.fast.PcgRSUFast;
+import com.github.kilianB.pcg.lock.PcgRRLocked;
+import com.github.kilianB.pcg.lock.PcgRSLocked;
+import com.github.kilianB.pcg.sync.PcgRR;
+import com.github.kilianB.pcg.sync.PcgRS;
+
+/**
+ * Time drawing numbers from the pcg generators with a fixed seed.
+ * {@link Random} is included as baseline.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PcgBenchmark {
+
+	private static final long SEED = 42;
+
+	private static final long STREAM = 7;
+
+	@State(Scope.Benchmark)
+	public static class Generator {
+
+		@Param({ "PcgRR", "PcgRS", "PcgRRCas", "PcgRSCas", "PcgRRLocked", "PcgRSLocked", "PcgRSFast", "Random" })
+		public String generatorName;
+
+		private Random random;
+
+		@Setup
+		public void setup() {
+			random = createGenerator(generatorName);
+		}
+
+	}
+
+	@State(Scope.Benchmark)
+	public static class StaticGenerator {
+
+		@Setup
+		public void setup() {
+			PcgRSUFast.seed(SEED, STREAM);
+		}
+
+	}
+
+	@Benchmark
+	public int nextInt(Generator generator) {
+		return generator.random.nextInt();
+	}
+
+	@Benchmark
+	public int nextIntBounded(Generator generator) {
+		return generator.random.nextInt(1000);
+	}
+
+	@Benchmark
+	public long nextLong(Generator generator) {
+		return generator.random.nextLong();
+	}
+
+	@Benchmark
+	public double nextDouble(Generator generator) {
+		return generator.random.nextDouble();
+	}
+
+	/**
+	 * The generator without instances, {@link PcgRSUFast}
+	 */
+	@Benchmark
+	public int nextIntStatic(StaticGenerator generator) {
+		return PcgRSUFast.nextInt();
+	}
+
+	private static Random createGenerator(String name) {
+		switch (name) {
+		case "PcgRR":
+			return new PcgRR(SEED, STREAM);
+		case "PcgRS":
+			return new PcgRS(SEED, STREAM);
+		case "PcgRRCas":
+			return new PcgRRCas(SEED, STREAM);
+		case "PcgRSCas":
+			return new PcgRSCas(SEED, STREAM);
+		case "PcgRRLocked":
+			return new PcgRRLocked(SEED, STREAM);
+		case "PcgRSLocked":
+			return new PcgRSLocked(SEED, STREAM);
+		case "PcgRSFast":
+			return new PcgRSFast(SEED, STREAM);
+		case "Random":
+			return new Random(SEED);
+		default:
+			throw new IllegalArgumentException("Unknown generator " + name);
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.jstarcraft.dip.hash;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time the distance computations between random hashes. Every invocation
+ * compares a needle with {@value #HASHES} hashes.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+	private static final int HASHES = 1024;
+
+	@Param({ "64", "256", "1024" })
+	public int bitResolution;
+
+	private Hash needle;
+
+	private Hash[] hashes;
+
+	private FuzzyHash fuzzyHash;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		needle = createHash(random, bitResolution);
+		hashes = new Hash[HASHES];
+		for (int index = 0; index < HASHES; index++) {
+			hashes[index] = createHash(random, bitResolution);
+		}
+		fuzzyHash = new FuzzyHash();
+		for (int index = 0; index < 16; index++) {
+			fuzzyHash.merge(hashes[index]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(HASHES)
+	public int hammingDistanceFast() {
+		int distance = 0;
+		for (Hash hash : hashes) {
+			distance += needle.hammingDistanceFast(hash);
+		}
+		return distance;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(HASHES)
+	public double normalizedHammingDistance() {
+		double distance = 0;
+		for (Hash hash : hashes) {
+			distance += needle.normalizedHammingDistance(hash);
+		}
+		return distance;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(HASHES)
+	public double weightedDistance() {
+		double distance = 0;
+		for (Hash hash : hashes) {
+			distance += fuzzyHash.weightedDistance(hash);
+		}
+		return distance;
+	}
+
+	private static Hash createHash(Random random, int bitResolution) {
+		return new Hash(new BigInteger(bitResolution, random), bitResolution, 0);
+	}
+
+}
@@ -0,0 +1,151 @@
+package com.jstarcraft.dip.lsh;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.lsh.DifferenceHash.Gradient;
+import com.jstarcraft.dip.lsh.experimental.HogHash;
+import com.jstarcraft.dip.lsh.experimental.HogHashAngularEncoded;
+import com.jstarcraft.dip.lsh.experimental.HogHashDual;
+
+/**
+ * Time hashing a synthetic image by every hashing algorithm.
+ * <p>
+ *
+ * {@link #hashImage()} includes the preprocessing of the image, while
+ * {@link #hashContext()} hashes an image whose {@link HashingContext} is shared
+ * by all invocations, equal to multiple algorithms hashing the same image.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashingAlgorithmBenchmark {
+
+	@Param({ "AverageHash", "DifferenceHash", "GrayscaleHash", "KernelHash", "MedianHash", "PerceptiveHash", "RotAverageHash", "RotPHash", "WaveletHash", "HogHash", "HogHashDual", "HogHashAngularEncoded" })
+	public String algorithmName;
+
+	@Param({ "32", "64", "256" })
+	public int bitResolution;
+
+	/** Width and height of the hashed image */
+	@Param({ "256", "1024", "4096" })
+	public int imageSize;
+
+	private HashingAlgorithm algorithm;
+
+	private BufferedImage image;
+
+	private HashingContext context;
+
+	@Setup
+	public void setup() {
+		algorithm = createAlgorithm(algorithmName, bitResolution);
+		image = createImage(imageSize, imageSize, 42);
+		context = new HashingContext(image);
+		// Populate the shared pyramid level of the context
+		algorithm.hash(context);
+	}
+
+	@Benchmark
+	public Hash hashImage() {
+		return algorithm.hash(image);
+	}
+
+	@Benchmark
+	public Hash hashContext() {
+		return algorithm.hash(context);
+	}
+
+	static HashingAlgorithm createAlgorithm(String name, int bitResolution) {
+		switch (name) {
+		case "AverageHash":
+			return new AverageHash(bitResolution);
+		case "DifferenceHash":
+			return new DifferenceHash(bitResolution, Gradient.Horizontal);
+		case "GrayscaleHash":
+			return new GrayscaleHash(bitResolution);
+		case "KernelHash":
+			return new KernelHash(bitResolution);
+		case "MedianHash":
+			return new MedianHash(bitResolution);
+		case "PerceptiveHash":
+			return new PerceptiveHash(bitResolution);
+		case "RotAverageHash":
+			return new RotAverageHash(bitResolution);
+		case "RotPHash":
+			return new RotPHash(bitResolution);
+		case "WaveletHash":
+			return new WaveletHash(bitResolution, 3);
+		case "HogHash":
+			return new HogHash(bitResolution);
+		case "HogHashDual":
+			return new HogHashDual(bitResolution);
+		case "HogHashAngularEncoded":
+			return new HogHashAngularEncoded(bitResolution);
+		default:
+			throw new IllegalArgumentException("Unknown hashing algorithm " + name);
+		}
+	}
+
+	/**
+	 * Create an image of smooth gradients and blobs overlaid with noise. Unlike
+	 * uniform noise the image has structure at every scale, comparable to a
+	 * photograph.
+	 *
+	 * @param width  the width of the image
+	 * @param height the height of the image
+	 * @param seed   the seed of the generated image
+	 * @return the synthetic image
+	 */
+	static BufferedImage createImage(int width, int height, long seed) {
+		Random random = new Random(seed);
+		double[][] blobs = new double[16][];
+		for (int index = 0; index < blobs.length; index++) {
+			blobs[index] = new double[] { random.nextDouble() * width, random.nextDouble() * height, (0.05 + random.nextDouble() * 0.2) * width, random.nextDouble() * 255, random.nextDouble() * 255, random.nextDouble() * 255 };
+		}
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				double red = 255d * x / width;
+				double green = 255d * y / height;
+				double blue = 128;
+				for (double[] blob : blobs) {
+					double dx = (x - blob[0]) / blob[2];
+					double dy = (y - blob[1]) / blob[2];
+					double weight = Math.exp(-(dx * dx + dy * dy));
+					red += (blob[3] - red) * weight;
+					green += (blob[4] - green) * weight;
+					blue += (blob[5] - blue) * weight;
+				}
+				int noise = random.nextInt(17) - 8;
+				image.setRGB(x, y, clamp(red + noise) << 16 | clamp(green + noise) << 8 | clamp(blue + noise));
+			}
+		}
+		return image;
+	}
+
+	private static int clamp(double value) {
+		return Math.max(0, Math.min(255, (int) value));
+	}
+
+}
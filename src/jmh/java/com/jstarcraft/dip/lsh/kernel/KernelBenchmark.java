@@ -0,0 +1,87 @@
+package com.jstarcraft.dip.lsh.kernel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time applying kernels to a random plane.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+
+	@Param({ "box", "boxSeparable", "gaussian", "edgeDetection", "median", "multi" })
+	public String kernelName;
+
+	/** Width and height of the kernel */
+	@Param({ "3", "9" })
+	public int kernelSize;
+
+	/** Width and height of the plane */
+	@Param({ "64", "512" })
+	public int planeSize;
+
+	@Param({ "1", "4" })
+	public int parallelism;
+
+	private Kernel kernel;
+
+	private double[][] plane;
+
+	@Setup
+	public void setup() {
+		kernel = createKernel(kernelName, kernelSize);
+		kernel.setParallelism(parallelism);
+		Random random = new Random(42);
+		plane = new double[planeSize][planeSize];
+		for (double[] row : plane) {
+			for (int index = 0; index < row.length; index++) {
+				row[index] = random.nextInt(256);
+			}
+		}
+	}
+
+	@Benchmark
+	public double[][] apply() {
+		return kernel.apply(plane);
+	}
+
+	private static Kernel createKernel(String name, int size) {
+		switch (name) {
+		case "box":
+			return Kernel.boxFilterNormalized(size, size);
+		case "boxSeparable":
+			return Kernel.boxFilterNormalizedSep(size, size);
+		case "gaussian":
+			return Kernel.gaussianFilter(size, size, size / 3d);
+		case "edgeDetection":
+			return Kernel.edgeDetectionFilter(size / 2);
+		case "median":
+			return new MedianKernel(size, size);
+		case "multi":
+			return new MultiKernel(Kernel.gaussianFilter(size, size, size / 3d), Kernel.boxFilterNormalized(size, size));
+		default:
+			throw new IllegalArgumentException("Unknown kernel " + name);
+		}
+	}
+
+}
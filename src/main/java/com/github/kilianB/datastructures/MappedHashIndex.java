@@ -0,0 +1,947 @@
+package com.github.kilianB.datastructures;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import com.github.kilianB.datastructures.tree.HashIndex;
+import com.github.kilianB.datastructures.tree.Result;
+import com.github.kilianB.mutable.MutableInteger;
+import com.jstarcraft.dip.hash.Hash;
+
+/**
+ * A not thread safe hash index persisted in a versioned binary file which is
+ * accessed via memory mapping. Opening an index only reads the segment headers,
+ * the operating system pages in the parts of the file touched by queries,
+ * allowing the index to exceed the heap size.
+ * <p>
+ *
+ * The file consists of a header followed by append only segments each holding
+ * packed hashes and the utf-8 encoded ids of the images they belong to. Added
+ * hashes are buffered and appended as a new segment once
+ * {@link #getFlushThreshold()} hashes are pending or {@link #flush()} is
+ * invoked. Appended segments are searched linearly. {@link #compact()} merges
+ * all segments and additionally lays out the multi index tables known from the
+ * {@link MultiIndexHashTable}, allowing sub linear searches.
+ *
+ * <pre>
+ * Header   magic(8) version(4) hashLength(4) algorithmId(4) reserved(12)
+ * Segment  magic(4) count(4) tableCount(4) reserved(4) idBytes(8)
+ *          hashes(8 * count * words) idOffsets(8 * (count + 1)) ids(idBytes, padded to 8)
+ *          per table: bucketStarts(4 * (2^length + 1)) bucketIds(4 * count), padded to 8
+ * </pre>
+ *
+ * Serializing an index only writes the absolute location of the file.
+ * Deserialization reopens the file, which allows image matchers using this
+ * index to be reconstructed in milliseconds.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class MappedHashIndex implements HashIndex<String>, Closeable {
+
+	private static final long serialVersionUID = 5370853123931416617L;
+
+	private static final Logger LOGGER = Logger.getLogger(MappedHashIndex.class.getSimpleName());
+
+	/** "JDIPHIDX" */
+	private static final long MAGIC = 0x4A44495048494458L;
+
+	/** "SEGM" */
+	private static final int SEGMENT_MAGIC = 0x5345474D;
+
+	/**
+	 * The version of the file format written by this class
+	 */
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 32;
+
+	private static final int SEGMENT_HEADER_SIZE = 24;
+
+	/**
+	 * The default number of hashes buffered in memory before they are appended to
+	 * the file
+	 */
+	public static final int DEFAULT_FLUSH_THRESHOLD = 4096;
+
+	/** Maximum number of hashes in a compacted segment */
+	private static final int MAX_SEGMENT_SIZE = 1 << 24;
+
+	/** Maximum number of id bytes in a compacted segment */
+	private static final long MAX_SEGMENT_ID_BYTES = 1L << 30;
+
+	/** Releases mapped buffers. Null if not supported by the jvm */
+	private static final Unmapper UNMAPPER = createUnmapper();
+
+	/** The absolute file backing this index */
+	private final File file;
+
+	/**
+	 * Flag indicating if hashes origin should be checked
+	 */
+	protected boolean ensureHashConsistency;
+
+	private int flushThreshold = DEFAULT_FLUSH_THRESHOLD;
+
+	/**
+	 * The algorithm id all hashes have to match if they want to perform an action
+	 */
+	private transient int algoId;
+
+	/** The bit resolution of the added hashes. -1 as long as no hash was added */
+	private transient int hashLength;
+
+	/** The number of words used to store a single hash */
+	private transient int wordCount;
+
+	private transient int hashCount;
+
+	private transient FileChannel channel;
+
+	private transient List<Segment> segments;
+
+	/** Packed hashes not yet written to the file */
+	private transient long[] pendingHashes;
+
+	private transient ArrayList<String> pendingIds;
+
+	/**
+	 * Open the index saved in the file. If the file does not exist an empty index
+	 * is created.
+	 *
+	 * @param file                  the file backing the index
+	 * @param ensureHashConsistency If true adding and matching hashes will check
+	 *                              weather they are generated by the same
+	 *                              algorithms as the first hash added to the index
+	 * @throws IOException if the file can not be opened or is not a valid index
+	 */
+	public MappedHashIndex(File file, boolean ensureHashConsistency) throws IOException {
+		this.file = file.getAbsoluteFile();
+		this.ensureHashConsistency = ensureHashConsistency;
+		open(true);
+	}
+
+	/**
+	 * Open the file and map its segments
+	 *
+	 * @param create if an empty index is created in case the file does not exist.
+	 *               If false an exception is thrown instead
+	 */
+	private void open(boolean create) throws IOException {
+		if (create) {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} else if (file.exists()) {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} else {
+			throw new IOException("Mapped hash index does not exist: " + file);
+		}
+		segments = new ArrayList<>();
+		pendingHashes = new long[0];
+		pendingIds = new ArrayList<>();
+		hashCount = 0;
+
+		if (channel.size() < HEADER_SIZE) {
+			hashLength = -1;
+			algoId = 0;
+			writeHeader();
+			return;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(header, 0);
+		if (header.getLong() != MAGIC) {
+			channel.close();
+			throw new IOException("Not a mapped hash index: " + file);
+		}
+		int version = header.getInt();
+		if (version > VERSION) {
+			channel.close();
+			throw new IOException("Unsupported mapped hash index version " + version + ": " + file);
+		}
+		hashLength = header.getInt();
+		algoId = header.getInt();
+		wordCount = hashLength < 0 ? 0 : (hashLength + 63) >>> 6;
+
+		long position = HEADER_SIZE;
+		long size = channel.size();
+		ByteBuffer segmentHeader = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+		while (position + SEGMENT_HEADER_SIZE <= size) {
+			segmentHeader.clear();
+			readFully(segmentHeader, position);
+			int magic = segmentHeader.getInt();
+			int count = segmentHeader.getInt();
+			int tableCount = segmentHeader.getInt();
+			segmentHeader.getInt();
+			long idBytes = segmentHeader.getLong();
+			if (magic != SEGMENT_MAGIC || count < 0 || tableCount < 0 || idBytes < 0) {
+				break;
+			}
+			Segment segment = new Segment(count, tableCount, idBytes);
+			if (position + segment.size > size) {
+				break;
+			}
+			segment.map(position);
+			segments.add(segment);
+			hashCount += count;
+			position += segment.size;
+		}
+		if (position != size) {
+			// An append was interrupted. Drop the incomplete segment
+			LOGGER.warning("Truncate incomplete segment of mapped hash index " + file);
+			channel.truncate(position);
+		}
+	}
+
+	@Override
+	public void addHash(Hash hash, String value) {
+
+		if (ensureHashConsistency) {
+			if (algoId == 0) {
+				algoId = hash.getAlgorithmId();
+			} else {
+				if (algoId != hash.getAlgorithmId())
+					throw new IllegalStateException("Tried to add an incompatible hash to the mapped hash index");
+			}
+		}
+
+		if (hashLength < 0) {
+			hashLength = hash.getBitResolution();
+			wordCount = (hashLength + 63) >>> 6;
+			try {
+				writeHeader();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		} else if (hashLength != hash.getBitResolution()) {
+			throw new IllegalArgumentException("Tried to add a hash with a different bit resolution to the mapped hash index");
+		}
+
+		int base = pendingIds.size() * wordCount;
+		if (base + wordCount > pendingHashes.length) {
+			pendingHashes = Arrays.copyOf(pendingHashes, Math.max(base + wordCount, pendingHashes.length << 1));
+		}
+		long[] words = hash.getHashWords();
+		System.arraycopy(words, 0, pendingHashes, base, Math.min(words.length, wordCount));
+		pendingIds.add(value);
+		hashCount++;
+
+		if (pendingIds.size() >= flushThreshold) {
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Append all pending hashes to the file as a new segment and force the changes
+	 * to the storage device.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	public void flush() throws IOException {
+		if (!pendingIds.isEmpty()) {
+			int count = pendingIds.size();
+			byte[][] ids = new byte[count][];
+			long idBytes = 0;
+			for (int i = 0; i < count; i++) {
+				ids[i] = pendingIds.get(i).getBytes(StandardCharsets.UTF_8);
+				idBytes += ids[i].length;
+			}
+			int[] next = new int[1];
+			Segment segment = writeSegment(channel, channel.size(), count, idBytes, words -> {
+				System.arraycopy(pendingHashes, next[0] * wordCount, words, 0, wordCount);
+				return ids[next[0]++];
+			}, 0);
+			segments.add(segment);
+			pendingHashes = new long[0];
+			pendingIds.clear();
+		}
+		channel.force(false);
+	}
+
+	/**
+	 * Rewrite the index merging all segments into as few segments as possible and
+	 * create the multi index tables allowing sub linear searches. The hashes are
+	 * streamed from the mapped segments into the compacted file which atomically
+	 * replaces the index once it was written.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	public void compact() throws IOException {
+		flush();
+
+		// Every region of a segment has to be mappable by a single buffer
+		int maxCount = (int) Math.min(MAX_SEGMENT_SIZE, Integer.MAX_VALUE / (8L * Math.max(1, wordCount)) - 1);
+		File compacted = new File(file.getPath() + ".compact");
+		try (FileChannel target = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			writeHeader(target);
+			long position = HEADER_SIZE;
+			// The planner only reads the id lengths to find the bounds of a segment
+			SegmentCursor planner = new SegmentCursor();
+			SegmentCursor reader = new SegmentCursor();
+			while (planner.hasNext()) {
+				int count = 0;
+				long idBytes = 0;
+				while (planner.hasNext() && count < maxCount && (count == 0 || idBytes + planner.getIdLength() <= MAX_SEGMENT_ID_BYTES)) {
+					idBytes += planner.getIdLength();
+					planner.skip();
+					count++;
+				}
+				Segment segment = writeSegment(target, position, count, idBytes, reader, getTableCount(count));
+				position += segment.size;
+			}
+			target.force(true);
+		}
+
+		// Mapped files can not be replaced on every platform and the mappings would
+		// outlive the replaced file. Release the old segments before moving the file
+		unmapSegments();
+		channel.close();
+		try {
+			Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			open(false);
+		}
+	}
+
+	/**
+	 * Choose the number of multi index tables for a segment of the given size. The
+	 * substrings are approximately log2(count) bits long.
+	 */
+	private int getTableCount(int count) {
+		int substringLength = Math.max(1, Math.min(MultiIndexHashTable.DEFAULT_SUBSTRING_LENGTH, 31 - Integer.numberOfLeadingZeros(count)));
+		return Math.max(1, (hashLength + substringLength - 1) / substringLength);
+	}
+
+	/**
+	 * Write the next count entries of the reader as a segment at the given
+	 * position. The segment header is written last so interrupted writes are
+	 * detected when opening the file.
+	 */
+	private Segment writeSegment(FileChannel target, long position, int count, long idBytes, EntryReader reader, int tableCount) throws IOException {
+		Segment segment = new Segment(count, tableCount, idBytes);
+		List<MappedByteBuffer> mapped = new ArrayList<>();
+		try {
+			writeRegions(target, position, segment, reader, mapped);
+		} finally {
+			for (MappedByteBuffer buffer : mapped) {
+				unmap(buffer);
+			}
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+		header.putInt(SEGMENT_MAGIC).putInt(count).putInt(tableCount).putInt(0).putLong(idBytes);
+		header.flip();
+		while (header.hasRemaining()) {
+			target.write(header, position + header.position());
+		}
+		if (target == channel) {
+			segment.map(position);
+		}
+		return segment;
+	}
+
+	/**
+	 * Write the hashes, ids and tables of a segment via writable mappings which
+	 * are added to the list
+	 */
+	private void writeRegions(FileChannel target, long position, Segment segment, EntryReader reader, List<MappedByteBuffer> mapped) throws IOException {
+		int count = segment.count;
+		long idBytes = segment.idBytes;
+		long offset = position + SEGMENT_HEADER_SIZE;
+		LongBuffer hashBuffer = mapWritable(target, offset, 8L * count * wordCount, mapped).asLongBuffer();
+		offset += 8L * count * wordCount;
+		LongBuffer offsetBuffer = mapWritable(target, offset, 8L * (count + 1), mapped).asLongBuffer();
+		MappedByteBuffer idBuffer = mapWritable(target, offset + 8L * (count + 1), idBytes, mapped);
+		offset += 8L * (count + 1) + pad(idBytes);
+
+		long[] words = new long[wordCount];
+		long idOffset = 0;
+		for (int i = 0; i < count; i++) {
+			byte[] id = reader.next(words);
+			hashBuffer.put(words);
+			offsetBuffer.put(idOffset);
+			idBuffer.put(id);
+			idOffset += id.length;
+		}
+		offsetBuffer.put(idOffset);
+
+		for (int table = 0; table < segment.tableCount; table++) {
+			int substringOffset = segment.substringOffsets[table];
+			int length = segment.substringLengths[table];
+			int[] starts = new int[(1 << length) + 1];
+			for (int i = 0; i < count; i++) {
+				starts[getSubstring(hashBuffer, i, words, substringOffset, length) + 1]++;
+			}
+			for (int key = 0; key < (1 << length); key++) {
+				starts[key + 1] += starts[key];
+			}
+			mapWritable(target, offset, 4L * starts.length, mapped).asIntBuffer().put(starts);
+			IntBuffer bucketIds = mapWritable(target, offset + 4L * starts.length, 4L * count, mapped).asIntBuffer();
+			int[] fill = Arrays.copyOf(starts, starts.length - 1);
+			for (int i = 0; i < count; i++) {
+				bucketIds.put(fill[getSubstring(hashBuffer, i, words, substringOffset, length)]++, i);
+			}
+			offset += pad(4L * count + 4L * starts.length);
+		}
+		// Extend the file by the padding of the last region
+		if (target.size() < position + segment.size) {
+			target.write(ByteBuffer.allocate(1), position + segment.size - 1);
+		}
+		target.force(false);
+	}
+
+	/**
+	 * Read the substring of a hash already written to the segment
+	 */
+	private int getSubstring(LongBuffer hashes, int index, long[] words, int offset, int length) {
+		int base = index * wordCount;
+		for (int word = 0; word < wordCount; word++) {
+			words[word] = hashes.get(base + word);
+		}
+		return MultiIndexHashTable.getSubstring(words, 0, wordCount, offset, length);
+	}
+
+	private static MappedByteBuffer mapWritable(FileChannel target, long position, long size, List<MappedByteBuffer> mapped) throws IOException {
+		MappedByteBuffer buffer = target.map(MapMode.READ_WRITE, position, size);
+		mapped.add(buffer);
+		return buffer;
+	}
+
+	private void unmapSegments() {
+		for (Segment segment : segments) {
+			segment.unmap();
+		}
+		segments.clear();
+	}
+
+	/**
+	 * Release the mapping of the buffer immediately instead of once it is garbage
+	 * collected. The buffer and all views of it may not be accessed afterwards.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		if (UNMAPPER != null) {
+			try {
+				UNMAPPER.unmap(buffer);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				LOGGER.fine("Failed to unmap buffer: " + e);
+			}
+		}
+	}
+
+	private static Unmapper createUnmapper() {
+		try {
+			// Java 9+
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Object unsafe = theUnsafe.get(null);
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			return buffer -> invokeCleaner.invoke(unsafe, buffer);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Not available, try the java 8 cleaner
+		}
+		try {
+			Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			return buffer -> clean.invoke(cleaner.invoke(buffer));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOGGER.fine("Mapped buffers are released once garbage collected: " + e);
+			return null;
+		}
+	}
+
+	private static long pad(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	private void writeHeader() throws IOException {
+		writeHeader(channel);
+	}
+
+	private void writeHeader(FileChannel target) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putLong(MAGIC).putInt(VERSION).putInt(hashLength).putInt(algoId);
+		header.position(HEADER_SIZE);
+		header.flip();
+		while (header.hasRemaining()) {
+			target.write(header, header.position());
+		}
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of mapped hash index " + file);
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Return all elements of the index whose hamming distance is smaller or equal
+	 * than the supplied max distance.
+	 *
+	 * If the index is configured to ensureHashConsistency this function will throw
+	 * an unchecked IlleglStateException if the checked hash does not comply with
+	 * the first hash added to the index.
+	 *
+	 * @param hash        The hash to search for
+	 * @param maxDistance The maximal hamming distance deviation all found hashes
+	 *                    may possess. A distance of 0 will return all objects added
+	 *                    whose hash is exactly the hash supplied as the first
+	 *                    argument
+	 *
+	 * @return Search results contain objects and distances matching the search
+	 *         criteria. The results returned are ordered to return the closest
+	 *         match first.
+	 */
+	@Override
+	public PriorityQueue<Result<String>> getElementsWithinHammingDistance(Hash hash, int maxDistance) {
+		checkConsistency(hash);
+		PriorityQueue<Result<String>> result = new PriorityQueue<>();
+		if (hashCount > 0 && maxDistance >= 0) {
+			search(hash.getHashWords(), new MutableInteger(maxDistance), result, false);
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieve the hash that is the most similar to the queried hash. The closest
+	 * hash is the hash with the smallest distance.
+	 *
+	 * @param hash to search the neighbor for.
+	 * @return the closest hash saved in this index.
+	 */
+	@Override
+	public List<Result<String>> getNearestNeighbour(Hash hash) {
+		checkConsistency(hash);
+		List<Result<String>> result = new ArrayList<>();
+		if (hashCount > 0) {
+			search(hash.getHashWords(), new MutableInteger(Integer.MAX_VALUE), result, true);
+		}
+		return result;
+	}
+
+	/**
+	 * Search all segments and the pending hashes.
+	 *
+	 * @param needle  the packed hash to search for
+	 * @param bound   the maximum distance of accepted hashes. Updated if nearest is
+	 *                true
+	 * @param result  the collection to add the found values to
+	 * @param nearest if true only the closest hashes are kept
+	 */
+	private void search(long[] needle, MutableInteger bound, Collection<Result<String>> result, boolean nearest) {
+		for (Segment segment : segments) {
+			segment.search(needle, bound, result, nearest);
+		}
+		for (int i = 0; i < pendingIds.size(); i++) {
+			int distance = 0;
+			for (int word = 0; word < wordCount; word++) {
+				distance += Long.bitCount(pendingHashes[i * wordCount + word] ^ (word < needle.length ? needle[word] : 0L));
+			}
+			accept(pendingIds.get(i), distance, bound, result, nearest);
+		}
+	}
+
+	private void accept(String id, int distance, MutableInteger bound, Collection<Result<String>> result, boolean nearest) {
+		if (nearest && distance < bound.intValue()) {
+			result.clear();
+			bound.setValue(distance);
+		}
+		if (distance <= bound.intValue()) {
+			result.add(new Result<String>(id, distance, distance / (double) hashLength));
+		}
+	}
+
+	private void checkConsistency(Hash hash) {
+		if (ensureHashConsistency && algoId != 0 && algoId != hash.getAlgorithmId()) {
+			throw new IllegalStateException("Tried to search an incompatible hash in the mapped hash index");
+		}
+	}
+
+	/**
+	 * Perform the action for the value of every hash in the index, in the order
+	 * the hashes were added. The values are read from the file, allowing to
+	 * restore state derived from the index without serializing it.
+	 *
+	 * @param action the action performed for each value
+	 */
+	public void forEachValue(Consumer<? super String> action) {
+		for (Segment segment : segments) {
+			for (int i = 0; i < segment.count; i++) {
+				action.accept(segment.getId(i));
+			}
+		}
+		pendingIds.forEach(action);
+	}
+
+	/**
+	 * @return the number of hashes buffered before they are appended to the file
+	 */
+	public int getFlushThreshold() {
+		return flushThreshold;
+	}
+
+	/**
+	 * @param flushThreshold the number of hashes buffered before they are appended
+	 *                       to the file
+	 */
+	public void setFlushThreshold(int flushThreshold) {
+		if (flushThreshold <= 0) {
+			throw new IllegalArgumentException("The flush threshold has to be positive");
+		}
+		this.flushThreshold = flushThreshold;
+	}
+
+	/**
+	 * @return the number of segments currently saved in the file
+	 */
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * @return the file backing this index
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * Flush all pending hashes and close the file. The index may not be used
+	 * afterwards.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel.isOpen()) {
+			flush();
+			unmapSegments();
+			channel.close();
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return file.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof MappedHashIndex)) {
+			return false;
+		}
+		MappedHashIndex other = (MappedHashIndex) obj;
+		return file.equals(other.file) && hashCount == other.hashCount;
+	}
+
+	// Serialization
+	private void writeObject(ObjectOutputStream oos) throws IOException {
+		flush();
+		oos.defaultWriteObject();
+	}
+
+	private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+		ois.defaultReadObject();
+		open(false);
+	}
+
+	/**
+	 * Releases the mapping of a buffer
+	 */
+	@FunctionalInterface
+	private interface Unmapper {
+
+		void unmap(ByteBuffer buffer) throws ReflectiveOperationException;
+	}
+
+	/**
+	 * Supplies the entries written to a new segment in order
+	 */
+	@FunctionalInterface
+	private interface EntryReader {
+
+		/**
+		 * @param words the array the packed hash of the next entry is copied to
+		 * @return the utf-8 encoded id of the next entry
+		 */
+		byte[] next(long[] words);
+	}
+
+	/**
+	 * Iterates the entries of all segments in the order they were added without
+	 * copying them onto the heap
+	 */
+	private class SegmentCursor implements EntryReader {
+
+		private int segment;
+
+		private int index;
+
+		boolean hasNext() {
+			while (segment < segments.size() && index == segments.get(segment).count) {
+				segment++;
+				index = 0;
+			}
+			return segment < segments.size();
+		}
+
+		long getIdLength() {
+			LongBuffer idOffsets = segments.get(segment).idOffsets;
+			return idOffsets.get(index + 1) - idOffsets.get(index);
+		}
+
+		void skip() {
+			index++;
+		}
+
+		@Override
+		public byte[] next(long[] words) {
+			hasNext();
+			Segment current = segments.get(segment);
+			int base = index * wordCount;
+			for (int word = 0; word < wordCount; word++) {
+				words[word] = current.hashes.get(base + word);
+			}
+			return current.getIdBytes(index++);
+		}
+	}
+
+	/**
+	 * A region of the file holding hashes, ids and optionally multi index tables
+	 */
+	private class Segment {
+
+		private final int count;
+
+		private final int tableCount;
+
+		private final long idBytes;
+
+		/** The total size of the segment in bytes */
+		private final long size;
+
+		private final int[] substringOffsets;
+
+		private final int[] substringLengths;
+
+		private LongBuffer hashes;
+
+		private LongBuffer idOffsets;
+
+		private ByteBuffer ids;
+
+		private IntBuffer[] bucketStarts;
+
+		private IntBuffer[] bucketIds;
+
+		/** The buffers backing the regions of this segment */
+		private final List<MappedByteBuffer> mapped = new ArrayList<>();
+
+		Segment(int count, int tableCount, long idBytes) {
+			this.count = count;
+			this.tableCount = tableCount;
+			this.idBytes = idBytes;
+			substringOffsets = new int[tableCount];
+			substringLengths = new int[tableCount];
+			long size = SEGMENT_HEADER_SIZE + 8L * count * wordCount + 8L * (count + 1) + pad(idBytes);
+			for (int table = 0, offset = 0; table < tableCount; table++) {
+				int length = hashLength / tableCount + (table < hashLength % tableCount ? 1 : 0);
+				substringOffsets[table] = offset;
+				substringLengths[table] = length;
+				offset += length;
+				size += pad(4L * ((1 << length) + 1) + 4L * count);
+			}
+			this.size = size;
+		}
+
+		void map(long position) throws IOException {
+			long offset = position + SEGMENT_HEADER_SIZE;
+			hashes = mapReadOnly(offset, 8L * count * wordCount).asLongBuffer();
+			offset += 8L * count * wordCount;
+			idOffsets = mapReadOnly(offset, 8L * (count + 1)).asLongBuffer();
+			offset += 8L * (count + 1);
+			ids = mapReadOnly(offset, idBytes);
+			offset += pad(idBytes);
+			bucketStarts = new IntBuffer[tableCount];
+			bucketIds = new IntBuffer[tableCount];
+			for (int table = 0; table < tableCount; table++) {
+				int buckets = (1 << substringLengths[table]) + 1;
+				bucketStarts[table] = mapReadOnly(offset, 4L * buckets).asIntBuffer();
+				bucketIds[table] = mapReadOnly(offset + 4L * buckets, 4L * count).asIntBuffer();
+				offset += pad(4L * buckets + 4L * count);
+			}
+		}
+
+		private MappedByteBuffer mapReadOnly(long offset, long size) throws IOException {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, offset, size);
+			mapped.add(buffer);
+			return buffer;
+		}
+
+		/**
+		 * Release all mapped regions. The segment may not be accessed afterwards
+		 */
+		void unmap() {
+			for (MappedByteBuffer buffer : mapped) {
+				MappedHashIndex.unmap(buffer);
+			}
+			mapped.clear();
+		}
+
+		byte[] getIdBytes(int index) {
+			long start = idOffsets.get(index);
+			byte[] bytes = new byte[(int) (idOffsets.get(index + 1) - start)];
+			ByteBuffer view = ids.duplicate();
+			view.position((int) start);
+			view.get(bytes);
+			return bytes;
+		}
+
+		String getId(int index) {
+			return new String(getIdBytes(index), StandardCharsets.UTF_8);
+		}
+
+		private int getDistance(int index, long[] needle) {
+			int base = index * wordCount;
+			int distance = 0;
+			for (int word = 0; word < wordCount; word++) {
+				distance += Long.bitCount(hashes.get(base + word) ^ (word < needle.length ? needle[word] : 0L));
+			}
+			return distance;
+		}
+
+		private int getSubstring(int index, int table) {
+			int offset = substringOffsets[table];
+			int length = substringLengths[table];
+			int word = offset >>> 6;
+			int shift = offset & 63;
+			int base = index * wordCount;
+			long value = hashes.get(base + word) >>> shift;
+			if (shift + length > 64 && word + 1 < wordCount) {
+				value |= hashes.get(base + word + 1) << (64 - shift);
+			}
+			return (int) (value & ((1L << length) - 1));
+		}
+
+		void search(long[] needle, MutableInteger bound, Collection<Result<String>> result, boolean nearest) {
+			// Unbounded nearest neighbour searches probe with increasing radius and stop
+			// early. Range searches probing more buckets than hashes present scan instead
+			boolean bounded = bound.intValue() != Integer.MAX_VALUE;
+			if (tableCount == 0 || (bounded && getProbeCount(bound.intValue() / tableCount) >= count)) {
+				for (int i = 0; i < count; i++) {
+					int distance = getDistance(i, needle);
+					if (distance <= bound.intValue()) {
+						accept(getId(i), distance, bound, result, nearest);
+					}
+				}
+				return;
+			}
+
+			int[] needleKeys = new int[tableCount];
+			for (int table = 0; table < tableCount; table++) {
+				needleKeys[table] = MultiIndexHashTable.getSubstring(needle, 0, needle.length, substringOffsets[table], substringLengths[table]);
+			}
+			// Every hash within the bound has at least one substring within bound /
+			// tables (pigeonhole principle)
+			for (int level = 0; level * tableCount <= bound.intValue() && level <= MultiIndexHashTable.MAX_SUBSTRING_LENGTH; level++) {
+				for (int table = 0; table < tableCount; table++) {
+					probe(table, level, needle, needleKeys, bound, result, nearest);
+				}
+			}
+		}
+
+		private void probe(int table, int level, long[] needle, int[] needleKeys, MutableInteger bound, Collection<Result<String>> result, boolean nearest) {
+			int length = substringLengths[table];
+			if (level > length) {
+				return;
+			}
+			int limit = 1 << length;
+			int mask = (1 << level) - 1;
+			while (mask < limit) {
+				int key = needleKeys[table] ^ mask;
+				for (int bucket = bucketStarts[table].get(key), end = bucketStarts[table].get(key + 1); bucket < end; bucket++) {
+					int index = bucketIds[table].get(bucket);
+					if (isFirstOccurrence(index, table, level, needleKeys)) {
+						int distance = getDistance(index, needle);
+						if (distance <= bound.intValue()) {
+							accept(getId(index), distance, bound, result, nearest);
+						}
+					}
+				}
+				if (mask == 0) {
+					break;
+				}
+				mask = MultiIndexHashTable.nextCombination(mask);
+			}
+		}
+
+		/**
+		 * Check if the hash is encountered for the first time if found in the given
+		 * table at the given level.
+		 */
+		private boolean isFirstOccurrence(int index, int table, int level, int[] needleKeys) {
+			for (int other = 0; other < tableCount; other++) {
+				if (other == table) {
+					continue;
+				}
+				int distance = Integer.bitCount(getSubstring(index, other) ^ needleKeys[other]);
+				if (distance < level || (distance == level && other < table)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Compute the number of buckets which have to be inspected to find all hashes
+		 * whose substrings are within the radius.
+		 */
+		private long getProbeCount(int radius) {
+			long probes = 0;
+			for (int length : substringLengths) {
+				long combinations = 1;
+				for (int level = 0; level <= Math.min(radius, length); level++) {
+					probes += combinations;
+					combinations = combinations * (length - level) / (level + 1);
+				}
+			}
+			return probes;
+		}
+	}
+
+}
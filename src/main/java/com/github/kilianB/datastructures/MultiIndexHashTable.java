@@ -0,0 +1,483 @@
+package com.github.kilianB.datastructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.github.kilianB.Require;
+import com.github.kilianB.datastructures.tree.HashIndex;
+import com.github.kilianB.datastructures.tree.Result;
+import com.github.kilianB.mutable.MutableInteger;
+import com.jstarcraft.dip.hash.Hash;
+
+/**
+ * A not thread safe multi index hash table used to quickly find all hashes
+ * within a given <a href="https://en.wikipedia.org/wiki/Hamming_distance">hamming
+ * distance</a> of a needle.
+ * <p>
+ *
+ * Every hash is split into m disjoint substrings and each substring is used as
+ * key in a separate, directly addressed table. If two hashes are within the
+ * distance r at least one of their substrings has to be within the distance
+ * <code>r / m</code> (pigeonhole principle). Queries therefore only have to look
+ * at the buckets close to the substrings of the needle and verify the found
+ * candidates, instead of traversing large parts of a tree as done by
+ * {@link com.github.kilianB.datastructures.tree.binaryTree.BinaryTree}.
+ * <p>
+ *
+ * The hashes themselves are stored in a single packed long array and the values
+ * are referenced by int ids keeping the overhead per added hash small. Each
+ * table requires <code>2^substringLength</code> buckets, the default substring
+ * length of 16 bits is suited for up to a few hundred million hashes. The
+ * packed array limits the table to <code>(2^31 - 9) / ceil(bits / 64)</code>
+ * hashes, adding further hashes throws an IllegalStateException. If the
+ * search radius becomes too large for the pigeonhole lookup to be beneficial
+ * the table falls back to a linear scan.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ * @param <T> the type of the values stored in the table
+ * @see <a href="https://www.cs.toronto.edu/~norouzi/research/papers/multi_index_hashing.pdf">Fast
+ *      Search in Hamming Space with Multi-Index Hashing</a>
+ */
+public class MultiIndexHashTable<T> implements HashIndex<T> {
+
+	private static final long serialVersionUID = -1765281389164880934L;
+
+	/**
+	 * The default bit length of a substring
+	 */
+	public static final int DEFAULT_SUBSTRING_LENGTH = 16;
+
+	/**
+	 * The maximum bit length of a substring. Tables are directly addressed and
+	 * grow exponentially with the length of the substring.
+	 */
+	public static final int MAX_SUBSTRING_LENGTH = 24;
+
+	/**
+	 * The maximum length of the packed hashes and buckets. Some virtual machines
+	 * reserve header words in arrays
+	 */
+	private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Flag indicating if hashes origin should be checked
+	 */
+	protected boolean ensureHashConsistency;
+
+	/**
+	 * The algorithm id all hashes have to match if they want to perform an action
+	 */
+	protected int algoId;
+
+	/**
+	 * Keep track of how many hashes were added to the table
+	 */
+	protected int hashCount;
+
+	/** The maximum bit length of the substrings */
+	private int substringLength;
+
+	/** The bit resolution of the added hashes. -1 as long as no hash was added */
+	private int hashLength = -1;
+
+	/** The number of words used to store a single hash */
+	private int wordCount;
+
+	/** The bit offset of each substring */
+	private int[] offsets;
+
+	/** The bit length of each substring */
+	private int[] lengths;
+
+	/** [Table][Substring] ids of the hashes sharing the substring */
+	private int[][][] buckets;
+
+	/** [Table][Substring] number of ids saved in the bucket */
+	private int[][] sizes;
+
+	/** Packed hashes. Hash n occupies the words [n * wordCount, (n+1) * wordCount) */
+	private long[] keys = new long[0];
+
+	/** Values saved in this table indexed by their id */
+	private ArrayList<T> values = new ArrayList<>();
+
+	/**
+	 * @param ensureHashConsistency If true adding and matching hashes will check
+	 *                              weather they are generated by the same
+	 *                              algorithms as the first hash added to the table
+	 */
+	public MultiIndexHashTable(boolean ensureHashConsistency) {
+		this(ensureHashConsistency, DEFAULT_SUBSTRING_LENGTH);
+	}
+
+	/**
+	 * @param ensureHashConsistency If true adding and matching hashes will check
+	 *                              weather they are generated by the same
+	 *                              algorithms as the first hash added to the table
+	 * @param substringLength       the maximum bit length of the substrings [1 -
+	 *                              {@link #MAX_SUBSTRING_LENGTH}]. A good choice is
+	 *                              log2 of the number of hashes expected to be
+	 *                              added.
+	 */
+	public MultiIndexHashTable(boolean ensureHashConsistency, int substringLength) {
+		this.ensureHashConsistency = ensureHashConsistency;
+		this.substringLength = Require.inRange(substringLength, 1, MAX_SUBSTRING_LENGTH, "The substring length has to be in range of [1-" + MAX_SUBSTRING_LENGTH + "]");
+	}
+
+	/**
+	 * Split the hashes in as few equally sized substrings as possible.
+	 *
+	 * @param hashLength the bit resolution of the hashes
+	 */
+	private void initTables(int hashLength) {
+		this.hashLength = hashLength;
+		this.wordCount = (hashLength + 63) >>> 6;
+		int tableCount = Math.max(1, (hashLength + substringLength - 1) / substringLength);
+		offsets = new int[tableCount];
+		lengths = new int[tableCount];
+		buckets = new int[tableCount][][];
+		sizes = new int[tableCount][];
+		for (int table = 0, offset = 0; table < tableCount; table++) {
+			int length = hashLength / tableCount + (table < hashLength % tableCount ? 1 : 0);
+			offsets[table] = offset;
+			lengths[table] = length;
+			buckets[table] = new int[1 << length][];
+			sizes[table] = new int[1 << length];
+			offset += length;
+		}
+	}
+
+	@Override
+	public void addHash(Hash hash, T value) {
+
+		if (ensureHashConsistency) {
+			if (algoId == 0) {
+				algoId = hash.getAlgorithmId();
+			} else {
+				if (algoId != hash.getAlgorithmId())
+					throw new IllegalStateException("Tried to add an incompatible hash to the multi index hash table");
+			}
+		}
+
+		if (hashLength < 0) {
+			initTables(hash.getBitResolution());
+		} else if (hashLength != hash.getBitResolution()) {
+			throw new IllegalArgumentException("Tried to add a hash with a different bit resolution to the multi index hash table");
+		}
+
+		int id = hashCount;
+		long end = (id + 1L) * wordCount;
+		if (end > MAX_ARRAY_LENGTH) {
+			throw new IllegalStateException("The multi index hash table can not hold more than " + (MAX_ARRAY_LENGTH / wordCount) + " hashes of " + hashLength + " bits");
+		}
+		// Fits into an int for every added id due to the capacity check
+		int base = id * wordCount;
+		if (end > keys.length) {
+			keys = Arrays.copyOf(keys, (int) Math.min(MAX_ARRAY_LENGTH, Math.max(end, keys.length + (long) (keys.length >> 1))));
+		}
+		long[] words = hash.getHashWords();
+		System.arraycopy(words, 0, keys, base, Math.min(words.length, wordCount));
+		values.add(value);
+
+		for (int table = 0; table < offsets.length; table++) {
+			int key = getSubstring(keys, base, wordCount, offsets[table], lengths[table]);
+			int[] bucket = buckets[table][key];
+			int size = sizes[table][key];
+			if (bucket == null) {
+				bucket = new int[2];
+				buckets[table][key] = bucket;
+			} else if (size == bucket.length) {
+				bucket = Arrays.copyOf(bucket, (int) Math.min(MAX_ARRAY_LENGTH, (long) size << 1));
+				buckets[table][key] = bucket;
+			}
+			bucket[size] = id;
+			sizes[table][key] = size + 1;
+		}
+		hashCount++;
+	}
+
+	/**
+	 * Return all elements of the table whose hamming distance is smaller or equal
+	 * than the supplied max distance.
+	 *
+	 * If the table is configured to ensureHashConsistency this function will throw
+	 * an unchecked IlleglStateException if the checked hash does not comply with
+	 * the first hash added to the table.
+	 *
+	 * @param hash        The hash to search for
+	 * @param maxDistance The maximal hamming distance deviation all found hashes
+	 *                    may possess. A distance of 0 will return all objects added
+	 *                    whose hash is exactly the hash supplied as the first
+	 *                    argument
+	 *
+	 * @return Search results contain objects and distances matching the search
+	 *         criteria. The results returned are ordered to return the closest
+	 *         match first.
+	 */
+	@Override
+	public PriorityQueue<Result<T>> getElementsWithinHammingDistance(Hash hash, int maxDistance) {
+
+		if (ensureHashConsistency && algoId != hash.getAlgorithmId()) {
+			throw new IllegalStateException("Tried to search an incompatible hash in the multi index hash table");
+		}
+
+		PriorityQueue<Result<T>> result = new PriorityQueue<Result<T>>();
+
+		if (hashCount == 0 || maxDistance < 0) {
+			return result;
+		}
+
+		long[] needle = hash.getHashWords();
+		MutableInteger bound = new MutableInteger(maxDistance);
+		int radius = maxDistance / offsets.length;
+
+		if (getProbeCount(radius) >= hashCount) {
+			scan(needle, bound, result, false);
+			return result;
+		}
+
+		int[] needleKeys = getSubstrings(needle);
+		for (int level = 0; level <= radius; level++) {
+			for (int table = 0; table < offsets.length; table++) {
+				probe(table, level, needle, needleKeys, bound, result, false);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieve the hash that is the most similar to the queried hash. The closest
+	 * hash is the hash with the smallest distance.
+	 *
+	 * @param hash to search the neighbor for.
+	 * @return the closest hash saved in this table.
+	 */
+	@Override
+	public List<Result<T>> getNearestNeighbour(Hash hash) {
+
+		if (ensureHashConsistency && algoId != hash.getAlgorithmId()) {
+			throw new IllegalStateException("Tried to search an incompatible hash in the multi index hash table");
+		}
+
+		List<Result<T>> result = new ArrayList<>();
+
+		if (hashCount == 0) {
+			return result;
+		}
+
+		long[] needle = hash.getHashWords();
+		MutableInteger bound = new MutableInteger(Integer.MAX_VALUE);
+		int[] needleKeys = getSubstrings(needle);
+		long probes = 0;
+
+		for (int level = 0; level <= substringLength; level++) {
+			// After inspecting all levels below the current one every hash with a
+			// distance smaller than tables * level has been found
+			if (bound.intValue() < offsets.length * level) {
+				break;
+			}
+			probes += getProbeCount(level) - (level == 0 ? 0 : getProbeCount(level - 1));
+			if (probes >= hashCount) {
+				result.clear();
+				bound.setValue(Integer.MAX_VALUE);
+				scan(needle, bound, result, true);
+				return result;
+			}
+			for (int table = 0; table < offsets.length; table++) {
+				probe(table, level, needle, needleKeys, bound, result, true);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Inspect all buckets of the table whose substring differs by exactly level
+	 * bits from the substring of the needle.
+	 *
+	 * @param table      the table to probe
+	 * @param level      the distance of the substrings
+	 * @param needle     the packed hash to search for
+	 * @param needleKeys the substrings of the needle
+	 * @param bound      the maximum distance of accepted hashes. Updated if
+	 *                   nearest is true
+	 * @param result     the collection to add the found values to
+	 * @param nearest    if true only the closest hashes are kept
+	 */
+	private void probe(int table, int level, long[] needle, int[] needleKeys, MutableInteger bound, Collection<Result<T>> result, boolean nearest) {
+		int length = lengths[table];
+		if (level > length) {
+			return;
+		}
+		int limit = 1 << length;
+		// Enumerate all masks with level set bits
+		int mask = (1 << level) - 1;
+		while (mask < limit) {
+			int key = needleKeys[table] ^ mask;
+			int[] bucket = buckets[table][key];
+			int size = sizes[table][key];
+			for (int index = 0; index < size; index++) {
+				int id = bucket[index];
+				// Only verify each hash once. At the first table with the lowest distance
+				if (!isFirstOccurrence(id, table, level, needleKeys)) {
+					continue;
+				}
+				visit(id, needle, bound, result, nearest);
+			}
+			if (mask == 0) {
+				break;
+			}
+			mask = nextCombination(mask);
+		}
+	}
+
+	/**
+	 * Compute the next greater integer with the same number of set bits (Gosper's
+	 * hack).
+	 *
+	 * @param mask a non zero bit mask
+	 * @return the next bit mask with the same bit count
+	 */
+	static int nextCombination(int mask) {
+		int lowest = mask & -mask;
+		int ripple = mask + lowest;
+		return (((ripple ^ mask) >>> 2) / lowest) | ripple;
+	}
+
+	/**
+	 * Fallback inspecting every hash in the table.
+	 */
+	private void scan(long[] needle, MutableInteger bound, Collection<Result<T>> result, boolean nearest) {
+		for (int id = 0; id < hashCount; id++) {
+			visit(id, needle, bound, result, nearest);
+		}
+	}
+
+	private void visit(int id, long[] needle, MutableInteger bound, Collection<Result<T>> result, boolean nearest) {
+		int distance = getDistance(needle, id);
+		if (nearest && distance < bound.intValue()) {
+			result.clear();
+			bound.setValue(distance);
+		}
+		if (distance <= bound.intValue()) {
+			result.add(new Result<T>(values.get(id), distance, distance / (double) hashLength));
+		}
+	}
+
+	/**
+	 * Check if the hash is encountered for the first time if found in the given
+	 * table at the given level.
+	 */
+	private boolean isFirstOccurrence(int id, int table, int level, int[] needleKeys) {
+		int base = id * wordCount;
+		for (int other = 0; other < offsets.length; other++) {
+			if (other == table) {
+				continue;
+			}
+			int distance = Integer.bitCount(getSubstring(keys, base, wordCount, offsets[other], lengths[other]) ^ needleKeys[other]);
+			if (distance < level || (distance == level && other < table)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compute the number of buckets which have to be inspected to find all hashes
+	 * whose substrings are within the radius.
+	 */
+	private long getProbeCount(int radius) {
+		long count = 0;
+		for (int length : lengths) {
+			long combinations = 1;
+			for (int level = 0; level <= Math.min(radius, length); level++) {
+				count += combinations;
+				combinations = combinations * (length - level) / (level + 1);
+			}
+		}
+		return count;
+	}
+
+	private int getDistance(long[] needle, int id) {
+		int base = id * wordCount;
+		int distance = 0;
+		for (int word = 0; word < wordCount; word++) {
+			distance += Long.bitCount(keys[base + word] ^ (word < needle.length ? needle[word] : 0L));
+		}
+		return distance;
+	}
+
+	private int[] getSubstrings(long[] words) {
+		int[] substrings = new int[offsets.length];
+		for (int table = 0; table < offsets.length; table++) {
+			substrings[table] = getSubstring(words, 0, words.length, offsets[table], lengths[table]);
+		}
+		return substrings;
+	}
+
+	/**
+	 * Extract length bits starting at the bit offset of a packed hash.
+	 *
+	 * @param words  the array holding the packed hash
+	 * @param base   the index of the first word of the hash
+	 * @param count  the number of words of the hash
+	 * @param offset the bit offset of the substring
+	 * @param length the bit length of the substring. At most 32
+	 * @return the substring
+	 */
+	static int getSubstring(long[] words, int base, int count, int offset, int length) {
+		int index = offset >>> 6;
+		int shift = offset & 63;
+		long value = index < count ? words[base + index] >>> shift : 0L;
+		if (shift + length > 64 && index + 1 < count) {
+			value |= words[base + index + 1] << (64 - shift);
+		}
+		return (int) (value & ((1L << length) - 1));
+	}
+
+	/**
+	 * @return the number of substrings each hash is split into
+	 */
+	public int getTableCount() {
+		return offsets == null ? 0 : offsets.length;
+	}
+
+	@Override
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + algoId;
+		result = prime * result + (ensureHashConsistency ? 1231 : 1237);
+		result = prime * result + hashCount;
+		result = prime * result + substringLength;
+		result = prime * result + values.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof MultiIndexHashTable)) {
+			return false;
+		}
+		MultiIndexHashTable<?> other = (MultiIndexHashTable<?>) obj;
+		if (algoId != other.algoId || ensureHashConsistency != other.ensureHashConsistency || hashCount != other.hashCount || substringLength != other.substringLength || hashLength != other.hashLength) {
+			return false;
+		}
+		if (!Arrays.equals(Arrays.copyOf(keys, hashCount * wordCount), Arrays.copyOf(other.keys, other.hashCount * other.wordCount))) {
+			return false;
+		}
+		return values.equals(other.values);
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.github.kilianB.datastructures.tree;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.jstarcraft.dip.hash.Hash;
+
+/**
+ * A searchable collection mapping hashes to values allowing to query all values
+ * within a given hamming distance of a needle. Implementations are
+ * interchangeable and may be used by image matchers to store added images.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ * @param <T> the type of the values stored in the index
+ */
+public interface HashIndex<T> extends Serializable {
+
+	/**
+	 * Insert a value associated with the supplied hash in the index (similar to a
+	 * map). Saved values can be found by invoking
+	 * {@link #getElementsWithinHammingDistance}.
+	 *
+	 * @param hash  The hash used to save the value in the index
+	 * @param value The value which will be returned if the hash is matched
+	 */
+	void addHash(Hash hash, T value);
+
+	/**
+	 * Return all elements of the index whose hamming distance is smaller or equal
+	 * than the supplied max distance.
+	 *
+	 * @param hash        The hash to search for
+	 * @param maxDistance The maximal hamming distance deviation all found hashes
+	 *                    may possess. A distance of 0 will return all objects added
+	 *                    whose hash is exactly the hash supplied as the first
+	 *                    argument
+	 *
+	 * @return Search results contain objects and distances matching the search
+	 *         criteria. The results returned are ordered to return the closest
+	 *         match first.
+	 */
+	PriorityQueue<Result<T>> getElementsWithinHammingDistance(Hash hash, int maxDistance);
+
+	/**
+	 * Get the most similar to the queried argument. In case of equidistant hashes,
+	 * multiple objects may be returned.
+	 *
+	 * @param hash the hash to search the closest match for
+	 *
+	 * @return the hash the most similar to the supplied hash
+	 */
+	List<Result<T>> getNearestNeighbour(Hash hash);
+
+	/**
+	 * Get the k elements most similar to the queried argument. Equidistant
+	 * elements competing for the last slot are dropped in no particular order.
+	 * <p>
+	 * 
+	 * The default implementation repeatedly searches with a doubling radius until
+	 * enough elements are found. Indices able to prune their search space based on
+	 * the currently kth best result should override this method.
+	 * 
+	 * @param hash the hash to search the closest matches for
+	 * @param k    the maximum number of results returned
+	 * @return at most k results ordered to return the closest match first
+	 * @since 3.1.0
+	 */
+	default List<Result<T>> getNearestNeighbours(Hash hash, int k) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("k has to be positive");
+		}
+		int maxDistance = hash.getBitResolution();
+		PriorityQueue<Result<T>> candidates;
+		int distance = 0;
+		while (true) {
+			candidates = getElementsWithinHammingDistance(hash, distance);
+			if (candidates.size() >= k || distance >= maxDistance) {
+				break;
+			}
+			distance = Math.min(Math.max(1, distance << 1), maxDistance);
+		}
+		List<Result<T>> result = new ArrayList<>(Math.min(k, candidates.size()));
+		while (!candidates.isEmpty() && result.size() < k) {
+			result.add(candidates.poll());
+		}
+		return result;
+	}
+
+	/**
+	 * Search the elements within the hamming distance of multiple needles at once.
+	 * Equivalent to calling {@link #getElementsWithinHammingDistance(Hash, int)}
+	 * for every needle, indices able to share work between needles should override
+	 * this method.
+	 * 
+	 * @param hashes       the hashes to search for
+	 * @param maxDistances the maximal hamming distance of each needle. Needles with
+	 *                     a negative distance are skipped and receive an empty
+	 *                     result
+	 * @return the search results in the order of the needles
+	 * @since 3.1.0
+	 */
+	default List<PriorityQueue<Result<T>>> getElementsWithinHammingDistance(List<Hash> hashes, int[] maxDistances) {
+		if (hashes.size() != maxDistances.length) {
+			throw new IllegalArgumentException("A distance has to be supplied for every hash");
+		}
+		List<PriorityQueue<Result<T>>> results = new ArrayList<>(hashes.size());
+		for (int i = 0; i < maxDistances.length; i++) {
+			results.add(maxDistances[i] < 0 ? new PriorityQueue<>() : getElementsWithinHammingDistance(hashes.get(i), maxDistances[i]));
+		}
+		return results;
+	}
+
+	/**
+	 * @return how many hashes were added to the index
+	 */
+	int getHashCount();
+
+}
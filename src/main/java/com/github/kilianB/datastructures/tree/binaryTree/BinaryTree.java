@@ -1,16 +1,17 @@
 package com.github.kilianB.datastructures.tree.binaryTree;
 
 import java.io.Serializable;
-import java.math.BigInteger;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.PriorityQueue;
 
 import com.github.kilianB.datastructures.tree.AbstractBinaryTree;
+import com.github.kilianB.datastructures.tree.HashIndex;
 import com.github.kilianB.datastructures.tree.NodeInfo;
 import com.github.kilianB.datastructures.tree.Result;
 import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.metrics.FlightRecorderEvents;
 
 /**
  * A not thread safe binary tree implementation used to quickly compute the
@@ -54,7 +55,7 @@ import com.jstarcraft.dip.hash.Hash;
  * 
  * @author Kilian
  */
-public class BinaryTree<T> extends AbstractBinaryTree<T> implements Serializable {
+public class BinaryTree<T> extends AbstractBinaryTree<T> implements HashIndex<T>, Serializable {
 
 	private static final long serialVersionUID = 4193396415197848158L;
 
@@ -98,6 +99,22 @@ public class BinaryTree<T> extends AbstractBinaryTree<T> implements Serializable
 	 */
 	@Override
 	public PriorityQueue<Result<T>> getElementsWithinHammingDistance(Hash hash, int maxDistance) {
+		return getElementsWithinHammingDistance(root, hash, maxDistance);
+	}
+
+	/**
+	 * Search the tree starting at the supplied root.
+	 * 
+	 * @param start       the root of the tree to search
+	 * @param hash        The hash to search for
+	 * @param maxDistance The maximal hamming distance deviation all found hashes
+	 *                    may possess
+	 * @return Search results contain objects and distances matching the search
+	 *         criteria.
+	 * @see #getElementsWithinHammingDistance(Hash, int)
+	 * @since 3.1.0
+	 */
+	protected PriorityQueue<Result<T>> getElementsWithinHammingDistance(Node start, Hash hash, int maxDistance) {
 
 		if (ensureHashConsistency && algoId != hash.getAlgorithmId()) {
 			throw new IllegalStateException("Tried to add an incompatible hash to the binary tree");
@@ -106,9 +123,11 @@ public class BinaryTree<T> extends AbstractBinaryTree<T> implements Serializable
 		// Iterative implementation. Recursion might get too expensive if the key lenght
 		// increases and we need to be aware of the stack depth
 
+		Object event = FlightRecorderEvents.beginTreeQuery();
+		long visited = 0;
+
 		PriorityQueue<Result<T>> result = new PriorityQueue<Result<T>>();
 
-		BigInteger hashValue = hash.getHashValue();
 		int treeDepth = hash.getBitResolution();
 
 		ArrayDeque<NodeInfo<T>> queue = new ArrayDeque<>();
@@ -116,11 +135,12 @@ public class BinaryTree<T> extends AbstractBinaryTree<T> implements Serializable
 		// Breadth first search
 
 		// Begin search at the root
-		queue.add(new NodeInfo<T>(root, 0, treeDepth));
+		queue.add(new NodeInfo<T>(start, 0, treeDepth));
 
 		while (!queue.isEmpty()) {
 
 			NodeInfo<T> info = queue.poll();
+			visited++;
 
 			// We reached a leaf
 			if (info.depth == 0) {
@@ -133,12 +153,12 @@ public class BinaryTree<T> extends AbstractBinaryTree<T> implements Serializable
 			}
 			/*
 			 * else { System.out.printf("%-8s Depth: %d Distance: %d Next Bit: %s%n",
-			 * info.curPath, info.depth, info.distance, hashValue.testBit(info.depth - 1) ?
+			 * info.curPath, info.depth, info.distance, hash.getBitUnsafe(info.depth - 1) ?
 			 * "1" : "0"); }
 			 */
 
 			// Next bit
-			boolean bit = hashValue.testBit(info.depth - 1);
+			boolean bit = hash.getBitUnsafe(info.depth - 1);
 			// Are children of the current
 
 			Node correctChild = info.node.getChild(bit);
@@ -154,9 +174,156 @@ public class BinaryTree<T> extends AbstractBinaryTree<T> implements Serializable
 				}
 			}
 		}
+		if (event != null) {
+			FlightRecorderEvents.commitTreeQuery(event, 1, maxDistance, visited, result.size());
+		}
 		return result;
 	}
 
+	/**
+	 * Search the elements within the hamming distance of multiple needles at once.
+	 * The tree is traversed a single time. Each node is visited once for all
+	 * needles still within their distance at this node, sharing the walk of common
+	 * prefixes between needles.
+	 * 
+	 * @param hashes       the hashes to search for. All hashes have to share the
+	 *                     same bit resolution
+	 * @param maxDistances the maximal hamming distance of each needle. Needles with
+	 *                     a negative distance are skipped and receive an empty
+	 *                     result
+	 * @return the search results in the order of the needles
+	 * @since 3.1.0
+	 */
+	@Override
+	public List<PriorityQueue<Result<T>>> getElementsWithinHammingDistance(List<Hash> hashes, int[] maxDistances) {
+		return getElementsWithinHammingDistance(root, hashes, maxDistances);
+	}
+
+	/**
+	 * Search the tree starting at the supplied root for multiple needles.
+	 * 
+	 * @param start        the root of the tree to search
+	 * @param hashes       the hashes to search for
+	 * @param maxDistances the maximal hamming distance of each needle
+	 * @return the search results in the order of the needles
+	 * @see #getElementsWithinHammingDistance(List, int[])
+	 * @since 3.1.0
+	 */
+	protected List<PriorityQueue<Result<T>>> getElementsWithinHammingDistance(Node start, List<Hash> hashes, int[] maxDistances) {
+
+		int count = hashes.size();
+		if (count != maxDistances.length) {
+			throw new IllegalArgumentException("A distance has to be supplied for every hash");
+		}
+
+		List<PriorityQueue<Result<T>>> results = new ArrayList<>(count);
+		long[][] needles = new long[count][];
+		int[] ids = new int[count];
+		int active = 0;
+		int treeDepth = count == 0 ? 0 : hashes.get(0).getBitResolution();
+		for (int i = 0; i < count; i++) {
+			Hash hash = hashes.get(i);
+			if (ensureHashConsistency && algoId != hash.getAlgorithmId()) {
+				throw new IllegalStateException("Tried to add an incompatible hash to the binary tree");
+			}
+			if (hash.getBitResolution() != treeDepth) {
+				throw new IllegalArgumentException("All hashes have to share the same bit resolution");
+			}
+			results.add(new PriorityQueue<Result<T>>());
+			needles[i] = hash.getHashWords();
+			if (maxDistances[i] >= 0) {
+				ids[active++] = i;
+			}
+		}
+
+		if (active == 0) {
+			return results;
+		}
+
+		Object event = FlightRecorderEvents.beginTreeQuery();
+		long visited = 0;
+
+		// Depth first search carrying all needles which did not exceed their distance
+		ArrayDeque<Frontier> stack = new ArrayDeque<>();
+		stack.add(new Frontier(start, treeDepth, ids, new int[active], active));
+
+		while (!stack.isEmpty()) {
+
+			Frontier frontier = stack.removeLast();
+			visited++;
+
+			// We reached a leaf
+			if (frontier.depth == 0) {
+				@SuppressWarnings("unchecked")
+				Leaf<T> leaf = (Leaf<T>) frontier.node;
+				for (int k = 0; k < frontier.count; k++) {
+					int distance = frontier.distances[k];
+					PriorityQueue<Result<T>> result = results.get(frontier.ids[k]);
+					for (T o : leaf.getData()) {
+						result.add(new Result<T>(o, distance, distance / (double) treeDepth));
+					}
+				}
+				continue;
+			}
+
+			int bitIndex = frontier.depth - 1;
+			int word = bitIndex >>> 6;
+			int shift = bitIndex & 63;
+			for (int bit = 0; bit < 2; bit++) {
+				Node child = frontier.node.getChild(bit == 1);
+				if (child == null) {
+					continue;
+				}
+				int[] childIds = new int[frontier.count];
+				int[] childDistances = new int[frontier.count];
+				int childCount = 0;
+				for (int k = 0; k < frontier.count; k++) {
+					int id = frontier.ids[k];
+					long needleWord = word < needles[id].length ? needles[id][word] : 0L;
+					int distance = frontier.distances[k] + ((int) (needleWord >>> shift) & 1 ^ bit);
+					if (distance <= maxDistances[id]) {
+						childIds[childCount] = id;
+						childDistances[childCount++] = distance;
+					}
+				}
+				if (childCount > 0) {
+					stack.add(new Frontier(child, bitIndex, childIds, childDistances, childCount));
+				}
+			}
+		}
+		if (event != null) {
+			int radius = 0;
+			long matches = 0;
+			for (int i = 0; i < count; i++) {
+				radius = Math.max(radius, maxDistances[i]);
+				matches += results.get(i).size();
+			}
+			FlightRecorderEvents.commitTreeQuery(event, count, radius, visited, matches);
+		}
+		return results;
+	}
+
+	/**
+	 * A node of the tree together with the needles reaching it
+	 */
+	private static class Frontier {
+		private final Node node;
+		private final int depth;
+		/** Indices of the needles */
+		private final int[] ids;
+		/** Distance of the needles to the path of the node */
+		private final int[] distances;
+		private final int count;
+
+		Frontier(Node node, int depth, int[] ids, int[] distances, int count) {
+			this.node = node;
+			this.depth = depth;
+			this.ids = ids;
+			this.distances = distances;
+			this.count = count;
+		}
+	}
+
 	/**
 	 * Retrieve the hash that is the most similar to the queried hash. The closest
 	 * hash is the hash with the smallest distance.
@@ -167,12 +334,24 @@ public class BinaryTree<T> extends AbstractBinaryTree<T> implements Serializable
 	 */
 	@Override
 	public List<Result<T>> getNearestNeighbour(Hash hash) {
+		return getNearestNeighbour(root, hash);
+	}
+
+	/**
+	 * Search the tree starting at the supplied root.
+	 * 
+	 * @param start the root of the tree to search
+	 * @param hash  to search the neighbor for.
+	 * @return the closest hash saved in the tree.
+	 * @see #getNearestNeighbour(Hash)
+	 * @since 3.1.0
+	 */
+	protected List<Result<T>> getNearestNeighbour(Node start, Hash hash) {
 
 		if (ensureHashConsistency && algoId != hash.getAlgorithmId()) {
 			throw new IllegalStateException("Tried to add an incompatible hash to the binary tree");
 		}
 
-		BigInteger hashValue = hash.getHashValue();
 		int treeDepth = hash.getBitResolution();
 
 		ArrayDeque<NodeInfo<T>> queue = new ArrayDeque<>();
@@ -184,7 +363,7 @@ public class BinaryTree<T> extends AbstractBinaryTree<T> implements Serializable
 		// Depth first search with aggressive pruning
 
 		// Begin search at the root
-		queue.add(new NodeInfo<T>(root, 0, treeDepth));
+		queue.add(new NodeInfo<T>(start, 0, treeDepth));
 
 		while (!queue.isEmpty()) {
 
@@ -213,7 +392,7 @@ public class BinaryTree<T> extends AbstractBinaryTree<T> implements Serializable
 			// TODO das ist keine tiefensuche!
 
 			// Next bit
-			boolean bit = hashValue.testBit(info.depth - 1);
+			boolean bit = hash.getBitUnsafe(info.depth - 1);
 			// Are children of the current
 
 			if (info.distance + 1 <= curBestDistance) {
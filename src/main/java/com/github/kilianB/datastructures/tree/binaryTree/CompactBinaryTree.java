@@ -0,0 +1,458 @@
+package com.github.kilianB.datastructures.tree.binaryTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.github.kilianB.datastructures.tree.HashIndex;
+import com.github.kilianB.datastructures.tree.Result;
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.metrics.FlightRecorderEvents;
+
+/**
+ * A not thread safe, memory efficient alternative to the {@link BinaryTree}
+ * answering the same queries with identical results.
+ * <p>
+ *
+ * Instead of creating a node object per bit and a leaf holding a list for each
+ * hash, the tree is kept in a handful of primitive arrays:
+ * <ul>
+ * <li>Inner nodes are stored as pairs of int child references. Positive
+ * references point to inner nodes, negative references to leaves.</li>
+ * <li>Paths are compressed (Patricia trie). Nodes are only created at bits
+ * where the added hashes part ways and remember the index of this bit. A tree
+ * holding n distinct hashes therefore contains exactly n - 1 inner nodes,
+ * independent of the bit resolution and the similarity of the hashes.</li>
+ * <li>Leaves reference the packed hash they represent.</li>
+ * <li>Values are referenced by int ids. Values sharing the same hash are
+ * chained via an int array.</li>
+ * </ul>
+ * For 64 bit hashes this results in roughly 40 bytes per added hash (excluding
+ * the values themselves) compared to about 1 kB for the object based tree. {@link #getMemoryFootprint()} reports the current size.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ * @param <T> the type of the values stored in the tree
+ */
+public class CompactBinaryTree<T> implements HashIndex<T> {
+
+	private static final long serialVersionUID = 2419350829374659174L;
+
+	/**
+	 * Flag indicating if hashes origin should be checked
+	 */
+	protected boolean ensureHashConsistency;
+
+	/**
+	 * The algorithm id all hashes have to match if they want to perform an action
+	 */
+	protected int algoId;
+
+	/**
+	 * Keep track of how many hashes were added to the tree
+	 */
+	protected int hashCount;
+
+	/** The bit resolution of the added hashes. -1 as long as no hash was added */
+	private int hashLength = -1;
+
+	/** The number of words used to store a single hash */
+	private int wordCount;
+
+	/**
+	 * [Node * 2 + bit] child references. 0 = no child, &gt; 0 inner node, &lt; 0
+	 * leaf with the id <code>~reference</code>. Node ids start at 1.
+	 */
+	private int[] children = new int[16];
+
+	/** [Node] index of the bit deciding which child to descend into */
+	private int[] nodeBits = new int[8];
+
+	/**
+	 * [Node] a leaf of the subtree. All hashes below a node share the bits
+	 * skipped between the node and its parent.
+	 */
+	private int[] representatives = new int[8];
+
+	private int nodeCount = 1;
+
+	/** Reference of the topmost node or leaf. 0 as long as no hash was added */
+	private int root;
+
+	/** Packed distinct hashes. Leaf n occupies the words [n * wordCount, (n+1) * wordCount) */
+	private long[] keys = new long[0];
+
+	/** [Leaf] id of the last value added with the hash of the leaf */
+	private int[] lastValue = new int[8];
+
+	private int leafCount;
+
+	/** [Value] id of the previous value sharing the same hash or -1 */
+	private int[] previousValue = new int[8];
+
+	/** Values indexed by their id */
+	private Object[] values = new Object[8];
+
+	/**
+	 * @param ensureHashConsistency If true adding and matching hashes will check
+	 *                              weather they are generated by the same
+	 *                              algorithms as the first hash added to the tree
+	 */
+	public CompactBinaryTree(boolean ensureHashConsistency) {
+		this.ensureHashConsistency = ensureHashConsistency;
+	}
+
+	@Override
+	public void addHash(Hash hash, T value) {
+
+		if (ensureHashConsistency) {
+			if (algoId == 0) {
+				algoId = hash.getAlgorithmId();
+			} else {
+				if (algoId != hash.getAlgorithmId())
+					throw new IllegalStateException("Tried to add an incompatible hash to the binary tree");
+			}
+		}
+
+		if (hashLength < 0) {
+			hashLength = hash.getBitResolution();
+			wordCount = (hashLength + 63) >>> 6;
+		} else if (hashLength != hash.getBitResolution()) {
+			throw new IllegalArgumentException("Tried to add a hash with a different bit resolution to the binary tree");
+		}
+
+		long[] words = hash.getHashWords();
+
+		if (root == 0) {
+			root = ~createLeaf(words);
+			addValue(root, value);
+			hashCount++;
+			return;
+		}
+
+		// Find the leaf sharing the most significant bits
+		int reference = root;
+		while (reference > 0) {
+			reference = children[(reference << 1) | getBit(words, nodeBits[reference])];
+		}
+		int difference = getHighestDifferentBit(~reference, words);
+		if (difference < 0) {
+			addValue(reference, value);
+			hashCount++;
+			return;
+		}
+
+		// Insert a node branching at the first different bit
+		int parentSlot = -1;
+		reference = root;
+		while (reference > 0 && nodeBits[reference] > difference) {
+			parentSlot = (reference << 1) | getBit(words, nodeBits[reference]);
+			reference = children[parentSlot];
+		}
+		int leaf = createLeaf(words);
+		int node = createNode(difference, leaf);
+		int bit = getBit(words, difference);
+		children[(node << 1) | bit] = ~leaf;
+		children[(node << 1) | (bit ^ 1)] = reference;
+		if (parentSlot < 0) {
+			root = node;
+		} else {
+			children[parentSlot] = node;
+		}
+		addValue(~leaf, value);
+		hashCount++;
+	}
+
+	/**
+	 * Return all elements of the tree whose hamming distance is smaller or equal
+	 * than the supplied max distance.
+	 *
+	 * If the tree is configured to ensureHashConsistency this function will throw
+	 * an unchecked IlleglStateException if the checked hash does not comply with
+	 * the first hash added to the tree.
+	 *
+	 * @param hash        The hash to search for
+	 * @param maxDistance The maximal hamming distance deviation all found hashes
+	 *                    may possess. A distance of 0 will return all objects added
+	 *                    whose hash is exactly the hash supplied as the first
+	 *                    argument
+	 *
+	 * @return Search results contain objects and distances matching the search
+	 *         criteria. The results returned are ordered to return the closest
+	 *         match first.
+	 */
+	@Override
+	public PriorityQueue<Result<T>> getElementsWithinHammingDistance(Hash hash, int maxDistance) {
+
+		checkConsistency(hash);
+
+		PriorityQueue<Result<T>> result = new PriorityQueue<>();
+
+		if (hashCount == 0 || maxDistance < 0) {
+			return result;
+		}
+
+		Object event = FlightRecorderEvents.beginTreeQuery();
+		long visited = 0;
+
+		long[] needle = hash.getHashWords();
+		double treeDepth = hashLength;
+
+		// Depth first search using an explicit stack of [reference, bit, distance].
+		// Bits above the bit are already accounted for in the distance
+		int[] stack = new int[(hashLength + 2) * 3];
+		int size = push(stack, 0, root, hashLength - 1, 0);
+
+		while (size > 0) {
+			int distance = stack[--size];
+			int bit = stack[--size];
+			int reference = stack[--size];
+			visited++;
+
+			if (reference < 0) {
+				distance = getDistance(~reference, needle, 0, wordCount << 6);
+				if (distance <= maxDistance) {
+					addResults(reference, distance, treeDepth, result);
+				}
+				continue;
+			}
+
+			int nodeBit = nodeBits[reference];
+			distance += getDistance(representatives[reference], needle, nodeBit + 1, bit + 1);
+			if (distance > maxDistance) {
+				continue;
+			}
+
+			int needleBit = getBit(needle, nodeBit);
+			int correctChild = children[(reference << 1) | needleBit];
+			size = push(stack, size, correctChild, nodeBit - 1, distance);
+			if (distance + 1 <= maxDistance) {
+				int failedChild = children[(reference << 1) | (needleBit ^ 1)];
+				size = push(stack, size, failedChild, nodeBit - 1, distance + 1);
+			}
+		}
+		if (event != null) {
+			FlightRecorderEvents.commitTreeQuery(event, 1, maxDistance, visited, result.size());
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieve the hash that is the most similar to the queried hash. The closest
+	 * hash is the hash with the smallest distance.
+	 *
+	 * @param hash to search the neighbor for.
+	 * @return the closest hash saved in this tree.
+	 */
+	@Override
+	public List<Result<T>> getNearestNeighbour(Hash hash) {
+
+		checkConsistency(hash);
+
+		List<Result<T>> result = new ArrayList<>();
+
+		if (hashCount == 0) {
+			return result;
+		}
+
+		long[] needle = hash.getHashWords();
+		double treeDepth = hashLength;
+		int bestDistance = Integer.MAX_VALUE;
+
+		int[] stack = new int[(hashLength + 2) * 3];
+		int size = push(stack, 0, root, hashLength - 1, 0);
+
+		while (size > 0) {
+			int distance = stack[--size];
+			int bit = stack[--size];
+			int reference = stack[--size];
+
+			if (distance > bestDistance) {
+				continue;
+			}
+
+			if (reference < 0) {
+				distance = getDistance(~reference, needle, 0, wordCount << 6);
+				if (distance < bestDistance) {
+					result.clear();
+					bestDistance = distance;
+				}
+				if (distance == bestDistance) {
+					addResults(reference, distance, treeDepth, result);
+				}
+				continue;
+			}
+
+			int nodeBit = nodeBits[reference];
+			distance += getDistance(representatives[reference], needle, nodeBit + 1, bit + 1);
+			if (distance > bestDistance) {
+				continue;
+			}
+
+			int needleBit = getBit(needle, nodeBit);
+			// Push the failed child first to inspect the matching branch first
+			if (distance + 1 <= bestDistance) {
+				int failedChild = children[(reference << 1) | (needleBit ^ 1)];
+				size = push(stack, size, failedChild, nodeBit - 1, distance + 1);
+			}
+			int correctChild = children[(reference << 1) | needleBit];
+			size = push(stack, size, correctChild, nodeBit - 1, distance);
+		}
+		return result;
+	}
+
+	private static int push(int[] stack, int size, int reference, int bit, int distance) {
+		stack[size++] = reference;
+		stack[size++] = bit;
+		stack[size++] = distance;
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addResults(int leafReference, int distance, double treeDepth, Collection<Result<T>> result) {
+		for (int id = lastValue[~leafReference]; id >= 0; id = previousValue[id]) {
+			result.add(new Result<T>((T) values[id], distance, distance / treeDepth));
+		}
+	}
+
+	private int createNode(int bit, int representative) {
+		int node = nodeCount++;
+		if (node == nodeBits.length) {
+			int capacity = node + (node >> 1);
+			children = Arrays.copyOf(children, capacity << 1);
+			nodeBits = Arrays.copyOf(nodeBits, capacity);
+			representatives = Arrays.copyOf(representatives, capacity);
+		}
+		nodeBits[node] = bit;
+		representatives[node] = representative;
+		return node;
+	}
+
+	private int createLeaf(long[] words) {
+		int leaf = leafCount++;
+		int base = leaf * wordCount;
+		if (base + wordCount > keys.length) {
+			keys = Arrays.copyOf(keys, Math.max(base + wordCount, keys.length + (keys.length >> 1)));
+		}
+		System.arraycopy(words, 0, keys, base, Math.min(words.length, wordCount));
+		if (leaf == lastValue.length) {
+			lastValue = Arrays.copyOf(lastValue, leaf + (leaf >> 1));
+		}
+		lastValue[leaf] = -1;
+		return leaf;
+	}
+
+	private void addValue(int leafReference, T value) {
+		int id = hashCount;
+		if (id == values.length) {
+			values = Arrays.copyOf(values, id + (id >> 1));
+			previousValue = Arrays.copyOf(previousValue, values.length);
+		}
+		values[id] = value;
+		previousValue[id] = lastValue[~leafReference];
+		lastValue[~leafReference] = id;
+	}
+
+	/**
+	 * @return the index of the most significant bit the hash of the leaf and the
+	 *         packed hash differ in or -1 if they are equal
+	 */
+	private int getHighestDifferentBit(int leaf, long[] words) {
+		int base = leaf * wordCount;
+		for (int word = wordCount - 1; word >= 0; word--) {
+			long difference = keys[base + word] ^ (word < words.length ? words[word] : 0L);
+			if (difference != 0) {
+				return (word << 6) + 63 - Long.numberOfLeadingZeros(difference);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compute the hamming distance between the hash of the leaf and the needle
+	 * restricted to the bits [from, to)
+	 */
+	private int getDistance(int leaf, long[] needle, int from, int to) {
+		int base = leaf * wordCount;
+		int distance = 0;
+		for (int word = from >>> 6; word < wordCount && (word << 6) < to; word++) {
+			long difference = keys[base + word] ^ (word < needle.length ? needle[word] : 0L);
+			int start = word << 6;
+			if (from > start) {
+				difference &= -1L << (from - start);
+			}
+			if (to - start < 64) {
+				difference &= (1L << (to - start)) - 1;
+			}
+			distance += Long.bitCount(difference);
+		}
+		return distance;
+	}
+
+	private static int getBit(long[] words, int bit) {
+		int word = bit >>> 6;
+		return word < words.length ? (int) (words[word] >>> (bit & 63)) & 1 : 0;
+	}
+
+	private void checkConsistency(Hash hash) {
+		if (ensureHashConsistency && algoId != hash.getAlgorithmId()) {
+			throw new IllegalStateException("Tried to search an incompatible hash in the binary tree");
+		}
+	}
+
+	/**
+	 * Estimate the memory used by the arrays backing this tree. The values added
+	 * to the tree are only accounted for with a reference each, the memory used by
+	 * the objects themselves is not included.
+	 *
+	 * @return the approximate number of bytes occupied by the tree
+	 */
+	public long getMemoryFootprint() {
+		// 16 bytes array header, 4 bytes per compressed reference
+		return 16L * 7 + 4L * (children.length + nodeBits.length + representatives.length) + 8L * keys.length + 4L * (lastValue.length + previousValue.length + values.length);
+	}
+
+	/**
+	 * @return the number of inner nodes of the tree
+	 */
+	public int getNodeCount() {
+		return nodeCount - 1;
+	}
+
+	@Override
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + algoId;
+		result = prime * result + (ensureHashConsistency ? 1231 : 1237);
+		result = prime * result + hashCount;
+		result = prime * result + Arrays.hashCode(Arrays.copyOf(keys, leafCount * wordCount));
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CompactBinaryTree)) {
+			return false;
+		}
+		CompactBinaryTree<?> other = (CompactBinaryTree<?>) obj;
+		if (algoId != other.algoId || ensureHashConsistency != other.ensureHashConsistency || hashCount != other.hashCount || hashLength != other.hashLength || leafCount != other.leafCount || nodeCount != other.nodeCount) {
+			return false;
+		}
+		return root == other.root && Arrays.equals(Arrays.copyOf(children, nodeCount << 1), Arrays.copyOf(other.children, nodeCount << 1))
+				&& Arrays.equals(Arrays.copyOf(nodeBits, nodeCount), Arrays.copyOf(other.nodeBits, nodeCount))
+				&& Arrays.equals(Arrays.copyOf(keys, leafCount * wordCount), Arrays.copyOf(other.keys, leafCount * wordCount))
+				&& Arrays.equals(Arrays.copyOf(values, hashCount), Arrays.copyOf(other.values, hashCount));
+	}
+
+}
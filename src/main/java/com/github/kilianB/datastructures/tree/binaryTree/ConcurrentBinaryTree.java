@@ -0,0 +1,210 @@
+package com.github.kilianB.datastructures.tree.binaryTree;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.github.kilianB.datastructures.tree.Result;
+import com.jstarcraft.dip.hash.Hash;
+
+/**
+ * A binary tree which can be searched by any number of threads while hashes are
+ * added concurrently.
+ * <p>
+ *
+ * Searches are lock free and run against an immutable snapshot of the tree.
+ * Adding a hash never modifies nodes reachable from a published snapshot,
+ * instead the path from the root to the leaf is copied. Nodes copied or created
+ * since the last publication belong to the writer and are modified in place,
+ * therefore adding hashes in batches only copies every node once per batch. A
+ * new snapshot is published every {@link #getPublishInterval()} added hashes or
+ * when calling {@link #publish()}. Hashes added but not yet published are not
+ * visible to searches.
+ * <p>
+ *
+ * Adding hashes is synchronized, searches never block. Serializing the tree
+ * must not happen while hashes are added.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ * @param <T> the type of the values stored in the tree
+ */
+public class ConcurrentBinaryTree<T> extends BinaryTree<T> {
+
+	private static final long serialVersionUID = -2460874920386447013L;
+
+	/** The number of hashes added before a new snapshot is published */
+	private final int publishInterval;
+
+	/** The snapshot searched by readers */
+	private transient volatile Snapshot published;
+
+	/** Nodes created since the last publication which may be modified in place */
+	private transient Set<Node> owned;
+
+	/** Hashes added since the last publication */
+	private transient int unpublished;
+
+	/**
+	 * Create a tree publishing every added hash immediately.
+	 *
+	 * @param ensureHashConsistency If true adding and matching hashes will check
+	 *                              weather they are generated by the same
+	 *                              algorithms as the first hash added to the tree
+	 */
+	public ConcurrentBinaryTree(boolean ensureHashConsistency) {
+		this(ensureHashConsistency, 1);
+	}
+
+	/**
+	 * @param ensureHashConsistency If true adding and matching hashes will check
+	 *                              weather they are generated by the same
+	 *                              algorithms as the first hash added to the tree
+	 * @param publishInterval       the number of hashes added before they become
+	 *                              visible to searches. Larger intervals reduce the
+	 *                              amount of copied nodes.
+	 */
+	public ConcurrentBinaryTree(boolean ensureHashConsistency, int publishInterval) {
+		super(ensureHashConsistency);
+		if (publishInterval <= 0) {
+			throw new IllegalArgumentException("The publish interval has to be positive");
+		}
+		this.publishInterval = publishInterval;
+		owned = newIdentitySet();
+		published = new Snapshot(root, 0);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public synchronized void addHash(Hash hash, T value) {
+
+		if (ensureHashConsistency) {
+			if (algoId == 0) {
+				algoId = hash.getAlgorithmId();
+			} else {
+				if (algoId != hash.getAlgorithmId())
+					throw new IllegalStateException("Tried to add an incompatible hash to the binary tree");
+			}
+		}
+
+		if (!owned.contains(root)) {
+			root = copy(root);
+		}
+		Node currentNode = root;
+		for (int i = hash.getBitResolution() - 1; i >= 0; i--) {
+			boolean bit = hash.getBitUnsafe(i);
+			Node child = currentNode.getChild(bit);
+			if (child == null) {
+				child = i == 0 ? new Leaf<T>() : new Node();
+				owned.add(child);
+				currentNode.setChild(bit, child);
+			} else if (!owned.contains(child)) {
+				child = currentNode.setChild(bit, copy(child));
+			}
+			currentNode = child;
+		}
+		((Leaf<T>) currentNode).addData(value);
+		hashCount++;
+
+		if (++unpublished >= publishInterval) {
+			publish();
+		}
+	}
+
+	/**
+	 * Copy the node, the copy belongs to the writer until the next publication
+	 */
+	@SuppressWarnings("unchecked")
+	private Node copy(Node node) {
+		Node copy;
+		if (node instanceof Leaf) {
+			Leaf<T> leaf = new Leaf<>();
+			leaf.getData().addAll(((Leaf<T>) node).getData());
+			copy = leaf;
+		} else {
+			copy = new Node();
+		}
+		copy.leftChild = node.leftChild;
+		copy.rightChild = node.rightChild;
+		owned.add(copy);
+		return copy;
+	}
+
+	/**
+	 * Make all hashes added so far visible to searches.
+	 */
+	public synchronized void publish() {
+		if (published.root != root || published.hashCount != hashCount) {
+			published = new Snapshot(root, hashCount);
+		}
+		owned.clear();
+		unpublished = 0;
+	}
+
+	@Override
+	public PriorityQueue<Result<T>> getElementsWithinHammingDistance(Hash hash, int maxDistance) {
+		return getElementsWithinHammingDistance(published.root, hash, maxDistance);
+	}
+
+	@Override
+	public List<PriorityQueue<Result<T>>> getElementsWithinHammingDistance(List<Hash> hashes, int[] maxDistances) {
+		return getElementsWithinHammingDistance(published.root, hashes, maxDistances);
+	}
+
+	@Override
+	public List<Result<T>> getNearestNeighbour(Hash hash) {
+		return getNearestNeighbour(published.root, hash);
+	}
+
+	/**
+	 * @return the root of the published snapshot
+	 */
+	@Override
+	public Node getRoot() {
+		return published.root;
+	}
+
+	/**
+	 * @return how many hashes are visible to searches
+	 */
+	@Override
+	public int getHashCount() {
+		return published.hashCount;
+	}
+
+	/**
+	 * @return the number of hashes added before a new snapshot is published
+	 */
+	public int getPublishInterval() {
+		return publishInterval;
+	}
+
+	private static Set<Node> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<>());
+	}
+
+	// Serialization
+	private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+		ois.defaultReadObject();
+		owned = newIdentitySet();
+		published = new Snapshot(root, hashCount);
+	}
+
+	/**
+	 * An immutable view of the tree
+	 */
+	private static class Snapshot {
+		private final Node root;
+		private final int hashCount;
+
+		Snapshot(Node root, int hashCount) {
+			this.root = root;
+			this.hashCount = hashCount;
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.github.kilianB.datastructures.tree.bkTree;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A node of the {@link BKTree} holding a packed hash, all values added with
+ * this exact hash and the children keyed by their distance to this node.
+ * 
+ * @author Kilian
+ * @since 3.1.0
+ * @param <T> the type of the values stored in the node
+ */
+class BKNode<T> implements Serializable {
+
+	private static final long serialVersionUID = -4376049386617327468L;
+
+	/** The packed hash represented by this node */
+	final long[] words;
+
+	/** Values associated with the hash */
+	Object[] values = new Object[1];
+
+	int valueCount;
+
+	/** The distance of each child to this node */
+	int[] childDistances;
+
+	BKNode<T>[] children;
+
+	int childCount;
+
+	BKNode(long[] words) {
+		this.words = words;
+	}
+
+	void addValue(T value) {
+		if (valueCount == values.length) {
+			values = Arrays.copyOf(values, valueCount << 1);
+		}
+		values[valueCount++] = value;
+	}
+
+	@SuppressWarnings("unchecked")
+	T getValue(int index) {
+		return (T) values[index];
+	}
+
+	/**
+	 * @param distance the distance of the child to this node
+	 * @return the child with the given distance or null if no such child exists
+	 */
+	BKNode<T> getChild(int distance) {
+		for (int i = 0; i < childCount; i++) {
+			if (childDistances[i] == distance) {
+				return children[i];
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	BKNode<T> addChild(int distance, BKNode<T> child) {
+		if (children == null) {
+			childDistances = new int[2];
+			children = new BKNode[2];
+		} else if (childCount == children.length) {
+			childDistances = Arrays.copyOf(childDistances, childCount << 1);
+			children = Arrays.copyOf(children, childCount << 1);
+		}
+		childDistances[childCount] = distance;
+		children[childCount++] = child;
+		return child;
+	}
+
+}
@@ -0,0 +1,305 @@
+package com.github.kilianB.datastructures.tree.bkTree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.github.kilianB.datastructures.tree.HashIndex;
+import com.github.kilianB.datastructures.tree.Result;
+import com.jstarcraft.dip.hash.Hash;
+
+/**
+ * A not thread safe <a href="https://en.wikipedia.org/wiki/BK-tree">BK-tree</a>
+ * used to search hashes by their
+ * <a href="https://en.wikipedia.org/wiki/Hamming_distance">hamming
+ * distance</a>.
+ * <p>
+ *
+ * Each node holds a hash and keys its children by their distance to the node.
+ * Due to the triangle inequality all hashes within distance r of a needle which
+ * is d away from a node can only be found in the children keyed by [d - r, d +
+ * r]. Opposed to the {@link com.github.kilianB.datastructures.tree.binaryTree.BinaryTree}
+ * the amount of visited nodes does not depend on the bit resolution of the
+ * hashes but on the distribution of the added hashes, making the tree well
+ * suited for k nearest neighbour queries.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ * @param <T> the type of the values stored in the tree
+ */
+public class BKTree<T> implements HashIndex<T> {
+
+	private static final long serialVersionUID = 3489147584512071469L;
+
+	/**
+	 * The root node of the tree. null as long as no hash was added
+	 */
+	protected BKNode<T> root;
+
+	/**
+	 * Keep track of how many hashes were added to the tree
+	 */
+	protected int hashCount;
+
+	/**
+	 * Flag indicating if hashes origin should be checked
+	 */
+	protected boolean ensureHashConsistency;
+
+	/**
+	 * The algorithm id all hashes have to match if they want to perform an action
+	 */
+	protected int algoId;
+
+	/** The bit resolution of the added hashes */
+	private int hashLength;
+
+	/**
+	 * @param ensureHashConsistency If true adding and matching hashes will check
+	 *                              weather they are generated by the same
+	 *                              algorithms as the first hash added to the tree
+	 */
+	public BKTree(boolean ensureHashConsistency) {
+		this.ensureHashConsistency = ensureHashConsistency;
+	}
+
+	@Override
+	public void addHash(Hash hash, T value) {
+
+		if (ensureHashConsistency) {
+			if (algoId == 0) {
+				algoId = hash.getAlgorithmId();
+			} else {
+				if (algoId != hash.getAlgorithmId())
+					throw new IllegalStateException("Tried to add an incompatible hash to the bk tree");
+			}
+		}
+
+		if (root == null) {
+			hashLength = hash.getBitResolution();
+			root = new BKNode<>(hash.getHashWords());
+			root.addValue(value);
+		} else {
+			if (hashLength != hash.getBitResolution()) {
+				throw new IllegalArgumentException("Tried to add a hash with a different bit resolution to the bk tree");
+			}
+			BKNode<T> node = root;
+			while (true) {
+				int distance = Hash.hammingDistance(node.words, hash.getHashWords());
+				if (distance == 0) {
+					node.addValue(value);
+					break;
+				}
+				BKNode<T> child = node.getChild(distance);
+				if (child == null) {
+					child = node.addChild(distance, new BKNode<>(hash.getHashWords()));
+					child.addValue(value);
+					break;
+				}
+				node = child;
+			}
+		}
+		hashCount++;
+	}
+
+	/**
+	 * Return all elements of the tree whose hamming distance is smaller or equal
+	 * than the supplied max distance.
+	 *
+	 * If the tree is configured to ensureHashConsistency this function will throw
+	 * an unchecked IlleglStateException if the checked hash does not comply with
+	 * the first hash added to the tree.
+	 *
+	 * @param hash        The hash to search for
+	 * @param maxDistance The maximal hamming distance deviation all found hashes
+	 *                    may possess. A distance of 0 will return all objects added
+	 *                    whose hash is exactly the hash supplied as the first
+	 *                    argument
+	 *
+	 * @return Search results contain objects and distances matching the search
+	 *         criteria. The results returned are ordered to return the closest
+	 *         match first.
+	 */
+	@Override
+	public PriorityQueue<Result<T>> getElementsWithinHammingDistance(Hash hash, int maxDistance) {
+
+		checkConsistency(hash);
+
+		PriorityQueue<Result<T>> result = new PriorityQueue<>();
+
+		if (root == null || maxDistance < 0) {
+			return result;
+		}
+
+		long[] needle = hash.getHashWords();
+		double bitResolution = hash.getBitResolution();
+
+		ArrayDeque<BKNode<T>> queue = new ArrayDeque<>();
+		queue.add(root);
+
+		while (!queue.isEmpty()) {
+			BKNode<T> node = queue.removeLast();
+			int distance = Hash.hammingDistance(node.words, needle);
+			if (distance <= maxDistance) {
+				for (int i = 0; i < node.valueCount; i++) {
+					result.add(new Result<T>(node.getValue(i), distance, distance / bitResolution));
+				}
+			}
+			// Triangle inequality. Only children keyed within [d - r, d + r] may match
+			for (int i = 0; i < node.childCount; i++) {
+				if (Math.abs(node.childDistances[i] - distance) <= maxDistance) {
+					queue.add(node.children[i]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieve the hashes that are the most similar to the queried hash. The
+	 * closest hash is the hash with the smallest distance.
+	 *
+	 * @param hash to search the neighbor for.
+	 * @return the closest hashes saved in this tree. In case of equidistant hashes
+	 *         all of them are returned.
+	 */
+	@Override
+	public List<Result<T>> getNearestNeighbour(Hash hash) {
+
+		checkConsistency(hash);
+
+		List<Result<T>> result = new ArrayList<>();
+
+		if (root == null) {
+			return result;
+		}
+
+		long[] needle = hash.getHashWords();
+		double bitResolution = hash.getBitResolution();
+		int bestDistance = Integer.MAX_VALUE;
+
+		// Best first search visiting the nodes with the smallest lower bound first
+		PriorityQueue<NodeBound<T>> queue = new PriorityQueue<>();
+		queue.add(new NodeBound<>(root, 0));
+
+		while (!queue.isEmpty()) {
+			NodeBound<T> bound = queue.poll();
+			if (bound.lowerBound > bestDistance) {
+				break;
+			}
+			BKNode<T> node = bound.node;
+			int distance = Hash.hammingDistance(node.words, needle);
+			if (distance < bestDistance) {
+				result.clear();
+				bestDistance = distance;
+			}
+			if (distance == bestDistance) {
+				for (int i = 0; i < node.valueCount; i++) {
+					result.add(new Result<T>(node.getValue(i), distance, distance / bitResolution));
+				}
+			}
+			enqueueChildren(queue, node, distance, bound.lowerBound, bestDistance);
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieve the k hashes that are the most similar to the queried hash. Due to
+	 * the triangle inequality subtrees which can not contain a hash closer than the
+	 * current kth best result are skipped entirely.
+	 *
+	 * @param hash the hash to search the closest matches for
+	 * @param k    the maximum number of results returned
+	 * @return at most k results ordered to return the closest match first
+	 */
+	@Override
+	public List<Result<T>> getNearestNeighbours(Hash hash, int k) {
+
+		if (k <= 0) {
+			throw new IllegalArgumentException("k has to be positive");
+		}
+
+		checkConsistency(hash);
+
+		if (root == null) {
+			return new ArrayList<>();
+		}
+
+		long[] needle = hash.getHashWords();
+		double bitResolution = hash.getBitResolution();
+
+		// Max heap holding the k best results found so far
+		PriorityQueue<Result<T>> best = new PriorityQueue<>(Math.min(k, hashCount) + 1, Collections.reverseOrder());
+
+		PriorityQueue<NodeBound<T>> queue = new PriorityQueue<>();
+		queue.add(new NodeBound<>(root, 0));
+
+		while (!queue.isEmpty()) {
+			NodeBound<T> bound = queue.poll();
+			int kthDistance = best.size() < k ? Integer.MAX_VALUE : (int) best.peek().distance;
+			if (bound.lowerBound >= kthDistance) {
+				break;
+			}
+			BKNode<T> node = bound.node;
+			int distance = Hash.hammingDistance(node.words, needle);
+			for (int i = 0; i < node.valueCount && distance < kthDistance; i++) {
+				best.add(new Result<T>(node.getValue(i), distance, distance / bitResolution));
+				if (best.size() > k) {
+					best.poll();
+				}
+				kthDistance = best.size() < k ? Integer.MAX_VALUE : (int) best.peek().distance;
+			}
+			enqueueChildren(queue, node, distance, bound.lowerBound, kthDistance);
+		}
+
+		List<Result<T>> result = new ArrayList<>(best);
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Add all children of the node which may contain a hash within the threshold
+	 * to the queue.
+	 */
+	private void enqueueChildren(PriorityQueue<NodeBound<T>> queue, BKNode<T> node, int distance, int lowerBound, int threshold) {
+		for (int i = 0; i < node.childCount; i++) {
+			int childBound = Math.max(lowerBound, Math.abs(node.childDistances[i] - distance));
+			if (childBound <= threshold) {
+				queue.add(new NodeBound<>(node.children[i], childBound));
+			}
+		}
+	}
+
+	private void checkConsistency(Hash hash) {
+		if (ensureHashConsistency && algoId != hash.getAlgorithmId()) {
+			throw new IllegalStateException("Tried to search an incompatible hash in the bk tree");
+		}
+	}
+
+	@Override
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * Helper class to search the tree in best first order
+	 */
+	private static class NodeBound<T> implements Comparable<NodeBound<T>> {
+		private final BKNode<T> node;
+		/** The minimum distance any hash in the subtree of the node can have */
+		private final int lowerBound;
+
+		NodeBound(BKNode<T> node, int lowerBound) {
+			this.node = node;
+			this.lowerBound = lowerBound;
+		}
+
+		@Override
+		public int compareTo(NodeBound<T> o) {
+			return Integer.compare(lowerBound, o.lowerBound);
+		}
+	}
+
+}
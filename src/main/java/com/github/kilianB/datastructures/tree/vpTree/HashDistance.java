@@ -0,0 +1,54 @@
+package com.github.kilianB.datastructures.tree.vpTree;
+
+import java.io.Serializable;
+
+import com.jstarcraft.dip.hash.FuzzyHash;
+import com.jstarcraft.dip.hash.Hash;
+
+/**
+ * A metric defined on hashes used to build a {@link VPTree}. Implementations
+ * have to satisfy the triangle inequality, otherwise searching the tree may
+ * miss results.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@FunctionalInterface
+public interface HashDistance extends Serializable {
+
+	/**
+	 * The hamming distance between two hashes
+	 */
+	HashDistance HAMMING = (first, second) -> Hash.hammingDistance(first.getHashWords(), second.getHashWords());
+
+	/**
+	 * The unnormalized weighted distance taking the uncertainty of
+	 * {@link FuzzyHash}es into account. Ordinary hashes are treated as fuzzy hashes
+	 * whose bits are certain, in which case the distance equals the hamming
+	 * distance.
+	 *
+	 * @see FuzzyHash#weightedDistance(FuzzyHash)
+	 * @see FuzzyHash#weightedDistance(Hash)
+	 */
+	HashDistance WEIGHTED = (first, second) -> {
+		if (first instanceof FuzzyHash) {
+			FuzzyHash fuzzy = (FuzzyHash) first;
+			double normalized = second instanceof FuzzyHash ? fuzzy.weightedDistance((FuzzyHash) second) : fuzzy.weightedDistance(second);
+			return normalized * first.getBitResolution();
+		}
+		if (second instanceof FuzzyHash) {
+			return ((FuzzyHash) second).weightedDistance(first) * second.getBitResolution();
+		}
+		return Hash.hammingDistance(first.getHashWords(), second.getHashWords());
+	};
+
+	/**
+	 * Compute the distance between two hashes
+	 *
+	 * @param first  the first hash
+	 * @param second the second hash
+	 * @return the unnormalized distance between both hashes
+	 */
+	double distance(Hash first, Hash second);
+
+}
@@ -0,0 +1,368 @@
+package com.github.kilianB.datastructures.tree.vpTree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.github.kilianB.MathUtil;
+import com.github.kilianB.datastructures.tree.HashIndex;
+import com.github.kilianB.datastructures.tree.Result;
+import com.jstarcraft.dip.hash.Hash;
+
+/**
+ * A not thread safe
+ * <a href="https://en.wikipedia.org/wiki/Vantage-point_tree">vantage point
+ * tree</a> used to search hashes by an arbitrary {@link HashDistance metric}.
+ * <p>
+ *
+ * Each node picks a vantage point and splits the remaining hashes at the
+ * median distance to it. Searches skip every half which can not contain a
+ * result closer than the current threshold due to the triangle inequality.
+ * Opposed to the {@link com.github.kilianB.datastructures.tree.bkTree.BKTree}
+ * the distance does not have to be discrete allowing to index
+ * {@link com.jstarcraft.dip.hash.FuzzyHash}es using
+ * {@link HashDistance#WEIGHTED}.
+ * <p>
+ *
+ * The tree is built in bulk. Adding hashes marks the tree dirty and the next
+ * query rebuilds it which takes <code>O(n log n)</code> distance computations.
+ * Hashes are expected to be immutable as long as they are part of the tree,
+ * altering the state of a fuzzy hash renders the tree invalid.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ * @param <T> the type of the values stored in the tree
+ */
+public class VPTree<T> implements HashIndex<T> {
+
+	private static final long serialVersionUID = -3063468102581867437L;
+
+	/**
+	 * Flag indicating if hashes origin should be checked
+	 */
+	protected boolean ensureHashConsistency;
+
+	/**
+	 * The algorithm id all hashes have to match if they want to perform an action
+	 */
+	protected int algoId;
+
+	/**
+	 * The metric used to compare hashes
+	 */
+	protected HashDistance metric;
+
+	/** The bit resolution of the added hashes */
+	private int hashLength;
+
+	/** Hashes added to this tree indexed by their id */
+	private ArrayList<Hash> keys = new ArrayList<>();
+
+	/** Values added to this tree indexed by their id */
+	private ArrayList<T> values = new ArrayList<>();
+
+	/**
+	 * Ids of the hashes in tree order. The vantage point of the subtree [lo, hi)
+	 * is found at lo, followed by the inner and the outer subtree.
+	 */
+	private transient int[] order;
+
+	/** The median distance of the vantage point at lo to its subtree */
+	private transient double[] thresholds;
+
+	/** The start of the outer subtree of the vantage point at lo */
+	private transient int[] splits;
+
+	/**
+	 * @param ensureHashConsistency If true adding and matching hashes will check
+	 *                              weather they are generated by the same
+	 *                              algorithms as the first hash added to the tree
+	 */
+	public VPTree(boolean ensureHashConsistency) {
+		this(ensureHashConsistency, HashDistance.HAMMING);
+	}
+
+	/**
+	 * @param ensureHashConsistency If true adding and matching hashes will check
+	 *                              weather they are generated by the same
+	 *                              algorithms as the first hash added to the tree
+	 * @param metric                the distance used to compare hashes. Has to
+	 *                              satisfy the triangle inequality
+	 */
+	public VPTree(boolean ensureHashConsistency, HashDistance metric) {
+		this.ensureHashConsistency = ensureHashConsistency;
+		this.metric = metric;
+	}
+
+	@Override
+	public void addHash(Hash hash, T value) {
+
+		if (ensureHashConsistency) {
+			if (algoId == 0) {
+				algoId = hash.getAlgorithmId();
+			} else {
+				if (algoId != hash.getAlgorithmId())
+					throw new IllegalStateException("Tried to add an incompatible hash to the vp tree");
+			}
+		}
+
+		if (keys.isEmpty()) {
+			hashLength = hash.getBitResolution();
+		} else if (hashLength != hash.getBitResolution()) {
+			throw new IllegalArgumentException("Tried to add a hash with a different bit resolution to the vp tree");
+		}
+
+		keys.add(hash);
+		values.add(value);
+		order = null;
+	}
+
+	/**
+	 * Return all elements of the tree whose distance is smaller or equal than the
+	 * supplied max distance. The distance is computed using the metric of the tree.
+	 *
+	 * If the tree is configured to ensureHashConsistency this function will throw
+	 * an unchecked IlleglStateException if the checked hash does not comply with
+	 * the first hash added to the tree.
+	 *
+	 * @param hash        The hash to search for
+	 * @param maxDistance The maximal distance deviation all found hashes may
+	 *                    possess. A distance of 0 will return all objects added
+	 *                    whose hash is exactly the hash supplied as the first
+	 *                    argument
+	 *
+	 * @return Search results contain objects and distances matching the search
+	 *         criteria. The results returned are ordered to return the closest
+	 *         match first.
+	 */
+	@Override
+	public PriorityQueue<Result<T>> getElementsWithinHammingDistance(Hash hash, int maxDistance) {
+		checkConsistency(hash);
+		PriorityQueue<Result<T>> result = new PriorityQueue<>();
+		if (!keys.isEmpty() && maxDistance >= 0) {
+			ensureBuilt();
+			searchRange(0, keys.size(), hash, maxDistance, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieve the hashes that are the most similar to the queried hash. The
+	 * closest hash is the hash with the smallest distance.
+	 *
+	 * @param hash to search the neighbor for.
+	 * @return the closest hashes saved in this tree. In case of equidistant hashes
+	 *         all of them are returned.
+	 */
+	@Override
+	public List<Result<T>> getNearestNeighbour(Hash hash) {
+		checkConsistency(hash);
+		List<Result<T>> result = new ArrayList<>();
+		if (!keys.isEmpty()) {
+			ensureBuilt();
+			searchNearest(0, keys.size(), hash, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieve the k hashes that are the most similar to the queried hash.
+	 * Subtrees which can not contain a hash closer than the current kth best result
+	 * are skipped entirely.
+	 *
+	 * @param hash the hash to search the closest matches for
+	 * @param k    the maximum number of results returned
+	 * @return at most k results ordered to return the closest match first
+	 */
+	@Override
+	public List<Result<T>> getNearestNeighbours(Hash hash, int k) {
+
+		if (k <= 0) {
+			throw new IllegalArgumentException("k has to be positive");
+		}
+
+		checkConsistency(hash);
+
+		// Max heap holding the k best results found so far
+		PriorityQueue<Result<T>> best = new PriorityQueue<>(Math.min(k, keys.size()) + 1, Collections.reverseOrder());
+		if (!keys.isEmpty()) {
+			ensureBuilt();
+			searchNearest(0, keys.size(), hash, k, best);
+		}
+		List<Result<T>> result = new ArrayList<>(best);
+		Collections.sort(result);
+		return result;
+	}
+
+	private void searchRange(int lo, int hi, Hash needle, double maxDistance, PriorityQueue<Result<T>> result) {
+		if (lo >= hi) {
+			return;
+		}
+		int id = order[lo];
+		double distance = metric.distance(keys.get(id), needle);
+		if (distance <= maxDistance) {
+			result.add(createResult(id, distance));
+		}
+		double threshold = thresholds[lo];
+		if (distance - maxDistance <= threshold) {
+			searchRange(lo + 1, splits[lo], needle, maxDistance, result);
+		}
+		if (distance + maxDistance >= threshold) {
+			searchRange(splits[lo], hi, needle, maxDistance, result);
+		}
+	}
+
+	/**
+	 * Search all hashes with the smallest distance. The distance of the current
+	 * best results is shared via the first element of the result list.
+	 */
+	private void searchNearest(int lo, int hi, Hash needle, List<Result<T>> result) {
+		if (lo >= hi) {
+			return;
+		}
+		int id = order[lo];
+		double distance = metric.distance(keys.get(id), needle);
+		double bestDistance = result.isEmpty() ? Double.MAX_VALUE : result.get(0).distance;
+		if (MathUtil.isDoubleEquals(distance, bestDistance, 1e-8)) {
+			result.add(createResult(id, distance));
+		} else if (distance < bestDistance) {
+			result.clear();
+			result.add(createResult(id, distance));
+		}
+		double threshold = thresholds[lo];
+		// Descend into the half more likely to contain close hashes first
+		boolean inside = distance < threshold;
+		for (int pass = 0; pass < 2; pass++, inside = !inside) {
+			double tau = result.get(0).distance + 1e-8;
+			if (inside && distance - tau <= threshold) {
+				searchNearest(lo + 1, splits[lo], needle, result);
+			} else if (!inside && distance + tau >= threshold) {
+				searchNearest(splits[lo], hi, needle, result);
+			}
+		}
+	}
+
+	private void searchNearest(int lo, int hi, Hash needle, int k, PriorityQueue<Result<T>> best) {
+		if (lo >= hi) {
+			return;
+		}
+		int id = order[lo];
+		double distance = metric.distance(keys.get(id), needle);
+		if (best.size() < k) {
+			best.add(createResult(id, distance));
+		} else if (distance < best.peek().distance) {
+			best.poll();
+			best.add(createResult(id, distance));
+		}
+		double threshold = thresholds[lo];
+		boolean inside = distance < threshold;
+		for (int pass = 0; pass < 2; pass++, inside = !inside) {
+			double tau = best.size() < k ? Double.MAX_VALUE : best.peek().distance;
+			if (inside && distance - tau <= threshold) {
+				searchNearest(lo + 1, splits[lo], needle, k, best);
+			} else if (!inside && distance + tau >= threshold) {
+				searchNearest(splits[lo], hi, needle, k, best);
+			}
+		}
+	}
+
+	private Result<T> createResult(int id, double distance) {
+		return new Result<T>(values.get(id), distance, distance / hashLength);
+	}
+
+	/**
+	 * Rebuild the tree if hashes were added since the last query
+	 */
+	private void ensureBuilt() {
+		if (order != null) {
+			return;
+		}
+		int size = keys.size();
+		order = new int[size];
+		thresholds = new double[size];
+		splits = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		build(0, size, new double[size]);
+	}
+
+	/**
+	 * Recursively arrange the hashes in [lo, hi) around the vantage point at lo.
+	 *
+	 * @param distances buffer holding the distance to the current vantage point
+	 */
+	private void build(int lo, int hi, double[] distances) {
+		if (hi - lo <= 1) {
+			if (lo < hi) {
+				splits[lo] = hi;
+			}
+			return;
+		}
+		// Deterministic pseudo random vantage point to avoid degenerated trees on
+		// sorted input
+		swap(lo, lo + (int) (((lo * 0x9E3779B97F4A7C15L) >>> 33) % (hi - lo)), distances);
+		Hash vantagePoint = keys.get(order[lo]);
+		for (int i = lo + 1; i < hi; i++) {
+			distances[i] = metric.distance(vantagePoint, keys.get(order[i]));
+		}
+		int median = (lo + 1 + hi) >>> 1;
+		select(lo + 1, hi - 1, median, distances);
+		thresholds[lo] = distances[median];
+		splits[lo] = median;
+		build(lo + 1, median, distances);
+		build(median, hi, distances);
+	}
+
+	/**
+	 * Quickselect partially ordering [left, right] so that the element at k has
+	 * all smaller distances on its left and all greater distances on its right.
+	 */
+	private void select(int left, int right, int k, double[] distances) {
+		while (left < right) {
+			double pivot = distances[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (distances[i] < pivot) {
+					i++;
+				}
+				while (distances[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--, distances);
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(int i, int j, double[] distances) {
+		int tempId = order[i];
+		order[i] = order[j];
+		order[j] = tempId;
+		double tempDistance = distances[i];
+		distances[i] = distances[j];
+		distances[j] = tempDistance;
+	}
+
+	private void checkConsistency(Hash hash) {
+		if (ensureHashConsistency && algoId != hash.getAlgorithmId()) {
+			throw new IllegalStateException("Tried to search an incompatible hash in the vp tree");
+		}
+	}
+
+	@Override
+	public int getHashCount() {
+		return keys.size();
+	}
+
+}
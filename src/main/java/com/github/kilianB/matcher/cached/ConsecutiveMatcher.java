@@ -11,9 +11,11 @@ import java.util.PriorityQueue;
 
 import com.github.kilianB.datastructures.tree.Result;
 import com.github.kilianB.datastructures.tree.binaryTree.BinaryTree;
+import com.github.kilianB.datastructures.tree.binaryTree.ConcurrentBinaryTree;
 import com.github.kilianB.matcher.TypedImageMatcher;
 import com.jstarcraft.dip.hash.Hash;
 import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.HashingContext;
 
 /**
  * Convenience class allowing to chain multiple hashing algorithms to find
@@ -41,6 +43,12 @@ public class ConsecutiveMatcher extends TypedImageMatcher {
 	/** Binary Tree holding results for each individual hashing algorithm */
 	protected HashMap<HashingAlgorithm, BinaryTree<BufferedImage>> binTreeMap = new HashMap<>();
 
+	/**
+	 * If true the images are saved in {@link ConcurrentBinaryTree}s allowing to
+	 * search images while images are added
+	 */
+	protected boolean concurrent;
+
 	/**
 	 * Append a new hashing algorithm which will be executed after all hash
 	 * algorithms passed the test.
@@ -56,7 +64,7 @@ public class ConsecutiveMatcher extends TypedImageMatcher {
 	public void addHashingAlgorithm(HashingAlgorithm algo, double threshold, boolean normalized) {
 		super.addHashingAlgorithm(algo, threshold, normalized);
 
-		BinaryTree<BufferedImage> binTree = new BinaryTree<>(true);
+		BinaryTree<BufferedImage> binTree = concurrent ? new ConcurrentBinaryTree<>(true) : new BinaryTree<>(true);
 		binTreeMap.put(algo, binTree);
 
 		// Also add all images which were added to the image matcher earlier
@@ -65,6 +73,33 @@ public class ConsecutiveMatcher extends TypedImageMatcher {
 		}
 	}
 
+	/**
+	 * Allow {@link #getMatchingImages(BufferedImage)} to be called by any number of
+	 * threads while a single thread adds images. Searches do not block and see all
+	 * images whose hashes were added to the trees of all hashing algorithms
+	 * before the search started. Hashing algorithms may not be altered
+	 * concurrently.
+	 * <p>
+	 * Has to be set before the first hashing algorithm is added.
+	 * 
+	 * @param concurrent true to enable concurrent searches
+	 * @since 3.1.0
+	 */
+	public void setConcurrent(boolean concurrent) {
+		if (!binTreeMap.isEmpty()) {
+			throw new IllegalStateException("Concurrent searches have to be enabled before hashing algorithms are added");
+		}
+		this.concurrent = concurrent;
+	}
+
+	/**
+	 * @return true if images can be searched while images are added
+	 * @since 3.1.0
+	 */
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+
 	/**
 	 * Removes the hashing algorithms from the image matcher.
 	 * 
@@ -110,10 +145,11 @@ public class ConsecutiveMatcher extends TypedImageMatcher {
 			return;
 		}
 
+		HashingContext context = new HashingContext(image);
 		for (Entry<HashingAlgorithm, AlgoSettings> entry : steps.entrySet()) {
 			HashingAlgorithm algo = entry.getKey();
 			BinaryTree<BufferedImage> binTree = binTreeMap.get(algo);
-			binTree.addHash(algo.hash(image), image);
+			binTree.addHash(algo.hash(context), image);
 		}
 		addedImages.add(image);
 	}
@@ -146,6 +182,7 @@ public class ConsecutiveMatcher extends TypedImageMatcher {
 			throw new IllegalStateException("Please supply at least one hashing algorithm prior to invoking the match method");
 
 		PriorityQueue<Result<BufferedImage>> returnValues = null;
+		HashingContext context = new HashingContext(image);
 
 		for (Entry<HashingAlgorithm, AlgoSettings> entry : steps.entrySet()) {
 			HashingAlgorithm algo = entry.getKey();
@@ -153,7 +190,7 @@ public class ConsecutiveMatcher extends TypedImageMatcher {
 			BinaryTree<BufferedImage> binTree = binTreeMap.get(algo);
 			AlgoSettings settings = entry.getValue();
 
-			Hash needleHash = algo.hash(image);
+			Hash needleHash = algo.hash(context);
 
 			int threshold = 0;
 			if (settings.isNormalized()) {
@@ -12,6 +12,7 @@ import com.github.kilianB.datastructures.tree.Result;
 import com.github.kilianB.datastructures.tree.binaryTree.BinaryTree;
 import com.jstarcraft.dip.hash.Hash;
 import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.HashingContext;
 
 /**
  * Convenience class allowing to chain multiple hashing algorithms to find
@@ -153,6 +154,7 @@ public class CumulativeMatcher extends ConsecutiveMatcher {
 
 		// During first iteration we need to do some extra hoops
 		boolean first = true;
+		HashingContext context = new HashingContext(image);
 
 		// https://stackoverflow.com/a/31401836/3244464 TODO jmh benchmark
 		float optimalLoadFactor = (float) Math.log(2);
@@ -169,7 +171,7 @@ public class CumulativeMatcher extends ConsecutiveMatcher {
 			int optimalCapacity = (int) (Math.ceil((first ? binTree.getHashCount() : distanceMap.size()) / optimalLoadFactor) + 1);
 			temporaryMap = new HashMap<>(optimalCapacity, optimalLoadFactor);
 
-			Hash needleHash = algo.hash(image);
+			Hash needleHash = algo.hash(context);
 
 			int bitRes = algo.getKeyResolution();
 
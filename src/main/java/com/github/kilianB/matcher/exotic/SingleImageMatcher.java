@@ -10,6 +10,7 @@ import javax.imageio.ImageIO;
 import com.github.kilianB.matcher.TypedImageMatcher;
 import com.jstarcraft.dip.hash.Hash;
 import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.HashingContext;
 
 /**
  * Convenience class to chain multiple hashing algorithms to check if two images
@@ -47,9 +48,11 @@ public class SingleImageMatcher extends TypedImageMatcher {
 		if (steps.isEmpty())
 			throw new IllegalStateException("Please supply at least one hashing algorithm prior to invoking the match method");
 
+		HashingContext context = new HashingContext(image);
+		HashingContext context1 = new HashingContext(image1);
 		for (Entry<HashingAlgorithm, AlgoSettings> entry : steps.entrySet()) {
-			Hash hash = entry.getKey().hash(image);
-			Hash hash1 = entry.getKey().hash(image1);
+			Hash hash = entry.getKey().hash(context);
+			Hash hash1 = entry.getKey().hash(context1);
 
 			// Check if the hashing algo is within the threshold. If it's not return early
 			if (!entry.getValue().apply(hash, hash1)) {
@@ -1,13 +1,15 @@
 package com.github.kilianB.matcher.persistent;
 
-import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.PriorityQueue;
 
+import com.github.kilianB.datastructures.tree.HashIndex;
 import com.github.kilianB.datastructures.tree.Result;
-import com.github.kilianB.datastructures.tree.binaryTree.BinaryTree;
 import com.jstarcraft.dip.hash.Hash;
 import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.HashingContext;
 
 /**
  * Convenience class allowing to chain multiple hashing algorithms to find
@@ -36,7 +38,7 @@ public class ConsecutiveMatcher extends PersitentBinaryTreeMatcher {
 
 	private static final long serialVersionUID = 831914616034052308L;
 
-	protected PriorityQueue<Result<String>> getMatchingImagesInternal(BufferedImage image, String uniqueId) {
+	protected PriorityQueue<Result<String>> getMatchingImagesInternal(HashingContext context, String uniqueId) {
 
 		if (steps.isEmpty())
 			throw new IllegalStateException("Please supply at least one hashing algorithm prior to invoking the match method");
@@ -46,10 +48,10 @@ public class ConsecutiveMatcher extends PersitentBinaryTreeMatcher {
 		for (Entry<HashingAlgorithm, AlgoSettings> entry : steps.entrySet()) {
 			HashingAlgorithm algo = entry.getKey();
 
-			BinaryTree<String> binTree = binTreeMap.get(algo);
+			HashIndex<String> binTree = binTreeMap.get(algo);
 			AlgoSettings settings = entry.getValue();
 
-			Hash needleHash = getHash(algo, uniqueId, image);
+			Hash needleHash = getHash(algo, uniqueId, context);
 
 			int threshold = 0;
 			if (settings.isNormalized()) {
@@ -71,5 +73,48 @@ public class ConsecutiveMatcher extends PersitentBinaryTreeMatcher {
 		return returnValues;
 	}
 
+	@Override
+	protected List<PriorityQueue<Result<String>>> getMatchingImagesInternal(List<Hash[]> needles) {
+
+		if (steps.isEmpty())
+			throw new IllegalStateException("Please supply at least one hashing algorithm prior to invoking the match method");
+
+		List<PriorityQueue<Result<String>>> returnValues = null;
+
+		int algoIndex = 0;
+		for (Entry<HashingAlgorithm, AlgoSettings> entry : steps.entrySet()) {
+			HashIndex<String> binTree = binTreeMap.get(entry.getKey());
+			AlgoSettings settings = entry.getValue();
+
+			List<Hash> needleHashes = new ArrayList<>(needles.size());
+			int[] thresholds = new int[needles.size()];
+			for (int i = 0; i < needles.size(); i++) {
+				Hash needleHash = needles.get(i)[algoIndex];
+				needleHashes.add(needleHash);
+				if (returnValues != null && returnValues.get(i).isEmpty()) {
+					// Already discarded by a previous algorithm
+					thresholds[i] = -1;
+				} else if (settings.isNormalized()) {
+					thresholds[i] = (int) Math.round(settings.getThreshold() * needleHash.getBitResolution());
+				} else {
+					thresholds[i] = (int) settings.getThreshold();
+				}
+			}
+			algoIndex++;
+
+			List<PriorityQueue<Result<String>>> temp = binTree.getElementsWithinHammingDistance(needleHashes, thresholds);
+
+			if (returnValues == null) {
+				returnValues = temp;
+			} else {
+				for (int i = 0; i < needles.size(); i++) {
+					temp.get(i).retainAll(returnValues.get(i));
+				}
+				returnValues = temp;
+			}
+		}
+		return returnValues;
+	}
+
 	// Don't keep a reference to the image so the garbage collector can release it
 }
@@ -1,17 +1,19 @@
 package com.github.kilianB.matcher.persistent;
 
-import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.PriorityQueue;
 
 import com.github.kilianB.MathUtil;
+import com.github.kilianB.datastructures.tree.HashIndex;
 import com.github.kilianB.datastructures.tree.Result;
-import com.github.kilianB.datastructures.tree.binaryTree.BinaryTree;
 import com.jstarcraft.dip.hash.Hash;
 import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.HashingContext;
 
 /**
  * Instead of early aborting if one algorithm fails like the
@@ -168,50 +170,130 @@ public class CumulativeMatcher extends PersitentBinaryTreeMatcher {
 	}
 
 	@Override
-	protected PriorityQueue<Result<String>> getMatchingImagesInternal(BufferedImage image, String uniqueId) {
+	protected PriorityQueue<Result<String>> getMatchingImagesInternal(HashingContext context, String uniqueId) {
 
 		if (steps.isEmpty())
 			throw new IllegalStateException("Please supply at least one hashing algorithm prior to invoking the match method");
 
-		// The maximum distance we have to search in our tree until we can't find any
-		// more images
-		double maxDistanceUntilTermination = overallSetting.getThreshold();
+		CumulativeSearch search = new CumulativeSearch();
 
-		// [Result,Summed distance of the image]
-		HashMap<Result<String>, Double> distanceMap = new HashMap<>();
+		// For each hashing algorithm
+		for (Entry<HashingAlgorithm, AlgoSettings> entry : steps.entrySet()) {
+			HashingAlgorithm algo = entry.getKey();
 
-		// During first iteration we need to do some extra hoops
-		boolean first = true;
+			HashIndex<String> binTree = binTreeMap.get(algo);
 
-		// https://stackoverflow.com/a/31401836/3244464 TODO jmh benchmark
-		float optimalLoadFactor = (float) Math.log(2);
+			Hash needleHash = getHash(algo, uniqueId, context);
 
-		// For each hashing algorithm
+			int bitRes = algo.getKeyResolution();
+
+			PriorityQueue<Result<String>> temp = binTree.getElementsWithinHammingDistance(needleHash, search.getThreshold(bitRes));
+
+			search.accept(temp, entry.getValue(), bitRes, binTree.getHashCount());
+
+			if (search.terminated) {
+				break;
+			}
+		}
+		return search.getResult();
+	}
+
+	@Override
+	protected List<PriorityQueue<Result<String>>> getMatchingImagesInternal(List<Hash[]> needles) {
+
+		if (steps.isEmpty())
+			throw new IllegalStateException("Please supply at least one hashing algorithm prior to invoking the match method");
+
+		List<CumulativeSearch> searches = new ArrayList<>(needles.size());
+		for (int i = 0; i < needles.size(); i++) {
+			searches.add(new CumulativeSearch());
+		}
+
+		int algoIndex = 0;
 		for (Entry<HashingAlgorithm, AlgoSettings> entry : steps.entrySet()) {
 			HashingAlgorithm algo = entry.getKey();
 
-			HashMap<Result<String>, Double> temporaryMap;
+			HashIndex<String> binTree = binTreeMap.get(algo);
 
-			BinaryTree<String> binTree = binTreeMap.get(algo);
+			int bitRes = algo.getKeyResolution();
 
-			// Init temporary hashmap
-			int optimalCapacity = (int) (Math.ceil((first ? binTree.getHashCount() : distanceMap.size()) / optimalLoadFactor) + 1);
-			temporaryMap = new HashMap<>(optimalCapacity, optimalLoadFactor);
+			List<Hash> needleHashes = new ArrayList<>(needles.size());
+			int[] thresholds = new int[needles.size()];
+			boolean searching = false;
+			for (int i = 0; i < needles.size(); i++) {
+				needleHashes.add(needles.get(i)[algoIndex]);
+				CumulativeSearch search = searches.get(i);
+				// Negative thresholds still match identical hashes in the single needle search
+				thresholds[i] = search.terminated ? -1 : Math.max(0, search.getThreshold(bitRes));
+				searching |= !search.terminated;
+			}
+			algoIndex++;
 
-			Hash needleHash = getHash(algo, uniqueId, image);
+			if (!searching) {
+				break;
+			}
 
-			int bitRes = algo.getKeyResolution();
+			List<PriorityQueue<Result<String>>> temp = binTree.getElementsWithinHammingDistance(needleHashes, thresholds);
 
-			int threshold = 0;
+			for (int i = 0; i < needles.size(); i++) {
+				CumulativeSearch search = searches.get(i);
+				if (!search.terminated) {
+					search.accept(temp.get(i), entry.getValue(), bitRes, binTree.getHashCount());
+				}
+			}
+		}
+
+		List<PriorityQueue<Result<String>>> returnValues = new ArrayList<>(needles.size());
+		for (CumulativeSearch search : searches) {
+			returnValues.add(search.getResult());
+		}
+		return returnValues;
+	}
+
+	/**
+	 * The state of the search of a single needle summing up the distances of the
+	 * hashing algorithms
+	 */
+	private class CumulativeSearch {
+
+		// The maximum distance we have to search in our tree until we can't find any
+		// more images
+		private double maxDistanceUntilTermination = overallSetting.getThreshold();
+
+		// [Result,Summed distance of the image]
+		private HashMap<Result<String>, Double> distanceMap = new HashMap<>();
 
+		// During first iteration we need to do some extra hoops
+		private boolean first = true;
+
+		/** True if no further images can be found */
+		private boolean terminated;
+
+		/**
+		 * @param bitRes the key resolution of the current hashing algorithm
+		 * @return the distance the index of the current hashing algorithm has to be
+		 *         searched with
+		 */
+		int getThreshold(int bitRes) {
 			if (overallSetting.isNormalized()) {
 				// Normalized threshold
-				threshold = (int) (maxDistanceUntilTermination * bitRes);
+				return (int) (maxDistanceUntilTermination * bitRes);
 			} else {
-				threshold = (int) maxDistanceUntilTermination;
+				return (int) maxDistanceUntilTermination;
 			}
+		}
+
+		/**
+		 * Add the distances found by the current hashing algorithm
+		 */
+		void accept(PriorityQueue<Result<String>> temp, AlgoSettings settings, int bitRes, int hashCount) {
 
-			PriorityQueue<Result<String>> temp = binTree.getElementsWithinHammingDistance(needleHash, threshold);
+			// https://stackoverflow.com/a/31401836/3244464 TODO jmh benchmark
+			float optimalLoadFactor = (float) Math.log(2);
+
+			// Init temporary hashmap
+			int optimalCapacity = (int) (Math.ceil((first ? hashCount : distanceMap.size()) / optimalLoadFactor) + 1);
+			HashMap<Result<String>, Double> temporaryMap = new HashMap<>(optimalCapacity, optimalLoadFactor);
 
 			// Find the min total distance for the next generation to specify our cutoff
 			// parameter
@@ -220,12 +302,11 @@ public class CumulativeMatcher extends PersitentBinaryTreeMatcher {
 			// filter manually
 			for (Result<String> res : temp) {
 
-				double normalDistance = entry.getValue().getThreshold() * (res.distance / (double) bitRes);
+				double normalDistance = settings.getThreshold() * (res.distance / (double) bitRes);
 
 				// Initially seed hashmap
 				if (first) {
 					// Add all
-					// System.out.printf("Distance: %.3f | %s %n", normalDistance, res.toString());
 					temporaryMap.put(res, normalDistance);
 					if (normalDistance < minDistance) {
 						minDistance = normalDistance;
@@ -238,10 +319,6 @@ public class CumulativeMatcher extends PersitentBinaryTreeMatcher {
 						double distanceSoFar = distanceMap.get(res) + normalDistance;
 						double distanceLeft = overallSetting.getThreshold() - distanceSoFar;
 
-						// System.out.printf("Distance: %.3f | dLeft: %.3f distSoFar: %.3f %s %n",
-						// normalDistance,
-						// distanceLeft, distanceSoFar, res.toString());
-
 						if (distanceLeft > 0) {
 							// Update distance
 							temporaryMap.put(res, distanceSoFar);
@@ -263,24 +340,26 @@ public class CumulativeMatcher extends PersitentBinaryTreeMatcher {
 			maxDistanceUntilTermination -= minDistance;
 
 			if (MathUtil.isDoubleEquals(maxDistanceUntilTermination, 0, -1e100)) {
-				break;
+				terminated = true;
 			}
 		}
 
-		// TODO note that we used the normalized distance here
-		PriorityQueue<Result<String>> returnValues = new PriorityQueue<>(new Comparator<Result<String>>() {
-			@Override
-			public int compare(Result<String> o1, Result<String> o2) {
-				return Double.compare(o1.normalizedHammingDistance, o2.normalizedHammingDistance);
-			}
-		});
+		PriorityQueue<Result<String>> getResult() {
+			// TODO note that we used the normalized distance here
+			PriorityQueue<Result<String>> returnValues = new PriorityQueue<>(new Comparator<Result<String>>() {
+				@Override
+				public int compare(Result<String> o1, Result<String> o2) {
+					return Double.compare(o1.normalizedHammingDistance, o2.normalizedHammingDistance);
+				}
+			});
 
-		for (Entry<Result<String>, Double> e : distanceMap.entrySet()) {
-			Result<String> matchedImage = e.getKey();
-			matchedImage.normalizedHammingDistance = e.getValue();
-			returnValues.add(matchedImage);
+			for (Entry<Result<String>, Double> e : distanceMap.entrySet()) {
+				Result<String> matchedImage = e.getKey();
+				matchedImage.normalizedHammingDistance = e.getValue();
+				returnValues.add(matchedImage);
+			}
+			return returnValues;
 		}
-		return returnValues;
 	}
 
 }
@@ -0,0 +1,37 @@
+package com.github.kilianB.matcher.persistent;
+
+import java.nio.file.Path;
+
+/**
+ * Callback notified about the progress of a bulk ingestion started via
+ * {@link PersitentBinaryTreeMatcher#addImages(java.util.stream.Stream, int, IngestionListener)}.
+ * All methods are invoked on the thread which started the ingestion, in the
+ * order the images were supplied.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@FunctionalInterface
+public interface IngestionListener {
+
+	/**
+	 * Called after the hashes of an image were added to the matcher
+	 *
+	 * @param image the image which was added
+	 * @param added the number of images added so far
+	 */
+	void imageAdded(Path image, long added);
+
+	/**
+	 * Called if an image could not be read or hashed. By default the ingestion is
+	 * aborted.
+	 *
+	 * @param image the image which failed
+	 * @param cause the exception thrown while processing the image
+	 * @return true to skip the image and continue the ingestion, false to abort
+	 */
+	default boolean imageFailed(Path image, Exception cause) {
+		return false;
+	}
+
+}
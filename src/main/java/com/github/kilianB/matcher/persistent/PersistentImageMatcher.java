@@ -1,6 +1,9 @@
 package com.github.kilianB.matcher.persistent;
 
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -8,6 +11,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.PriorityQueue;
@@ -19,6 +23,10 @@ import com.github.kilianB.datastructures.tree.Result;
 import com.github.kilianB.matcher.TypedImageMatcher;
 import com.jstarcraft.dip.hash.Hash;
 import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.HashingContext;
+import com.jstarcraft.dip.metrics.FlightRecorderEvents;
+import com.jstarcraft.dip.metrics.MetricsListener;
+import com.jstarcraft.dip.metrics.Stage;
 
 /**
  * Persistent image matchers are a subset of
@@ -44,10 +52,25 @@ public abstract class PersistentImageMatcher extends TypedImageMatcher implement
 
 	private static final Logger LOGGER = Logger.getLogger(ConsecutiveMatcher.class.getSimpleName());
 
+	/**
+	 * "JDIPMATC" prefix of serialization files whose hashes are kept in memory
+	 * mapped indices
+	 */
+	private static final long MAPPED_MAGIC = 0x4A4449504D415443L;
+
+	/** The version of the memory mapped serialization format */
+	private static final int MAPPED_VERSION = 1;
+
 	protected boolean lockedState = false;
 
 	protected HashMap<String, Hash> addedImageMap;
 
+	/** Decode image files at the resolution required by the hashing algorithms */
+	protected boolean subsampledDecoding = false;
+
+	/** Receives the durations of the stages. Null if the stages are not timed */
+	protected transient MetricsListener metricsListener;
+
 	/**
 	 * Non args constructor for serialization
 	 */
@@ -123,7 +146,8 @@ public abstract class PersistentImageMatcher extends TypedImageMatcher implement
 			throw new IllegalArgumentException("Please make sure you add an image to the matcher. Directories are not supported");
 		}
 
-		addImage(uniqueId, ImageIO.read(imageFile));
+		addImageInternal(uniqueId, createContext(imageFile));
+		lockedState = true;
 	}
 
 	/**
@@ -150,6 +174,18 @@ public abstract class PersistentImageMatcher extends TypedImageMatcher implement
 	 */
 	protected abstract void addImageInternal(String uniqueId, BufferedImage image);
 
+	/**
+	 * Add the image of the context to the image matcher. Invoked for image files,
+	 * which may be kept encoded by the context.
+	 * 
+	 * @param uniqueId the unique id to refer to during lookup
+	 * @param context  the context of the image to add
+	 * @since 3.1.0
+	 */
+	protected void addImageInternal(String uniqueId, HashingContext context) {
+		addImageInternal(uniqueId, context.getImage());
+	}
+
 	/**
 	 * Return a list of images that are considered matching by the definition of
 	 * this matcher.
@@ -160,7 +196,149 @@ public abstract class PersistentImageMatcher extends TypedImageMatcher implement
 	 * @throws IOException if an error occurs reading the file
 	 */
 	public PriorityQueue<Result<String>> getMatchingImages(File image) throws IOException {
-		return getMatchingImages(ImageIO.read(image));
+		return getMatchingImages(createContext(image));
+	}
+
+	/**
+	 * Return a list of images that are considered matching by the definition of
+	 * this matcher. Invoked for image files, which may be kept encoded by the
+	 * context.
+	 * 
+	 * @param context the context of the image to check all saved images against
+	 * @return a list of unique id's identifying the previously matched images
+	 *         sorted by distance.
+	 * @since 3.1.0
+	 */
+	protected PriorityQueue<Result<String>> getMatchingImages(HashingContext context) {
+		return getMatchingImages(context.getImage());
+	}
+
+	/**
+	 * Decode image files added or searched by this matcher at a reduced
+	 * resolution which is still at least four times as large as the largest
+	 * resolution of the hashing algorithms. Decoding large images becomes
+	 * considerably faster, but the hashes may differ in a few bits from the hashes
+	 * of the fully decoded images. Images added and searched as
+	 * {@link BufferedImage} are not affected.
+	 * <p>
+	 * Has to be set before the first image is added to keep the hashes of added
+	 * and searched images consistent.
+	 * 
+	 * @param subsampledDecoding true to decode image files at a reduced resolution
+	 * @throws IllegalStateException if images were already added
+	 * @see HashingAlgorithm#setSubsampledDecoding(boolean)
+	 * @since 3.1.0
+	 */
+	public void setSubsampledDecoding(boolean subsampledDecoding) {
+		if (lockedState) {
+			throw new IllegalStateException("Images have already been added to the matcher. Changing the decoding would invalidate the internal state.");
+		}
+		this.subsampledDecoding = subsampledDecoding;
+	}
+
+	/**
+	 * @return true if image files are decoded at a reduced resolution
+	 * @since 3.1.0
+	 */
+	public boolean isSubsampledDecoding() {
+		return subsampledDecoding;
+	}
+
+	/**
+	 * Decode the image file at full resolution or, if enabled, at the resolution
+	 * required by the hashing algorithms of this matcher
+	 * 
+	 * @param file the file pointing to the image
+	 * @return the decoded image or null if the image format is not supported
+	 * @throws IOException if an error occurs reading the file
+	 * @since 3.1.0
+	 */
+	protected BufferedImage readImage(File file) throws IOException {
+		MetricsListener listener = metricsListener;
+		long start = listener == null ? 0 : System.nanoTime();
+		BufferedImage image;
+		if (subsampledDecoding) {
+			image = HashingAlgorithm.readSubsampled(file, steps.keySet());
+		} else {
+			image = ImageIO.read(file);
+		}
+		if (listener != null) {
+			listener.record(Stage.DECODE, System.nanoTime() - start);
+		}
+		return image;
+	}
+
+	/**
+	 * Create the context shared by all hashing algorithms hashing the image file,
+	 * reporting to the listener of this matcher. Image files added and searched by
+	 * this matcher are all hashed via this method, therefore their hashes are
+	 * computed the same way.
+	 * <p>
+	 * If any hashing algorithm decodes images by its backend (see
+	 * {@link HashingAlgorithm#isBackendDecoding()}) the image is kept encoded and
+	 * decoded by the context once required by the other algorithms.
+	 * 
+	 * @param file the file pointing to the image
+	 * @return the context of the image
+	 * @throws IOException if an error occurs reading the file or the format of
+	 *                     the image is not supported
+	 * @since 3.1.0
+	 */
+	protected HashingContext createContext(File file) throws IOException {
+		boolean keepEncoded = false;
+		for (HashingAlgorithm algo : steps.keySet()) {
+			keepEncoded |= algo.isBackendDecoding();
+		}
+		if (keepEncoded) {
+			HashingContext context = new HashingContext(Files.readAllBytes(file.toPath()));
+			if (subsampledDecoding) {
+				int[] resolution = HashingAlgorithm.getDecodingResolution(steps.keySet());
+				context.setDecodingResolution(resolution[0], resolution[1]);
+			}
+			context.setMetricsListener(metricsListener);
+			return context;
+		}
+		BufferedImage image = readImage(file);
+		if (image == null) {
+			throw new IOException("No image reader found for " + file);
+		}
+		return createContext(image);
+	}
+
+	/**
+	 * Create the context shared by all hashing algorithms hashing the image,
+	 * reporting to the listener of this matcher
+	 * 
+	 * @param image the image to hash
+	 * @return the context of the image
+	 * @since 3.1.0
+	 */
+	protected HashingContext createContext(BufferedImage image) {
+		HashingContext context = new HashingContext(image);
+		context.setMetricsListener(metricsListener);
+		return context;
+	}
+
+	/**
+	 * Time the stages of adding and searching images, from decoding image files
+	 * over the stages of the hashing algorithms to searching the indices. The
+	 * listener is not serialized.
+	 * 
+	 * @param metricsListener the listener receiving the durations or null to not
+	 *                        time the stages
+	 * @see com.jstarcraft.dip.metrics.HashingMetrics
+	 * @since 3.1.0
+	 */
+	public void setMetricsListener(MetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+
+	/**
+	 * @return the listener receiving the durations of the stages or null
+	 * @since 3.1.0
+	 */
+	public MetricsListener getMetricsListener() {
+		return metricsListener;
 	}
 
 	/**
@@ -192,9 +370,33 @@ public abstract class PersistentImageMatcher extends TypedImageMatcher implement
 			LOGGER.warning("Output file already exists. Overwritting serizable file file");
 		}
 
-		try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(saveLocation))) {
+		Object event = FlightRecorderEvents.beginPersist();
+		try (FileOutputStream fos = new FileOutputStream(saveLocation)) {
+			if (isMemoryMapped()) {
+				DataOutputStream dos = new DataOutputStream(fos);
+				dos.writeLong(MAPPED_MAGIC);
+				dos.writeInt(MAPPED_VERSION);
+				dos.flush();
+			}
+			ObjectOutputStream oos = new ObjectOutputStream(fos);
 			oos.writeObject(this);
+			oos.flush();
 		}
+		if (event != null) {
+			FlightRecorderEvents.commitPersist(event, getClass(), saveLocation.getAbsolutePath(), saveLocation.length());
+		}
+	}
+
+	/**
+	 * Indicate if the hashes of this matcher are saved in memory mapped index
+	 * files. In this case the serialization file only references the index files
+	 * which have to be kept alongside it.
+	 * 
+	 * @return true if the hashes are saved in memory mapped files
+	 * @since 3.1.0
+	 */
+	protected boolean isMemoryMapped() {
+		return false;
 	}
 
 	/**
@@ -211,7 +413,19 @@ public abstract class PersistentImageMatcher extends TypedImageMatcher implement
 	 */
 	public static PersistentImageMatcher reconstructState(File saveLocation, boolean deleteSerFile) throws ClassNotFoundException, IOException {
 		PersistentImageMatcher pImageMatcher;
-		try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(saveLocation))) {
+		try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(saveLocation))) {
+			// Detect matchers referencing memory mapped indices
+			bis.mark(Long.BYTES);
+			DataInputStream dis = new DataInputStream(bis);
+			if (saveLocation.length() >= Long.BYTES + Integer.BYTES && dis.readLong() == MAPPED_MAGIC) {
+				int version = dis.readInt();
+				if (version > MAPPED_VERSION) {
+					throw new IOException("Unsupported serialization version " + version + ": " + saveLocation);
+				}
+			} else {
+				bis.reset();
+			}
+			ObjectInputStream ois = new ObjectInputStream(bis);
 			pImageMatcher = (PersistentImageMatcher) ois.readObject();
 		}
 		if (deleteSerFile) {
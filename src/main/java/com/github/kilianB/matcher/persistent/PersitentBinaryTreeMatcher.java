@@ -3,17 +3,41 @@ package com.github.kilianB.matcher.persistent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
+import com.github.kilianB.concurrency.NamedThreadFactory;
+import com.github.kilianB.datastructures.MappedHashIndex;
+import com.github.kilianB.datastructures.tree.AbstractBinaryTree;
+import com.github.kilianB.datastructures.tree.HashIndex;
 import com.github.kilianB.datastructures.tree.Result;
 import com.github.kilianB.datastructures.tree.binaryTree.BinaryTree;
+import com.github.kilianB.datastructures.tree.binaryTree.ConcurrentBinaryTree;
 import com.jstarcraft.dip.hash.Hash;
 import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.HashingContext;
+import com.jstarcraft.dip.metrics.MetricsListener;
+import com.jstarcraft.dip.metrics.Stage;
 
 /**
  * * Persistent image matchers are a subset of
@@ -44,11 +68,17 @@ public abstract class PersitentBinaryTreeMatcher extends PersistentImageMatcher
 
 	private static final Logger LOGGER = Logger.getLogger(ConsecutiveMatcher.class.getSimpleName());
 
-	/** keep track of images already added. No reason to rehash */
+	/**
+	 * keep track of images already added. No reason to rehash. Not serialized if
+	 * the hashes are saved in memory mapped indices but read from the index files.
+	 */
 	protected HashSet<String> addedImages = new HashSet<>();
 
-	/** Binary Tree holding results for each individual hashing algorithm */
-	protected HashMap<HashingAlgorithm, BinaryTree<String>> binTreeMap = new HashMap<>();
+	/**
+	 * Binary Tree holding results for each individual hashing algorithm. The type
+	 * of index can be altered by overwriting {@link #createIndex(HashingAlgorithm)}
+	 */
+	protected HashMap<HashingAlgorithm, HashIndex<String>> binTreeMap = new HashMap<>();
 
 	protected boolean cacheAddedHashes;
 
@@ -57,6 +87,29 @@ public abstract class PersitentBinaryTreeMatcher extends PersistentImageMatcher
 	 */
 	protected Map<HashingAlgorithm, Map<String, Hash>> cachedHashes;
 
+	/**
+	 * If set the hashes are saved in {@link MappedHashIndex memory mapped files}
+	 * inside this directory instead of being kept on the heap.
+	 */
+	protected File indexDirectory;
+
+	/**
+	 * If true the hashes are saved in {@link ConcurrentBinaryTree}s allowing to
+	 * search images while images are added
+	 */
+	protected boolean concurrent;
+
+	/** If attached all added hashes are written to the log */
+	protected transient WriteAheadLog writeAheadLog;
+
+	/** The file checkpoints are automatically written to */
+	private transient File checkpointFile;
+
+	/** Number of images added between two automatic checkpoints. 0 if disabled */
+	private transient int checkpointInterval;
+
+	private transient int imagesSinceCheckpoint;
+
 	/**
 	 * TODO handle serialization empty constructor?
 	 * 
@@ -80,18 +133,123 @@ public abstract class PersitentBinaryTreeMatcher extends PersistentImageMatcher
 
 	@Override
 	public PriorityQueue<Result<String>> getMatchingImages(File image) throws IOException {
-		if (cacheAddedHashes && addedImages.contains(image.getAbsolutePath())) {
+		if (cacheAddedHashes && isCached(image.getAbsolutePath())) {
 			// Quick retrieval possible. We don't need to read the file since the hashes are
 			// cached
-			return getMatchingImagesInternal(null, image.getAbsolutePath());
+			return match(null, image.getAbsolutePath());
 		} else {
 			return super.getMatchingImages(image);
 		}
 	}
 
+	/**
+	 * Check if the hashes of the image are cached. The set of added images is only
+	 * accessed by the writing thread, concurrent searches query the thread safe
+	 * hash cache instead.
+	 */
+	private boolean isCached(String uniqueId) {
+		if (concurrent) {
+			return !cachedHashes.isEmpty() && cachedHashes.values().iterator().next().containsKey(uniqueId);
+		}
+		return addedImages.contains(uniqueId);
+	}
+
 	@Override
 	public PriorityQueue<Result<String>> getMatchingImages(BufferedImage image) {
-		return getMatchingImagesInternal(image, null);
+		return match(createContext(image), null);
+	}
+
+	@Override
+	protected PriorityQueue<Result<String>> getMatchingImages(HashingContext context) {
+		return match(context, null);
+	}
+
+	/**
+	 * Search the matching images, timing the search
+	 */
+	private PriorityQueue<Result<String>> match(HashingContext context, String uniqueId) {
+		MetricsListener listener = metricsListener;
+		if (listener == null) {
+			return getMatchingImagesInternal(context, uniqueId);
+		}
+		long start = System.nanoTime();
+		PriorityQueue<Result<String>> matches = getMatchingImagesInternal(context, uniqueId);
+		listener.record(Stage.MATCH, System.nanoTime() - start);
+		return matches;
+	}
+
+	/**
+	 * Search the matching images of multiple images at once. The images are hashed
+	 * in parallel after which the index of every hashing algorithm is searched for
+	 * all needles in a single pass. Equivalent to, but considerably faster than,
+	 * calling {@link #getMatchingImages(BufferedImage)} for every image.
+	 * 
+	 * @param images      the images to match
+	 * @param parallelism the number of threads hashing the images
+	 * @return the matching images of every image in the order of the supplied
+	 *         images
+	 * @since 3.1.0
+	 */
+	public List<PriorityQueue<Result<String>>> getMatchingImages(Collection<BufferedImage> images, int parallelism) {
+		if (steps.isEmpty()) {
+			throw new IllegalStateException("Please supply at least one hashing algorithm prior to invoking the match method");
+		}
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("The parallelism has to be positive");
+		}
+
+		List<HashingAlgorithm> algorithms = initializeAlgorithms();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, new NamedThreadFactory("ImageMatching", true));
+		try {
+			List<List<CompletableFuture<Hash>>> pending = new ArrayList<>(images.size());
+			for (BufferedImage image : images) {
+				HashingContext context = createContext(image);
+				List<CompletableFuture<Hash>> hashes = new ArrayList<>(algorithms.size());
+				for (HashingAlgorithm algo : algorithms) {
+					hashes.add(CompletableFuture.supplyAsync(() -> algo.hash(context), executor));
+				}
+				pending.add(hashes);
+			}
+			List<Hash[]> needles = new ArrayList<>(pending.size());
+			for (List<CompletableFuture<Hash>> hashes : pending) {
+				Hash[] needle = new Hash[hashes.size()];
+				for (int index = 0; index < needle.length; index++) {
+					needle[index] = hashes.get(index).join();
+				}
+				needles.add(needle);
+			}
+			return getMatchingImagesInternal(needles);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Return the images considered matching by the definition of this matcher for
+	 * multiple needles. Implementations are expected to search every index once
+	 * for all needles using {@link HashIndex#getElementsWithinHammingDistance(List, int[])}.
+	 * 
+	 * @param needles the hashes of each needle in the order of the hashing
+	 *                algorithms
+	 * @return a list of unique id's identifying the previously matched images
+	 *         sorted by distance for every needle
+	 * @since 3.1.0
+	 */
+	protected abstract List<PriorityQueue<Result<String>>> getMatchingImagesInternal(List<Hash[]> needles);
+
+	/**
+	 * Collect the hashing algorithms of this matcher and initialize their lazily
+	 * computed state, allowing them to be shared between threads.
+	 * 
+	 * @return the hashing algorithms in the order they are applied
+	 */
+	private List<HashingAlgorithm> initializeAlgorithms() {
+		List<HashingAlgorithm> algorithms = new ArrayList<>(steps.keySet());
+		for (HashingAlgorithm algo : algorithms) {
+			algo.algorithmId();
+			algo.getKeyResolution();
+		}
+		return algorithms;
 	}
 
 	/**
@@ -99,17 +257,17 @@ public abstract class PersitentBinaryTreeMatcher extends PersistentImageMatcher
 	 * this matcher.
 	 * <p>
 	 * This method is propagated by the super class allowing to utilize caching
-	 * techniques to avoid reloading known images. Either the bufferedImage or the
+	 * techniques to avoid reloading known images. Either the context or the
 	 * uniqueId argument is send depending on if the uniqueId is enough to query the
-	 * hashes using the {@link #getHash(HashingAlgorithm, String, BufferedImage)}
+	 * hashes using the {@link #getHash(HashingAlgorithm, String, HashingContext)}
 	 * method call.
 	 * 
-	 * @param bi       the buffered image to match or null
+	 * @param context  the context of the image to match or null
 	 * @param uniqueId the uniqueId of a previously cached image or null
 	 * @return a list of unique id's identifying the previously matched images
 	 *         sorted by distance.
 	 */
-	protected abstract PriorityQueue<Result<String>> getMatchingImagesInternal(BufferedImage bi, String uniqueId);
+	protected abstract PriorityQueue<Result<String>> getMatchingImagesInternal(HashingContext context, String uniqueId);
 
 	/**
 	 * Append a new hashing algorithm which will be executed after all hash
@@ -125,10 +283,142 @@ public abstract class PersitentBinaryTreeMatcher extends PersistentImageMatcher
 	 */
 	public void addHashingAlgorithm(HashingAlgorithm algo, double threshold, boolean normalized) {
 		super.addHashingAlgorithm(algo, threshold, normalized);
-		BinaryTree<String> binTree = new BinaryTree<>(true);
+		HashIndex<String> binTree = createIndex(algo);
 		binTreeMap.put(algo, binTree);
 		if (cacheAddedHashes) {
-			cachedHashes.put(algo, new HashMap<>());
+			cachedHashes.put(algo, concurrent ? new ConcurrentHashMap<>() : new HashMap<>());
+		}
+	}
+
+	/**
+	 * Create the index used to store and search the hashes of the supplied
+	 * algorithm. By default a {@link BinaryTree} is used. Subclasses may return a
+	 * different index such as the
+	 * {@link com.github.kilianB.datastructures.MultiIndexHashTable} which performs
+	 * better for large collections and search radii.
+	 * <p>
+	 * Memory mapped index files already present in the index directory are
+	 * reopened if they are empty. Index files holding hashes belong to a different
+	 * matcher and are never overwritten.
+	 * 
+	 * @param algo the algorithm whose hashes will be saved in the index
+	 * @return an empty index
+	 * @throws IllegalStateException if the index file of the algorithm already
+	 *                               holds hashes
+	 * @since 3.1.0
+	 */
+	protected HashIndex<String> createIndex(HashingAlgorithm algo) {
+		if (indexDirectory != null) {
+			File indexFile = new File(indexDirectory, algo.algorithmId() + ".idx");
+			MappedHashIndex index;
+			try {
+				index = new MappedHashIndex(indexFile, true);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (index.getHashCount() > 0) {
+				closeIndex(index);
+				throw new IllegalStateException("The index file " + indexFile + " already holds the hashes of a different matcher");
+			}
+			return index;
+		}
+		return concurrent ? new ConcurrentBinaryTree<>(true) : new BinaryTree<>(true);
+	}
+
+	/**
+	 * Allow {@link #getMatchingImages(BufferedImage)} and
+	 * {@link #getMatchingImages(File)} to be called by any number of threads
+	 * while a single thread adds images. Searches do not block and see all images
+	 * whose hashes were added to the indices of all hashing algorithms before the
+	 * search started. Hashing algorithms may not be altered concurrently.
+	 * <p>
+	 * Has to be set before the first hashing algorithm is added and can not be
+	 * combined with {@link #setIndexDirectory(File) memory mapped indices}.
+	 * 
+	 * @param concurrent true to enable concurrent searches
+	 * @since 3.1.0
+	 */
+	public void setConcurrent(boolean concurrent) {
+		if (!binTreeMap.isEmpty()) {
+			throw new IllegalStateException("Concurrent searches have to be enabled before hashing algorithms are added");
+		}
+		if (concurrent && indexDirectory != null) {
+			throw new IllegalStateException("Memory mapped indices do not support concurrent searches");
+		}
+		this.concurrent = concurrent;
+	}
+
+	/**
+	 * @return true if images can be searched while images are added
+	 * @since 3.1.0
+	 */
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+
+	/**
+	 * Save the hashes of this matcher in memory mapped files located in the given
+	 * directory. Serializing the matcher will only save the location of the files,
+	 * allowing matchers with millions of images to be reconstructed in
+	 * milliseconds and to exceed the available heap space.
+	 * <p>
+	 * The directory has to be set before the first hashing algorithm is added.
+	 * 
+	 * @param indexDirectory the directory to save the index files in. null to keep
+	 *                       the hashes on the heap
+	 * @throws IOException if the directory can not be created
+	 * @since 3.1.0
+	 */
+	public void setIndexDirectory(File indexDirectory) throws IOException {
+		if (!binTreeMap.isEmpty()) {
+			throw new IllegalStateException("The index directory has to be set before hashing algorithms are added");
+		}
+		if (indexDirectory != null && concurrent) {
+			throw new IllegalStateException("Memory mapped indices do not support concurrent searches");
+		}
+		if (indexDirectory != null) {
+			Files.createDirectories(indexDirectory.toPath());
+		}
+		this.indexDirectory = indexDirectory;
+	}
+
+	/**
+	 * @return the directory the memory mapped indices are saved in or null if the
+	 *         hashes are kept on the heap
+	 * @since 3.1.0
+	 */
+	public File getIndexDirectory() {
+		return indexDirectory;
+	}
+
+	/**
+	 * Rewrite all memory mapped indices merging appended images into the search
+	 * structure. Compacting speeds up subsequent queries after many images were
+	 * added. Does nothing if the hashes are kept on the heap.
+	 * 
+	 * @throws IOException if an IO error occurs
+	 * @since 3.1.0
+	 */
+	public void compactIndices() throws IOException {
+		for (HashIndex<String> index : binTreeMap.values()) {
+			if (index instanceof MappedHashIndex) {
+				((MappedHashIndex) index).compact();
+			}
+		}
+	}
+
+	@Override
+	protected boolean isMemoryMapped() {
+		return indexDirectory != null;
+	}
+
+	private void closeIndex(HashIndex<String> index) {
+		if (index instanceof MappedHashIndex) {
+			try {
+				((MappedHashIndex) index).close();
+			} catch (IOException e) {
+				LOGGER.warning("Failed to close index " + ((MappedHashIndex) index).getFile() + ": " + e.getMessage());
+			}
 		}
 	}
 
@@ -139,7 +429,7 @@ public abstract class PersitentBinaryTreeMatcher extends PersistentImageMatcher
 	 * @return true if the algorithms was removed, false otherwise
 	 */
 	public boolean removeHashingAlgo(HashingAlgorithm algo) {
-		binTreeMap.remove(algo);
+		closeIndex(binTreeMap.remove(algo));
 		if (cacheAddedHashes) {
 			cachedHashes.remove(algo);
 		}
@@ -151,6 +441,7 @@ public abstract class PersitentBinaryTreeMatcher extends PersistentImageMatcher
 	 * one algorithm has to be supplied before imaages can be checked for similarity
 	 */
 	public void clearHashingAlgorithms() {
+		binTreeMap.values().forEach(this::closeIndex);
 		binTreeMap.clear();
 		if (cacheAddedHashes) {
 			cachedHashes.clear();
@@ -160,19 +451,344 @@ public abstract class PersitentBinaryTreeMatcher extends PersistentImageMatcher
 
 	@Override
 	protected void addImageInternal(String uniqueId, BufferedImage image) {
+		addImageInternal(uniqueId, createContext(image));
+	}
+
+	@Override
+	protected void addImageInternal(String uniqueId, HashingContext context) {
 		if (addedImages.contains(uniqueId)) {
 			LOGGER.info("An image with uniqueId already exists. Skip request");
 		}
-		for (Entry<HashingAlgorithm, AlgoSettings> entry : steps.entrySet()) {
-			HashingAlgorithm algo = entry.getKey();
-			BinaryTree<String> binTree = binTreeMap.get(algo);
-			Hash hash = algo.hash(image);
-			binTree.addHash(algo.hash(image), uniqueId);
+		Hash[] hashes = new Hash[steps.size()];
+		int index = 0;
+		for (HashingAlgorithm algo : steps.keySet()) {
+			hashes[index++] = algo.hash(context);
+		}
+		addHashes(uniqueId, hashes);
+	}
+
+	/**
+	 * Add the hashes of an image to the indices.
+	 * 
+	 * @param uniqueId the unique id to refer to during lookup
+	 * @param hashes   the hashes of the image in the order of the hashing
+	 *                 algorithms
+	 */
+	private void addHashes(String uniqueId, Hash[] hashes) {
+		MetricsListener listener = metricsListener;
+		long start = listener == null ? 0 : System.nanoTime();
+		if (writeAheadLog != null) {
+			try {
+				// A single record per image, a crash never restores some of its hashes only
+				writeAheadLog.append(uniqueId, hashes);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		int index = 0;
+		for (HashingAlgorithm algo : steps.keySet()) {
+			Hash hash = hashes[index++];
+			binTreeMap.get(algo).addHash(hash, uniqueId);
 			if (cacheAddedHashes) {
 				cachedHashes.get(algo).put(uniqueId, hash);
 			}
 		}
 		addedImages.add(uniqueId);
+		if (listener != null) {
+			listener.record(Stage.INDEX, System.nanoTime() - start);
+		}
+
+		if (checkpointInterval > 0 && ++imagesSinceCheckpoint >= checkpointInterval) {
+			try {
+				checkpoint(checkpointFile);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Add the images to the matcher using multiple threads. See
+	 * {@link #addImages(Stream, int, IngestionListener)}.
+	 * 
+	 * @param images      the images to add
+	 * @param parallelism the number of threads decoding and hashing images
+	 * @return the number of images added
+	 * @throws IOException if an image can not be read
+	 * @since 3.1.0
+	 */
+	public long addImages(Collection<File> images, int parallelism) throws IOException {
+		return addImages(images.stream().map(File::toPath), parallelism, null);
+	}
+
+	/**
+	 * Add the images to the matcher using multiple threads. Images are decoded on
+	 * a pool of worker threads, after which every hashing algorithm hashes the
+	 * image as an individual task. The hashes are inserted into the indices by the
+	 * calling thread in the order the images are supplied, therefore the indices
+	 * do not have to be thread safe.
+	 * <p>
+	 * At most 4 images per thread are processed at the same time. The stream is
+	 * consumed lazily, blocking while the insertion of older images is pending,
+	 * which bounds the memory required to ingest arbitrary large collections.
+	 * <p>
+	 * Equivalent to calling {@link #addImage(File)} for each image. The absolute
+	 * path of the image is used as unique id.
+	 * 
+	 * @param images      the images to add
+	 * @param parallelism the number of threads decoding and hashing images
+	 * @param listener    notified about added and failed images. May be null in
+	 *                    which case the first failure aborts the ingestion.
+	 * @return the number of images added
+	 * @throws IOException if an image can not be read and the listener did not
+	 *                     choose to skip it. Images preceding the failed image
+	 *                     are added to the matcher.
+	 * @since 3.1.0
+	 */
+	public long addImages(Stream<Path> images, int parallelism, IngestionListener listener) throws IOException {
+		if (steps.isEmpty()) {
+			throw new IllegalStateException("Please supply at least one hashing algorithm prior to invoking the match method");
+		}
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("The parallelism has to be positive");
+		}
+
+		List<HashingAlgorithm> algorithms = initializeAlgorithms();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, new NamedThreadFactory("ImageIngestion", true));
+		ArrayDeque<PendingImage> pending = new ArrayDeque<>();
+		int maxPending = parallelism * 4;
+		long added = 0;
+		try {
+			Iterator<Path> iterator = images.iterator();
+			while (iterator.hasNext()) {
+				Path path = iterator.next();
+				// All algorithms share the preprocessing of the decoded image
+				CompletableFuture<HashingContext> decoded = CompletableFuture.supplyAsync(() -> createContext(path), executor);
+				List<CompletableFuture<Hash>> hashes = new ArrayList<>(algorithms.size());
+				for (HashingAlgorithm algo : algorithms) {
+					hashes.add(decoded.thenApplyAsync(algo::hash, executor));
+				}
+				pending.add(new PendingImage(path, hashes));
+				if (pending.size() >= maxPending) {
+					added = insertImage(pending.poll(), added, listener);
+				}
+			}
+			while (!pending.isEmpty()) {
+				added = insertImage(pending.poll(), added, listener);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return added;
+	}
+
+	/**
+	 * Create the context shared by all algorithms hashing the image in the same way
+	 * as {@link #addImage(File)}
+	 */
+	private HashingContext createContext(Path path) {
+		try {
+			return createContext(path.toFile());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Wait until the image is hashed and add it to the indices.
+	 * 
+	 * @return the number of images added including the supplied image
+	 */
+	private long insertImage(PendingImage image, long added, IngestionListener listener) throws IOException {
+		Hash[] hashes = new Hash[image.hashes.size()];
+		try {
+			for (int index = 0; index < hashes.length; index++) {
+				hashes[index] = image.hashes.get(index).join();
+			}
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			if (listener != null && listener.imageFailed(image.path, (Exception) cause)) {
+				return added;
+			}
+			throw new IOException("Failed to add image " + image.path, cause);
+		}
+		addHashes(image.path.toAbsolutePath().toString(), hashes);
+		lockedState = true;
+		added++;
+		if (listener != null) {
+			listener.imageAdded(image.path, added);
+		}
+		return added;
+	}
+
+	/**
+	 * An image whose hashes are computed by the ingestion pool
+	 */
+	private static class PendingImage {
+		private final Path path;
+		private final List<CompletableFuture<Hash>> hashes;
+
+		PendingImage(Path path, List<CompletableFuture<Hash>> hashes) {
+			this.path = path;
+			this.hashes = hashes;
+		}
+	}
+
+	/**
+	 * Write all hashes added to this matcher to the log. Records already present
+	 * in the log are replayed into the matcher, restoring the images added since
+	 * the last {@link #checkpoint(File) checkpoint}.
+	 * <p>
+	 * Opposed to {@link #serializeState(File)} appending to the log only costs a
+	 * few bytes per hash, allowing to continuously add images while staying
+	 * durable. Records lacking the hash of a hashing algorithm of this matcher are
+	 * skipped.
+	 * 
+	 * @param log the log to write to
+	 * @return the number of records replayed
+	 * @throws IOException if an IO error occurs while replaying the log
+	 * @since 3.1.0
+	 */
+	public long attachLog(WriteAheadLog log) throws IOException {
+		Map<Integer, HashingAlgorithm> algorithms = new HashMap<>();
+		for (HashingAlgorithm algo : binTreeMap.keySet()) {
+			algorithms.put(algo.algorithmId(), algo);
+		}
+		// A crash between writing a checkpoint and resetting the log leaves records of
+		// images already contained in the checkpoint
+		HashSet<String> checkpointedImages = new HashSet<>(addedImages);
+		boolean[] replayed = new boolean[1];
+		long records = log.replay((uniqueId, hashes) -> {
+			if (checkpointedImages.contains(uniqueId)) {
+				return;
+			}
+			Map<HashingAlgorithm, Hash> imageHashes = new HashMap<>();
+			for (Hash hash : hashes) {
+				HashingAlgorithm algo = algorithms.get(hash.getAlgorithmId());
+				if (algo == null) {
+					LOGGER.warning("Skip hash of unknown hashing algorithm " + hash.getAlgorithmId() + " in log record of " + uniqueId);
+				} else {
+					imageHashes.put(algo, hash);
+				}
+			}
+			if (imageHashes.size() != binTreeMap.size()) {
+				LOGGER.warning("Skip log record of " + uniqueId + " lacking hashes of the hashing algorithms");
+				return;
+			}
+			for (Map.Entry<HashingAlgorithm, Hash> entry : imageHashes.entrySet()) {
+				binTreeMap.get(entry.getKey()).addHash(entry.getValue(), uniqueId);
+				if (cacheAddedHashes) {
+					cachedHashes.get(entry.getKey()).put(uniqueId, entry.getValue());
+				}
+			}
+			addedImages.add(uniqueId);
+			replayed[0] = true;
+		});
+		if (replayed[0]) {
+			lockedState = true;
+		}
+		writeAheadLog = log;
+		return records;
+	}
+
+	/**
+	 * Commit and close the attached log. Further images are no longer logged.
+	 * 
+	 * @throws IOException if an IO error occurs
+	 * @since 3.1.0
+	 */
+	public void detachLog() throws IOException {
+		if (writeAheadLog != null) {
+			writeAheadLog.close();
+			writeAheadLog = null;
+		}
+	}
+
+	/**
+	 * Save the state of this matcher to the snapshot file and remove all records
+	 * from the attached log. The snapshot is written to a temporary file first
+	 * which atomically replaces the previous snapshot.
+	 * 
+	 * @param snapshotFile the file to save the matcher to
+	 * @throws IOException if an IO error occurs
+	 * @since 3.1.0
+	 */
+	public void checkpoint(File snapshotFile) throws IOException {
+		File temporary = new File(snapshotFile.getPath() + ".tmp");
+		serializeState(temporary);
+		Files.move(temporary.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		if (writeAheadLog != null) {
+			writeAheadLog.reset();
+		}
+		imagesSinceCheckpoint = 0;
+	}
+
+	/**
+	 * Automatically {@link #checkpoint(File) checkpoint} the matcher after the
+	 * given amount of images were added, bounding the size of the log and the time
+	 * it takes to replay it.
+	 * 
+	 * @param snapshotFile the file to save the matcher to
+	 * @param interval     the number of images added between two checkpoints. 0 to
+	 *                     disable automatic checkpoints
+	 * @since 3.1.0
+	 */
+	public void setCheckpointInterval(File snapshotFile, int interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException("The checkpoint interval may not be negative");
+		}
+		this.checkpointFile = snapshotFile;
+		this.checkpointInterval = interval;
+		this.imagesSinceCheckpoint = 0;
+	}
+
+	/**
+	 * Reconstruct a matcher from its last checkpoint and replay all images added
+	 * afterwards from the log. The log stays attached to the returned matcher.
+	 * 
+	 * @param snapshotFile the file the matcher was checkpointed to
+	 * @param logFile      the log attached to the matcher
+	 * @return the restored matcher
+	 * @throws ClassNotFoundException Class of a serialized object cannot be found
+	 * @throws IOException            if an IO error occurs
+	 * @since 3.1.0
+	 */
+	public static PersitentBinaryTreeMatcher recover(File snapshotFile, File logFile) throws ClassNotFoundException, IOException {
+		PersitentBinaryTreeMatcher matcher = (PersitentBinaryTreeMatcher) reconstructState(snapshotFile, false);
+		matcher.attachLog(new WriteAheadLog(logFile));
+		return matcher;
+	}
+
+	// Serialization
+	private void writeObject(ObjectOutputStream oos) throws IOException {
+		// Memory mapped indices already save the ids of the added images
+		HashSet<String> images = addedImages;
+		if (isMemoryMapped()) {
+			addedImages = null;
+		}
+		try {
+			oos.defaultWriteObject();
+		} finally {
+			addedImages = images;
+		}
+	}
+
+	private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+		ois.defaultReadObject();
+		if (addedImages == null) {
+			addedImages = new HashSet<>();
+			// Every index holds the hashes of all images
+			Iterator<HashIndex<String>> indices = binTreeMap.values().iterator();
+			if (indices.hasNext()) {
+				((MappedHashIndex) indices.next()).forEachValue(addedImages::add);
+			}
+		}
 	}
 
 	@Override
@@ -226,11 +842,24 @@ public abstract class PersitentBinaryTreeMatcher extends PersistentImageMatcher
 	}
 
 	protected Hash getHash(HashingAlgorithm algo, String uniqueId, BufferedImage bImage) {
+		return getHash(algo, uniqueId, bImage == null ? null : createContext(bImage));
+	}
+
+	/**
+	 * Get the cached hash of the image or compute the hash from the context.
+	 * 
+	 * @param algo     the hashing algorithm
+	 * @param uniqueId the uniqueId of a previously cached image or null
+	 * @param context  the context of the image shared by all algorithms or null
+	 * @return the hash of the image
+	 * @since 3.1.0
+	 */
+	protected Hash getHash(HashingAlgorithm algo, String uniqueId, HashingContext context) {
 		if (uniqueId != null && cachedHashes.get(algo).containsKey(uniqueId)) {
 			return cachedHashes.get(algo).get(uniqueId);
 		}
-		if (bImage != null) {
-			return algo.hash(bImage);
+		if (context != null) {
+			return algo.hash(context);
 		}
 		throw new IllegalStateException("No hash and buffered image supplied. Can't retrieve hash");
 	}
@@ -240,7 +869,11 @@ public abstract class PersitentBinaryTreeMatcher extends PersistentImageMatcher
 	 * internal view of the saved images
 	 */
 	public void printAllTrees() {
-		binTreeMap.entrySet().forEach(c -> c.getValue().printTree());
+		binTreeMap.entrySet().forEach(c -> {
+			if (c.getValue() instanceof AbstractBinaryTree) {
+				((AbstractBinaryTree<?>) c.getValue()).printTree();
+			}
+		});
 	}
 
 }
@@ -0,0 +1,431 @@
+package com.github.kilianB.matcher.persistent;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.github.kilianB.concurrency.NamedThreadFactory;
+import com.jstarcraft.dip.hash.Hash;
+
+/**
+ * An append only log of (uniqueId, hashes) records used to durably persist the
+ * images added to a {@link PersitentBinaryTreeMatcher} without serializing the
+ * entire matcher. Each record holds all hashes of a single image, therefore an
+ * image is either restored completely or not at all.
+ * <p>
+ *
+ * Records are buffered and written in groups. A group is committed, written and
+ * forced to the storage device, as soon as {@link #getGroupSize()} records are
+ * buffered or {@link #getGroupDelay()} milliseconds passed since the first
+ * record of the group was appended. Records appended but not yet committed are
+ * lost in case of a crash, {@link #commit()} can be called to force a commit.
+ * If a commit triggered by the delay fails, the records stay buffered and the
+ * failure is thrown by the next call to {@link #append(String, Hash...)},
+ * {@link #commit()} or {@link #close()}.
+ * <p>
+ *
+ * Each record is guarded by a checksum. Replaying the log stops at the first
+ * incomplete or corrupted record, which is the result of a crash during a
+ * commit, and truncates the log at this position.
+ *
+ * <pre>
+ * Header  magic(8) version(4)
+ * Record  payloadLength(4) crc32(4) idLength(4) id(idLength) hashCount(4) hash(hashCount)
+ * Hash    algorithmId(4) bitResolution(4) words(8 * words)
+ * </pre>
+ *
+ * This class is thread safe.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class WriteAheadLog implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(WriteAheadLog.class.getSimpleName());
+
+	/** "JDIPWAL\0" */
+	private static final long MAGIC = 0x4A44495057414C00L;
+
+	/**
+	 * The version of the file format written by this class
+	 */
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 12;
+
+	/** Size of the length and checksum preceding every record */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	/** Records larger than this are considered corrupted */
+	private static final int MAX_PAYLOAD_SIZE = 1 << 24;
+
+	/** The default number of records committed together */
+	public static final int DEFAULT_GROUP_SIZE = 1024;
+
+	/** The default time in milliseconds a record may stay uncommitted */
+	public static final long DEFAULT_GROUP_DELAY = 50;
+
+	private final File file;
+
+	private final FileChannel channel;
+
+	private final int groupSize;
+
+	private final long groupDelay;
+
+	/** Lazily created executor committing groups which reached their delay */
+	private ScheduledExecutorService scheduler;
+
+	private ScheduledFuture<?> scheduledCommit;
+
+	/** Serialized records not yet written to the file */
+	private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+	private int bufferedRecords;
+
+	/** The end of the last committed record in the file */
+	private long committedSize;
+
+	/** The failure of a commit triggered by the delay not yet thrown */
+	private IOException failure;
+
+	/** Number of records saved in the log */
+	private long recordCount;
+
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * Open the log saved in the file using the default group size and delay. If the
+	 * file does not exist an empty log is created.
+	 *
+	 * @param file the file backing the log
+	 * @throws IOException if the file can not be opened or is not a valid log
+	 */
+	public WriteAheadLog(File file) throws IOException {
+		this(file, DEFAULT_GROUP_SIZE, DEFAULT_GROUP_DELAY);
+	}
+
+	/**
+	 * Open the log saved in the file. If the file does not exist an empty log is
+	 * created.
+	 *
+	 * @param file       the file backing the log
+	 * @param groupSize  the number of records committed together. A group size of
+	 *                   1 commits every record immediately.
+	 * @param groupDelay the maximum time in milliseconds a record stays
+	 *                   uncommitted. A delay of 0 only commits full groups.
+	 * @throws IOException if the file can not be opened or is not a valid log
+	 */
+	public WriteAheadLog(File file, int groupSize, long groupDelay) throws IOException {
+		if (groupSize <= 0) {
+			throw new IllegalArgumentException("The group size has to be positive");
+		}
+		if (groupDelay < 0) {
+			throw new IllegalArgumentException("The group delay may not be negative");
+		}
+		this.file = file;
+		this.groupSize = groupSize;
+		this.groupDelay = groupDelay;
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (channel.size() < HEADER_SIZE) {
+			writeHeader();
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(header, 0);
+			if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+				channel.close();
+				throw new IOException("Not a supported write ahead log: " + file);
+			}
+			committedSize = channel.size();
+		}
+	}
+
+	/**
+	 * Append the record of an image to the log. The record is committed together
+	 * with the other records of its group.
+	 *
+	 * @param uniqueId the id of the image the hashes belong to
+	 * @param hashes   the hashes of the image. The algorithm id of each hash is
+	 *                 saved alongside the hash
+	 * @throws IOException if a group is committed and an IO error occurs, or a
+	 *                     previous commit triggered by the delay failed. The
+	 *                     record is not appended in the latter case.
+	 */
+	public synchronized void append(String uniqueId, Hash... hashes) throws IOException {
+		throwFailure();
+		byte[] id = uniqueId.getBytes(StandardCharsets.UTF_8);
+		long length = 8 + id.length;
+		for (Hash hash : hashes) {
+			length += 8 + 8 * ((hash.getBitResolution() + 63) >>> 6);
+		}
+		if (length > MAX_PAYLOAD_SIZE) {
+			throw new IllegalArgumentException("The record of " + uniqueId + " exceeds " + MAX_PAYLOAD_SIZE + " bytes");
+		}
+		int payloadLength = (int) length;
+
+		if (buffer.remaining() < RECORD_HEADER_SIZE + payloadLength) {
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() << 1, buffer.position() + RECORD_HEADER_SIZE + payloadLength));
+			buffer.flip();
+			grown.put(buffer);
+			buffer = grown;
+		}
+
+		int start = buffer.position();
+		buffer.putInt(payloadLength);
+		buffer.putInt(0);
+		buffer.putInt(id.length);
+		buffer.put(id);
+		buffer.putInt(hashes.length);
+		for (Hash hash : hashes) {
+			int bitResolution = hash.getBitResolution();
+			int wordCount = (bitResolution + 63) >>> 6;
+			buffer.putInt(hash.getAlgorithmId());
+			buffer.putInt(bitResolution);
+			long[] words = hash.getHashWords();
+			for (int i = 0; i < wordCount; i++) {
+				buffer.putLong(i < words.length ? words[i] : 0L);
+			}
+		}
+		crc.reset();
+		crc.update(buffer.array(), start + RECORD_HEADER_SIZE, payloadLength);
+		buffer.putInt(start + 4, (int) crc.getValue());
+
+		bufferedRecords++;
+		recordCount++;
+
+		if (bufferedRecords >= groupSize) {
+			commit();
+		} else if (groupDelay > 0 && scheduledCommit == null) {
+			scheduleCommit();
+		}
+	}
+
+	private void scheduleCommit() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("WriteAheadLog", true));
+		}
+		scheduledCommit = scheduler.schedule(() -> {
+			synchronized (this) {
+				scheduledCommit = null;
+				try {
+					write();
+				} catch (IOException e) {
+					LOGGER.severe("Failed to commit write ahead log " + file + ": " + e.getMessage());
+					failure = e;
+				}
+			}
+		}, groupDelay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Write all buffered records to the file and force them to the storage device.
+	 *
+	 * @throws IOException if an IO error occurs, or a previous commit triggered by
+	 *                     the delay failed. The records stay buffered in both
+	 *                     cases and are written by the next commit.
+	 */
+	public synchronized void commit() throws IOException {
+		if (scheduledCommit != null) {
+			scheduledCommit.cancel(false);
+			scheduledCommit = null;
+		}
+		throwFailure();
+		write();
+	}
+
+	/**
+	 * Write the buffered records behind the last committed record. The buffer is
+	 * only cleared once the records are forced to the storage device, a failed
+	 * write is therefore repeated as a whole by the next commit.
+	 */
+	private void write() throws IOException {
+		if (bufferedRecords == 0 || !channel.isOpen()) {
+			return;
+		}
+		ByteBuffer records = buffer.duplicate();
+		records.flip();
+		long position = committedSize;
+		while (records.hasRemaining()) {
+			position += channel.write(records, position);
+		}
+		channel.force(false);
+		committedSize = position;
+		buffer.clear();
+		bufferedRecords = 0;
+	}
+
+	/**
+	 * Throw the failure of a commit triggered by the delay once
+	 */
+	private void throwFailure() throws IOException {
+		IOException cause = failure;
+		if (cause != null) {
+			failure = null;
+			throw new IOException("Failed to commit write ahead log " + file, cause);
+		}
+	}
+
+	/**
+	 * Read all committed records of the log. Incomplete or corrupted records at the
+	 * end of the log are removed.
+	 *
+	 * @param consumer called with the id and the hashes of each image in the order
+	 *                 the records were appended
+	 * @return the number of records replayed
+	 * @throws IOException if an IO error occurs
+	 */
+	public synchronized long replay(BiConsumer<String, Hash[]> consumer) throws IOException {
+		commit();
+		long size = channel.size();
+		long position = HEADER_SIZE;
+		long records = 0;
+		ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		while (position + RECORD_HEADER_SIZE <= size) {
+			recordHeader.clear();
+			readFully(recordHeader, position);
+			int payloadLength = recordHeader.getInt();
+			int checksum = recordHeader.getInt();
+			if (payloadLength < 8 || payloadLength > MAX_PAYLOAD_SIZE || position + RECORD_HEADER_SIZE + payloadLength > size) {
+				break;
+			}
+			ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+			readFully(payload, position + RECORD_HEADER_SIZE);
+			crc.reset();
+			crc.update(payload.array(), 0, payloadLength);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			byte[] id = new byte[payload.getInt()];
+			payload.get(id);
+			Hash[] hashes = new Hash[payload.getInt()];
+			for (int h = 0; h < hashes.length; h++) {
+				int algorithmId = payload.getInt();
+				int bitResolution = payload.getInt();
+				long[] words = new long[(bitResolution + 63) >>> 6];
+				for (int i = 0; i < words.length; i++) {
+					words[i] = payload.getLong();
+				}
+				hashes[h] = new Hash(words, bitResolution, algorithmId);
+			}
+			consumer.accept(new String(id, StandardCharsets.UTF_8), hashes);
+			records++;
+			position += RECORD_HEADER_SIZE + payloadLength;
+		}
+		if (position != size) {
+			LOGGER.warning("Truncate incomplete record of write ahead log " + file);
+			channel.truncate(position);
+			channel.force(false);
+		}
+		committedSize = position;
+		recordCount = records;
+		return records;
+	}
+
+	/**
+	 * Remove all records from the log. Called after the state described by the
+	 * records was saved in a checkpoint.
+	 *
+	 * @throws IOException if an IO error occurs
+	 */
+	public synchronized void reset() throws IOException {
+		if (scheduledCommit != null) {
+			scheduledCommit.cancel(false);
+			scheduledCommit = null;
+		}
+		buffer.clear();
+		bufferedRecords = 0;
+		recordCount = 0;
+		failure = null;
+		channel.truncate(HEADER_SIZE);
+		channel.force(false);
+		committedSize = HEADER_SIZE;
+	}
+
+	/**
+	 * @return the number of records saved in the log including records not yet
+	 *         committed
+	 */
+	public synchronized long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * @return the number of records committed together
+	 */
+	public int getGroupSize() {
+		return groupSize;
+	}
+
+	/**
+	 * @return the maximum time in milliseconds a record stays uncommitted
+	 */
+	public long getGroupDelay() {
+		return groupDelay;
+	}
+
+	/**
+	 * @return the file backing the log
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Commit all buffered records and close the file.
+	 *
+	 * @throws IOException if the records can not be committed, or a previous
+	 *                     commit triggered by the delay failed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (scheduledCommit != null) {
+			scheduledCommit.cancel(false);
+			scheduledCommit = null;
+		}
+		if (scheduler != null) {
+			scheduler.shutdown();
+		}
+		if (channel.isOpen()) {
+			try {
+				// Try to save the buffered records before reporting an earlier failure
+				write();
+			} finally {
+				channel.close();
+			}
+			throwFailure();
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putLong(MAGIC).putInt(VERSION);
+		header.flip();
+		while (header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+		channel.truncate(HEADER_SIZE);
+		channel.force(false);
+		committedSize = HEADER_SIZE;
+	}
+
+	private void readFully(ByteBuffer target, long position) throws IOException {
+		while (target.hasRemaining()) {
+			if (channel.read(target, position + target.position()) < 0) {
+				throw new IOException("Unexpected end of write ahead log " + file);
+			}
+		}
+		target.flip();
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.github.kilianB.matcher.video;
+
+/**
+ * The best alignment of a clip within a video found by the
+ * {@link VideoMatcher}.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class Alignment implements Comparable<Alignment> {
+
+	private final String id;
+
+	private final int offset;
+
+	private final int overlap;
+
+	private final long timeOffset;
+
+	private final double distance;
+
+	/**
+	 * @param id         the unique id of the video
+	 * @param offset     the index of the frame of the video aligned with the first
+	 *                   frame of the clip
+	 * @param overlap    the number of aligned frames
+	 * @param timeOffset the difference of the timestamps of the aligned frames in
+	 *                   microseconds
+	 * @param distance   the mean normalized hamming distance of the aligned frames
+	 */
+	public Alignment(String id, int offset, int overlap, long timeOffset, double distance) {
+		this.id = id;
+		this.offset = offset;
+		this.overlap = overlap;
+		this.timeOffset = timeOffset;
+		this.distance = distance;
+	}
+
+	/**
+	 * @return the unique id of the video
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the index of the frame of the video aligned with the first frame of
+	 *         the clip. If the clip starts before the video the negated index of
+	 *         the frame of the clip aligned with the first frame of the video.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the number of aligned frames
+	 */
+	public int getOverlap() {
+		return overlap;
+	}
+
+	/**
+	 * @return the time to add to the timestamps of the clip to obtain the
+	 *         timestamps of the aligned frames of the video in microseconds
+	 */
+	public long getTimeOffset() {
+		return timeOffset;
+	}
+
+	/**
+	 * @return the mean normalized hamming distance of the aligned frames [0 - 1]
+	 */
+	public double getDistance() {
+		return distance;
+	}
+
+	@Override
+	public int compareTo(Alignment o) {
+		return Double.compare(distance, o.distance);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Alignment Distance:%.3f Offset:%d Overlap:%d, Id:%s", distance, offset, overlap, id);
+	}
+
+}
@@ -0,0 +1,210 @@
+package com.github.kilianB.matcher.video;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.kilianB.Require;
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.video.HashSequence;
+
+/**
+ * Find videos containing near duplicates of a clip by aligning their hash
+ * sequences.
+ * <p>
+ *
+ * The clip is shifted in time along each video. For every time offset each
+ * frame of the clip within the duration of the video is paired with the frame
+ * of the video sampled closest to the shifted timestamp of the clip frame. The
+ * offset with the lowest mean normalized hamming distance of the paired frames
+ * is the alignment of the clip. The offsets tried start the clip at each frame
+ * of the video and the video at each frame of the clip.
+ * <p>
+ *
+ * Pairing frames by their timestamps instead of their index allows sequences
+ * sampled at irregular intervals, e.g. on scene changes, to be aligned. The
+ * frames of the clip still only correspond to the frames of the video if both
+ * sequences are sampled by a {@link com.jstarcraft.dip.video.VideoHasher}
+ * configured equally.
+ * <p>
+ *
+ * Aligning a clip of m frames with a video of n frames requires up to m * (m +
+ * n) hash comparisons. Offsets are abandoned as soon as their distance exceeds
+ * the best alignment found so far.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class VideoMatcher {
+
+	private final Map<String, HashSequence> videos = new ConcurrentHashMap<>();
+
+	private final double maxDistance;
+
+	private final int minimumOverlap;
+
+	/**
+	 * @param maxDistance    the maximum mean normalized hamming distance of the
+	 *                       aligned frames of a matching video [0 - 1]
+	 * @param minimumOverlap the minimum number of frames a clip has to overlap a
+	 *                       video. Clips or videos with fewer frames have to
+	 *                       overlap entirely.
+	 */
+	public VideoMatcher(double maxDistance, int minimumOverlap) {
+		this.maxDistance = Require.inRange(maxDistance, 0d, 1d, "The distance has to be within [0 - 1]");
+		this.minimumOverlap = Require.positiveValue(minimumOverlap, "The minimum overlap has to be positive");
+	}
+
+	/**
+	 * Add the hashes of a video to the matcher
+	 *
+	 * @param id       the unique id of the video
+	 * @param sequence the hashes of the video
+	 */
+	public void addVideo(String id, HashSequence sequence) {
+		videos.put(id, sequence);
+	}
+
+	/**
+	 * Remove a video from the matcher
+	 *
+	 * @param id the unique id of the video
+	 * @return true if the video was removed
+	 */
+	public boolean removeVideo(String id) {
+		return videos.remove(id) != null;
+	}
+
+	/**
+	 * Align the clip with all videos of the matcher
+	 *
+	 * @param clip the hashes of the clip
+	 * @return the alignments of all matching videos sorted by ascending distance
+	 * @throws IllegalArgumentException if the clip was hashed by a different
+	 *                                  algorithm than a video
+	 */
+	public List<Alignment> getMatchingVideos(HashSequence clip) {
+		List<Alignment> matches = new ArrayList<>();
+		for (Entry<String, HashSequence> video : videos.entrySet()) {
+			Alignment alignment = align(video.getKey(), clip, video.getValue(), minimumOverlap, maxDistance);
+			if (alignment != null) {
+				matches.add(alignment);
+			}
+		}
+		Collections.sort(matches);
+		return matches;
+	}
+
+	/**
+	 * Find the best alignment of the clip within the video
+	 *
+	 * @param id             the id reported in the alignment
+	 * @param clip           the hashes of the clip
+	 * @param video          the hashes of the video
+	 * @param minimumOverlap the minimum number of aligned frames. Clips or videos
+	 *                       with fewer frames have to overlap entirely.
+	 * @param maxDistance    the maximum mean normalized hamming distance of the
+	 *                       aligned frames
+	 * @return the alignment with the lowest distance or null if no alignment is
+	 *         within the maximum distance
+	 * @throws IllegalArgumentException if the clip and the video were hashed by
+	 *                                  different algorithms
+	 */
+	public static Alignment align(String id, HashSequence clip, HashSequence video, int minimumOverlap, double maxDistance) {
+		int clipSize = clip.size();
+		int videoSize = video.size();
+		if (clipSize == 0 || videoSize == 0) {
+			return null;
+		}
+		Hash first = clip.getHash(0);
+		if (first.getAlgorithmId() != video.getHash(0).getAlgorithmId()) {
+			throw new IllegalArgumentException("Can't compare two hash values created by different algorithms");
+		}
+		long[][] clipWords = getHashWords(clip);
+		long[][] videoWords = getHashWords(video);
+		long[] clipTimestamps = getTimestamps(clip);
+		long[] videoTimestamps = getTimestamps(video);
+		int bits = first.getBitResolution();
+		int overlap = Math.min(minimumOverlap, Math.min(clipSize, videoSize));
+
+		int bestOffset = 0;
+		int bestOverlap = 0;
+		long bestTimeOffset = 0;
+		double bestDistance = maxDistance;
+		boolean found = false;
+		// Start the clip at every frame of the video, then the video at every but the
+		// first frame of the clip
+		for (int offset = 1 - clipSize; offset < videoSize; offset++) {
+			long timeOffset = offset >= 0 ? videoTimestamps[offset] - clipTimestamps[0] : videoTimestamps[0] - clipTimestamps[-offset];
+			// The clip frames shifted into the duration of the video
+			int from = lowerBound(clipTimestamps, videoTimestamps[0] - timeOffset);
+			int to = lowerBound(clipTimestamps, videoTimestamps[videoSize - 1] - timeOffset + 1);
+			int count = to - from;
+			if (count < overlap) {
+				continue;
+			}
+			// Abandon the offset once it can't beat the best alignment
+			long limit = (long) Math.floor(bestDistance * count * bits);
+			long distance = 0;
+			int nearest = Math.max(0, lowerBound(videoTimestamps, clipTimestamps[from] + timeOffset) - 1);
+			for (int index = from; index < to && distance <= limit; index++) {
+				long timestamp = clipTimestamps[index] + timeOffset;
+				while (nearest + 1 < videoSize && Math.abs(videoTimestamps[nearest + 1] - timestamp) <= Math.abs(videoTimestamps[nearest] - timestamp)) {
+					nearest++;
+				}
+				distance += Hash.hammingDistance(clipWords[index], videoWords[nearest]);
+			}
+			if (distance <= limit) {
+				double mean = distance / (double) count / bits;
+				if (!found || mean < bestDistance || mean == bestDistance && count > bestOverlap) {
+					found = true;
+					bestOffset = offset;
+					bestOverlap = count;
+					bestTimeOffset = timeOffset;
+					bestDistance = mean;
+				}
+			}
+		}
+		if (!found) {
+			return null;
+		}
+		return new Alignment(id, bestOffset, bestOverlap, bestTimeOffset, bestDistance);
+	}
+
+	/**
+	 * @return the index of the first timestamp greater or equal to the key
+	 */
+	private static int lowerBound(long[] timestamps, long key) {
+		int low = 0;
+		int high = timestamps.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (timestamps[middle] < key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private static long[] getTimestamps(HashSequence sequence) {
+		long[] timestamps = new long[sequence.size()];
+		for (int index = 0; index < timestamps.length; index++) {
+			timestamps[index] = sequence.getTimestamp(index);
+		}
+		return timestamps;
+	}
+
+	private static long[][] getHashWords(HashSequence sequence) {
+		long[][] words = new long[sequence.size()][];
+		for (int index = 0; index < words.length; index++) {
+			words[index] = sequence.getHash(index).getHashWords();
+		}
+		return words;
+	}
+
+}
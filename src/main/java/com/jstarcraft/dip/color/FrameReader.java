@@ -0,0 +1,286 @@
+package com.jstarcraft.dip.color;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+
+import org.w3c.dom.NodeList;
+
+/**
+ * Decode the frames of animated and multi-page images (e.g. GIF or TIFF) one
+ * at a time.
+ * <p>
+ *
+ * Only the frame currently read is kept in memory, therefore images with an
+ * arbitrary number of frames can be processed. Frames are decoded at the
+ * smallest subsampled resolution at least as large as the requested resolution
+ * (see {@link ImageDecoder}).
+ * <p>
+ *
+ * The frames of animated GIF images only contain the area changed relative to
+ * the previous frame. They are composed onto a canvas of the size of the
+ * animation respecting the disposal method of the previous frame, resulting in
+ * the frames as displayed. GIF frames are not subsampled.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public final class FrameReader implements Closeable {
+
+	private static final String GIF_STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+
+	private static final String GIF_IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+
+	private final ImageInputStream stream;
+
+	private final ImageReader reader;
+
+	private final int width;
+
+	private final int height;
+
+	/** The index of the next frame */
+	private int index;
+
+	/** The display time of the next frame in microseconds */
+	private long timestamp;
+
+	/** The display time of the last read frame in microseconds */
+	private long frameTimestamp;
+
+	// Composition of animated GIF images
+
+	private final boolean animated;
+
+	private BufferedImage canvas;
+
+	/** The copy of the canvas area restored after the last frame, or null */
+	private BufferedImage previous;
+
+	private String disposal;
+
+	private int left;
+
+	private int top;
+
+	private int frameWidth;
+
+	private int frameHeight;
+
+	/**
+	 * Open the image file
+	 *
+	 * @param file   the file pointing to the image
+	 * @param width  the minimum width of the decoded frames
+	 * @param height the minimum height of the decoded frames
+	 * @throws IOException if the file can't be read or no registered reader is
+	 *                     able to decode the file
+	 */
+	public FrameReader(File file, int width, int height) throws IOException {
+		this(createStream(file), width, height);
+	}
+
+	/**
+	 * Open the image read from the stream. The stream is not closed.
+	 *
+	 * @param input  the stream containing the image
+	 * @param width  the minimum width of the decoded frames
+	 * @param height the minimum height of the decoded frames
+	 * @throws IOException if no registered reader is able to decode the stream
+	 */
+	public FrameReader(InputStream input, int width, int height) throws IOException {
+		this(createStream(input), width, height);
+	}
+
+	private FrameReader(ImageInputStream stream, int width, int height) throws IOException {
+		this.stream = stream;
+		this.width = width;
+		this.height = height;
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+		if (!readers.hasNext()) {
+			stream.close();
+			throw new IIOException("No image reader found");
+		}
+		reader = readers.next();
+		// Seeking forward only allows the stream to discard the frames already read
+		reader.setInput(stream, true, false);
+		animated = "gif".equalsIgnoreCase(reader.getFormatName());
+	}
+
+	private static ImageInputStream createStream(File file) throws IOException {
+		if (!file.canRead()) {
+			throw new IIOException("Can't read input file!");
+		}
+		ImageInputStream stream = ImageIO.createImageInputStream(file);
+		if (stream == null) {
+			throw new IIOException("Can't create an ImageInputStream!");
+		}
+		return stream;
+	}
+
+	private static ImageInputStream createStream(InputStream input) throws IOException {
+		ImageInputStream stream = ImageIO.createImageInputStream(input);
+		if (stream == null) {
+			throw new IIOException("Can't create an ImageInputStream!");
+		}
+		return stream;
+	}
+
+	/**
+	 * Decode the next frame. The frames of animated GIF images share the same
+	 * image, which is only valid until the next frame is read.
+	 *
+	 * @return the next frame or null if all frames were read
+	 * @throws IOException if an error occurs during reading the frame
+	 */
+	public BufferedImage read() throws IOException {
+		BufferedImage frame;
+		try {
+			frame = animated ? compose() : readSubsampled();
+		} catch (IndexOutOfBoundsException exception) {
+			// The number of frames is only known after the last frame was read
+			return null;
+		}
+		index++;
+		return frame;
+	}
+
+	private BufferedImage readSubsampled() throws IOException {
+		int subsampling = ImageDecoder.getSubsampling(reader.getWidth(index), reader.getHeight(index), width, height);
+		ImageReadParam parameter = reader.getDefaultReadParam();
+		parameter.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		BufferedImage frame = reader.read(index, parameter);
+		frameTimestamp = timestamp;
+		return frame;
+	}
+
+	private BufferedImage compose() throws IOException {
+		BufferedImage frame = reader.read(index);
+		IIOMetadataNode metadata = getTree(reader.getImageMetadata(index), GIF_IMAGE_FORMAT);
+
+		if (canvas == null) {
+			IIOMetadataNode screen = getNode(getTree(reader.getStreamMetadata(), GIF_STREAM_FORMAT), "LogicalScreenDescriptor");
+			int canvasWidth = Math.max(getAttribute(screen, "logicalScreenWidth", 0), frame.getWidth());
+			int canvasHeight = Math.max(getAttribute(screen, "logicalScreenHeight", 0), frame.getHeight());
+			canvas = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_ARGB);
+		}
+
+		Graphics2D graphics = canvas.createGraphics();
+		try {
+			// Dispose the previous frame
+			if ("restoreToBackgroundColor".equals(disposal)) {
+				graphics.setComposite(AlphaComposite.Clear);
+				graphics.fillRect(left, top, frameWidth, frameHeight);
+				graphics.setComposite(AlphaComposite.SrcOver);
+			} else if (previous != null) {
+				graphics.setComposite(AlphaComposite.Src);
+				graphics.drawImage(previous, left, top, null);
+				graphics.setComposite(AlphaComposite.SrcOver);
+			}
+			previous = null;
+
+			IIOMetadataNode descriptor = getNode(metadata, "ImageDescriptor");
+			IIOMetadataNode control = getNode(metadata, "GraphicControlExtension");
+			left = getAttribute(descriptor, "imageLeftPosition", 0);
+			top = getAttribute(descriptor, "imageTopPosition", 0);
+			frameWidth = frame.getWidth();
+			frameHeight = frame.getHeight();
+			disposal = control == null ? null : control.getAttribute("disposalMethod");
+			if ("restoreToPrevious".equals(disposal)) {
+				previous = copy(canvas, left, top, frameWidth, frameHeight);
+			}
+			graphics.drawImage(frame, left, top, null);
+
+			frameTimestamp = timestamp;
+			// Delay in hundredths of a second
+			timestamp += getAttribute(control, "delayTime", 0) * 10_000L;
+		} finally {
+			graphics.dispose();
+		}
+		return canvas;
+	}
+
+	private static BufferedImage copy(BufferedImage image, int x, int y, int width, int height) {
+		int clippedWidth = Math.min(width, image.getWidth() - x);
+		int clippedHeight = Math.min(height, image.getHeight() - y);
+		if (clippedWidth <= 0 || clippedHeight <= 0) {
+			return null;
+		}
+		BufferedImage copy = new BufferedImage(clippedWidth, clippedHeight, BufferedImage.TYPE_INT_ARGB);
+		copy.getRaster().setRect(image.getRaster().createChild(x, y, clippedWidth, clippedHeight, 0, 0, null));
+		return copy;
+	}
+
+	private static IIOMetadataNode getTree(IIOMetadata metadata, String format) {
+		if (metadata == null) {
+			return null;
+		}
+		for (String name : metadata.getMetadataFormatNames()) {
+			if (format.equals(name)) {
+				return (IIOMetadataNode) metadata.getAsTree(format);
+			}
+		}
+		return null;
+	}
+
+	private static IIOMetadataNode getNode(IIOMetadataNode root, String name) {
+		if (root == null) {
+			return null;
+		}
+		NodeList nodes = root.getElementsByTagName(name);
+		return nodes.getLength() == 0 ? null : (IIOMetadataNode) nodes.item(0);
+	}
+
+	private static int getAttribute(IIOMetadataNode node, String name, int defaultValue) {
+		if (node == null || !node.hasAttribute(name)) {
+			return defaultValue;
+		}
+		return Integer.parseInt(node.getAttribute(name));
+	}
+
+	/**
+	 * @return true if the frames are composed onto a canvas shared by all frames
+	 */
+	public boolean isAnimated() {
+		return animated;
+	}
+
+	/**
+	 * @return the index of the last read frame
+	 */
+	public int getIndex() {
+		return index - 1;
+	}
+
+	/**
+	 * @return the display time of the last read frame in microseconds, the sum of
+	 *         the delays of all preceding frames. 0 for formats without a delay
+	 *         between frames.
+	 */
+	public long getTimestamp() {
+		return frameTimestamp;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			reader.dispose();
+		} finally {
+			stream.close();
+		}
+	}
+
+}
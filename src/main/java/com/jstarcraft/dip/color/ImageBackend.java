@@ -0,0 +1,81 @@
+package com.jstarcraft.dip.color;
+
+import java.util.Objects;
+
+/**
+ * The library decoding and scaling images read from files and streams before
+ * they are hashed.
+ * <p>
+ *
+ * The backend can be selected for every hashing algorithm or globally via
+ * {@link #setDefault(ImageBackend)}. Algorithms without an explicitly selected
+ * backend resolve the default backend once their algorithm id is computed,
+ * changing the default afterwards does not affect them.
+ * <p>
+ *
+ * The algorithm id of algorithms decoding images by a backend other than
+ * {@link #JAVA2D} identifies the hashes of encoded images decoded by the
+ * backend. These algorithms therefore reject hashing a
+ * {@link java.awt.image.BufferedImage}.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public enum ImageBackend {
+
+	/**
+	 * Images are decoded by {@link javax.imageio.ImageIO ImageIO} and scaled by
+	 * Java2D and the {@link LuminanceResampler}. Hashes are equal to the hashes of
+	 * the decoded {@link java.awt.image.BufferedImage}.
+	 */
+	JAVA2D,
+
+	/**
+	 * The luminance of images is decoded and scaled by OpenCV without creating a
+	 * {@link java.awt.image.BufferedImage}.
+	 * <p>
+	 *
+	 * Only applies to algorithms computing their hash solely from the luminance of
+	 * the image without applying image converters. Images of formats not
+	 * supported by OpenCV, and all other algorithms, fall back to
+	 * {@link #JAVA2D}. See {@link OpenCVDecoder} for the tolerance of the computed
+	 * hashes.
+	 */
+	OPENCV,
+
+	/**
+	 * The luminance of JPEG images is computed from the DC coefficients of the
+	 * luma component ({@link JpegLuminance}) without decoding the image.
+	 * <p>
+	 *
+	 * Only applies to algorithms computing their hash solely from the luminance of
+	 * the image without applying image converters, and only if the image is at
+	 * least 32 times as large as the resolution of the algorithm. The luminance
+	 * of a block of 8x8 pixels is its mean, therefore the luminance scaled from
+	 * the blocks differs from the luminance scaled from the decoded image only by
+	 * the quantization of the DC coefficients. Images of other formats, smaller
+	 * images and all other algorithms fall back to {@link #JAVA2D}.
+	 */
+	JPEG_DC;
+
+	private static volatile ImageBackend defaultBackend = JAVA2D;
+
+	/**
+	 * @return the backend used by hashing algorithms without an explicitly set
+	 *         backend
+	 */
+	public static ImageBackend getDefault() {
+		return defaultBackend;
+	}
+
+	/**
+	 * Set the backend used by all hashing algorithms without an explicitly set
+	 * backend whose algorithm id was not computed yet
+	 *
+	 * @param backend the default backend
+	 */
+	public static void setDefault(ImageBackend backend) {
+		defaultBackend = Objects.requireNonNull(backend);
+	}
+
+}
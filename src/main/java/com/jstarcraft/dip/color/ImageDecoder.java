@@ -0,0 +1,177 @@
+package com.jstarcraft.dip.color;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decode images at a reduced resolution.
+ * <p>
+ *
+ * Only every n-th pixel of every n-th row is decoded by the image reader
+ * ({@link ImageReadParam#setSourceSubsampling(int, int, int, int)}), which
+ * avoids allocating and converting the full resolution raster of large images.
+ * The subsampling factor is chosen as large as possible while the decoded image
+ * still is at least as large as the requested resolution.
+ * <p>
+ *
+ * Image readers are reused per thread and format instead of being created for
+ * every image as done by {@link ImageIO#read(File)}.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public final class ImageDecoder {
+
+	private static final ThreadLocal<Map<ImageReaderSpi, ImageReader>> READERS = ThreadLocal.withInitial(HashMap::new);
+
+	private ImageDecoder() {
+	}
+
+	/**
+	 * Decode the first image of the file with at least the given resolution.
+	 *
+	 * @param file   the file pointing to the image
+	 * @param width  the minimum width of the decoded image
+	 * @param height the minimum height of the decoded image
+	 * @return the decoded image or null if no registered reader is able to decode
+	 *         the file
+	 * @throws IOException if an error occurs during reading the image
+	 */
+	public static BufferedImage read(File file, int width, int height) throws IOException {
+		if (!file.canRead()) {
+			throw new IIOException("Can't read input file!");
+		}
+		ImageInputStream stream = ImageIO.createImageInputStream(file);
+		if (stream == null) {
+			throw new IIOException("Can't create an ImageInputStream!");
+		}
+		return read(stream, width, height);
+	}
+
+	/**
+	 * Decode the first image of the stream with at least the given resolution. The
+	 * stream is not closed.
+	 *
+	 * @param input  the stream containing the image
+	 * @param width  the minimum width of the decoded image
+	 * @param height the minimum height of the decoded image
+	 * @return the decoded image or null if no registered reader is able to decode
+	 *         the stream
+	 * @throws IOException if an error occurs during reading the image
+	 */
+	public static BufferedImage read(InputStream input, int width, int height) throws IOException {
+		ImageInputStream stream = ImageIO.createImageInputStream(input);
+		if (stream == null) {
+			throw new IIOException("Can't create an ImageInputStream!");
+		}
+		return read(stream, width, height);
+	}
+
+	private static BufferedImage read(ImageInputStream stream, int width, int height) throws IOException {
+		try {
+			ImageReader reader = getReader(stream);
+			if (reader == null) {
+				return null;
+			}
+			try {
+				reader.setInput(stream, true, true);
+				int subsampling = getSubsampling(reader.getWidth(0), reader.getHeight(0), width, height);
+				ImageReadParam parameter = reader.getDefaultReadParam();
+				parameter.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				return reader.read(0, parameter);
+			} finally {
+				reader.reset();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Read the resolution of the first image of the stream without decoding its
+	 * pixels. The stream is not closed.
+	 *
+	 * @param input the stream containing the image
+	 * @return the width and height of the image or null if no registered reader is
+	 *         able to decode the stream
+	 * @throws IOException if an error occurs during reading the header
+	 */
+	static int[] readResolution(InputStream input) throws IOException {
+		ImageInputStream stream = ImageIO.createImageInputStream(input);
+		if (stream == null) {
+			throw new IIOException("Can't create an ImageInputStream!");
+		}
+		try {
+			ImageReader reader = getReader(stream);
+			if (reader == null) {
+				return null;
+			}
+			try {
+				reader.setInput(stream, true, true);
+				return new int[] { reader.getWidth(0), reader.getHeight(0) };
+			} finally {
+				reader.reset();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	private static ImageReader getReader(ImageInputStream stream) throws IOException {
+		Map<ImageReaderSpi, ImageReader> readers = READERS.get();
+		Iterator<ImageReaderSpi> iterator = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+		while (iterator.hasNext()) {
+			ImageReaderSpi provider = iterator.next();
+			if (canDecodeInput(provider, stream)) {
+				ImageReader reader = readers.get(provider);
+				if (reader == null) {
+					reader = provider.createReaderInstance();
+					readers.put(provider, reader);
+				}
+				return reader;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Providers failing to read the header of the stream are not able to decode it,
+	 * equal to the provider lookup of {@link ImageIO#getImageReaders(Object)}
+	 */
+	private static boolean canDecodeInput(ImageReaderSpi provider, ImageInputStream stream) throws IOException {
+		stream.mark();
+		try {
+			return provider.canDecodeInput(stream);
+		} catch (IOException exception) {
+			return false;
+		} finally {
+			stream.reset();
+		}
+	}
+
+	/**
+	 * @param sourceWidth  the width of the encoded image
+	 * @param sourceHeight the height of the encoded image
+	 * @param width        the minimum width of the decoded image
+	 * @param height       the minimum height of the decoded image
+	 * @return the largest factor the image can be subsampled by without falling
+	 *         below the minimum resolution
+	 */
+	public static int getSubsampling(int sourceWidth, int sourceHeight, int width, int height) {
+		return Math.max(1, Math.min(sourceWidth / Math.max(1, width), sourceHeight / Math.max(1, height)));
+	}
+
+}
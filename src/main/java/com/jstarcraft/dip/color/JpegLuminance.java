@@ -0,0 +1,649 @@
+package com.jstarcraft.dip.color;
+
+import java.io.IOException;
+
+import javax.imageio.IIOException;
+
+/**
+ * The luminance of a JPEG image at an eighth of its resolution recovered from
+ * the DC coefficients of the luma component.
+ * <p>
+ *
+ * JPEG images store the luma component as 8x8 blocks of quantized DCT
+ * coefficients. The DC coefficient of a block is eight times the mean of the
+ * block, therefore the mean luminance of every block is known once the entropy
+ * coded data is parsed. The AC coefficients are skipped without being stored,
+ * dequantized or transformed, and the chroma components are neither upsampled
+ * nor converted.
+ * <p>
+ *
+ * Baseline, extended sequential and progressive JPEG images with Huffman coding
+ * and 8 bit precision are supported. Progressive images only require their DC
+ * scans, all other scans are skipped entirely. Images with arithmetic coding,
+ * lossless and hierarchical images as well as RGB and CMYK images, which do not
+ * store a luma component, are not supported.
+ * <p>
+ *
+ * The mean of a block deviates from the mean of the decoded block by at most a
+ * sixteenth of the quantization step of the DC coefficient, plus the rounding
+ * and clamping of the decoded pixels.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public final class JpegLuminance {
+
+	/** The luminance of each block in range [0-255] in row major order */
+	private final double[] plane;
+
+	private final int width;
+
+	private final int height;
+
+	private JpegLuminance(double[] plane, int width, int height) {
+		this.plane = plane;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Parse the luminance of the blocks of a JPEG image.
+	 *
+	 * @param encoded the JPEG file
+	 * @return the luminance or null if the data is not a supported JPEG image
+	 * @throws IOException if the JPEG image is corrupt
+	 */
+	public static JpegLuminance read(byte[] encoded) throws IOException {
+		if (!isJpeg(encoded)) {
+			return null;
+		}
+		return new Parser(encoded).parse();
+	}
+
+	/**
+	 * @param encoded the encoded image
+	 * @return true if the data starts with the start of image marker of JPEG
+	 *         images
+	 */
+	public static boolean isJpeg(byte[] encoded) {
+		return encoded.length >= 4 && (encoded[0] & 0xFF) == 0xFF && (encoded[1] & 0xFF) == 0xD8;
+	}
+
+	/**
+	 * @return the mean luminance of each 8x8 block in range [0-255] in row major
+	 *         order. Blocks at the right and bottom border may be partially
+	 *         covered by the image
+	 */
+	public double[] getPlane() {
+		return plane;
+	}
+
+	/**
+	 * @return the number of blocks per row
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the number of blocks per column
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Canonical Huffman table of a scan
+	 */
+	private static final class HuffmanTable {
+
+		/** Number of bits looked up at once */
+		private static final int LOOKAHEAD = 9;
+
+		/** length << 8 | symbol of the codes not longer than LOOKAHEAD bits, else 0 */
+		private final int[] lookup = new int[1 << LOOKAHEAD];
+
+		/**
+		 * (length + size) << 8 | symbol of the AC codes whose code and the following
+		 * size bits of the coefficient fit into LOOKAHEAD bits, else 0
+		 */
+		private final int[] skipLookup = new int[1 << LOOKAHEAD];
+
+		/** The largest code of each length or -1 */
+		private final int[] maxCodes = new int[17];
+
+		/** Index of the symbol of a code of each length is code + offset */
+		private final int[] offsets = new int[17];
+
+		private final int[] symbols;
+
+		HuffmanTable(int[] counts, int[] symbols) {
+			this.symbols = symbols;
+			int code = 0;
+			int index = 0;
+			for (int length = 1; length <= 16; length++) {
+				offsets[length] = index - code;
+				for (int count = 0; count < counts[length]; count++) {
+					if (length <= LOOKAHEAD) {
+						int shift = LOOKAHEAD - length;
+						int entry = length << 8 | symbols[index];
+						int size = symbols[index] & 0xF;
+						int skipEntry = length + size <= LOOKAHEAD ? (length + size) << 8 | symbols[index] : 0;
+						for (int suffix = 0; suffix < 1 << shift; suffix++) {
+							lookup[(code << shift) | suffix] = entry;
+							skipLookup[(code << shift) | suffix] = skipEntry;
+						}
+					}
+					index++;
+					code++;
+				}
+				maxCodes[length] = counts[length] > 0 ? code - 1 : -1;
+				code <<= 1;
+			}
+		}
+	}
+
+	/**
+	 * Parses the markers and the entropy coded data of a single image
+	 */
+	private static final class Parser {
+
+		private final byte[] data;
+
+		private int position = 2;
+
+		private final HuffmanTable[] dcTables = new HuffmanTable[4];
+		private final HuffmanTable[] acTables = new HuffmanTable[4];
+
+		/** The quantization step of the DC coefficient of each table */
+		private final int[] dcQuantization = new int[4];
+
+		private int restartInterval;
+
+		/** Color transform of the Adobe segment, -1 if not present */
+		private int adobeTransform = -1;
+
+		// Frame
+		private boolean frame;
+		private boolean progressive;
+		private int imageWidth;
+		private int imageHeight;
+		private int[] componentIds;
+		private int[] horizontalSampling;
+		private int[] verticalSampling;
+		private int[] quantizationTables;
+		private int maxHorizontalSampling;
+		private int maxVerticalSampling;
+		private int mcusPerLine;
+		private int mcusPerColumn;
+
+		/** DC coefficients of the luma blocks, padded to whole MCUs */
+		private int[] coefficients;
+		private int blocksPerLine;
+
+		/** Quantization step of the luma DC coefficient when it was decoded */
+		private int lumaQuantization;
+
+		// Entropy coded data
+		private long bits;
+		private int bitCount;
+		private boolean markerReached;
+		private int[] predictors;
+
+		Parser(byte[] data) {
+			this.data = data;
+		}
+
+		JpegLuminance parse() throws IOException {
+			while (true) {
+				int marker = nextMarker();
+				switch (marker) {
+				case 0xC0:
+				case 0xC1:
+				case 0xC2:
+					if (!readFrame(marker == 0xC2)) {
+						return null;
+					}
+					break;
+				case 0xC3:
+				case 0xC5:
+				case 0xC6:
+				case 0xC7:
+				case 0xC9:
+				case 0xCA:
+				case 0xCB:
+				case 0xCD:
+				case 0xCE:
+				case 0xCF:
+					// Lossless, hierarchical and arithmetic coding
+					return null;
+				case 0xC4:
+					readHuffmanTables();
+					break;
+				case 0xDB:
+					readQuantizationTables();
+					break;
+				case 0xDD:
+					readRestartInterval();
+					break;
+				case 0xEE:
+					readAdobe();
+					break;
+				case 0xDA:
+					readScan();
+					break;
+				case 0xD9:
+				case -1:
+					// Truncated images end with gray blocks like decoded images
+					return createLuminance();
+				default:
+					skipSegment();
+				}
+			}
+		}
+
+		/**
+		 * @return the next marker or -1 if the end of the data is reached
+		 */
+		private int nextMarker() {
+			while (position + 1 < data.length) {
+				if ((data[position] & 0xFF) == 0xFF) {
+					int marker = data[position + 1] & 0xFF;
+					if (marker != 0xFF && marker != 0 && (marker < 0xD0 || marker > 0xD7)) {
+						position += 2;
+						return marker;
+					}
+				}
+				position++;
+			}
+			return -1;
+		}
+
+		private boolean readFrame(boolean progressive) throws IOException {
+			if (frame) {
+				throw new IIOException("Multiple frames are not supported");
+			}
+			int end = readSegmentEnd();
+			int precision = readByte();
+			imageHeight = readShort();
+			imageWidth = readShort();
+			int count = readByte();
+			// The height may be defined by a DNL marker following the first scan
+			if (precision != 8 || imageHeight == 0 || imageWidth == 0 || count == 0) {
+				return false;
+			}
+			// RGB and CMYK images do not store the luma component
+			if (count == 2 || count > 3) {
+				return false;
+			}
+
+			this.progressive = progressive;
+			componentIds = new int[count];
+			horizontalSampling = new int[count];
+			verticalSampling = new int[count];
+			quantizationTables = new int[count];
+			for (int component = 0; component < count; component++) {
+				componentIds[component] = readByte();
+				int sampling = readByte();
+				horizontalSampling[component] = sampling >> 4;
+				verticalSampling[component] = sampling & 0xF;
+				quantizationTables[component] = readByte() & 3;
+				if (horizontalSampling[component] < 1 || horizontalSampling[component] > 4 || verticalSampling[component] < 1 || verticalSampling[component] > 4) {
+					throw new IIOException("Invalid JPEG sampling factor");
+				}
+				maxHorizontalSampling = Math.max(maxHorizontalSampling, horizontalSampling[component]);
+				maxVerticalSampling = Math.max(maxVerticalSampling, verticalSampling[component]);
+			}
+			if (count == 3 && componentIds[0] == 'R' && componentIds[1] == 'G' && componentIds[2] == 'B') {
+				return false;
+			}
+
+			mcusPerLine = ceilDivide(imageWidth, 8 * maxHorizontalSampling);
+			mcusPerColumn = ceilDivide(imageHeight, 8 * maxVerticalSampling);
+			blocksPerLine = mcusPerLine * horizontalSampling[0];
+			coefficients = new int[blocksPerLine * mcusPerColumn * verticalSampling[0]];
+			predictors = new int[count];
+			frame = true;
+			position = end;
+			return true;
+		}
+
+		private void readHuffmanTables() throws IOException {
+			int end = readSegmentEnd();
+			while (position < end) {
+				int type = readByte();
+				int id = type & 0xF;
+				if (id > 3) {
+					throw new IIOException("Invalid JPEG Huffman table");
+				}
+				int[] counts = new int[17];
+				int total = 0;
+				for (int length = 1; length <= 16; length++) {
+					counts[length] = readByte();
+					total += counts[length];
+				}
+				int[] symbols = new int[total];
+				for (int index = 0; index < total; index++) {
+					symbols[index] = readByte();
+				}
+				HuffmanTable table = new HuffmanTable(counts, symbols);
+				if (type >> 4 == 0) {
+					dcTables[id] = table;
+				} else {
+					acTables[id] = table;
+				}
+			}
+			position = end;
+		}
+
+		private void readQuantizationTables() throws IOException {
+			int end = readSegmentEnd();
+			while (position < end) {
+				int type = readByte();
+				int id = type & 0xF;
+				if (id > 3) {
+					throw new IIOException("Invalid JPEG quantization table");
+				}
+				// The DC step is the first value in zig zag order
+				if (type >> 4 == 0) {
+					dcQuantization[id] = readByte();
+					position += 63;
+				} else {
+					dcQuantization[id] = readShort();
+					position += 126;
+				}
+			}
+			position = end;
+		}
+
+		private void readRestartInterval() throws IOException {
+			int end = readSegmentEnd();
+			restartInterval = readShort();
+			position = end;
+		}
+
+		private void readAdobe() throws IOException {
+			int end = readSegmentEnd();
+			// "Adobe", version, flags0, flags1, transform
+			if (end - position >= 12 && data[position] == 'A' && data[position + 1] == 'd' && data[position + 2] == 'o' && data[position + 3] == 'b' && data[position + 4] == 'e') {
+				adobeTransform = data[position + 11] & 0xFF;
+			}
+			position = end;
+		}
+
+		private void skipSegment() throws IOException {
+			position = readSegmentEnd();
+		}
+
+		private void readScan() throws IOException {
+			if (!frame) {
+				throw new IIOException("JPEG scan precedes the frame");
+			}
+			int end = readSegmentEnd();
+			int count = readByte();
+			int[] components = new int[count];
+			HuffmanTable[] scanDcTables = new HuffmanTable[count];
+			HuffmanTable[] scanAcTables = new HuffmanTable[count];
+			for (int index = 0; index < count; index++) {
+				int id = readByte();
+				components[index] = -1;
+				for (int component = 0; component < componentIds.length; component++) {
+					if (componentIds[component] == id) {
+						components[index] = component;
+					}
+				}
+				if (components[index] < 0) {
+					throw new IIOException("Invalid JPEG scan component");
+				}
+				int tables = readByte();
+				scanDcTables[index] = dcTables[tables >> 4 & 3];
+				scanAcTables[index] = acTables[tables & 3];
+				if (components[index] == 0) {
+					lumaQuantization = dcQuantization[quantizationTables[0]];
+				}
+			}
+			int spectralStart = readByte();
+			readByte();
+			int approximation = readByte();
+			int successiveHigh = approximation >> 4;
+			int successiveLow = approximation & 0xF;
+			position = end;
+
+			// AC scans of progressive images do not contain DC coefficients
+			if (progressive && spectralStart != 0) {
+				return;
+			}
+			for (int index = 0; index < count; index++) {
+				boolean dcRequired = !(progressive && successiveHigh != 0);
+				boolean acRequired = !progressive;
+				if ((dcRequired && scanDcTables[index] == null) || (acRequired && scanAcTables[index] == null)) {
+					throw new IIOException("Undefined JPEG Huffman table");
+				}
+			}
+
+			resetDecoder();
+			int mcu = 0;
+			if (count == 1) {
+				// Non interleaved scans only contain the blocks covering the component
+				int component = components[0];
+				int componentBlocksPerLine = ceilDivide(ceilDivide(imageWidth * horizontalSampling[component], maxHorizontalSampling), 8);
+				int componentBlocksPerColumn = ceilDivide(ceilDivide(imageHeight * verticalSampling[component], maxVerticalSampling), 8);
+				for (int row = 0; row < componentBlocksPerColumn; row++) {
+					for (int column = 0; column < componentBlocksPerLine; column++) {
+						restart(mcu++);
+						decodeBlock(component, scanDcTables[0], scanAcTables[0], row, column, successiveHigh, successiveLow);
+					}
+				}
+			} else {
+				for (int mcuRow = 0; mcuRow < mcusPerColumn; mcuRow++) {
+					for (int mcuColumn = 0; mcuColumn < mcusPerLine; mcuColumn++) {
+						restart(mcu++);
+						for (int index = 0; index < count; index++) {
+							int component = components[index];
+							for (int y = 0; y < verticalSampling[component]; y++) {
+								for (int x = 0; x < horizontalSampling[component]; x++) {
+									decodeBlock(component, scanDcTables[index], scanAcTables[index], mcuRow * verticalSampling[component] + y, mcuColumn * horizontalSampling[component] + x, successiveHigh, successiveLow);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+
+		private void decodeBlock(int component, HuffmanTable dcTable, HuffmanTable acTable, int row, int column, int successiveHigh, int successiveLow) throws IOException {
+			int coefficient;
+			if (progressive && successiveHigh != 0) {
+				// Refinement of a previously decoded DC coefficient by one bit
+				if (readBits(1) == 0 || component != 0) {
+					return;
+				}
+				coefficient = coefficients[row * blocksPerLine + column] | 1 << successiveLow;
+			} else {
+				int size = decode(dcTable);
+				predictors[component] += receiveExtend(size);
+				coefficient = predictors[component] << successiveLow;
+				if (!progressive) {
+					skipAcCoefficients(acTable);
+				}
+				if (component != 0) {
+					return;
+				}
+			}
+			coefficients[row * blocksPerLine + column] = coefficient;
+		}
+
+		private void skipAcCoefficients(HuffmanTable table) throws IOException {
+			int index = 1;
+			while (index < 64) {
+				if (bitCount < 16) {
+					fill();
+				}
+				// Skip the code and the value of the coefficient at once
+				int entry = table.skipLookup[(int) (bits >>> (64 - HuffmanTable.LOOKAHEAD))];
+				int symbol;
+				if (entry != 0) {
+					int length = entry >> 8;
+					bits <<= length;
+					bitCount -= length;
+					symbol = entry & 0xFF;
+				} else {
+					symbol = decode(table);
+					readBits(symbol & 0xF);
+				}
+				int run = symbol >> 4;
+				if ((symbol & 0xF) == 0) {
+					if (run != 15) {
+						// End of block
+						return;
+					}
+					index += 16;
+				} else {
+					index += run + 1;
+				}
+			}
+		}
+
+		private JpegLuminance createLuminance() {
+			// Adobe transform 0 marks RGB images
+			if (!frame || (componentIds.length == 3 && adobeTransform == 0)) {
+				return null;
+			}
+			int width = ceilDivide(ceilDivide(imageWidth * horizontalSampling[0], maxHorizontalSampling), 8);
+			int height = ceilDivide(ceilDivide(imageHeight * verticalSampling[0], maxVerticalSampling), 8);
+			double[] plane = new double[width * height];
+			double scale = lumaQuantization / 8d;
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					double luminance = coefficients[y * blocksPerLine + x] * scale + 128;
+					plane[y * width + x] = Math.max(0, Math.min(255, luminance));
+				}
+			}
+			return new JpegLuminance(plane, width, height);
+		}
+
+		/**
+		 * Restart the entropy coded data at the start of each restart interval
+		 */
+		private void restart(int mcu) {
+			if (restartInterval == 0 || mcu == 0 || mcu % restartInterval != 0) {
+				return;
+			}
+			// Skip the padding bits up to the restart marker
+			while (position + 1 < data.length) {
+				int marker = data[position + 1] & 0xFF;
+				if ((data[position] & 0xFF) == 0xFF && marker != 0 && marker != 0xFF) {
+					if (marker >= 0xD0 && marker <= 0xD7) {
+						position += 2;
+					}
+					break;
+				}
+				position++;
+			}
+			resetDecoder();
+		}
+
+		private void resetDecoder() {
+			bits = 0;
+			bitCount = 0;
+			markerReached = false;
+			for (int component = 0; component < predictors.length; component++) {
+				predictors[component] = 0;
+			}
+		}
+
+		/**
+		 * Fill the bit buffer with at least 57 bits. Missing data at the end of the
+		 * entropy coded segment is filled with zeros.
+		 */
+		private void fill() {
+			while (bitCount <= 56) {
+				int value = 0;
+				if (!markerReached && position < data.length) {
+					value = data[position] & 0xFF;
+					if (value != 0xFF) {
+						position++;
+					} else if (position + 1 < data.length && data[position + 1] == 0) {
+						// Stuffed zero byte
+						position += 2;
+					} else {
+						markerReached = true;
+						value = 0;
+					}
+				}
+				bits |= (long) value << (56 - bitCount);
+				bitCount += 8;
+			}
+		}
+
+		private int readBits(int count) {
+			if (count == 0) {
+				return 0;
+			}
+			if (bitCount < count) {
+				fill();
+			}
+			int value = (int) (bits >>> (64 - count));
+			bits <<= count;
+			bitCount -= count;
+			return value;
+		}
+
+		private int receiveExtend(int size) {
+			int value = readBits(size);
+			if (size > 0 && value < 1 << (size - 1)) {
+				value += (-1 << size) + 1;
+			}
+			return value;
+		}
+
+		private int decode(HuffmanTable table) throws IOException {
+			if (bitCount < 16) {
+				fill();
+			}
+			int entry = table.lookup[(int) (bits >>> (64 - HuffmanTable.LOOKAHEAD))];
+			if (entry != 0) {
+				int length = entry >> 8;
+				bits <<= length;
+				bitCount -= length;
+				return entry & 0xFF;
+			}
+			for (int length = HuffmanTable.LOOKAHEAD + 1; length <= 16; length++) {
+				int code = (int) (bits >>> (64 - length));
+				if (code <= table.maxCodes[length]) {
+					bits <<= length;
+					bitCount -= length;
+					return table.symbols[code + table.offsets[length]];
+				}
+			}
+			throw new IIOException("Invalid JPEG Huffman code");
+		}
+
+		/**
+		 * @return the position after the segment starting at the current position
+		 */
+		private int readSegmentEnd() throws IOException {
+			int end = position + readShort();
+			if (end > data.length) {
+				throw new IIOException("Truncated JPEG segment");
+			}
+			return end;
+		}
+
+		private int readByte() throws IOException {
+			if (position >= data.length) {
+				throw new IIOException("Truncated JPEG segment");
+			}
+			return data[position++] & 0xFF;
+		}
+
+		private int readShort() throws IOException {
+			return readByte() << 8 | readByte();
+		}
+
+		private static int ceilDivide(int dividend, int divisor) {
+			return (dividend + divisor - 1) / divisor;
+		}
+	}
+
+}
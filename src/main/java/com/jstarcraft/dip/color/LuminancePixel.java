@@ -0,0 +1,107 @@
+package com.jstarcraft.dip.color;
+
+/**
+ * A grayscale pixel backed by a row major luminance plane as produced by
+ * {@link LuminanceResampler}. The red, green and blue components all equal the
+ * luminance of the pixel.
+ * <p>
+ *
+ * The plane is not copied, changes to the plane are reflected by this object
+ * and vice versa. Transparency is not supported.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class LuminancePixel extends AbstractPixel {
+
+	/** Raw data */
+	private final int[] pixelData;
+
+	/**
+	 * @param width     the width of the image
+	 * @param height    the height of the image
+	 * @param luminance the luma component in range [0-255] in row major order
+	 */
+	public LuminancePixel(int width, int height, int[] luminance) {
+		super(width, height, false);
+		if (luminance.length < width * height) {
+			throw new IllegalArgumentException("The luminance plane is smaller than the image");
+		}
+		this.pixelData = luminance;
+	}
+
+	@Override
+	public int getRgbScalar(int index) {
+		int scalar = pixelData[index];
+		return (255 << 24) | (scalar << 16) | (scalar << 8) | scalar;
+	}
+
+	@Override
+	public int getTransparencyScalar(int index) {
+		return -1;
+	}
+
+	@Override
+	public void setTransparencyScalar(int index, int scalar) {
+	}
+
+	@Override
+	public int getRedScalar(int index) {
+		return pixelData[index];
+	}
+
+	@Override
+	public void setRedScalar(int index, int scalar) {
+		pixelData[index] = scalar;
+	}
+
+	@Override
+	public int getGreenScalar(int index) {
+		return pixelData[index];
+	}
+
+	@Override
+	public void setGreenScalar(int index, int scalar) {
+		pixelData[index] = scalar;
+	}
+
+	@Override
+	public int getBlueScalar(int index) {
+		return pixelData[index];
+	}
+
+	@Override
+	public void setBlueScalar(int index, int scalar) {
+		pixelData[index] = scalar;
+	}
+
+	@Override
+	public int getGrayscaleScalar(int index) {
+		return pixelData[index];
+	}
+
+	@Override
+	public int getLuminanceScalar(int index) {
+		return pixelData[index];
+	}
+
+	@Override
+	public int[][] getLuminanceMatrix() {
+		int[][] luma = new int[width][height];
+		int index = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				luma[x][y] = pixelData[index++];
+			}
+		}
+		return luma;
+	}
+
+	@Override
+	public int[] getLuminanceVector() {
+		int[] luma = new int[width * height];
+		System.arraycopy(pixelData, 0, luma, 0, luma.length);
+		return luma;
+	}
+
+}
@@ -0,0 +1,424 @@
+package com.jstarcraft.dip.color;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Downscale an image and extract the Y(Luma) component of the YCbCr color model
+ * in a single pass.
+ * <p>
+ *
+ * Opposed to scaling the image via {@link ImageUtility#getScaledInstance} and
+ * converting the result with {@link ColorPixel#convert(BufferedImage)} no
+ * intermediate image or matrix is created. Each source row is read exactly once
+ * directly from the underlying raster, reduced horizontally and accumulated into
+ * the target rows it contributes to. The result is written into a primitive row
+ * major plane ({@code plane[y * width + x]}) which may be reused between calls.
+ * <p>
+ *
+ * The raster layouts supported by {@link BytePixel} and {@link IntegerPixel} are
+ * read directly, all other image types fall back to reading a row at a time via
+ * {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+ * <p>
+ *
+ * The target rows can be split into bands which are computed in parallel. This
+ * is only worth it for large source images and a single image at a time, if
+ * multiple images are hashed concurrently the parallelism should stay at 1.
+ * <p>
+ *
+ * This class is thread safe.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class LuminanceResampler {
+
+	/**
+	 * The filter used to combine the source pixels covered by a target pixel
+	 */
+	public enum Filter {
+		/**
+		 * Weight each source pixel by the fraction of its area covered by the target
+		 * pixel.
+		 */
+		AREA,
+		/**
+		 * Average all source pixels whose center lies within the target pixel with the
+		 * same weight. If no center is covered, which happens when enlarging the image,
+		 * the nearest source pixel is used.
+		 */
+		BOX
+	}
+
+	/** Width of the produced plane */
+	private final int width;
+
+	/** Height of the produced plane */
+	private final int height;
+
+	private final Filter filter;
+
+	/** Number of row bands computed in parallel */
+	private final int parallelism;
+
+	/**
+	 * Create a resampler using area averaging computing the plane on the calling
+	 * thread.
+	 *
+	 * @param width  the width of the resampled plane
+	 * @param height the height of the resampled plane
+	 */
+	public LuminanceResampler(int width, int height) {
+		this(width, height, Filter.AREA, 1);
+	}
+
+	/**
+	 * @param width       the width of the resampled plane
+	 * @param height      the height of the resampled plane
+	 * @param filter      the filter used to combine the source pixels
+	 * @param parallelism the number of row bands computed in parallel. Bands
+	 *                    besides the first are computed in the common fork join
+	 *                    pool.
+	 */
+	public LuminanceResampler(int width, int height, Filter filter, int parallelism) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("The dimension of the resampled plane has to be positive");
+		}
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("The parallelism has to be positive");
+		}
+		this.width = width;
+		this.height = height;
+		this.filter = filter;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Compute the luminance of the image at the resolution of this resampler.
+	 *
+	 * @param image the source image
+	 * @param plane the array the luminance is written to. If null or too small a
+	 *              new array is created.
+	 * @return the plane containing the luma component in range [0-255] in row
+	 *         major order
+	 */
+	public double[] getLuminancePlane(BufferedImage image, double[] plane) {
+		if (plane == null || plane.length < width * height) {
+			plane = new double[width * height];
+		}
+		resample(() -> createReader(image), image.getWidth(), image.getHeight(), plane);
+		return plane;
+	}
+
+	/**
+	 * Compute the luminance of the image at the resolution of this resampler. The
+	 * values are truncated the same way as
+	 * {@link ColorPixel#getLuminanceScalar(int)}.
+	 *
+	 * @param image the source image
+	 * @param plane the array the luminance is written to. If null or too small a
+	 *              new array is created.
+	 * @return the plane containing the luma component in range [0-255] in row
+	 *         major order
+	 */
+	public int[] getLuminancePlane(BufferedImage image, int[] plane) {
+		return truncate(getLuminancePlane(image, (double[]) null), plane);
+	}
+
+	/**
+	 * Resample a luminance plane, e.g. a plane previously computed by a resampler
+	 * of a higher resolution, to the resolution of this resampler.
+	 *
+	 * @param source       the source plane in row major order
+	 * @param sourceWidth  the width of the source plane
+	 * @param sourceHeight the height of the source plane
+	 * @param plane        the array the luminance is written to. If null or too
+	 *                     small a new array is created.
+	 * @return the plane containing the resampled values in row major order
+	 */
+	public double[] getLuminancePlane(double[] source, int sourceWidth, int sourceHeight, double[] plane) {
+		if (source.length < sourceWidth * sourceHeight) {
+			throw new IllegalArgumentException("The source plane is smaller than its dimension");
+		}
+		if (plane == null || plane.length < width * height) {
+			plane = new double[width * height];
+		}
+		resample(() -> (y, row) -> System.arraycopy(source, y * sourceWidth, row, 0, sourceWidth), sourceWidth, sourceHeight, plane);
+		return plane;
+	}
+
+	/**
+	 * Resample a luminance plane to the resolution of this resampler. The values
+	 * are truncated the same way as {@link ColorPixel#getLuminanceScalar(int)}.
+	 *
+	 * @param source       the source plane in row major order
+	 * @param sourceWidth  the width of the source plane
+	 * @param sourceHeight the height of the source plane
+	 * @param plane        the array the luminance is written to. If null or too
+	 *                     small a new array is created.
+	 * @return the plane containing the luma component in range [0-255] in row
+	 *         major order
+	 */
+	public int[] getLuminancePlane(double[] source, int sourceWidth, int sourceHeight, int[] plane) {
+		return truncate(getLuminancePlane(source, sourceWidth, sourceHeight, (double[]) null), plane);
+	}
+
+	private int[] truncate(double[] luminance, int[] plane) {
+		if (plane == null || plane.length < width * height) {
+			plane = new int[width * height];
+		}
+		for (int index = 0; index < width * height; index++) {
+			int scalar = (int) luminance[index];
+			plane[index] = scalar > 255 ? 255 : scalar;
+		}
+		return plane;
+	}
+
+	/**
+	 * @param readers creates a reader for each band as readers may hold buffers
+	 */
+	private void resample(Supplier<RowReader> readers, int sourceWidth, int sourceHeight, double[] plane) {
+		Footprint columns = new Footprint(sourceWidth, width, filter);
+		Footprint rows = new Footprint(sourceHeight, height, filter);
+
+		int bands = Math.min(parallelism, height);
+		if (bands == 1) {
+			resample(readers.get(), sourceWidth, columns, rows, plane, 0, height);
+			return;
+		}
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[bands - 1];
+		for (int band = 1; band < bands; band++) {
+			int first = band * height / bands;
+			int last = (band + 1) * height / bands;
+			futures[band - 1] = CompletableFuture.runAsync(() -> resample(readers.get(), sourceWidth, columns, rows, plane, first, last));
+		}
+		resample(readers.get(), sourceWidth, columns, rows, plane, 0, height / bands);
+		CompletableFuture.allOf(futures).join();
+	}
+
+	/**
+	 * Compute the target rows [firstRow, lastRow)
+	 */
+	private void resample(RowReader reader, int sourceWidth, Footprint columns, Footprint rows, double[] plane, int firstRow, int lastRow) {
+		double[] sourceRow = new double[sourceWidth];
+		double[] targetRow = new double[width];
+
+		for (int y = firstRow; y < lastRow; y++) {
+			int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				plane[offset + x] = 0;
+			}
+		}
+
+		int currentRow = firstRow;
+		for (int sourceY = rows.first[firstRow]; sourceY <= rows.last[lastRow - 1]; sourceY++) {
+			reader.read(sourceY, sourceRow);
+			columns.reduce(sourceRow, targetRow);
+			// Rows are sorted, advance past all target rows this source row can not reach
+			while (rows.last[currentRow] < sourceY) {
+				currentRow++;
+			}
+			for (int y = currentRow; y < lastRow && rows.first[y] <= sourceY; y++) {
+				double weight = rows.getWeight(y, sourceY);
+				int offset = y * width;
+				for (int x = 0; x < width; x++) {
+					plane[offset + x] += weight * targetRow[x];
+				}
+			}
+		}
+
+		for (int y = firstRow; y < lastRow; y++) {
+			double normalization = rows.normalization[y];
+			int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				plane[offset + x] /= normalization;
+			}
+		}
+	}
+
+	/**
+	 * @return the width of the resampled plane
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the resampled plane
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the filter used to combine the source pixels
+	 */
+	public Filter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * @return the number of row bands computed in parallel
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	private static RowReader createReader(BufferedImage image) {
+		int sourceWidth = image.getWidth();
+		WritableRaster raster = image.getRaster();
+		SampleModel sampleModel = raster.getSampleModel();
+		// Rasters of sub images share the data of their parent and are translated
+		int translateX = raster.getSampleModelTranslateX();
+		int translateY = raster.getSampleModelTranslateY();
+		switch (image.getType()) {
+		case BufferedImage.TYPE_3BYTE_BGR:
+		case BufferedImage.TYPE_4BYTE_ABGR: {
+			if (!(sampleModel instanceof ComponentSampleModel)) {
+				break;
+			}
+			DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+			byte[] data = buffer.getData();
+			ComponentSampleModel components = (ComponentSampleModel) sampleModel;
+			int pixelStride = components.getPixelStride();
+			int scanlineStride = components.getScanlineStride();
+			// The bands are red green blue (and alpha) regardless of the byte order
+			int[] bandOffsets = components.getBandOffsets();
+			int redOffset = bandOffsets[0];
+			int greenOffset = bandOffsets[1];
+			int blueOffset = bandOffsets[2];
+			int origin = buffer.getOffset() - translateY * scanlineStride - translateX * pixelStride;
+			return (y, row) -> {
+				int index = origin + y * scanlineStride;
+				for (int x = 0; x < sourceWidth; x++, index += pixelStride) {
+					row[x] = (data[index + redOffset] & 0xFF) * ColorUtility.LUMA_RED + (data[index + greenOffset] & 0xFF) * ColorUtility.LUMA_GREEN + (data[index + blueOffset] & 0xFF) * ColorUtility.LUMA_BLUE;
+				}
+			};
+		}
+		case BufferedImage.TYPE_INT_ARGB:
+		case BufferedImage.TYPE_INT_RGB:
+		case BufferedImage.TYPE_INT_BGR: {
+			if (!(sampleModel instanceof SinglePixelPackedSampleModel)) {
+				break;
+			}
+			DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+			int[] data = buffer.getData();
+			SinglePixelPackedSampleModel packed = (SinglePixelPackedSampleModel) sampleModel;
+			int scanlineStride = packed.getScanlineStride();
+			// The bands are red green blue (and alpha) regardless of the masks
+			int[] bitOffsets = packed.getBitOffsets();
+			int redShift = bitOffsets[0];
+			int greenShift = bitOffsets[1];
+			int blueShift = bitOffsets[2];
+			int origin = buffer.getOffset() - translateY * scanlineStride - translateX;
+			return (y, row) -> {
+				int index = origin + y * scanlineStride;
+				for (int x = 0; x < sourceWidth; x++, index++) {
+					int pixel = data[index];
+					row[x] = ((pixel >>> redShift) & 0xFF) * ColorUtility.LUMA_RED + ((pixel >>> greenShift) & 0xFF) * ColorUtility.LUMA_GREEN + ((pixel >>> blueShift) & 0xFF) * ColorUtility.LUMA_BLUE;
+				}
+			};
+		}
+		}
+		return createRgbReader(image);
+	}
+
+	private static RowReader createRgbReader(BufferedImage image) {
+		int sourceWidth = image.getWidth();
+		int[] argb = new int[sourceWidth];
+		return (y, row) -> {
+			image.getRGB(0, y, sourceWidth, 1, argb, 0, sourceWidth);
+			for (int x = 0; x < sourceWidth; x++) {
+				int pixel = argb[x];
+				row[x] = ((pixel >>> 16) & 0xFF) * ColorUtility.LUMA_RED + ((pixel >>> 8) & 0xFF) * ColorUtility.LUMA_GREEN + (pixel & 0xFF) * ColorUtility.LUMA_BLUE;
+			}
+		};
+	}
+
+	/**
+	 * Reads the luminance of a single source row
+	 */
+	@FunctionalInterface
+	private interface RowReader {
+		void read(int y, double[] row);
+	}
+
+	/**
+	 * The source pixels covered by each target pixel along one axis. Target pixel
+	 * {@code t} covers the source pixels {@code [first[t], last[t]]}, interior
+	 * pixels have a weight of 1.
+	 */
+	private static class Footprint {
+
+		private final int[] first;
+		private final int[] last;
+		private final double[] firstWeight;
+		private final double[] lastWeight;
+		private final double[] normalization;
+
+		Footprint(int sourceLength, int targetLength, Filter filter) {
+			first = new int[targetLength];
+			last = new int[targetLength];
+			firstWeight = new double[targetLength];
+			lastWeight = new double[targetLength];
+			normalization = new double[targetLength];
+
+			double scale = sourceLength / (double) targetLength;
+			for (int t = 0; t < targetLength; t++) {
+				double start = t * scale;
+				double end = start + scale;
+				if (filter == Filter.AREA) {
+					first[t] = (int) start;
+					last[t] = Math.min(sourceLength - 1, (int) Math.ceil(end) - 1);
+					if (first[t] == last[t]) {
+						firstWeight[t] = lastWeight[t] = end - start;
+					} else {
+						firstWeight[t] = first[t] + 1 - start;
+						lastWeight[t] = Math.min(end, sourceLength) - last[t];
+					}
+					normalization[t] = scale;
+				} else {
+					// Pixel centers within [start, end)
+					first[t] = (int) Math.ceil(start - 0.5);
+					last[t] = Math.min(sourceLength, (int) Math.ceil(end - 0.5)) - 1;
+					if (last[t] < first[t]) {
+						first[t] = last[t] = Math.min(sourceLength - 1, (int) ((start + end) / 2));
+					}
+					firstWeight[t] = lastWeight[t] = 1;
+					normalization[t] = last[t] - first[t] + 1;
+				}
+			}
+		}
+
+		double getWeight(int t, int source) {
+			if (source == first[t]) {
+				return firstWeight[t];
+			}
+			return source == last[t] ? lastWeight[t] : 1;
+		}
+
+		/**
+		 * Reduce the source values to the target length, normalized by the footprint
+		 */
+		void reduce(double[] source, double[] target) {
+			for (int t = 0; t < target.length; t++) {
+				double sum = firstWeight[t] * source[first[t]];
+				if (last[t] != first[t]) {
+					for (int s = first[t] + 1; s < last[t]; s++) {
+						sum += source[s];
+					}
+					sum += lastWeight[t] * source[last[t]];
+				}
+				target[t] = sum / normalization[t];
+			}
+		}
+	}
+
+}
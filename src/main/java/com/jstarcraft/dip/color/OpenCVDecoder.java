@@ -0,0 +1,141 @@
+package com.jstarcraft.dip.color;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_GRAYSCALE;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_REDUCED_GRAYSCALE_2;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_REDUCED_GRAYSCALE_4;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_REDUCED_GRAYSCALE_8;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imdecode;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.javacpp.indexer.UByteIndexer;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+
+/**
+ * Decode the luminance of encoded images with OpenCV
+ * ({@link ImageBackend#OPENCV}).
+ * <p>
+ *
+ * The image is decoded directly to grayscale. If the image is large enough, it
+ * is decoded at a half, a quarter or an eighth of its resolution
+ * ({@code IMREAD_REDUCED_GRAYSCALE_2/4/8}), which JPEG images support without
+ * decoding the full resolution. The decoded luminance is scaled to the
+ * requested resolution by area averaging ({@code INTER_AREA}).
+ * <p>
+ *
+ * The luminance deviates from the luminance computed by the
+ * {@link LuminanceResampler} from the fully decoded image by a few gray levels.
+ * JPEG images are converted to grayscale from their stored luma instead of the
+ * rounded RGB values, the reduced decoding scales in the frequency domain and
+ * all intermediate values are rounded to 8 bit. Pixels close to the threshold
+ * of a hashing algorithm may therefore flip. For natural images the normalized
+ * hamming distance between the hashes of both backends stays below
+ * {@link #TOLERANCE}. Images with large uniform areas may exceed it.
+ * <p>
+ *
+ * The native libraries are only loaded if this class is used.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public final class OpenCVDecoder {
+
+	/**
+	 * The normalized hamming distance the hashes of natural images computed from
+	 * the luminance decoded by OpenCV deviate at most from the hashes computed by
+	 * Java2D
+	 */
+	public static final double TOLERANCE = 0.1;
+
+	/** Reduction factors supported while decoding, in descending order */
+	private static final int[] REDUCTIONS = { 8, 4, 2 };
+
+	private static final int[] REDUCTION_FLAGS = { IMREAD_REDUCED_GRAYSCALE_8, IMREAD_REDUCED_GRAYSCALE_4, IMREAD_REDUCED_GRAYSCALE_2 };
+
+	private static volatile Boolean available;
+
+	private OpenCVDecoder() {
+	}
+
+	/**
+	 * @return true if the native OpenCV libraries can be loaded on this platform
+	 */
+	public static boolean isAvailable() {
+		if (available == null) {
+			boolean loaded;
+			try {
+				Loader.load(opencv_imgcodecs.class);
+				Loader.load(opencv_imgproc.class);
+				loaded = true;
+			} catch (LinkageError | RuntimeException exception) {
+				loaded = false;
+			}
+			available = loaded;
+		}
+		return available;
+	}
+
+	/**
+	 * Decode the luminance of the image scaled to the given resolution.
+	 *
+	 * @param encoded       the encoded image file
+	 * @param width         the width of the scaled luminance
+	 * @param height        the height of the scaled luminance
+	 * @param minimumWidth  the minimum width the image is decoded with before it
+	 *                      is scaled
+	 * @param minimumHeight the minimum height the image is decoded with before it
+	 *                      is scaled
+	 * @return the scaled luminance or null if OpenCV does not support the format
+	 *         of the image
+	 * @throws IOException           if an error occurs during reading the header
+	 *                               of the image
+	 * @throws IllegalStateException if the native libraries are not available
+	 */
+	public static LuminancePixel readLuminance(byte[] encoded, int width, int height, int minimumWidth, int minimumHeight) throws IOException {
+		if (!isAvailable()) {
+			throw new IllegalStateException("The OpenCV libraries are not available on this platform");
+		}
+
+		int flags = IMREAD_GRAYSCALE;
+		int[] resolution = ImageDecoder.readResolution(new ByteArrayInputStream(encoded));
+		if (resolution != null) {
+			int subsampling = ImageDecoder.getSubsampling(resolution[0], resolution[1], Math.max(width, minimumWidth), Math.max(height, minimumHeight));
+			for (int index = 0; index < REDUCTIONS.length; index++) {
+				if (subsampling >= REDUCTIONS[index]) {
+					flags = REDUCTION_FLAGS[index];
+					break;
+				}
+			}
+		}
+
+		try (BytePointer pointer = new BytePointer(encoded); Mat buffer = new Mat(1, encoded.length, CV_8UC1, pointer); Mat decoded = imdecode(buffer, flags); Mat scaled = new Mat(); Size size = new Size(width, height)) {
+			if (decoded.empty()) {
+				return null;
+			}
+			resize(decoded, scaled, size, 0, 0, INTER_AREA);
+
+			int[] luminance = new int[width * height];
+			UByteIndexer indexer = scaled.createIndexer();
+			try {
+				for (int y = 0; y < height; y++) {
+					for (int x = 0; x < width; x++) {
+						luminance[y * width + x] = indexer.get(y, x);
+					}
+				}
+			} finally {
+				indexer.release();
+			}
+			return new LuminancePixel(width, height, luminance);
+		}
+	}
+
+}
@@ -569,7 +569,7 @@ public class FuzzyHash extends Hash {
 	}
 
 	private void updateHash() {
-		hashValue = BigInteger.ZERO;
+		long[] words = new long[(hashLength + 63) >>> 6];
 		for (int i = hashLength - 1; i >= 0; i--) {
 			// XXX we only have a binary representation. A bit weight of 0 usually means
 			// that
@@ -577,11 +577,12 @@ public class FuzzyHash extends Hash {
 			// hamming distance
 			// and normalized hamming distance will be skewed for sparsely populated hashes
 			if (bits[i] > 0) {
-				hashValue = hashValue.shiftLeft(1).add(BigInteger.ONE);
-			} else {
-				hashValue = hashValue.shiftLeft(1);
+				words[i >>> 6] |= 1L << i;
 			}
 		}
+		hashWords = words;
+		// The big integer view is recreated on demand
+		hashValue = null;
 		dirtyBits = false;
 	}
 
@@ -738,6 +739,12 @@ public class FuzzyHash extends Hash {
 		return super.getHashValue();
 	}
 
+	@Override
+	public long[] getHashWords() {
+		ensureUpToDateHash();
+		return super.getHashWords();
+	}
+
 	@Override
 	public boolean getBitUnsafe(int position) {
 		return bits[position] > 0;
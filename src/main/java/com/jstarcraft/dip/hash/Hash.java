@@ -48,9 +48,20 @@ public class Hash implements Serializable {
 	 * truncated therefore it is the algorithms responsibility to add a 1 padding
 	 * bit at the beginning new BigInteger("011011) new BigInteger("000101) 1xxxxx
 	 * 
+	 * <p>
+	 * The big integer is only a lazily created compatibility view of
+	 * {@link #hashWords} and is kept as field to preserve the serialized form.
+	 * Always access it via {@link #getHashValue()}.
 	 */
 	protected BigInteger hashValue;
 
+	/**
+	 * Packed hash value representation. Bit n of the hash is stored at bit
+	 * <code>n % 64</code> of word <code>n / 64</code>. Hamming distances are
+	 * computed on this array without allocating any objects.
+	 */
+	protected transient long[] hashWords;
+
 	/**
 	 * How many bits does this hash represent. Necessary due to suffix 0 bits
 	 * beginning dropped.
@@ -71,6 +82,27 @@ public class Hash implements Serializable {
 	 */
 	public Hash(BigInteger hashValue, int hashLength, int algorithmId) {
 		this.hashValue = hashValue;
+		this.hashWords = toWords(hashValue, hashLength);
+		this.algorithmId = algorithmId;
+		this.hashLength = hashLength;
+	}
+
+	/**
+	 * Creates a Hash object with the specified packed hash value and algorithmId.
+	 * To allow save comparison of different hashes they have to be generated by the
+	 * same algorithm.
+	 * 
+	 * @param hashWords   The packed hash value describing the image. Bit n of the
+	 *                    hash is expected at bit <code>n % 64</code> of word
+	 *                    <code>n / 64</code>. The array is not copied and must not
+	 *                    be altered afterwards.
+	 * @param hashLength  the actual bit resolution of the hash.
+	 * @param algorithmId Unique identifier of the algorithm used to create this
+	 *                    hash
+	 * @since 3.1.0
+	 */
+	public Hash(long[] hashWords, int hashLength, int algorithmId) {
+		this.hashWords = hashWords;
 		this.algorithmId = algorithmId;
 		this.hashLength = hashLength;
 	}
@@ -129,7 +161,7 @@ public class Hash implements Serializable {
 	 * @see #hammingDistance(Hash)
 	 */
 	public int hammingDistanceFast(Hash h) {
-		return this.hashValue.xor(h.getHashValue()).bitCount();
+		return hammingDistance(this.getHashWords(), h.getHashWords());
 	}
 
 	/**
@@ -156,7 +188,7 @@ public class Hash implements Serializable {
 	 * @see #hammingDistance(Hash)
 	 */
 	public int hammingDistanceFast(BigInteger bInt) {
-		return this.hashValue.xor(bInt).bitCount();
+		return this.getHashValue().xor(bInt).bitCount();
 	}
 
 	/**
@@ -238,7 +270,11 @@ public class Hash implements Serializable {
 	 * @since 2.0.0
 	 */
 	public boolean getBitUnsafe(int position) {
-		return hashValue.testBit(position);
+		if (position < 0) {
+			throw new ArithmeticException("Negative bit address");
+		}
+		int index = position >>> 6;
+		return index < hashWords.length && (hashWords[index] & (1L << position)) != 0;
 	}
 
 	/**
@@ -255,9 +291,24 @@ public class Hash implements Serializable {
 	 * @return the base BigInteger holding the hash value
 	 */
 	public BigInteger getHashValue() {
+		if (hashValue == null) {
+			hashValue = toBigInteger(hashWords);
+		}
 		return hashValue;
 	}
 
+	/**
+	 * Return the packed representation of the hash value. Bit n of the hash is
+	 * stored at bit <code>n % 64</code> of word <code>n / 64</code>.
+	 * 
+	 * @return a strong reference to the array backing this hash. The array must
+	 *         not be altered.
+	 * @since 3.1.0
+	 */
+	public long[] getHashWords() {
+		return hashWords;
+	}
+
 	/**
 	 * Creates a visual representation of the hash mapping the hash values to the
 	 * section of the rescaled image used to generate the hash assuming default bit
@@ -278,7 +329,7 @@ public class Hash implements Serializable {
 		int[] colorIndex = new int[hashLength];
 
 		for (int i = 0; i < hashLength; i++) {
-			colorIndex[i] = hashValue.testBit(i) ? 1 : 0;
+			colorIndex[i] = getBitUnsafe(i) ? 1 : 0;
 		}
 		return toImage(colorIndex, colorArr, blockSize);
 	}
@@ -403,7 +454,7 @@ public class Hash implements Serializable {
 	 *         byte.
 	 */
 	public byte[] toByteArray() {
-		byte[] bArray = hashValue.toByteArray();
+		byte[] bArray = getHashValue().toByteArray();
 
 		if (bArray[0] != 0) {
 			return bArray;
@@ -416,7 +467,81 @@ public class Hash implements Serializable {
 	}
 
 	public String toString() {
-		return "Hash: " + StringUtil.fillStringBeginning("0", hashLength, hashValue.toString(2)) + " [algoId: " + algorithmId + "]";
+		return "Hash: " + StringUtil.fillStringBeginning("0", hashLength, getHashValue().toString(2)) + " [algoId: " + algorithmId + "]";
+	}
+
+	/**
+	 * Count the differing bits of two packed hash values. Missing words of the
+	 * shorter array are treated as 0.
+	 * 
+	 * @param left  packed hash value
+	 * @param right packed hash value
+	 * @return the number of differing bits
+	 * @since 3.1.0
+	 */
+	public static int hammingDistance(long[] left, long[] right) {
+		// Fast path for keys up to 64 bit
+		if (left.length == 1 && right.length == 1) {
+			return Long.bitCount(left[0] ^ right[0]);
+		}
+		int common = Math.min(left.length, right.length);
+		int distance = 0;
+		for (int index = 0; index < common; index++) {
+			distance += Long.bitCount(left[index] ^ right[index]);
+		}
+		for (int index = common; index < left.length; index++) {
+			distance += Long.bitCount(left[index]);
+		}
+		for (int index = common; index < right.length; index++) {
+			distance += Long.bitCount(right[index]);
+		}
+		return distance;
+	}
+
+	/**
+	 * Pack a positive big integer into words. The array will be large enough to
+	 * hold at least <code>hashLength</code> bits.
+	 * 
+	 * @param value      the hash value
+	 * @param hashLength the bit resolution of the hash
+	 * @return the packed hash value
+	 */
+	static long[] toWords(BigInteger value, int hashLength) {
+		int length = Math.max(hashLength, value.bitLength());
+		long[] words = new long[(length + 63) >>> 6];
+		byte[] bytes = value.toByteArray();
+		for (int index = bytes.length - 1, bit = 0; index >= 0 && (bit >>> 6) < words.length; index--, bit += 8) {
+			words[bit >>> 6] |= (bytes[index] & 0xFFL) << (bit & 63);
+		}
+		return words;
+	}
+
+	/**
+	 * Convert packed words back to a positive big integer.
+	 * 
+	 * @param words the packed hash value
+	 * @return the big integer holding the hash value
+	 */
+	static BigInteger toBigInteger(long[] words) {
+		byte[] bytes = new byte[words.length << 3];
+		for (int index = 0, position = bytes.length - 1; index < words.length; index++) {
+			long word = words[index];
+			for (int shift = 0; shift < 64; shift += 8) {
+				bytes[position--] = (byte) (word >>> shift);
+			}
+		}
+		return new BigInteger(1, bytes);
+	}
+
+	private void writeObject(ObjectOutputStream output) throws IOException {
+		// Materialize the big integer to keep the serialized form compatible
+		getHashValue();
+		output.defaultWriteObject();
+	}
+
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		hashWords = toWords(hashValue, hashLength);
 	}
 
 	@Override
@@ -424,7 +549,15 @@ public class Hash implements Serializable {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + algorithmId;
-		result = prime * result + ((hashValue == null) ? 0 : hashValue.hashCode());
+		long[] words = getHashWords();
+		// Trailing zero words do not change the value
+		int length = words.length;
+		while (length > 0 && words[length - 1] == 0) {
+			length--;
+		}
+		for (int index = 0; index < length; index++) {
+			result = prime * result + Long.hashCode(words[index]);
+		}
 		return result;
 	}
 
@@ -439,10 +572,7 @@ public class Hash implements Serializable {
 		Hash other = (Hash) obj;
 		if (algorithmId != other.getAlgorithmId())
 			return false;
-		if (hashValue == null) {
-			if (other.hashValue != null)
-				return false;
-		} else if (!hashValue.equals(other.getHashValue()))
+		if (hammingDistance(getHashWords(), other.getHashWords()) != 0)
 			return false;
 		return true;
 	}
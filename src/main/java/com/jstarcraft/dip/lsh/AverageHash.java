@@ -1,6 +1,5 @@
 package com.jstarcraft.dip.lsh;
 
-import java.math.BigInteger;
 import java.util.Objects;
 
 import com.github.kilianB.ArrayUtil;
@@ -58,7 +57,7 @@ public class AverageHash extends HashingAlgorithm {
     }
 
     @Override
-    protected BigInteger hash(ColorPixel pixel, HashBuilder hash) {
+    protected long[] hash(ColorPixel pixel, HashBuilder hash) {
         int[][] luminance = pixel.getLuminanceMatrix();
 
         // Calculate the average color of the entire image
@@ -68,7 +67,7 @@ public class AverageHash extends HashingAlgorithm {
         return computeHash(hash, luminance, average);
     }
 
-    protected BigInteger computeHash(HashBuilder hash, double[][] pixels, double compare) {
+    protected long[] computeHash(HashBuilder hash, double[][] pixels, double compare) {
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
                 if (pixels[x][y] < compare) {
@@ -78,10 +77,10 @@ public class AverageHash extends HashingAlgorithm {
                 }
             }
         }
-        return hash.toBigInteger();
+        return hash.toWords();
     }
 
-    protected BigInteger computeHash(HashBuilder hash, int[][] pixels, double compare) {
+    protected long[] computeHash(HashBuilder hash, int[][] pixels, double compare) {
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
                 if (pixels[x][y] < compare) {
@@ -91,7 +90,12 @@ public class AverageHash extends HashingAlgorithm {
                 }
             }
         }
-        return hash.toBigInteger();
+        return hash.toWords();
+    }
+
+    @Override
+    protected boolean isLuminanceHash() {
+        return true;
     }
 
     @Override
@@ -2,7 +2,6 @@ package com.jstarcraft.dip.lsh;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
-import java.math.BigInteger;
 import java.util.Objects;
 
 import com.jstarcraft.dip.color.ColorPixel;
@@ -96,7 +95,7 @@ public class DifferenceHash extends HashingAlgorithm {
     }
 
     @Override
-    protected BigInteger hash(ColorPixel pixel, HashBuilder hash) {
+    protected long[] hash(ColorPixel pixel, HashBuilder hash) {
         // Use data buffer for faster access
 
         int[][] luminance = pixel.getLuminanceMatrix();
@@ -144,7 +143,12 @@ public class DifferenceHash extends HashingAlgorithm {
             break;
         }
         }
-        return hash.toBigInteger();
+        return hash.toWords();
+    }
+
+    @Override
+    protected boolean isLuminanceHash() {
+        return true;
     }
 
     @Override
@@ -157,11 +161,6 @@ public class DifferenceHash extends HashingAlgorithm {
      * Difference hash requires a little bit different handling when converting the
      * hash to an image.
      */
-    @Override
-    public Hash hash(BufferedImage image) {
-        return new DHash(super.hash(image), this.gradient, width, height);
-    }
-
     @Override
     public Hash createAlgorithmSpecificHash(Hash original) {
         return new DHash(original, this.gradient, width, height);
@@ -192,7 +191,7 @@ public class DifferenceHash extends HashingAlgorithm {
             int[] colorIndex = new int[hashLength];
 
             for (int i = 0; i < hashLength; i++) {
-                colorIndex[i] = hashValue.testBit(i) ? 1 : 0;
+                colorIndex[i] = getBitUnsafe(i) ? 1 : 0;
             }
             return toImage(colorIndex, colorArr, blockSize);
         }
@@ -1,6 +1,5 @@
 package com.jstarcraft.dip.lsh;
 
-import java.math.BigInteger;
 
 import com.github.kilianB.ArrayUtil;
 import com.jstarcraft.dip.color.ColorPixel;
@@ -44,7 +43,7 @@ public class GrayscaleHash extends AverageHash {
     }
 
     @Override
-    protected BigInteger hash(ColorPixel pixel, HashBuilder hash) {
+    protected long[] hash(ColorPixel pixel, HashBuilder hash) {
         int[][] grayscale = pixel.getGrayscaleMatrix();
 
         // Calculate the average color of the entire image
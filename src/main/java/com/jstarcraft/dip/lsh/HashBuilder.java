@@ -1,24 +1,30 @@
 package com.jstarcraft.dip.lsh;
 
 import java.math.BigInteger;
+import java.util.Arrays;
+
+import com.jstarcraft.dip.hash.Hash;
 
 /**
- * Helper class to quickly create a bitwise byte array representation which can
- * be converted to a big integer object.
- * 
+ * Helper class to quickly create a bitwise packed long array representation
+ * which can be handed to a {@link com.jstarcraft.dip.hash.Hash} without any
+ * intermediate conversion.
+ *
  * <p>
  * To maintain the capability to decode the created hash value back to an image
- * the order of the byte array is of utmost importance. Due to hashes ability to
- * contain non 8 compliment bit values and {@link java.math.BigInteger}
- * stripping leading zero bits the partial bit value has to be present at the 0
- * slot.
+ * the order of the bits is of utmost importance. The first bit added will be
+ * the lowest bit of the hash, the n-th bit added is stored at bit
+ * <code>n % 64</code> of word <code>n / 64</code>.
  * <p>
- * The hashbuilder systematically grows the base byte[] array as needed but
+ * The hashbuilder systematically grows the base long[] array as needed but
  * performs the best if the correct amount of bits are known beforehand.
- * 
+ * Builders can be reused by calling {@link #reset(int)}. A per thread instance
+ * is available via {@link #getInstance(int)} to avoid any allocation besides
+ * the final word array.
+ *
  * <p>
  * In other terms this class performs the same operation as
- * 
+ *
  * <pre>
  * <code>
  * 	StringBuilder sb = new StringBuilder();
@@ -26,32 +32,27 @@ import java.math.BigInteger;
  * 	BigInteger b = new BigInteger(sb.toString(),2);
  * </code>
  * </pre>
- * 
+ *
  * But scales much much better for higher hash values. The order of the bits are
  * flipped using the hashbuilder approach.
- * 
+ *
  * @author Kilian
- * 
- *         TODO we don't really need a Big Integer at all. We can use a byte
- *         array.
  * @since 3.0.0
  */
 public class HashBuilder {
 
     /**
-     * Mask used to add
+     * Builders reused by the hashing algorithms of the current thread
      */
-    private static final byte[] MASK = { 1, 1 << 1, 1 << 2, 1 << 3, 1 << 4, 1 << 5, 1 << 6, (byte) (1 << 7) };
+    private static final ThreadLocal<HashBuilder> BUILDERS = ThreadLocal.withInitial(() -> new HashBuilder(Long.SIZE));
 
-    private byte[] bytes;
-    private int arrayIndex = 0;
-    private int bitIndex = 0;
+    private long[] words;
     protected int length;
 
     /**
      * Create a hashbuilder.
-     * 
-     * @param bits the number of bits the hash will have [8 - Integer.MAX_VALUE]. If
+     *
+     * @param bits the number of bits the hash will have [1 - Integer.MAX_VALUE]. If
      *             the builder requires more space than specified copy operations
      *             will take place to grow the builder automatically.
      *             <p>
@@ -60,25 +61,47 @@ public class HashBuilder {
      *             penalty
      */
     public HashBuilder(int bits) {
-        bytes = new byte[(int) Math.ceil(bits / 8d)];
-        arrayIndex = bytes.length - 1;
+        words = new long[getWordCount(Math.max(bits, 1))];
+    }
+
+    /**
+     * Return the builder bound to the current thread after resetting it. The
+     * builder must not be handed to other threads and is only valid until the next
+     * invocation of this method on the same thread.
+     *
+     * @param bits the number of bits the hash will have
+     * @return a reset builder
+     * @since 3.1.0
+     */
+    public static HashBuilder getInstance(int bits) {
+        HashBuilder builder = BUILDERS.get();
+        builder.reset(bits);
+        return builder;
+    }
+
+    /**
+     * Clear all bits added so far allowing the builder to be reused.
+     *
+     * @param bits the number of bits the next hash will have
+     * @since 3.1.0
+     */
+    public void reset(int bits) {
+        int count = getWordCount(Math.max(bits, 1));
+        if (count > words.length) {
+            words = new long[count];
+        } else {
+            Arrays.fill(words, 0L);
+        }
+        length = 0;
     }
 
     /**
      * Add a zero bit to the hash
      */
     public void prependZero() {
-        if (bitIndex == 8) {
-            bitIndex = 0;
-            arrayIndex--;
-            if (arrayIndex == -1) {
-                byte[] temp = new byte[bytes.length + 1];
-                System.arraycopy(bytes, 0, temp, 1, bytes.length);
-                bytes = temp;
-                arrayIndex = 0;
-            }
+        if ((length >>> 6) == words.length) {
+            words = Arrays.copyOf(words, words.length + 1);
         }
-        bitIndex++;
         length++;
     }
 
@@ -86,26 +109,62 @@ public class HashBuilder {
      * Add a one bit to the hash
      */
     public void prependOne() {
-        if (bitIndex == 8) {
-            bitIndex = 0;
-            arrayIndex--;
-            if (arrayIndex == -1) {
-                byte[] temp = new byte[bytes.length + 1];
-                System.arraycopy(bytes, 0, temp, 1, bytes.length);
-                bytes = temp;
-                arrayIndex = 0;
-            }
+        int index = length >>> 6;
+        if (index == words.length) {
+            words = Arrays.copyOf(words, words.length + 1);
         }
-        bytes[arrayIndex] |= MASK[bitIndex++];
+        words[index] |= 1L << length;
         length++;
     }
 
+    /**
+     * @return the number of bits added since the builder was created or reset
+     * @since 3.1.0
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Copy the internal state of the hashbuilder to a packed word array which can
+     * be used to create a {@link com.jstarcraft.dip.hash.Hash}.
+     *
+     * @return a word array exactly large enough to hold all added bits
+     * @since 3.1.0
+     */
+    public long[] toWords() {
+        return Arrays.copyOf(words, getWordCount(length));
+    }
+
+    /**
+     * Create a hash from the internal state of the hashbuilder
+     *
+     * @param algorithmId the id of the algorithm which created the hash
+     * @return a hash object
+     * @since 3.1.0
+     */
+    public Hash toHash(int algorithmId) {
+        return new Hash(toWords(), length, algorithmId);
+    }
+
     /**
      * Convert the internal state of the hashbuilder to a big integer object
-     * 
+     *
      * @return a big integer object
      */
     public BigInteger toBigInteger() {
+        int count = getWordCount(length);
+        byte[] bytes = new byte[count << 3];
+        for (int index = 0, position = bytes.length - 1; index < count; index++) {
+            long word = words[index];
+            for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+                bytes[position--] = (byte) (word >>> shift);
+            }
+        }
         return new BigInteger(1, bytes);
     }
-}
\ No newline at end of file
+
+    private static int getWordCount(int bits) {
+        return (bits + 63) >>> 6;
+    }
+}
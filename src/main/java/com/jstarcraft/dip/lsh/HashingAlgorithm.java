@@ -1,10 +1,14 @@
 package com.jstarcraft.dip.lsh;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.math.BigInteger;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -12,9 +16,13 @@ import javax.imageio.ImageIO;
 
 import com.github.kilianB.Require;
 import com.jstarcraft.dip.color.ColorPixel;
-import com.jstarcraft.dip.color.ImageUtility;
+import com.jstarcraft.dip.color.ImageBackend;
+import com.jstarcraft.dip.color.ImageDecoder;
 import com.jstarcraft.dip.hash.Hash;
 import com.jstarcraft.dip.lsh.kernel.ImageConverter;
+import com.jstarcraft.dip.metrics.FlightRecorderEvents;
+import com.jstarcraft.dip.metrics.MetricsListener;
+import com.jstarcraft.dip.metrics.Stage;
 
 /**
  * Base class for hashing algorithms returning perceptual hashes for supplied
@@ -76,6 +84,35 @@ public abstract class HashingAlgorithm {
      */
     protected int height, width;
 
+    /**
+     * Number of row bands the image is resampled with in parallel
+     */
+    private int resamplingParallelism = 1;
+
+    /**
+     * Decode images read from files and streams at a reduced resolution
+     */
+    private boolean subsampledDecoding = false;
+
+    /**
+     * The backend decoding images read from files and streams. Null to use the
+     * default backend
+     */
+    private ImageBackend imageBackend;
+
+    /**
+     * Receives the durations of the hashing stages. Null if the stages are not
+     * timed
+     */
+    private MetricsListener metricsListener;
+
+    /**
+     * Factor the resolution of subsampled images at least exceeds the resolution
+     * of the algorithm. Equals the factor the image pyramid of the
+     * {@link HashingContext} keeps between its last level and the algorithm.
+     */
+    private static final int DECODING_HEADROOM = 4;
+
     /**
      * Promises a key with approximately bit resolution. Due to geometric
      * requirements the key might be marginally larger or smaller than specified.
@@ -134,26 +171,288 @@ public abstract class HashingAlgorithm {
      * 
      * @param image Image whose hash will be calculated
      * @return The hash representing the image
+     * @throws IllegalArgumentException if the algorithm decodes images by its
+     *                                  backend (see {@link #isBackendDecoding()})
      * @see Hash
      */
     public Hash hash(BufferedImage image) {
-        // If we have kernels defined alter red green and blue values accordingly
-        if (!converters.isEmpty()) {
-            for (ImageConverter converter : converters) {
-                image = converter.convert(image);
-            }
+        return hash(new HashingContext(image, resamplingParallelism));
+    }
+
+    /**
+     * Calculate a hash for the image of the context. Preprocessing steps, e.g.
+     * applying converters and scaling the image, are shared with all other
+     * algorithms hashing the same context. The hash is equal to the hash computed
+     * by {@link #hash(BufferedImage)}, or by {@link #hash(File)} if the context
+     * was created from the encoded content of the file.
+     * <p>
+     * Emits a <code>com.jstarcraft.dip.Hash</code> flight recorder event.
+     * 
+     * @param context the preprocessed image whose hash will be calculated
+     * @return The hash representing the image
+     * @throws IllegalArgumentException if the algorithm decodes images by its
+     *                                  backend (see {@link #isBackendDecoding()})
+     *                                  and the context was not created from an
+     *                                  encoded image
+     * @see Hash
+     * @see FlightRecorderEvents
+     * @since 3.1.0
+     */
+    public Hash hash(HashingContext context) {
+        algorithmId();
+        if (isBackendDecoding() && !context.isEncoded()) {
+            // Hashes of the backend and of decoded images must not share the algorithm id
+            throw new IllegalArgumentException("Algorithms decoding images by the " + imageBackend + " backend can only hash encoded images");
+        }
+        Object event = FlightRecorderEvents.beginHash();
+        Hash hash = hashPixel(context.getPixel(this), context.getMetricsListener(this));
+        if (event != null) {
+            FlightRecorderEvents.commitHash(event, getClass(), algorithmId(), hash.getBitResolution());
         }
+        return hash;
+    }
+
+    /**
+     * @param pixel    the converted and scaled pixels of the image
+     * @param listener receives the duration of the transformation. May be null
+     * @return The hash representing the image, wrapped by
+     *         {@link #createAlgorithmSpecificHash(Hash)} regardless of the way the
+     *         image was decoded
+     */
+    private Hash hashPixel(ColorPixel pixel, MetricsListener listener) {
         immutableState = true;
-        BigInteger bits;
-        ColorPixel pixel = ColorPixel.convert(ImageUtility.getScaledInstance(image, width, height));
+        long start = listener == null ? 0 : System.nanoTime();
+        long[] bits;
         if (keyDimension < 0) {
-            HashBuilder builder = new HashBuilder(this.bitDimension);
+            HashBuilder builder = HashBuilder.getInstance(this.bitDimension);
             bits = hash(pixel, builder);
             keyDimension = builder.length;
         } else {
-            bits = hash(pixel, new HashBuilder(getKeyResolution()));
+            bits = hash(pixel, HashBuilder.getInstance(keyDimension));
+        }
+        if (listener != null) {
+            listener.record(Stage.TRANSFORM, System.nanoTime() - start);
+        }
+        return createAlgorithmSpecificHash(new Hash(bits, getKeyResolution(), algorithmId()));
+    }
+
+    /**
+     * Indicate that the hash is computed solely from the luminance of the scaled
+     * image. The luminance of these algorithms is computed by a
+     * {@link com.jstarcraft.dip.color.LuminanceResampler LuminanceResampler} which
+     * avoids creating an intermediate scaled image. The supplied
+     * {@link ColorPixel} is shared with other algorithms and may not be
+     * modified.
+     * 
+     * @return true if {@link #hash(ColorPixel, HashBuilder)} only accesses the
+     *         luminance of the pixels
+     * @since 3.1.0
+     */
+    protected boolean isLuminanceHash() {
+        return false;
+    }
+
+    /**
+     * Set the number of row bands resampled in parallel when hashing a single
+     * image via {@link #hash(BufferedImage)}. Parallel resampling only pays off
+     * for large images hashed one at a time and does not alter the computed
+     * hashes.
+     * 
+     * @param parallelism the number of row bands. 1 resamples on the calling
+     *                    thread
+     * @since 3.1.0
+     */
+    public void setResamplingParallelism(int parallelism) {
+        this.resamplingParallelism = Require.positiveValue(parallelism, "The parallelism has to be positive");
+    }
+
+    /**
+     * @return the number of row bands resampled in parallel
+     * @since 3.1.0
+     */
+    public int getResamplingParallelism() {
+        return resamplingParallelism;
+    }
+
+    /**
+     * Decode images hashed via {@link #hash(File)} and {@link #hash(InputStream)}
+     * at a reduced resolution which still is at least four times as large as the
+     * resolution the algorithm scales images to. Decoding only a fraction of the
+     * pixels of large images is considerably faster, but the hashes may differ
+     * in a few bits from the hashes of the fully decoded image. Therefore, it is
+     * disabled by default and enabling it changes the algorithm id.
+     * 
+     * @param subsampledDecoding true to decode images at a reduced resolution
+     * @throws IllegalStateException if a hash was already created and the object is
+     *                               considered immutable.
+     * @since 3.1.0
+     */
+    public void setSubsampledDecoding(boolean subsampledDecoding) {
+        if (immutableState) {
+            throw new IllegalStateException(LOCKED_MODIFICATION_EXCEPTION);
+        }
+        this.subsampledDecoding = subsampledDecoding;
+    }
+
+    /**
+     * @return true if images are decoded at a reduced resolution
+     * @since 3.1.0
+     */
+    public boolean isSubsampledDecoding() {
+        return subsampledDecoding;
+    }
+
+    /**
+     * Set the backend decoding and scaling images hashed via {@link #hash(File)}
+     * and {@link #hash(InputStream)}. Backends other than
+     * {@link ImageBackend#JAVA2D} trade the equality to the hash of the decoded
+     * {@link BufferedImage} for throughput and change the algorithm id if the
+     * algorithm is supported by the backend. Such algorithms only hash encoded
+     * images, i.e. files, streams and contexts created from encoded images.
+     * <p>
+     * If no backend is set the {@link ImageBackend#getDefault() default backend}
+     * is resolved once the algorithm id is computed and stays fixed afterwards.
+     * 
+     * @param imageBackend the backend or null to use the
+     *                     {@link ImageBackend#getDefault() default backend}
+     * @throws IllegalStateException if a hash was already created and the object is
+     *                               considered immutable.
+     * @since 3.1.0
+     */
+    public void setImageBackend(ImageBackend imageBackend) {
+        if (immutableState) {
+            throw new IllegalStateException(LOCKED_MODIFICATION_EXCEPTION);
+        }
+        this.imageBackend = imageBackend;
+    }
+
+    /**
+     * @return the backend decoding and scaling images read from files and streams
+     * @since 3.1.0
+     */
+    public ImageBackend getImageBackend() {
+        return imageBackend == null ? ImageBackend.getDefault() : imageBackend;
+    }
+
+    /**
+     * Time the stages of hashing images with this algorithm, from decoding files
+     * and streams to the algorithm specific transformation. The listener of a
+     * {@link HashingContext} takes precedence over the listener of the
+     * algorithm. Unlike other settings the listener does not alter the hashes
+     * and may be changed at any time.
+     * 
+     * @param metricsListener the listener receiving the durations or null to not
+     *                        time the stages
+     * @see com.jstarcraft.dip.metrics.HashingMetrics
+     * @since 3.1.0
+     */
+    public void setMetricsListener(MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * @return the listener receiving the durations of the hashing stages or null
+     * @since 3.1.0
+     */
+    public MetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * @return true if the luminance of images is decoded by the backend instead of
+     *         being scaled from a buffered image
+     * @see #setImageBackend(ImageBackend)
+     * @since 3.1.0
+     */
+    public boolean isBackendDecoding() {
+        return getImageBackend() != ImageBackend.JAVA2D && isLuminanceHash() && converters.isEmpty();
+    }
+
+    /**
+     * Create the context of the encoded image decoded by the backend. Images not
+     * supported by the backend are decoded as configured.
+     */
+    private HashingContext createContext(byte[] encoded) {
+        HashingContext context = new HashingContext(encoded, resamplingParallelism);
+        if (subsampledDecoding) {
+            int[] resolution = getDecodingResolution(Collections.singleton(this));
+            context.setDecodingResolution(resolution[0], resolution[1]);
+        }
+        return context;
+    }
+
+    /**
+     * Decode the image as configured, timing the decoding
+     */
+    private BufferedImage read(File file) throws IOException {
+        MetricsListener listener = metricsListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        BufferedImage image = subsampledDecoding ? readSubsampled(file, Collections.singleton(this)) : ImageIO.read(file);
+        if (listener != null) {
+            listener.record(Stage.DECODE, System.nanoTime() - start);
+        }
+        return image;
+    }
+
+    /**
+     * Decode the image as configured, timing the decoding
+     */
+    private BufferedImage read(InputStream stream) throws IOException {
+        MetricsListener listener = metricsListener;
+        long start = listener == null ? 0 : System.nanoTime();
+        BufferedImage image = subsampledDecoding ? readSubsampled(stream, Collections.singleton(this)) : ImageIO.read(stream);
+        if (listener != null) {
+            listener.record(Stage.DECODE, System.nanoTime() - start);
+        }
+        return image;
+    }
+
+    /**
+     * Decode the image at the resolution sufficient for all supplied algorithms
+     * 
+     * @param file       the file pointing to the image
+     * @param algorithms the algorithms the image will be hashed by
+     * @return the decoded image or null if the image format is not supported
+     * @throws IOException if an error occurs during loading the image
+     * @see #setSubsampledDecoding(boolean)
+     * @since 3.1.0
+     */
+    public static BufferedImage readSubsampled(File file, Collection<? extends HashingAlgorithm> algorithms) throws IOException {
+        int[] resolution = getDecodingResolution(algorithms);
+        return ImageDecoder.read(file, resolution[0], resolution[1]);
+    }
+
+    /**
+     * Decode the image at the resolution sufficient for all supplied algorithms
+     * 
+     * @param stream     the stream containing the image
+     * @param algorithms the algorithms the image will be hashed by
+     * @return the decoded image or null if the image format is not supported
+     * @throws IOException if an error occurs during loading the image
+     * @see #setSubsampledDecoding(boolean)
+     * @since 3.1.0
+     */
+    public static BufferedImage readSubsampled(InputStream stream, Collection<? extends HashingAlgorithm> algorithms) throws IOException {
+        int[] resolution = getDecodingResolution(algorithms);
+        return ImageDecoder.read(stream, resolution[0], resolution[1]);
+    }
+
+    /**
+     * Compute the resolution images have to be decoded with to be hashed by the
+     * supplied algorithms without a loss in precision
+     * 
+     * @param algorithms the algorithms the image will be hashed by
+     * @return the minimum width and height of the decoded image
+     * @since 3.1.0
+     */
+    public static int[] getDecodingResolution(Collection<? extends HashingAlgorithm> algorithms) {
+        int width = 1;
+        int height = 1;
+        for (HashingAlgorithm algorithm : algorithms) {
+            width = Math.max(width, algorithm.width * DECODING_HEADROOM);
+            height = Math.max(height, algorithm.height * DECODING_HEADROOM);
         }
-        return new Hash(bits, getKeyResolution(), algorithmId());
+        return new int[] { width, height };
     }
 
     /**
@@ -161,6 +460,9 @@ public abstract class HashingAlgorithm {
      * image has to return the same hash value. A comparison of the hashes relates
      * to the similarity of the images. The lower the value the more similar the
      * images are. Equal images will produce a similarity of 0.
+     * <p>
+     * Only the first frame of animated and multi-page images is hashed. Use the
+     * {@link com.jstarcraft.dip.video.AnimationHasher} to hash all frames.
      * 
      * @param file The file pointing to the image
      * @return The hash representing the image
@@ -168,8 +470,39 @@ public abstract class HashingAlgorithm {
      * @see Hash
      */
     public Hash hash(File file) throws IOException {
-        immutableState = true;
-        return hash(ImageIO.read(file));
+        // Lock the decoding settings before they are read
+        algorithmId();
+        if (isBackendDecoding()) {
+            return hash(createContext(Files.readAllBytes(file.toPath())));
+        }
+        return hash(read(file));
+    }
+
+    /**
+     * Calculate a hash for the given image. Invoking the hash function on the same
+     * image has to return the same hash value. A comparison of the hashes relates
+     * to the similarity of the images. The lower the value the more similar the
+     * images are. Equal images will produce a similarity of 0.
+     * 
+     * @param stream The stream containing the image. The stream is not closed.
+     * @return The hash representing the image
+     * @throws IOException if an error occurs during loading the image
+     * @see Hash
+     * @since 3.1.0
+     */
+    public Hash hash(InputStream stream) throws IOException {
+        // Lock the decoding settings before they are read
+        algorithmId();
+        if (isBackendDecoding()) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = stream.read(buffer)) != -1) {
+                encoded.write(buffer, 0, length);
+            }
+            return hash(createContext(encoded.toByteArray()));
+        }
+        return hash(read(stream));
     }
 
     /**
@@ -188,9 +521,9 @@ public abstract class HashingAlgorithm {
      * 
      * @param image   Image whose hash will be calculated
      * @param builder a hash builder used to construct the hash
-     * @return the hash encoded as a big integer
+     * @return the hash encoded as packed words (see {@link HashBuilder#toWords()})
      */
-    protected abstract BigInteger hash(ColorPixel pixel, HashBuilder builder);
+    protected abstract long[] hash(ColorPixel pixel, HashBuilder builder);
 
     /**
      * A unique id identifying the settings and algorithms used to generate the
@@ -210,6 +543,22 @@ public abstract class HashingAlgorithm {
             algorithmId = 31 * precomputeAlgoId();
             // Make sure the algo id doesn't collide with version 2.0.0 id's
             algorithmId = 31 * algorithmId + 5 + converters.hashCode();
+            // Area averaged luminance in 3.1.0 changed the hashes of version 3.0.0
+            if (isLuminanceHash()) {
+                algorithmId = 31 * algorithmId + 7;
+            }
+            // Decoding at a reduced resolution alters the hashes of files and streams
+            if (subsampledDecoding) {
+                algorithmId = 31 * algorithmId + 11;
+            }
+            // Resolve the default backend once, later changes of the default would
+            // alter the hashes of this algorithm
+            if (imageBackend == null) {
+                imageBackend = ImageBackend.getDefault();
+            }
+            if (isBackendDecoding()) {
+                algorithmId = 31 * algorithmId + imageBackend.name().hashCode();
+            }
             immutableState = true;
         }
         return algorithmId;
@@ -261,8 +610,8 @@ public abstract class HashingAlgorithm {
         // return value
         if (keyDimension < 0) {
             BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR);
-            ColorPixel pixel = ColorPixel.convert(ImageUtility.getScaledInstance(image, width, height));
-            HashBuilder builder = new HashBuilder(this.bitDimension);
+            ColorPixel pixel = new HashingContext(image).getPixel(this);
+            HashBuilder builder = HashBuilder.getInstance(this.bitDimension);
             this.hash(pixel, builder);
             keyDimension = builder.length;
         }
@@ -0,0 +1,459 @@
+package com.jstarcraft.dip.lsh;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import com.github.kilianB.Require;
+import com.jstarcraft.dip.color.ColorPixel;
+import com.jstarcraft.dip.color.ImageBackend;
+import com.jstarcraft.dip.color.ImageDecoder;
+import com.jstarcraft.dip.color.ImageUtility;
+import com.jstarcraft.dip.color.JpegLuminance;
+import com.jstarcraft.dip.color.LuminancePixel;
+import com.jstarcraft.dip.color.LuminanceResampler;
+import com.jstarcraft.dip.color.OpenCVDecoder;
+import com.jstarcraft.dip.lsh.kernel.ImageConverter;
+import com.jstarcraft.dip.metrics.FlightRecorderEvents;
+import com.jstarcraft.dip.metrics.MetricsListener;
+import com.jstarcraft.dip.metrics.Stage;
+
+/**
+ * The preprocessed state of a single image shared by all hashing algorithms
+ * hashing the image.
+ * <p>
+ *
+ * Hashing an image requires applying the converters of the algorithm, scaling
+ * the image and extracting the channels accessed by the algorithm. If multiple
+ * algorithms hash the same image, e.g. the algorithms of an image matcher, these
+ * steps are performed only once per distinct set of converters and resolution
+ * by passing the same context to {@link HashingAlgorithm#hash(HashingContext)}.
+ * <p>
+ *
+ * The luminance required by {@link HashingAlgorithm#isLuminanceHash() luminance
+ * algorithms} is taken from an image pyramid. The base level of the pyramid is
+ * resampled from the image in a single pass and is at most
+ * {@link #BASE_RESOLUTION} pixels wide and high. Every further level halves the
+ * resolution of the previous level. The luminance of an algorithm is resampled
+ * from the smallest level which is at least four times as large as the
+ * resolution of the algorithm, which keeps the deviation caused by the
+ * intermediate levels negligible. The levels only depend on the image,
+ * therefore hashing the image with or without a shared context produces the
+ * same hash.
+ * <p>
+ *
+ * All other algorithms receive a scaled copy of the image which is shared
+ * between algorithms of the same resolution.
+ * <p>
+ *
+ * A context created from an encoded image decodes the image once it is first
+ * required, at full resolution unless a
+ * {@link #setDecodingResolution(int, int) decoding resolution} is set.
+ * Algorithms decoding images by their backend (see
+ * {@link HashingAlgorithm#isBackendDecoding()}) can only hash contexts created
+ * from encoded images. Algorithms using the {@link ImageBackend#JPEG_DC} backend
+ * hash JPEG images from a pyramid whose base level is the {@link JpegLuminance}
+ * of the image, if it is at least four times as large as the resolution of the
+ * algorithm, in which case the image is not decoded at all. Algorithms using the
+ * {@link ImageBackend#OPENCV} backend hash the luminance decoded by OpenCV.
+ * Images not supported by the backend are hashed from the decoded image.
+ * <p>
+ *
+ * The durations of decoding, converting and scaling the image are reported to
+ * the {@link #setMetricsListener(MetricsListener) listener} of the context or,
+ * if none is set, the listener of the algorithm requesting the pixels.
+ * <p>
+ *
+ * This class is thread safe. The pixels handed to the algorithms are shared and
+ * may not be modified.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class HashingContext {
+
+	/**
+	 * The maximum width and height of the base level of the pyramid
+	 */
+	public static final int BASE_RESOLUTION = 512;
+
+	/** The decoded image. Null until decoded if created from an encoded image */
+	private BufferedImage image;
+
+	/** The encoded image. Null if created from a decoded image */
+	private final byte[] encoded;
+
+	/** The luminance of the blocks of a JPEG image. Null if not parsed yet or not a JPEG image */
+	private JpegLuminance jpegLuminance;
+
+	private boolean jpegParsed;
+
+	/** The levels of the luminance of the blocks of a JPEG image */
+	private Pyramid jpegPyramid;
+
+	/** The minimum resolution the encoded image is decoded with. 0 to decode at full resolution */
+	private int decodingWidth, decodingHeight;
+
+	/** Number of row bands the base level is resampled with in parallel */
+	private final int parallelism;
+
+	/** The preprocessed images keyed by the converters applied to them */
+	private final Map<List<ImageConverter>, Pyramid> pyramids = new HashMap<>();
+
+	/** Receives the durations of the stages. Null to use the listener of the algorithm */
+	private volatile MetricsListener metricsListener;
+
+	/**
+	 * @param image the image to hash
+	 */
+	public HashingContext(BufferedImage image) {
+		this(image, 1);
+	}
+
+	/**
+	 * @param image       the image to hash
+	 * @param parallelism the number of row bands resampled in parallel when
+	 *                    creating the base level of the pyramid
+	 */
+	public HashingContext(BufferedImage image, int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("The parallelism has to be positive");
+		}
+		this.image = image;
+		this.encoded = null;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param encoded the encoded image to hash, e.g. the content of an image file
+	 * @since 3.1.0
+	 */
+	public HashingContext(byte[] encoded) {
+		this(encoded, 1);
+	}
+
+	/**
+	 * @param encoded     the encoded image to hash, e.g. the content of an image
+	 *                    file
+	 * @param parallelism the number of row bands resampled in parallel when
+	 *                    creating the base level of the pyramid
+	 * @since 3.1.0
+	 */
+	public HashingContext(byte[] encoded, int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("The parallelism has to be positive");
+		}
+		this.encoded = encoded;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Get the pixels the algorithm computes its hash from
+	 *
+	 * @param algorithm the hashing algorithm
+	 * @return the converted and scaled image
+	 */
+	synchronized ColorPixel getPixel(HashingAlgorithm algorithm) {
+		MetricsListener listener = getMetricsListener(algorithm);
+		if (algorithm.isBackendDecoding()) {
+			ColorPixel pixel;
+			if (algorithm.getImageBackend() == ImageBackend.OPENCV) {
+				pixel = getOpenCVLuminancePixel(algorithm, listener);
+			} else {
+				pixel = getJpegLuminancePixel(algorithm.width, algorithm.height, listener);
+			}
+			if (pixel != null) {
+				return pixel;
+			}
+		}
+		Pyramid pyramid = pyramids.get(algorithm.converters);
+		if (pyramid == null) {
+			List<ImageConverter> converters;
+			BufferedImage converted = getImage(listener);
+			if (algorithm.converters.isEmpty()) {
+				converters = Collections.emptyList();
+			} else {
+				long start = listener == null ? 0 : System.nanoTime();
+				converters = new ArrayList<>(algorithm.converters);
+				for (ImageConverter converter : converters) {
+					Object event = FlightRecorderEvents.beginConvert();
+					converted = converter.convert(converted);
+					if (event != null) {
+						FlightRecorderEvents.commitConvert(event, converter.getClass(), converted.getWidth(), converted.getHeight());
+					}
+				}
+				if (listener != null) {
+					listener.record(Stage.CONVERT, System.nanoTime() - start);
+				}
+			}
+			pyramid = new Pyramid(converted);
+			pyramids.put(converters, pyramid);
+		}
+		if (algorithm.isLuminanceHash()) {
+			return pyramid.getLuminancePixel(algorithm.width, algorithm.height, listener);
+		} else {
+			return pyramid.getColorPixel(algorithm.width, algorithm.height, listener);
+		}
+	}
+
+	/**
+	 * @param algorithm the algorithm hashing the context
+	 * @return the listener receiving the durations of the stages executed for the
+	 *         algorithm or null
+	 */
+	MetricsListener getMetricsListener(HashingAlgorithm algorithm) {
+		MetricsListener listener = metricsListener;
+		return listener == null ? algorithm.getMetricsListener() : listener;
+	}
+
+	/**
+	 * Time decoding, converting and scaling the image as well as the algorithm
+	 * specific transformations of all algorithms hashing this context
+	 *
+	 * @param metricsListener the listener receiving the durations or null to use
+	 *                        the listener of the algorithms
+	 * @since 3.1.0
+	 */
+	public void setMetricsListener(MetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+
+	/**
+	 * @return the listener receiving the durations of the stages or null
+	 * @since 3.1.0
+	 */
+	public MetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+
+	/**
+	 * Decode the image at the supplied minimum resolution instead of its full
+	 * resolution, see {@link HashingAlgorithm#setSubsampledDecoding(boolean)}. Has
+	 * to be set before the image is decoded and only applies to contexts created
+	 * from encoded images.
+	 *
+	 * @param width  the minimum width of the decoded image
+	 * @param height the minimum height of the decoded image
+	 * @see HashingAlgorithm#getDecodingResolution(java.util.Collection)
+	 * @since 3.1.0
+	 */
+	public synchronized void setDecodingResolution(int width, int height) {
+		this.decodingWidth = Require.positiveValue(width, "The decoding width has to be positive");
+		this.decodingHeight = Require.positiveValue(height, "The decoding height has to be positive");
+	}
+
+	/**
+	 * @return true if the context was created from an encoded image
+	 * @since 3.1.0
+	 */
+	public boolean isEncoded() {
+		return encoded != null;
+	}
+
+	/**
+	 * Decode and scale the luminance of the image by OpenCV
+	 *
+	 * @return the luminance or null if OpenCV does not support the format of the
+	 *         image
+	 */
+	private ColorPixel getOpenCVLuminancePixel(HashingAlgorithm algorithm, MetricsListener listener) {
+		int[] resolution = HashingAlgorithm.getDecodingResolution(Collections.singleton(algorithm));
+		long start = listener == null ? 0 : System.nanoTime();
+		ColorPixel pixel;
+		try {
+			pixel = OpenCVDecoder.readLuminance(encoded, algorithm.width, algorithm.height, resolution[0], resolution[1]);
+		} catch (IOException exception) {
+			throw new UncheckedIOException(exception);
+		}
+		if (listener != null) {
+			listener.record(Stage.DECODE, System.nanoTime() - start);
+		}
+		return pixel;
+	}
+
+	/**
+	 * Get the luminance scaled from the blocks of the JPEG image
+	 *
+	 * @return the luminance or null if the context was not created from a
+	 *         supported JPEG image at least four times as large as the resolution
+	 */
+	private ColorPixel getJpegLuminancePixel(int width, int height, MetricsListener listener) {
+		if (encoded == null) {
+			return null;
+		}
+		if (!jpegParsed) {
+			jpegParsed = true;
+			long start = listener == null ? 0 : System.nanoTime();
+			try {
+				jpegLuminance = JpegLuminance.read(encoded);
+			} catch (IOException exception) {
+				// Leave reporting the corrupt image to the image reader
+				jpegLuminance = null;
+			}
+			if (listener != null) {
+				listener.record(Stage.DECODE, System.nanoTime() - start);
+			}
+		}
+		if (jpegLuminance == null || jpegLuminance.getWidth() < 4 * width || jpegLuminance.getHeight() < 4 * height) {
+			return null;
+		}
+		if (jpegPyramid == null) {
+			long start = listener == null ? 0 : System.nanoTime();
+			jpegPyramid = new Pyramid(jpegLuminance.getPlane(), jpegLuminance.getWidth(), jpegLuminance.getHeight());
+			if (listener != null) {
+				listener.record(Stage.SCALE, System.nanoTime() - start);
+			}
+		}
+		return jpegPyramid.getLuminancePixel(width, height, listener);
+	}
+
+	/**
+	 * @return the image hashed by the algorithms
+	 * @throws UncheckedIOException if the context was created from an encoded
+	 *                              image which can not be decoded
+	 */
+	public synchronized BufferedImage getImage() {
+		return getImage(metricsListener);
+	}
+
+	private BufferedImage getImage(MetricsListener listener) {
+		if (image == null && encoded != null) {
+			long start = listener == null ? 0 : System.nanoTime();
+			try {
+				if (decodingWidth > 0) {
+					image = ImageDecoder.read(new ByteArrayInputStream(encoded), decodingWidth, decodingHeight);
+				} else {
+					image = ImageIO.read(new ByteArrayInputStream(encoded));
+				}
+			} catch (IOException exception) {
+				throw new UncheckedIOException(exception);
+			}
+			if (image == null) {
+				throw new UncheckedIOException(new IOException("No image reader found for the encoded image"));
+			}
+			if (listener != null) {
+				listener.record(Stage.DECODE, System.nanoTime() - start);
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * The levels of a converted image and the pixels scaled to the resolutions
+	 * requested by the algorithms
+	 */
+	private class Pyramid {
+
+		private final BufferedImage image;
+
+		/** Level i has the resolution widths[i] x heights[i] */
+		private final List<double[]> levels = new ArrayList<>();
+		private final List<Integer> widths = new ArrayList<>();
+		private final List<Integer> heights = new ArrayList<>();
+
+		private final Map<Long, ColorPixel> luminancePixels = new HashMap<>();
+		private final Map<Long, ColorPixel> colorPixels = new HashMap<>();
+
+		Pyramid(BufferedImage image) {
+			this.image = image;
+		}
+
+		/**
+		 * Pyramid of a luminance plane. Only supports resolutions up to the base level
+		 */
+		Pyramid(double[] plane, int width, int height) {
+			this.image = null;
+			while (width > BASE_RESOLUTION || height > BASE_RESOLUTION) {
+				int nextWidth = (width + 1) / 2;
+				int nextHeight = (height + 1) / 2;
+				plane = new LuminanceResampler(nextWidth, nextHeight).getLuminancePlane(plane, width, height, (double[]) null);
+				width = nextWidth;
+				height = nextHeight;
+			}
+			addLevel(plane, width, height);
+		}
+
+		ColorPixel getLuminancePixel(int width, int height, MetricsListener listener) {
+			ColorPixel pixel = luminancePixels.get(getKey(width, height));
+			if (pixel != null) {
+				return pixel;
+			}
+			long start = listener == null ? 0 : System.nanoTime();
+			if (levels.isEmpty()) {
+				int baseWidth = image.getWidth();
+				int baseHeight = image.getHeight();
+				while (baseWidth > BASE_RESOLUTION || baseHeight > BASE_RESOLUTION) {
+					baseWidth = (baseWidth + 1) / 2;
+					baseHeight = (baseHeight + 1) / 2;
+				}
+				LuminanceResampler resampler = new LuminanceResampler(baseWidth, baseHeight, LuminanceResampler.Filter.AREA, parallelism);
+				addLevel(resampler.getLuminancePlane(image, (double[]) null), baseWidth, baseHeight);
+			}
+
+			int[] plane;
+			if (width > widths.get(0) || height > heights.get(0)) {
+				// Larger than the base level, resample the image itself
+				plane = new LuminanceResampler(width, height, LuminanceResampler.Filter.AREA, parallelism).getLuminancePlane(image, (int[]) null);
+			} else {
+				int level = 0;
+				while (true) {
+					int nextWidth = (widths.get(level) + 1) / 2;
+					int nextHeight = (heights.get(level) + 1) / 2;
+					if (nextWidth < 4 * width || nextHeight < 4 * height) {
+						break;
+					}
+					if (level + 1 == levels.size()) {
+						LuminanceResampler resampler = new LuminanceResampler(nextWidth, nextHeight);
+						addLevel(resampler.getLuminancePlane(levels.get(level), widths.get(level), heights.get(level), (double[]) null), nextWidth, nextHeight);
+					}
+					level++;
+				}
+				plane = new LuminanceResampler(width, height).getLuminancePlane(levels.get(level), widths.get(level), heights.get(level), (int[]) null);
+			}
+			pixel = new LuminancePixel(width, height, plane);
+			luminancePixels.put(getKey(width, height), pixel);
+			if (listener != null) {
+				listener.record(Stage.SCALE, System.nanoTime() - start);
+			}
+			return pixel;
+		}
+
+		ColorPixel getColorPixel(int width, int height, MetricsListener listener) {
+			ColorPixel pixel = colorPixels.get(getKey(width, height));
+			if (pixel != null) {
+				return pixel;
+			}
+			if (listener == null) {
+				pixel = ColorPixel.convert(ImageUtility.getScaledInstance(image, width, height));
+			} else {
+				long start = System.nanoTime();
+				BufferedImage scaled = ImageUtility.getScaledInstance(image, width, height);
+				long scaledTime = System.nanoTime();
+				pixel = ColorPixel.convert(scaled);
+				listener.record(Stage.SCALE, scaledTime - start);
+				listener.record(Stage.PIXEL, System.nanoTime() - scaledTime);
+			}
+			colorPixels.put(getKey(width, height), pixel);
+			return pixel;
+		}
+
+		private void addLevel(double[] plane, int width, int height) {
+			levels.add(plane);
+			widths.add(width);
+			heights.add(height);
+		}
+
+		private long getKey(int width, int height) {
+			return ((long) width << 32) | height;
+		}
+	}
+
+}
@@ -1,6 +1,5 @@
 package com.jstarcraft.dip.lsh;
 
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -92,7 +91,7 @@ public class KernelHash extends AverageHash {
     }
 
     @Override
-    protected BigInteger hash(ColorPixel pixel, HashBuilder hash) {
+    protected long[] hash(ColorPixel pixel, HashBuilder hash) {
         int[][] luminance = pixel.getLuminanceMatrix();
 
         // Calculate the average color of the entire image
@@ -106,6 +105,11 @@ public class KernelHash extends AverageHash {
         return computeHash(hash, luminance, average);
     }
 
+    @Override
+    protected boolean isLuminanceHash() {
+        return true;
+    }
+
     @Override
     protected int precomputeAlgoId() {
         // *31 to create a distinct id compare to v 2.0.0 bugfix
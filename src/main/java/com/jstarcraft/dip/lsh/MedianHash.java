@@ -1,6 +1,5 @@
 package com.jstarcraft.dip.lsh;
 
-import java.math.BigInteger;
 
 import com.github.kilianB.ArrayUtil;
 import com.jstarcraft.dip.color.ColorPixel;
@@ -45,7 +44,7 @@ public class MedianHash extends AverageHash {
     }
 
     @Override
-    protected BigInteger hash(ColorPixel pixel, HashBuilder hash) {
+    protected long[] hash(ColorPixel pixel, HashBuilder hash) {
         int[] vector = pixel.getLuminanceVector();
 
         int[][] luminance = pixel.getLuminanceMatrix();
@@ -1,13 +1,9 @@
 package com.jstarcraft.dip.lsh;
 
-import java.math.BigInteger;
 import java.util.Objects;
-import java.util.logging.Logger;
-
-import org.jtransforms.dct.DoubleDCT_2D;
-import org.jtransforms.utils.CommonUtils;
 
 import com.jstarcraft.dip.color.ColorPixel;
+import com.jstarcraft.dip.transform.CosineTransform;
 
 /**
  * Calculate a hash based on the frequency of an image using the DCT T2. This
@@ -33,7 +29,18 @@ import com.jstarcraft.dip.color.ColorPixel;
  */
 public class PerceptiveHash extends HashingAlgorithm {
 
-    private static final Logger LOGGER = Logger.getLogger(PerceptiveHash.class.getSimpleName());
+    /**
+     * Computes the low frequencies used by the hash. Only a forth of the
+     * frequencies in each dimension is used, the lower right corner does not yield
+     * much information.
+     */
+    private final CosineTransform transform;
+
+    /** The luminance of the image scaled to [0-1] */
+    private final ThreadLocal<double[]> luminance;
+
+    /** The low frequency coefficients */
+    private final ThreadLocal<double[]> coefficients;
 
     /**
      * 
@@ -64,62 +71,60 @@ public class PerceptiveHash extends HashingAlgorithm {
             }
         }
 
-        // thread usage enabled issue warning.
-        // This does not get triggered in usual circumstances.
-        if (width * height >= CommonUtils.getThreadsBeginN_2D()) {
-            LOGGER.warning("Due to an unfortunate design decision in JTransform a threadpool will be kept alive after finishing calulation" + " possibly block jvm termination.  You see this message because calculating an unusual high bit resolution perceptive hash will likly trigger this rule." + " To quickly terminate the jvm without delay please call ConcurrencyUtils.shutdownThreadPoolAndAwaitTermination(); manually once you are done computing perceptive hashes");
-        }
-
+        // Skip the first row and column as they might be too dominant. Solid color
+        // e.g.
+        int subWidth = (int) (width / 4d);
+        int subHeight = (int) (height / 4d);
+        transform = new CosineTransform(width, height, 1, 1, subWidth, subHeight);
+        luminance = ThreadLocal.withInitial(() -> new double[width * height]);
+        coefficients = ThreadLocal.withInitial(() -> new double[subWidth * subHeight]);
     }
 
     @Override
-    protected BigInteger hash(ColorPixel pixel, HashBuilder hash) {
-        int[][] lum = pixel.getLuminanceMatrix();
-
-        // int to double conversion ...
-        double[][] lumAsDouble = new double[width][height];
-
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                lumAsDouble[x][y] = lum[x][y] / 255d;
+    protected long[] hash(ColorPixel pixel, HashBuilder hash) {
+        double[] plane = luminance.get();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                plane[y * width + x] = pixel.getLuminanceScalar(x, y) / 255d;
             }
         }
 
-        DoubleDCT_2D dct = new DoubleDCT_2D(width, height);
+        double[] dct = coefficients.get();
+        transform.transform(plane, dct);
 
-        dct.forward(lumAsDouble, false);
-
-        // Average value of the (topmost) YxY low frequencies. Skip the first column as
-        // it might be too dominant. Solid color e.g.
+        // Average value of the (topmost) YxY low frequencies.
         // TODO DCT walk down in a triangular motion. Skipping the entire edge neglects
         // several important frequencies. Maybe just skip
         // just the upper corner.
         double avg = 0;
 
-        // Take a look at a forth of the pixel matrix. The lower right corner does not
-        // yield much information.
-        int subWidth = (int) (width / 4d);
-        int subHeight = (int) (height / 4d);
+        int subWidth = transform.getFrequencyWidth();
+        int subHeight = transform.getFrequencyHeight();
         int count = subWidth * subHeight;
 
         // calculate the average of the dct
-        for (int i = 1; i < subWidth + 1; i++) {
-            for (int j = 1; j < subHeight + 1; j++) {
-                avg += lumAsDouble[i][j] / count;
+        for (int i = 0; i < subWidth; i++) {
+            for (int j = 0; j < subHeight; j++) {
+                avg += dct[j * subWidth + i] / count;
             }
         }
 
-        for (int i = 1; i < subWidth + 1; i++) {
-            for (int j = 1; j < subHeight + 1; j++) {
+        for (int i = 0; i < subWidth; i++) {
+            for (int j = 0; j < subHeight; j++) {
 
-                if (lumAsDouble[i][j] < avg) {
+                if (dct[j * subWidth + i] < avg) {
                     hash.prependZero();
                 } else {
                     hash.prependOne();
                 }
             }
         }
-        return hash.toBigInteger();
+        return hash.toWords();
+    }
+
+    @Override
+    protected boolean isLuminanceHash() {
+        return true;
     }
 
     @Override
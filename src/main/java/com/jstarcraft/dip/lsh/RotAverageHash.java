@@ -1,6 +1,5 @@
 package com.jstarcraft.dip.lsh;
 
-import java.math.BigInteger;
 import java.util.Objects;
 
 import com.jstarcraft.dip.color.ColorPixel;
@@ -43,6 +42,14 @@ public class RotAverageHash extends HashingAlgorithm {
      */
     private int[] count = null;
 
+    /**
+     * The indices of the pixels mapped to a bucket in the order they are
+     * accumulated. pixelBuckets[i] is the bucket of the pixel pixels[i].
+     */
+    private final int[] pixels;
+
+    private final int[] pixelBuckets;
+
     /**
      * @param bitResolution The bit resolution specifies the final length of the
      *                      generated hash. A higher resolution will increase
@@ -72,35 +79,47 @@ public class RotAverageHash extends HashingAlgorithm {
         centerY = centerX;
 
         count = new int[bitResolution + 2];
+        int[] partitions = new int[width * height];
+        int size = 0;
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
                 int bucket = computePartition(x, y);
+                partitions[y * width + x] = bucket;
                 if (bucket >= count.length) {
                     // Everything beyond this column will be outside as well.
                     continue;
                 }
                 count[bucket]++;
+                size++;
+            }
+        }
+
+        pixels = new int[size];
+        pixelBuckets = new int[size];
+        int position = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int index = y * width + x;
+                if (partitions[index] < count.length) {
+                    pixels[position] = index;
+                    pixelBuckets[position] = partitions[index];
+                    position++;
+                }
             }
         }
     }
 
     @Override
-    protected BigInteger hash(ColorPixel pixel, HashBuilder hash) {
+    protected long[] hash(ColorPixel pixel, HashBuilder hash) {
         // We need 2 more bucket since we compare to n-1 and no values are mapped to 0
         // bucket
 
         // Average luminosity of the bucket
         double hashArr[] = new double[bitDimension + 2];
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                int bucket = computePartition(x, y);
-                if (bucket >= hashArr.length) {
-                    // Everything beyond this column will be outside as well.
-                    continue;
-                }
-                hashArr[bucket] += (pixel.getLuminanceScalar(x, y) / (double) count[bucket]);
-            }
+        for (int i = 0; i < pixels.length; i++) {
+            int bucket = pixelBuckets[i];
+            hashArr[bucket] += (pixel.getLuminanceScalar(pixels[i]) / (double) count[bucket]);
         }
 
         // 0 bucket does not contain any value.
@@ -112,7 +131,7 @@ public class RotAverageHash extends HashingAlgorithm {
             }
         }
 
-        return hash.toBigInteger();
+        return hash.toWords();
     }
 
     /**
@@ -130,6 +149,11 @@ public class RotAverageHash extends HashingAlgorithm {
         return (int) Math.round(Math.sqrt(originalX * originalX + originalY * originalY));
     }
 
+    @Override
+    protected boolean isLuminanceHash() {
+        return true;
+    }
+
     @Override
     protected int precomputeAlgoId() {
         // These variables are enough to uniquely identify the hashing algorithm
@@ -1,14 +1,9 @@
 package com.jstarcraft.dip.lsh;
 
-import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.Objects;
 
-import org.jtransforms.dct.DoubleDCT_1D;
-
 import com.jstarcraft.dip.color.ColorPixel;
+import com.jstarcraft.dip.transform.CosineTransform;
 
 /**
  * A rotational invariant hashing algorithm which is mostly immune to rotation
@@ -40,6 +35,26 @@ public class RotPHash extends HashingAlgorithm {
     /** The number of circles the pixels will be mapped to */
     private int buckets;
 
+    /**
+     * The pixel indices grouped by bucket. The pixels of bucket i are stored in
+     * [bucketOffsets[i], bucketOffsets[i + 1])
+     */
+    private final int[] bucketPixels;
+
+    private final int[] bucketOffsets;
+
+    /**
+     * Computes the coefficients used by the hash for each bucket. Null if a bucket
+     * does not contribute to the hash.
+     */
+    private final CosineTransform[] transforms;
+
+    /** The sorted luminance values of all buckets */
+    private final ThreadLocal<double[]> values;
+
+    /** The dct coefficients of a single bucket */
+    private final ThreadLocal<double[]> coefficients;
+
     /**
      * Create a Rotational Invariant Perceptive Hasher
      * 
@@ -84,63 +99,90 @@ public class RotPHash extends HashingAlgorithm {
         // The center of the image used to wrap pixels around.
         centerX = (width - 1) / 2d; // This will be even
         centerY = centerX;
-    }
-
-    @Override
-    protected BigInteger hash(ColorPixel pixel, HashBuilder hash) {
-        // 0. Preprocessing. Extract Luminosity
-        // Fast pixel access. Order 10x faster than jdk internal
-
-        @SuppressWarnings("unchecked")
-        List<Integer>[] values = new List[buckets];
-        for (int i = 0; i < buckets; i++) {
-            values[i] = new ArrayList<Integer>();
-        }
 
-        // 1. Map each pixel into a circle bucket. (Currently we ignore parts of the
-        // image if they do not fit inside a cropped circle)
+        // Map each pixel into a circle bucket. (Currently we ignore parts of the image
+        // if they do not fit inside a cropped circle)
+        int[] partitions = new int[width * height];
+        bucketOffsets = new int[buckets + 1];
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
-                // Wrap pixel around center. Return the bucket whose center is the closest to
-                // this pixel
                 int bucket = computePartition(x, y);
-                if (bucket >= buckets) {
-                    continue;
+                partitions[y * width + x] = bucket;
+                if (bucket < buckets) {
+                    bucketOffsets[bucket + 1]++;
                 }
-                values[bucket].add(pixel.getLuminanceScalar(x, y));
+            }
+        }
+        for (int i = 0; i < buckets; i++) {
+            bucketOffsets[i + 1] += bucketOffsets[i];
+        }
+        bucketPixels = new int[bucketOffsets[buckets]];
+        int[] position = new int[buckets];
+        for (int index = 0; index < partitions.length; index++) {
+            int bucket = partitions[index];
+            if (bucket < buckets) {
+                bucketPixels[bucketOffsets[bucket] + position[bucket]++] = index;
             }
         }
 
-        // 2. Construct the final hash
+        // Only the coefficients [2, length / 4 - 1) are used
+        transforms = new CosineTransform[buckets];
+        int maxCoefficients = 0;
+        for (int i = 0; i < buckets; i++) {
+            int length = bucketOffsets[i + 1] - bucketOffsets[i];
+            int coefficients = length / 4 - 3;
+            if (coefficients > 0) {
+                transforms[i] = new CosineTransform(length, 1, 2, 0, coefficients, 1);
+                maxCoefficients = Math.max(maxCoefficients, coefficients);
+            }
+        }
+        int size = maxCoefficients;
+        values = ThreadLocal.withInitial(() -> new double[bucketPixels.length]);
+        coefficients = ThreadLocal.withInitial(() -> new double[size]);
+    }
 
-//		int charNeeded = StringUtil.charsNeeded(buckets);
-//		String debugFormat = "Count %"+charNeeded+"d Bucket %"+charNeeded+"d Avg: %.2f %n";
+    @Override
+    protected long[] hash(ColorPixel pixel, HashBuilder hash) {
+        // 1. Gather the luminance of each bucket. Sort the values to get a dct
+        // independent of initial rotation. Luminance values are 8 bit, a counting sort
+        // suffices
+        double[] values = this.values.get();
+        double[] arr = coefficients.get();
+        int[] histogram = new int[256];
 
         int length = 0;
         for (int i = 0; i < buckets; i++) {
-            // Sort lum values to get a dct independent of initial rotation
-            Collections.sort(values[i]);
+            int offset = bucketOffsets[i];
+            int end = bucketOffsets[i + 1];
+            if (transforms[i] == null) {
+                continue;
+            }
 
-            double[] arr = new double[values[i].size()];
-            for (int j = 0; j < arr.length; j++) {
-                arr[j] = values[i].get(j);
+            for (int j = offset; j < end; j++) {
+                histogram[pixel.getLuminanceScalar(bucketPixels[j])]++;
+            }
+            int position = offset;
+            for (int luminance = 0; luminance < histogram.length; luminance++) {
+                for (int j = histogram[luminance]; j > 0; j--) {
+                    values[position++] = luminance;
+                }
+                histogram[luminance] = 0;
             }
 
-            // Compute dct of each bucket and calculate the average
-            DoubleDCT_1D dct = new DoubleDCT_1D(arr.length);
-            dct.forward(arr, false);
+            // 2. Compute dct of each bucket and calculate the average
+            transforms[i].transform(values, offset, arr, 0);
 
             double avg = 0;
-            int count = arr.length / 4 - 1;
-            for (int j = 2; j < count; j++) {
-                avg += (arr[j] / (count - 2));
+            int count = transforms[i].getFrequencyWidth();
+            for (int j = 0; j < count; j++) {
+                avg += (arr[j] / count);
             }
 
             /*
              * The first two fields should always be ignored. Their values are way out of
              * magnitude in order to add any kind of distinguishing capabilities of the hash
              */
-            for (int j = 2; j < count; j++) {
+            for (int j = 0; j < count; j++) {
 
                 // We discard parts of the information of the last layer if we need a specific
                 // length key
@@ -155,7 +197,7 @@ public class RotPHash extends HashingAlgorithm {
                 length++;
             }
         }
-        return hash.toBigInteger();
+        return hash.toWords();
     }
 
     /**
@@ -189,6 +231,11 @@ public class RotPHash extends HashingAlgorithm {
 //		return keyResolution;
 //	}
 
+    @Override
+    protected boolean isLuminanceHash() {
+        return true;
+    }
+
     @Override
     protected int precomputeAlgoId() {
         return Objects.hash(getClass().getName(), this.width, this.height, this.truncateKey);
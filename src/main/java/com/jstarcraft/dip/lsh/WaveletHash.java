@@ -1,6 +1,5 @@
 package com.jstarcraft.dip.lsh;
 
-import java.math.BigInteger;
 import java.util.Objects;
 
 import com.jstarcraft.dip.color.ColorPixel;
@@ -48,7 +47,7 @@ public class WaveletHash extends HashingAlgorithm {
     }
 
     @Override
-    protected BigInteger hash(ColorPixel pixel, HashBuilder hashBuilder) {
+    protected long[] hash(ColorPixel pixel, HashBuilder hashBuilder) {
         int[][] luma = pixel.getLuminanceMatrix();
 
         // Compute wavelet
@@ -80,7 +79,7 @@ public class WaveletHash extends HashingAlgorithm {
         }
 
         // Lets do only 1 cycle for now
-        return hashBuilder.toBigInteger();
+        return hashBuilder.toWords();
     }
 
     // Code taken and modified from
@@ -147,6 +146,11 @@ public class WaveletHash extends HashingAlgorithm {
 //		return (int) MathUtil.log(hw, 2);
 //	}
 
+    @Override
+    protected boolean isLuminanceHash() {
+        return true;
+    }
+
     @Override
     protected int precomputeAlgoId() {
         return Objects.hash(width, height, cycles);
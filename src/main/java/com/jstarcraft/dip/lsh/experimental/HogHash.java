@@ -6,7 +6,6 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.util.Objects;
 
 import javax.imageio.ImageIO;
@@ -154,7 +153,7 @@ public class HogHash extends HashingAlgorithm {
     }
 
     @Override
-    protected BigInteger hash(ColorPixel fp, HashBuilder hash) {
+    protected long[] hash(ColorPixel fp, HashBuilder hash) {
         int[][] lum = fp.getLuminanceMatrix();
 
         // 1 Compute hisogramm
@@ -191,7 +190,7 @@ public class HogHash extends HashingAlgorithm {
                 }
             }
         }
-        return hash.toBigInteger();
+        return hash.toWords();
     }
 
     protected int[][][] computeHogFeatures(int[][] lum) {
@@ -491,6 +490,11 @@ public class HogHash extends HashingAlgorithm {
         return getClass().getSimpleName() + " [numBins=" + numBins + "]";
     }
 
+    @Override
+    protected boolean isLuminanceHash() {
+        return true;
+    }
+
     @Override
     protected int precomputeAlgoId() {
         return Objects.hash(getClass().getName(), width, height, cell, numBins);
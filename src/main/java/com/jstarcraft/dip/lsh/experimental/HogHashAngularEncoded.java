@@ -1,6 +1,5 @@
 package com.jstarcraft.dip.lsh.experimental;
 
-import java.math.BigInteger;
 
 import com.jstarcraft.dip.color.ColorPixel;
 import com.jstarcraft.dip.lsh.HashBuilder;
@@ -54,7 +53,7 @@ public class HogHashAngularEncoded extends HogHash {
 	}
 
 	@Override
-	protected BigInteger hash(ColorPixel fp, HashBuilder hash) {
+	protected long[] hash(ColorPixel fp, HashBuilder hash) {
 		int[][] lum = fp.getLuminanceMatrix();
 
 		// 1 Compute hisogramm
@@ -88,7 +87,7 @@ public class HogHashAngularEncoded extends HogHash {
 			}
 		}
 
-		return hash.toBigInteger();
+		return hash.toWords();
 	}
 
 }
@@ -0,0 +1,278 @@
+package com.jstarcraft.dip.lsh.kernel;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.jstarcraft.dip.lsh.kernel.Kernel.EdgeHandlingStrategy;
+
+/**
+ * Convolution of a linear kernel mask with a flat array of interleaved
+ * channels.
+ * <p>
+ *
+ * The array is processed in bands of rows and each band in tiles of columns,
+ * keeping the values accessed by the mask in the cache. All channels of a value
+ * are computed in the same pass. The indices of values outside of the array are
+ * resolved once per row and column by the edge handling strategy instead of
+ * once per value and mask entry.
+ * <p>
+ *
+ * Masks which are the outer product of a column and a row vector, e.g. box,
+ * gaussian, sobel and scharr masks, are applied in two one dimensional passes
+ * per tile. This reduces the multiplications per value from width x height to
+ * width + height of the mask. Due to the different order of operations the
+ * result of a separable mask may differ from the direct convolution in the last
+ * bits. All other masks produce the same values as
+ * {@link Kernel#calcValue(double[][], int, int)}.
+ * <p>
+ *
+ * Bands can be computed in parallel in the common fork join pool.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+class Convolution {
+
+	/** Number of rows of a band */
+	private static final int BAND_HEIGHT = 32;
+
+	/** Number of columns of a tile */
+	private static final int TILE_WIDTH = 256;
+
+	/** Deviation relative to the largest weight tolerated when factorizing the mask */
+	private static final double SEPARABLE_TOLERANCE = 1e-12;
+
+	private final double[][] mask;
+
+	private final EdgeHandlingStrategy edgeHandling;
+
+	private final int maskWidth;
+	private final int maskHeight;
+
+	/** mask[y][x] = columnFactors[y] * rowFactors[x]. Null if not separable */
+	private final double[] rowFactors;
+	private final double[] columnFactors;
+
+	/**
+	 * @param mask         the mask indexed by [y][x]
+	 * @param edgeHandling the edge handling strategy used at the borders
+	 */
+	Convolution(double[][] mask, EdgeHandlingStrategy edgeHandling) {
+		this.mask = mask;
+		this.edgeHandling = edgeHandling;
+		maskHeight = mask.length;
+		maskWidth = mask[0].length;
+
+		// One dimensional masks already are a single pass
+		double[][] factors = maskWidth > 1 && maskHeight > 1 ? factorize(mask) : null;
+		if (factors == null) {
+			rowFactors = null;
+			columnFactors = null;
+		} else {
+			columnFactors = factors[0];
+			rowFactors = factors[1];
+		}
+	}
+
+	/**
+	 * @return true if the mask is applied in two one dimensional passes
+	 */
+	boolean isSeparable() {
+		return rowFactors != null;
+	}
+
+	/**
+	 * Convolute each channel of the array
+	 *
+	 * @param input       the values in row major order, input[(y * width + x) *
+	 *                    channels + channel]
+	 * @param width       the number of columns
+	 * @param height      the number of rows
+	 * @param channels    the number of interleaved channels
+	 * @param parallelism the number of bands computed in parallel
+	 * @return a new array containing the convoluted values
+	 */
+	double[] apply(double[] input, int width, int height, int channels, int parallelism) {
+		int[] xMap = createIndexMap(edgeHandling, width, maskWidth / 2);
+		int[] yMap = createIndexMap(edgeHandling, height, maskHeight / 2);
+		double[] output = new double[input.length];
+
+		int bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+		int tasks = Math.min(parallelism, bands);
+		if (tasks <= 1) {
+			apply(input, output, width, height, channels, xMap, yMap, 0, bands);
+		} else {
+			CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks - 1];
+			for (int task = 1; task < tasks; task++) {
+				int first = task * bands / tasks;
+				int last = (task + 1) * bands / tasks;
+				futures[task - 1] = CompletableFuture.runAsync(() -> apply(input, output, width, height, channels, xMap, yMap, first, last));
+			}
+			apply(input, output, width, height, channels, xMap, yMap, 0, bands / tasks);
+			CompletableFuture.allOf(futures).join();
+		}
+
+		if (edgeHandling == EdgeHandlingStrategy.NO_OP) {
+			copyBorder(input, output, width, height, channels, maskWidth / 2, maskHeight / 2);
+		}
+		return output;
+	}
+
+	private void apply(double[] input, double[] output, int width, int height, int channels, int[] xMap, int[] yMap, int firstBand, int lastBand) {
+		double[] buffer = isSeparable() ? new double[(BAND_HEIGHT + maskHeight - 1) * Math.min(width, TILE_WIDTH) * channels] : null;
+		for (int band = firstBand; band < lastBand; band++) {
+			int firstRow = band * BAND_HEIGHT;
+			int lastRow = Math.min(height, firstRow + BAND_HEIGHT);
+			for (int firstColumn = 0; firstColumn < width; firstColumn += TILE_WIDTH) {
+				int lastColumn = Math.min(width, firstColumn + TILE_WIDTH);
+				if (isSeparable()) {
+					convolveSeparable(input, output, buffer, width, channels, xMap, yMap, firstRow, lastRow, firstColumn, lastColumn);
+				} else {
+					convolve(input, output, width, channels, xMap, yMap, firstRow, lastRow, firstColumn, lastColumn);
+				}
+			}
+		}
+	}
+
+	private void convolve(double[] input, double[] output, int width, int channels, int[] xMap, int[] yMap, int firstRow, int lastRow, int firstColumn, int lastColumn) {
+		for (int y = firstRow; y < lastRow; y++) {
+			for (int x = firstColumn; x < lastColumn; x++) {
+				int outputIndex = (y * width + x) * channels;
+				// Same order of operations as Kernel#calcValue
+				for (int yMask = 0; yMask < maskHeight; yMask++) {
+					int rowOffset = yMap[y + yMask] * width;
+					double[] weights = mask[yMask];
+					for (int xMask = 0; xMask < maskWidth; xMask++) {
+						double weight = weights[xMask];
+						int inputIndex = (rowOffset + xMap[x + xMask]) * channels;
+						for (int channel = 0; channel < channels; channel++) {
+							output[outputIndex + channel] += weight * input[inputIndex + channel];
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void convolveSeparable(double[] input, double[] output, double[] buffer, int width, int channels, int[] xMap, int[] yMap, int firstRow, int lastRow, int firstColumn, int lastColumn) {
+		int tileWidth = lastColumn - firstColumn;
+		int rows = lastRow - firstRow + maskHeight - 1;
+
+		// Horizontal pass of every row covered by the mask
+		for (int row = 0; row < rows; row++) {
+			int rowOffset = yMap[firstRow + row] * width;
+			int bufferOffset = row * tileWidth * channels;
+			for (int x = firstColumn; x < lastColumn; x++) {
+				int bufferIndex = bufferOffset + (x - firstColumn) * channels;
+				for (int channel = 0; channel < channels; channel++) {
+					buffer[bufferIndex + channel] = 0;
+				}
+				for (int xMask = 0; xMask < maskWidth; xMask++) {
+					double weight = rowFactors[xMask];
+					int inputIndex = (rowOffset + xMap[x + xMask]) * channels;
+					for (int channel = 0; channel < channels; channel++) {
+						buffer[bufferIndex + channel] += weight * input[inputIndex + channel];
+					}
+				}
+			}
+		}
+
+		// Vertical pass
+		for (int y = firstRow; y < lastRow; y++) {
+			for (int x = firstColumn; x < lastColumn; x++) {
+				int outputIndex = (y * width + x) * channels;
+				for (int yMask = 0; yMask < maskHeight; yMask++) {
+					double weight = columnFactors[yMask];
+					int bufferIndex = ((y - firstRow + yMask) * tileWidth + x - firstColumn) * channels;
+					for (int channel = 0; channel < channels; channel++) {
+						output[outputIndex + channel] += weight * buffer[bufferIndex + channel];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Values whose mask exceeds the array keep their original value
+	 * ({@link EdgeHandlingStrategy#NO_OP})
+	 */
+	static void copyBorder(double[] input, double[] output, int width, int height, int channels, int radiusX, int radiusY) {
+		for (int y = 0; y < height; y++) {
+			boolean border = y < radiusY || y >= height - radiusY;
+			for (int x = 0; x < width; x++) {
+				if (border || x < radiusX || x >= width - radiusX) {
+					int index = (y * width + x) * channels;
+					System.arraycopy(input, index, output, index, channels);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resolve the indices accessed by the mask.
+	 *
+	 * @param edgeHandling the edge handling strategy used at the borders
+	 * @param length       the number of rows or columns
+	 * @param radius       half the size of the mask
+	 * @return map[i + radius] is the index used for the index i
+	 */
+	static int[] createIndexMap(EdgeHandlingStrategy edgeHandling, int length, int radius) {
+		int[] map = new int[length + 2 * radius];
+		for (int i = 0; i < map.length; i++) {
+			int index = i - radius;
+			if (index < 0 || index >= length) {
+				if (edgeHandling == EdgeHandlingStrategy.NO_OP) {
+					// The border is copied, the index only has to be valid
+					index = Math.max(0, Math.min(length - 1, index));
+				} else {
+					index = edgeHandling.correctPixel(index, length);
+					if (index < 0 || index >= length) {
+						throw new ArrayIndexOutOfBoundsException(index);
+					}
+				}
+			}
+			map[i] = index;
+		}
+		return map;
+	}
+
+	/**
+	 * Factorize the mask into a column and a row vector.
+	 *
+	 * @param mask the mask indexed by [y][x]
+	 * @return the column and row factors or null if the mask is not separable
+	 */
+	static double[][] factorize(double[][] mask) {
+		// Pivot on the largest weight to keep the division stable
+		int pivotY = 0;
+		int pivotX = 0;
+		for (int y = 0; y < mask.length; y++) {
+			for (int x = 0; x < mask[y].length; x++) {
+				if (Math.abs(mask[y][x]) > Math.abs(mask[pivotY][pivotX])) {
+					pivotY = y;
+					pivotX = x;
+				}
+			}
+		}
+		double pivot = mask[pivotY][pivotX];
+		if (pivot == 0) {
+			return null;
+		}
+
+		double[] rowFactors = mask[pivotY].clone();
+		double[] columnFactors = new double[mask.length];
+		for (int y = 0; y < mask.length; y++) {
+			columnFactors[y] = mask[y][pivotX] / pivot;
+		}
+
+		double tolerance = Math.abs(pivot) * SEPARABLE_TOLERANCE;
+		for (int y = 0; y < mask.length; y++) {
+			for (int x = 0; x < rowFactors.length; x++) {
+				if (Math.abs(mask[y][x] - columnFactors[y] * rowFactors[x]) > tolerance) {
+					return null;
+				}
+			}
+		}
+		return new double[][] { columnFactors, rowFactors };
+	}
+
+}
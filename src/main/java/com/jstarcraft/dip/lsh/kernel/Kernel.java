@@ -30,8 +30,13 @@ import com.jstarcraft.dip.color.ColorPixel;
  * "http://machinelearninguru.com/_images/topics/computer_vision/basics/convolution/3.JPG"
  * alt="Convolution example">
  * 
- * TODO support separability for custom kernels TODO kernel indices are swapped
- * and twisted.
+ * <p>
+ * Linear kernels are applied by a convolution engine which applies separable
+ * masks in two one dimensional passes, processes the data in cache friendly
+ * tiles and all color channels of an image in a single pass. Rows can be split
+ * across the common fork join pool via {@link #setParallelism(int)}.
+ * 
+ * TODO kernel indices are swapped and twisted.
  * 
  * @author Kilian
  * @since 2.0.0
@@ -41,21 +46,11 @@ public class Kernel implements ImageConverter {
     /** Kernel mask applied to the pixels */
     protected double[][] mask;
 
-    /**
-     * Seperable convolution to speed up masking if applicable for custom kernels
-     */
-    // https://en.wikipedia.org/wiki/Singular_value_decomposition for custom kernels
-    // https://blogs.mathworks.com/steve/2006/11/28/separable-convolution-part-2/
-    // private double[] seperableMaskX;
-    // private double[] seperableMaskY;
-
     /** How are edged of the images handled */
     protected EdgeHandlingStrategy edgeHandling;
 
-    // TODO we could compute a pixel mapping map before convolution reducing method
-    // calls and maybe increase performance instead of on the fly calculation of
-    // those values?
-    // int[][] pixelAccessMap
+    /** Number of row bands convoluted in parallel */
+    protected int parallelism = 1;
 
     /**
      * Return an identity kernel. This kernel is a 1x1 kernel and copies the
@@ -355,6 +350,7 @@ public class Kernel implements ImageConverter {
     @SuppressWarnings("deprecation")
     public Kernel(Kernel template) {
         this.edgeHandling = template.edgeHandling;
+        this.parallelism = template.parallelism;
         try {
             this.mask = ArrayUtil.deepArrayCopyClone(template.mask);
         } catch (Exception e) {
@@ -466,6 +462,10 @@ public class Kernel implements ImageConverter {
      * @return a new array created by the kernel
      */
     public double[][] apply(int[][] input) {
+        double[] values = applyVector(toVector(input), input[0].length, input.length);
+        if (values != null) {
+            return toDoubleMatrix(values, input[0].length, input.length);
+        }
         double[][] result = new double[input.length][input[0].length];
 
         for (int y = 0; y < input.length; y++) {
@@ -483,6 +483,10 @@ public class Kernel implements ImageConverter {
      * @return a new array created by the kernel
      */
     public int[][] applyInt(int[][] input) {
+        double[] values = applyVector(toVector(input), input[0].length, input.length);
+        if (values != null) {
+            return toIntMatrix(values, input[0].length, input.length);
+        }
 
         int[][] result = new int[input.length][input[0].length];
 
@@ -501,6 +505,10 @@ public class Kernel implements ImageConverter {
      * @return a new array created by the kernel
      */
     public int[][] applyInt(double[][] input) {
+        double[] values = applyVector(toVector(input), input[0].length, input.length);
+        if (values != null) {
+            return toIntMatrix(values, input[0].length, input.length);
+        }
 
         int[][] result = new int[input.length][input[0].length];
 
@@ -519,6 +527,10 @@ public class Kernel implements ImageConverter {
      * @return a new array created by the kernel
      */
     public double[][] apply(double[][] input) {
+        double[] values = applyVector(toVector(input), input[0].length, input.length);
+        if (values != null) {
+            return toDoubleMatrix(values, input[0].length, input.length);
+        }
 
         double[][] result = new double[input.length][input[0].length];
 
@@ -538,6 +550,10 @@ public class Kernel implements ImageConverter {
      * @return a new array created by the kernel
      */
     public double[][] apply(byte[][] input) {
+        double[] values = applyVector(toVector(input), input[0].length, input.length);
+        if (values != null) {
+            return toDoubleMatrix(values, input[0].length, input.length);
+        }
         double[][] result = new double[input.length][input[0].length];
 
         for (int y = 0; y < input.length; y++) {
@@ -555,6 +571,10 @@ public class Kernel implements ImageConverter {
      * @return a new array created by the kernel
      */
     public byte[][] applyByte(byte[][] input) {
+        double[] values = applyVector(toVector(input), input[0].length, input.length);
+        if (values != null) {
+            return toByteMatrix(values, input[0].length, input.length);
+        }
         byte[][] result = new byte[input.length][input[0].length];
 
         for (int y = 0; y < input.length; y++) {
@@ -566,6 +586,10 @@ public class Kernel implements ImageConverter {
     }
 
     public byte[][] applyByte(double[][] input) {
+        double[] values = applyVector(toVector(input), input[0].length, input.length);
+        if (values != null) {
+            return toByteMatrix(values, input[0].length, input.length);
+        }
         byte[][] result = new byte[input.length][input[0].length];
 
         for (int y = 0; y < input.length; y++) {
@@ -576,6 +600,144 @@ public class Kernel implements ImageConverter {
         return result;
     }
 
+    /**
+     * Apply the kernel to each channel of an image raster.
+     * 
+     * <p>
+     * The first dimension of the mask is applied along the x axis of the image,
+     * equal to the 2d arrays indexed by [x][y] returned by
+     * {@link ColorPixel#getRedMatrix()}.
+     * 
+     * @param raster      the channels of the pixels, raster[(y * width + x) *
+     *                    channels + channel]
+     * @param width       the width of the image
+     * @param height      the height of the image
+     * @param channels    the number of channels per pixel
+     * @param parallelism the number of row bands convoluted in parallel
+     * @return a new raster created by the kernel
+     */
+    double[] applyRaster(double[] raster, int width, int height, int channels, int parallelism) {
+        if (isLinear()) {
+            return new Convolution(transpose(mask), edgeHandling).apply(raster, width, height, channels, parallelism);
+        }
+
+        // Non linear kernels work on the 2d arrays
+        double[] result = new double[raster.length];
+        double[][] matrix = new double[width][height];
+        for (int channel = 0; channel < channels; channel++) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    matrix[x][y] = raster[(y * width + x) * channels + channel];
+                }
+            }
+            double[][] values = apply(matrix);
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    result[(y * width + x) * channels + channel] = values[x][y];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Linear kernels compute the value as weighted sum of the mask. Subclasses
+     * overriding the calcValue methods have to return false, otherwise the
+     * convolution engine replaces the calcValue methods.
+     * 
+     * @return true if the kernel is a convolution with it's mask
+     * @since 3.1.0
+     */
+    protected boolean isLinear() {
+        return true;
+    }
+
+    /**
+     * Apply the kernel to a flat array at once instead of computing each value
+     * by the calcValue methods.
+     * 
+     * @param input  the values, input[y * width + x]
+     * @param width  the length of the second dimension of the 2d array
+     * @param height the length of the first dimension of the 2d array
+     * @return a new array created by the kernel or null if the kernel has to be
+     *         applied value by value
+     */
+    double[] applyVector(double[] input, int width, int height) {
+        if (!isLinear()) {
+            return null;
+        }
+        return new Convolution(mask, edgeHandling).apply(input, width, height, 1, parallelism);
+    }
+
+    private static double[][] transpose(double[][] matrix) {
+        double[][] transposed = new double[matrix[0].length][matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix[0].length; j++) {
+                transposed[j][i] = matrix[i][j];
+            }
+        }
+        return transposed;
+    }
+
+    private static double[] toVector(int[][] input) {
+        int width = input[0].length;
+        double[] vector = new double[input.length * width];
+        for (int y = 0; y < input.length; y++) {
+            for (int x = 0; x < width; x++) {
+                vector[y * width + x] = input[y][x];
+            }
+        }
+        return vector;
+    }
+
+    private static double[] toVector(double[][] input) {
+        int width = input[0].length;
+        double[] vector = new double[input.length * width];
+        for (int y = 0; y < input.length; y++) {
+            System.arraycopy(input[y], 0, vector, y * width, width);
+        }
+        return vector;
+    }
+
+    private static double[] toVector(byte[][] input) {
+        int width = input[0].length;
+        double[] vector = new double[input.length * width];
+        for (int y = 0; y < input.length; y++) {
+            for (int x = 0; x < width; x++) {
+                vector[y * width + x] = input[y][x];
+            }
+        }
+        return vector;
+    }
+
+    private static double[][] toDoubleMatrix(double[] vector, int width, int height) {
+        double[][] result = new double[height][width];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(vector, y * width, result[y], 0, width);
+        }
+        return result;
+    }
+
+    private static int[][] toIntMatrix(double[] vector, int width, int height) {
+        int[][] result = new int[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                result[y][x] = (int) Math.round(vector[y * width + x]);
+            }
+        }
+        return result;
+    }
+
+    private static byte[][] toByteMatrix(double[] vector, int width, int height) {
+        byte[][] result = new byte[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                result[y][x] = (byte) Math.round(vector[y * width + x]);
+            }
+        }
+        return result;
+    }
+
     protected double calcValue(byte[][] input, int x, int y) {
         double value = 0;
         int maskW = mask[0].length / 2;
@@ -779,6 +941,29 @@ public class Kernel implements ImageConverter {
         }
     }
 
+    /**
+     * Set the number of row bands convoluted in parallel in the common fork join
+     * pool. If multiple images are converted concurrently the parallelism should
+     * stay at 1.
+     * 
+     * @param parallelism the number of row bands convoluted in parallel
+     * @since 3.1.0
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism has to be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the number of row bands convoluted in parallel
+     * @since 3.1.0
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
     @Override
     public String toString() {
         return "Kernel [edgeHandling=" + edgeHandling + ", " + "mask=\n" + ArrayUtil.deepToStringFormatted(mask) + "]";
@@ -786,23 +971,31 @@ public class Kernel implements ImageConverter {
 
     @Override
     public BufferedImage convert(BufferedImage input) {
-        BufferedImage bi = new BufferedImage(input.getWidth(), input.getHeight(), input.getType());
+        int width = input.getWidth();
+        int height = input.getHeight();
+        BufferedImage bi = new BufferedImage(width, height, input.getType());
         ColorPixel fp = ColorPixel.convert(input);
         ColorPixel fpSet = ColorPixel.convert(bi);
-        int[][] red = fp.getRedMatrix();
-        int[][] green = fp.getGreenMatrix();
-        int[][] blue = fp.getBlueMatrix();
 
-        red = applyInt(red);
-        green = applyInt(green);
-        blue = applyInt(blue);
+        // All channels are convoluted in a single pass
+        int size = width * height;
+        double[] raster = new double[size * 3];
+        for (int index = 0; index < size; index++) {
+            raster[index * 3] = fp.getRedScalar(index);
+            raster[index * 3 + 1] = fp.getGreenScalar(index);
+            raster[index * 3 + 2] = fp.getBlueScalar(index);
+        }
 
-        fpSet.setRedMatrix(red);
-        fpSet.setGreenMatrix(green);
-        fpSet.setBlueMatrix(blue);
+        raster = applyRaster(raster, width, height, 3, parallelism);
 
-        if (fpSet.hasTransparency()) {
-            fpSet.setTransparencyMatrix(fp.getTransparencyMatrix());
+        boolean transparency = fpSet.hasTransparency();
+        for (int index = 0; index < size; index++) {
+            fpSet.setRedScalar(index, (int) Math.round(raster[index * 3]));
+            fpSet.setGreenScalar(index, (int) Math.round(raster[index * 3 + 1]));
+            fpSet.setBlueScalar(index, (int) Math.round(raster[index * 3 + 2]));
+            if (transparency) {
+                fpSet.setTransparencyScalar(index, fp.getTransparencyScalar(index));
+            }
         }
 
         return bi;
@@ -826,12 +1019,20 @@ public class Kernel implements ImageConverter {
 
         @Override
         public BufferedImage convert(BufferedImage input) {
-            BufferedImage bi = new BufferedImage(input.getWidth(), input.getHeight(), input.getType());
+            int width = input.getWidth();
+            int height = input.getHeight();
+            BufferedImage bi = new BufferedImage(width, height, input.getType());
             ColorPixel fp = ColorPixel.convert(input);
             ColorPixel fpSet = ColorPixel.convert(bi);
-            int[][] gray = fp.getGrayscaleMatrix();
-            gray = applyInt(gray);
-            fpSet.setGrayscaleMatrix(gray);
+            int size = width * height;
+            double[] gray = new double[size];
+            for (int index = 0; index < size; index++) {
+                gray[index] = fp.getGrayscaleScalar(index);
+            }
+            gray = applyRaster(gray, width, height, 1, parallelism);
+            for (int index = 0; index < size; index++) {
+                fpSet.setGrayscaleScalar(index, (int) Math.round(gray[index]));
+            }
             return bi;
         }
 
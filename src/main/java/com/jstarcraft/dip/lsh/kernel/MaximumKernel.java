@@ -84,6 +84,11 @@ public class MaximumKernel extends NonAveragingKernel {
 		return resolveMax(computePotentialValues(input, x, y));
 	}
 
+	@Override
+	double[] applyUniform(double[] input, int width, int height) {
+		return RankFilter.maximum(input, width, height, mask[0].length, mask.length, edgeHandling);
+	}
+
 	protected double resolveMax(double[][] values) {
 		if (values[1].length == 1 && values[1][0] == Double.MIN_VALUE) {
 			return values[0][0];
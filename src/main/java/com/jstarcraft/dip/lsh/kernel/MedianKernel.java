@@ -93,6 +93,12 @@ public class MedianKernel extends NonAveragingKernel {
 		return resolveMedian(computePotentialValues(input, x, y));
 	}
 
+	@Override
+	double[] applyUniform(double[] input, int width, int height) {
+		// Histograms are limited to 8 bit data
+		return RankFilter.median(input, width, height, mask[0].length, mask.length, edgeHandling);
+	}
+
 	protected double resolveMedian(double[][] values) {
 		if (values[1].length == 1 && values[1][0] == Double.MIN_VALUE) {
 			return values[0][0];
@@ -103,9 +109,9 @@ public class MedianKernel extends NonAveragingKernel {
 		// halfIndex = ArrayUtil.getSortedIndices(values[1])[values.length/half];
 
 		// Find the median value
-		int halfIndex = values.length / 2;
-		if (values.length % 2 == 0) {
-			return (values[0][halfIndex] + values[0][halfIndex + 1]) / 2;
+		int halfIndex = values[0].length / 2;
+		if (values[0].length % 2 == 0) {
+			return (values[0][halfIndex - 1] + values[0][halfIndex]) / 2;
 		} else {
 			return values[0][halfIndex];
 		}
@@ -89,6 +89,11 @@ public class MinimumKernel extends NonAveragingKernel {
 		return resolveMax(computePotentialValues(input, x, y));
 	}
 
+	@Override
+	double[] applyUniform(double[] input, int width, int height) {
+		return RankFilter.minimum(input, width, height, mask[0].length, mask.length, edgeHandling);
+	}
+
 	protected double resolveMax(double[][] values) {
 		if (values[1].length == 1 && values[1][0] == Double.MIN_VALUE) {
 			return values[0][0];
@@ -12,6 +12,25 @@ import java.util.List;
  * and only the resulting value will be casted to the lesser precision type if
  * applicable.
  * 
+ * <p>
+ * Converting an image passes all color channels through the chain in a single
+ * flat raster. The parallelism of the multi kernel is used for all kernels of
+ * the chain.
+ * 
+ * <p>
+ * The composition of two convolutions is a convolution itself. Consecutive
+ * linear kernels sharing the same edge handling strategy are composed into a
+ * single kernel during construction, if the composed mask is not more expensive
+ * to apply than the kernels one after another. e.g. a gaussian blur followed by
+ * an edge filter is applied in a single pass without an intermediate array. Non
+ * linear kernels like the {@link MedianKernel} are applied on their own. The
+ * edge handling strategy of composed kernels is applied once instead of after
+ * each kernel. Values within the combined radius of the masks to the border may
+ * therefore differ from applying the kernels one after another, unless the masks
+ * act along different axes. Kernels using
+ * {@link com.jstarcraft.dip.lsh.kernel.Kernel.EdgeHandlingStrategy#NO_OP
+ * EdgeHandlingStrategy#NO_OP} are never composed.
+ * 
  * @author Kilian
  * @since 2.0.0
  */
@@ -20,6 +39,9 @@ public class MultiKernel extends Kernel {
 	/** The kernels to apply back to back */
 	protected List<Kernel> kernels = new ArrayList<>();
 
+	/** The kernels applied back to back after composing linear kernels */
+	private List<Kernel> stages;
+
 	/**
 	 * Create a multi kernel from the given kernels
 	 * 
@@ -29,6 +51,7 @@ public class MultiKernel extends Kernel {
 	public MultiKernel(Kernel... kernels) {
 		super(EdgeHandlingStrategy.EXPAND);
 		this.kernels.addAll(Arrays.asList(kernels));
+		this.stages = compose(this.kernels);
 	}
 
 	/**
@@ -45,6 +68,7 @@ public class MultiKernel extends Kernel {
 		for (double[][] mask : kernelMasks) {
 			this.kernels.add(new Kernel(mask));
 		}
+		this.stages = compose(this.kernels);
 	}
 
 	@SuppressWarnings("deprecation")
@@ -57,26 +81,19 @@ public class MultiKernel extends Kernel {
 		for (int i = 0; i < kernelMasks.length; i++) {
 			this.kernels.add(new Kernel(kernelMasks[i], edgeHandlingStrategies[i]));
 		}
+		this.stages = compose(this.kernels);
 	}
 
 	@Override
 	public double[][] apply(int[][] input) {
-		int width = input.length;
-		int height = input[0].length;
-
-		double[][] result = new double[width][height];
-
-		// First pass
-		for (int i = 0; i < kernels.size(); i++) {
-
-			if (i == 0) {
-				result = kernels.get(0).apply(input);
-			} else {
-				result = kernels.get(i).apply(result);
-			}
+		if (stages.isEmpty()) {
+			return new double[input.length][input[0].length];
+		}
+		double[][] result = stages.get(0).apply(input);
+		for (int i = 1; i < stages.size(); i++) {
+			result = stages.get(i).apply(result);
 		}
 		return result;
-
 	}
 
 	/**
@@ -87,23 +104,35 @@ public class MultiKernel extends Kernel {
 	 */
 	@Override
 	public int[][] applyInt(int[][] input) {
-		int width = input.length;
-		int height = input[0].length;
-
-		double[][] intermmed = new double[width][height];
-		int[][] result = new int[width][height];
-
-		// First pass
-		for (int i = 0; i < kernels.size(); i++) {
-			if (i == 0) {
-				intermmed = kernels.get(0).apply(input);
-			} else if (i < kernels.size() - 1) {
-				intermmed = kernels.get(i).apply(intermmed);
-			} else {
-				result = kernels.get(i).applyInt(intermmed);
-			}
+		if (stages.isEmpty()) {
+			return new int[input.length][input[0].length];
 		}
-		return result;
+		if (stages.size() == 1) {
+			return stages.get(0).applyInt(input);
+		}
+		double[][] intermediate = stages.get(0).apply(input);
+		for (int i = 1; i < stages.size() - 1; i++) {
+			intermediate = stages.get(i).apply(intermediate);
+		}
+		return stages.get(stages.size() - 1).applyInt(intermediate);
+	}
+
+	/**
+	 * Apply the kernel to the 2d array with each value casted to a int value.
+	 * 
+	 * @param input the input array to apply the kernel on
+	 * @return a new array created by the kernel
+	 */
+	@Override
+	public int[][] applyInt(double[][] input) {
+		if (stages.isEmpty()) {
+			return new int[input.length][input[0].length];
+		}
+		double[][] intermediate = input;
+		for (int i = 0; i < stages.size() - 1; i++) {
+			intermediate = stages.get(i).apply(intermediate);
+		}
+		return stages.get(stages.size() - 1).applyInt(intermediate);
 	}
 
 	/**
@@ -114,19 +143,12 @@ public class MultiKernel extends Kernel {
 	 */
 	@Override
 	public double[][] apply(double[][] input) {
-		int width = input.length;
-		int height = input[0].length;
-
-		double[][] result = new double[width][height];
-
-		// First pass
-		for (int i = 0; i < kernels.size(); i++) {
-
-			if (i == 0) {
-				result = kernels.get(0).apply(input);
-			} else {
-				result = kernels.get(i).apply(result);
-			}
+		if (stages.isEmpty()) {
+			return new double[input.length][input[0].length];
+		}
+		double[][] result = input;
+		for (Kernel stage : stages) {
+			result = stage.apply(result);
 		}
 		return result;
 	}
@@ -140,18 +162,12 @@ public class MultiKernel extends Kernel {
 	 */
 	@Override
 	public double[][] apply(byte[][] input) {
-		int width = input.length;
-		int height = input[0].length;
-
-		double[][] result = new double[width][height];
-
-		// First pass
-		for (int i = 0; i < kernels.size(); i++) {
-			if (i == 0) {
-				result = kernels.get(0).apply(input);
-			} else {
-				result = kernels.get(i).apply(result);
-			}
+		if (stages.isEmpty()) {
+			return new double[input.length][input[0].length];
+		}
+		double[][] result = stages.get(0).apply(input);
+		for (int i = 1; i < stages.size(); i++) {
+			result = stages.get(i).apply(result);
 		}
 		return result;
 	}
@@ -164,22 +180,126 @@ public class MultiKernel extends Kernel {
 	 */
 	@Override
 	public byte[][] applyByte(byte[][] input) {
-		int width = input.length;
-		int height = input[0].length;
-
-		byte[][] result = new byte[width][height];
-		double[][] intermmed = new double[width][height];
-		// First pass
-		for (int i = 0; i < kernels.size(); i++) {
-			if (i == 0) {
-				intermmed = kernels.get(0).apply(input);
-			} else if (i < kernels.size() - 1) {
-				intermmed = kernels.get(i).apply(intermmed);
-			} else {
-				result = kernels.get(i).applyByte(intermmed);
+		if (stages.isEmpty()) {
+			return new byte[input.length][input[0].length];
+		}
+		if (stages.size() == 1) {
+			return stages.get(0).applyByte(input);
+		}
+		double[][] intermediate = stages.get(0).apply(input);
+		for (int i = 1; i < stages.size() - 1; i++) {
+			intermediate = stages.get(i).apply(intermediate);
+		}
+		return stages.get(stages.size() - 1).applyByte(intermediate);
+	}
+
+	@Override
+	public byte[][] applyByte(double[][] input) {
+		if (stages.isEmpty()) {
+			return new byte[input.length][input[0].length];
+		}
+		double[][] intermediate = input;
+		for (int i = 0; i < stages.size() - 1; i++) {
+			intermediate = stages.get(i).apply(intermediate);
+		}
+		return stages.get(stages.size() - 1).applyByte(intermediate);
+	}
+
+	@Override
+	double[] applyRaster(double[] raster, int width, int height, int channels, int parallelism) {
+		for (Kernel stage : stages) {
+			raster = stage.applyRaster(raster, width, height, channels, parallelism);
+		}
+		return raster;
+	}
+
+	@Override
+	protected boolean isLinear() {
+		for (Kernel kernel : kernels) {
+			if (!kernel.isLinear()) {
+				return false;
 			}
 		}
-		return result;
+		return true;
+	}
+
+	/**
+	 * @return the number of passes required to apply the kernel
+	 * @since 3.1.0
+	 */
+	public int getPasses() {
+		return stages.size();
+	}
+
+	/**
+	 * Compose consecutive linear kernels into a single kernel.
+	 * 
+	 * @param kernels the kernels to apply back to back
+	 * @return the kernels to apply back to back with the same result
+	 */
+	private static List<Kernel> compose(List<Kernel> kernels) {
+		List<Kernel> stages = new ArrayList<>();
+		for (Kernel kernel : kernels) {
+			List<Kernel> parts = kernel instanceof MultiKernel ? ((MultiKernel) kernel).stages : Arrays.asList(kernel);
+			for (Kernel part : parts) {
+				if (!stages.isEmpty()) {
+					Kernel last = stages.get(stages.size() - 1);
+					if (isComposable(last) && isComposable(part) && last.edgeHandling == part.edgeHandling) {
+						double[][] mask = compose(last.mask, part.mask);
+						if (getCost(mask) <= getCost(last.mask) + getCost(part.mask)) {
+							Kernel composed = new Kernel(mask, last.edgeHandling);
+							composed.parallelism = Math.max(last.parallelism, part.parallelism);
+							stages.set(stages.size() - 1, composed);
+							continue;
+						}
+					}
+				}
+				stages.add(part);
+			}
+		}
+		return stages;
+	}
+
+	/**
+	 * Plain convolutions whose result only depends on the mask and the edge
+	 * handling strategy
+	 */
+	private static boolean isComposable(Kernel kernel) {
+		return (kernel.getClass() == Kernel.class || kernel.getClass() == GrayScaleFilter.class) && kernel.edgeHandling != EdgeHandlingStrategy.NO_OP;
+	}
+
+	/**
+	 * Compute the mask of applying the first and then the second mask.
+	 * 
+	 * @param first  the mask applied first
+	 * @param second the mask applied second
+	 * @return the composed mask
+	 */
+	static double[][] compose(double[][] first, double[][] second) {
+		double[][] mask = new double[first.length + second.length - 1][first[0].length + second[0].length - 1];
+		for (int firstY = 0; firstY < first.length; firstY++) {
+			for (int firstX = 0; firstX < first[0].length; firstX++) {
+				double weight = first[firstY][firstX];
+				for (int secondY = 0; secondY < second.length; secondY++) {
+					for (int secondX = 0; secondX < second[0].length; secondX++) {
+						mask[firstY + secondY][firstX + secondX] += weight * second[secondY][secondX];
+					}
+				}
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * @return the number of multiplications per value
+	 */
+	private static int getCost(double[][] mask) {
+		int width = mask[0].length;
+		int height = mask.length;
+		if (width > 1 && height > 1 && Convolution.factorize(mask) != null) {
+			return width + height;
+		}
+		return width * height;
 	}
 
 	@Override
@@ -3,6 +3,14 @@ package com.jstarcraft.dip.lsh.kernel;
 import com.github.kilianB.ArrayUtil;
 
 /**
+ * Kernels selecting a value of the neighborhood instead of computing a weighted
+ * sum.
+ * 
+ * <p>
+ * Kernels with a uniform mask are applied by sliding window algorithms whose
+ * cost per value grows at most with the height of the mask instead of its area.
+ * Weighted masks judge each neighborhood by the calcValue methods.
+ * 
  * @author Kilian
  * @since 3.0.0
  */
@@ -46,6 +54,32 @@ public abstract class NonAveragingKernel extends Kernel {
 		super(mask);
 	}
 
+	@Override
+	protected boolean isLinear() {
+		return false;
+	}
+
+	@Override
+	double[] applyVector(double[] input, int width, int height) {
+		if (!RankFilter.isUniform(mask)) {
+			return null;
+		}
+		return applyUniform(input, width, height);
+	}
+
+	/**
+	 * Apply the kernel with a uniform mask by a sliding window algorithm.
+	 * 
+	 * @param input  the values, input[y * width + x]
+	 * @param width  the length of the second dimension of the 2d array
+	 * @param height the length of the first dimension of the 2d array
+	 * @return a new array created by the kernel or null if the kernel has to be
+	 *         applied value by value
+	 */
+	double[] applyUniform(double[] input, int width, int height) {
+		return null;
+	}
+
 	protected double[][] computePotentialValues(byte[][] input, int x, int y) {
 		int maskW = mask[0].length / 2;
 		int maskH = mask.length / 2;
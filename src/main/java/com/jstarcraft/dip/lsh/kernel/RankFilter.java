@@ -0,0 +1,231 @@
+package com.jstarcraft.dip.lsh.kernel;
+
+import java.util.Arrays;
+
+import com.jstarcraft.dip.lsh.kernel.Kernel.EdgeHandlingStrategy;
+
+/**
+ * Sliding window minimum, maximum and median filters for kernels with a uniform
+ * mask.
+ * <p>
+ *
+ * The minimum and maximum of a rectangle are computed separately for rows and
+ * columns by the van Herk/Gil-Werman algorithm requiring 3 comparisons per
+ * value independent of the size of the mask.
+ * <p>
+ *
+ * The median of 8 bit data is computed by Huang's algorithm. A histogram of the
+ * window is updated by the values leaving and entering the window while sliding
+ * along a row, and the median is tracked by the number of values below it. This
+ * requires 2 x height histogram updates per value instead of sorting width x
+ * height values.
+ * <p>
+ *
+ * All filters produce the same values as the calcValue methods of the
+ * respective kernels with a uniform mask.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+class RankFilter {
+
+	private RankFilter() {
+	}
+
+	/**
+	 * A mask is uniform if all values are weighted equally and the order of the
+	 * weighted values equals the order of the values
+	 *
+	 * @param mask the weight mask of the kernel
+	 * @return true if all weights are equal and positive
+	 */
+	static boolean isUniform(double[][] mask) {
+		double weight = mask[0][0];
+		if (!(weight > 0)) {
+			return false;
+		}
+		for (double[] row : mask) {
+			for (double value : row) {
+				if (value != weight) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param input        the values in row major order
+	 * @param width        the number of columns
+	 * @param height       the number of rows
+	 * @param maskWidth    the number of columns of the window
+	 * @param maskHeight   the number of rows of the window
+	 * @param edgeHandling the edge handling strategy used at the borders
+	 * @return the maximum of the window of each value
+	 */
+	static double[] maximum(double[] input, int width, int height, int maskWidth, int maskHeight, EdgeHandlingStrategy edgeHandling) {
+		return extremum(input, width, height, maskWidth, maskHeight, edgeHandling, true);
+	}
+
+	/**
+	 * @param input        the values in row major order
+	 * @param width        the number of columns
+	 * @param height       the number of rows
+	 * @param maskWidth    the number of columns of the window
+	 * @param maskHeight   the number of rows of the window
+	 * @param edgeHandling the edge handling strategy used at the borders
+	 * @return the minimum of the window of each value
+	 */
+	static double[] minimum(double[] input, int width, int height, int maskWidth, int maskHeight, EdgeHandlingStrategy edgeHandling) {
+		return extremum(input, width, height, maskWidth, maskHeight, edgeHandling, false);
+	}
+
+	/**
+	 * @param input        the values in row major order
+	 * @param width        the number of columns
+	 * @param height       the number of rows
+	 * @param maskWidth    the number of columns of the window
+	 * @param maskHeight   the number of rows of the window
+	 * @param edgeHandling the edge handling strategy used at the borders
+	 * @return the median of the window of each value or null if the input
+	 *         contains values which are not integers in the range [0-255]
+	 */
+	static double[] median(double[] input, int width, int height, int maskWidth, int maskHeight, EdgeHandlingStrategy edgeHandling) {
+		int[] values = new int[input.length];
+		for (int index = 0; index < input.length; index++) {
+			int value = (int) input[index];
+			if (value != input[index] || value < 0 || value > 255) {
+				return null;
+			}
+			values[index] = value;
+		}
+
+		int[] xMap = Convolution.createIndexMap(edgeHandling, width, maskWidth / 2);
+		int[] yMap = Convolution.createIndexMap(edgeHandling, height, maskHeight / 2);
+		int rank = maskWidth * maskHeight / 2;
+		int[] histogram = new int[256];
+		double[] output = new double[input.length];
+
+		for (int y = 0; y < height; y++) {
+			Arrays.fill(histogram, 0);
+			for (int yMask = 0; yMask < maskHeight; yMask++) {
+				int rowOffset = yMap[y + yMask] * width;
+				for (int xMask = 0; xMask < maskWidth; xMask++) {
+					histogram[values[rowOffset + xMap[xMask]]]++;
+				}
+			}
+
+			// The median is the smallest value with more than rank values less or equal
+			int median = 0;
+			int below = 0;
+			while (below + histogram[median] <= rank) {
+				below += histogram[median++];
+			}
+			output[y * width] = median;
+
+			for (int x = 1; x < width; x++) {
+				int leaving = xMap[x - 1];
+				int entering = xMap[x + maskWidth - 1];
+				for (int yMask = 0; yMask < maskHeight; yMask++) {
+					int rowOffset = yMap[y + yMask] * width;
+					int value = values[rowOffset + leaving];
+					histogram[value]--;
+					if (value < median) {
+						below--;
+					}
+					value = values[rowOffset + entering];
+					histogram[value]++;
+					if (value < median) {
+						below++;
+					}
+				}
+				while (below > rank) {
+					below -= histogram[--median];
+				}
+				while (below + histogram[median] <= rank) {
+					below += histogram[median++];
+				}
+				output[y * width + x] = median;
+			}
+		}
+
+		if (edgeHandling == EdgeHandlingStrategy.NO_OP) {
+			Convolution.copyBorder(input, output, width, height, 1, maskWidth / 2, maskHeight / 2);
+		}
+		return output;
+	}
+
+	private static double[] extremum(double[] input, int width, int height, int maskWidth, int maskHeight, EdgeHandlingStrategy edgeHandling, boolean maximum) {
+		int[] xMap = Convolution.createIndexMap(edgeHandling, width, maskWidth / 2);
+		int[] yMap = Convolution.createIndexMap(edgeHandling, height, maskHeight / 2);
+
+		int length = Math.max(xMap.length, yMap.length);
+		double[] extended = new double[length];
+		double[] prefix = new double[length];
+		double[] suffix = new double[length];
+		double[] result = new double[Math.max(width, height)];
+
+		// Rows
+		double[] rows = new double[input.length];
+		for (int y = 0; y < height; y++) {
+			int rowOffset = y * width;
+			for (int i = 0; i < xMap.length; i++) {
+				extended[i] = input[rowOffset + xMap[i]];
+			}
+			slide(extended, xMap.length, maskWidth, prefix, suffix, result, maximum);
+			System.arraycopy(result, 0, rows, rowOffset, width);
+		}
+
+		// Columns
+		double[] output = new double[input.length];
+		for (int x = 0; x < width; x++) {
+			for (int i = 0; i < yMap.length; i++) {
+				extended[i] = rows[yMap[i] * width + x];
+			}
+			slide(extended, yMap.length, maskHeight, prefix, suffix, result, maximum);
+			for (int y = 0; y < height; y++) {
+				output[y * width + x] = result[y];
+			}
+		}
+
+		if (edgeHandling == EdgeHandlingStrategy.NO_OP) {
+			Convolution.copyBorder(input, output, width, height, 1, maskWidth / 2, maskHeight / 2);
+		}
+		return output;
+	}
+
+	/**
+	 * Van Herk/Gil-Werman extremum of each window of the values. The values are
+	 * split into blocks of the size of the window. Every window spans at most two
+	 * blocks and its extremum is the extremum of the suffix of the first and the
+	 * prefix of the second block.
+	 *
+	 * @param values  the values
+	 * @param length  the number of values
+	 * @param window  the size of the window
+	 * @param prefix  buffer for the extremum of the block up to the index
+	 * @param suffix  buffer for the extremum of the block from the index
+	 * @param output  the array the length - window + 1 extrema are written to
+	 * @param maximum true for the maximum, false for the minimum
+	 */
+	private static void slide(double[] values, int length, int window, double[] prefix, double[] suffix, double[] output, boolean maximum) {
+		for (int i = 0; i < length; i++) {
+			prefix[i] = i % window == 0 ? values[i] : select(prefix[i - 1], values[i], maximum);
+		}
+		for (int i = length - 1; i >= 0; i--) {
+			suffix[i] = i == length - 1 || (i + 1) % window == 0 ? values[i] : select(suffix[i + 1], values[i], maximum);
+		}
+		for (int i = 0; i <= length - window; i++) {
+			output[i] = select(suffix[i], prefix[i + window - 1], maximum);
+		}
+	}
+
+	private static double select(double first, double second, boolean maximum) {
+		if (maximum) {
+			return second > first ? second : first;
+		} else {
+			return second < first ? second : first;
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.jstarcraft.dip.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An image converter was applied to an image. Only loaded if the flight
+ * recorder is available.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@Name("com.jstarcraft.dip.Convert")
+@Label("Converter Applied")
+@Category({ "JStarCraft DIP", "Hashing" })
+@Description("Applying an image converter of a hashing algorithm")
+@StackTrace(false)
+final class ConvertEvent extends Event {
+
+	@Label("Converter")
+	Class<?> converter;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	static Object create() {
+		ConvertEvent event = new ConvertEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	static void commit(Object handle, Class<?> converter, int width, int height) {
+		ConvertEvent event = (ConvertEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.converter = converter;
+			event.width = width;
+			event.height = height;
+			event.commit();
+		}
+	}
+
+}
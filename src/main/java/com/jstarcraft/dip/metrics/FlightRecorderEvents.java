@@ -0,0 +1,130 @@
+package com.jstarcraft.dip.metrics;
+
+/**
+ * Emits Java Flight Recorder events for hashing images, applying image
+ * converters, searching binary trees and persisting image matchers. The events
+ * are enabled in the recording settings by their names
+ * <code>com.jstarcraft.dip.Hash</code>, <code>com.jstarcraft.dip.Convert</code>,
+ * <code>com.jstarcraft.dip.TreeQuery</code> and
+ * <code>com.jstarcraft.dip.Persist</code>.
+ * <p>
+ *
+ * The event classes are only loaded if the <code>jdk.jfr</code> module is
+ * present, therefore the library keeps running on JVMs without flight
+ * recorder. Callers only pass opaque handles:
+ *
+ * <pre>
+ * Object event = FlightRecorderEvents.beginHash();
+ * ...
+ * if (event != null) {
+ * 	FlightRecorderEvents.commitHash(event, getClass(), algorithmId, bits);
+ * }
+ * </pre>
+ *
+ * Without flight recorder, or while the event is not enabled in a recording,
+ * beginning an event returns null and costs a single check.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public final class FlightRecorderEvents {
+
+	private static final boolean AVAILABLE = isFlightRecorderPresent();
+
+	private FlightRecorderEvents() {
+	}
+
+	private static boolean isFlightRecorderPresent() {
+		try {
+			Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return true if the JVM provides the flight recorder api
+	 */
+	public static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	/**
+	 * Begin timing the hashing of an image
+	 *
+	 * @return the handle of the event or null if the event is not recorded
+	 */
+	public static Object beginHash() {
+		return AVAILABLE ? HashEvent.create() : null;
+	}
+
+	/**
+	 * @param event         the handle returned by {@link #beginHash()}
+	 * @param algorithm     the class of the hashing algorithm
+	 * @param algorithmId   the id of the hashing algorithm
+	 * @param bitResolution the bit resolution of the hash
+	 */
+	public static void commitHash(Object event, Class<?> algorithm, int algorithmId, int bitResolution) {
+		HashEvent.commit(event, algorithm, algorithmId, bitResolution);
+	}
+
+	/**
+	 * Begin timing the application of an image converter
+	 *
+	 * @return the handle of the event or null if the event is not recorded
+	 */
+	public static Object beginConvert() {
+		return AVAILABLE ? ConvertEvent.create() : null;
+	}
+
+	/**
+	 * @param event     the handle returned by {@link #beginConvert()}
+	 * @param converter the class of the image converter
+	 * @param width     the width of the converted image
+	 * @param height    the height of the converted image
+	 */
+	public static void commitConvert(Object event, Class<?> converter, int width, int height) {
+		ConvertEvent.commit(event, converter, width, height);
+	}
+
+	/**
+	 * Begin timing the search of a binary tree
+	 *
+	 * @return the handle of the event or null if the event is not recorded
+	 */
+	public static Object beginTreeQuery() {
+		return AVAILABLE ? TreeQueryEvent.create() : null;
+	}
+
+	/**
+	 * @param event        the handle returned by {@link #beginTreeQuery()}
+	 * @param needles      the number of hashes searched for
+	 * @param radius       the largest hamming distance of the needles
+	 * @param visitedNodes the number of nodes visited by the search
+	 * @param matches      the number of found hashes
+	 */
+	public static void commitTreeQuery(Object event, int needles, int radius, long visitedNodes, long matches) {
+		TreeQueryEvent.commit(event, needles, radius, visitedNodes, matches);
+	}
+
+	/**
+	 * Begin timing the serialization of an image matcher
+	 *
+	 * @return the handle of the event or null if the event is not recorded
+	 */
+	public static Object beginPersist() {
+		return AVAILABLE ? PersistEvent.create() : null;
+	}
+
+	/**
+	 * @param event   the handle returned by {@link #beginPersist()}
+	 * @param matcher the class of the image matcher
+	 * @param path    the path of the written file
+	 * @param size    the size of the written file in bytes
+	 */
+	public static void commitPersist(Object event, Class<?> matcher, String path, long size) {
+		PersistEvent.commit(event, matcher, path, size);
+	}
+
+}
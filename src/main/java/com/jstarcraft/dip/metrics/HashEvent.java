@@ -0,0 +1,53 @@
+package com.jstarcraft.dip.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An image was hashed by a hashing algorithm. Only loaded if the flight
+ * recorder is available.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@Name("com.jstarcraft.dip.Hash")
+@Label("Image Hashed")
+@Category({ "JStarCraft DIP", "Hashing" })
+@Description("Preprocessing an image and computing its hash")
+@StackTrace(false)
+final class HashEvent extends Event {
+
+	@Label("Algorithm")
+	Class<?> algorithm;
+
+	@Label("Algorithm Id")
+	int algorithmId;
+
+	@Label("Bit Resolution")
+	int bitResolution;
+
+	static Object create() {
+		HashEvent event = new HashEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	static void commit(Object handle, Class<?> algorithm, int algorithmId, int bitResolution) {
+		HashEvent event = (HashEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.algorithm = algorithm;
+			event.algorithmId = algorithmId;
+			event.bitResolution = bitResolution;
+			event.commit();
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.jstarcraft.dip.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A metrics listener collecting the durations of every stage in a
+ * {@link Histogram}. A single instance may be shared by several algorithms and
+ * matchers to aggregate their stages.
+ *
+ * <pre>
+ * HashingMetrics metrics = new HashingMetrics();
+ * algorithm.setMetricsListener(metrics);
+ * ...
+ * long p99 = metrics.getSnapshot(Stage.TRANSFORM).getValueAtPercentile(99);
+ * </pre>
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class HashingMetrics implements MetricsListener {
+
+	/** Created once and only read afterwards */
+	private final EnumMap<Stage, Histogram> histograms = new EnumMap<>(Stage.class);
+
+	public HashingMetrics() {
+		for (Stage stage : Stage.values()) {
+			histograms.put(stage, new Histogram());
+		}
+	}
+
+	@Override
+	public void record(Stage stage, long nanos) {
+		histograms.get(stage).record(nanos);
+	}
+
+	/**
+	 * @param stage the stage
+	 * @return the durations of the stage recorded so far in nanoseconds
+	 */
+	public Histogram.Snapshot getSnapshot(Stage stage) {
+		return histograms.get(stage).snapshot();
+	}
+
+	/**
+	 * @return the durations of every stage recorded so far in nanoseconds
+	 */
+	public Map<Stage, Histogram.Snapshot> snapshot() {
+		Map<Stage, Histogram.Snapshot> snapshots = new EnumMap<>(Stage.class);
+		for (Entry<Stage, Histogram> entry : histograms.entrySet()) {
+			snapshots.put(entry.getKey(), entry.getValue().snapshot());
+		}
+		return snapshots;
+	}
+
+	/**
+	 * Remove the durations recorded so far
+	 */
+	public void reset() {
+		for (Histogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("HashingMetrics [nanoseconds]");
+		for (Entry<Stage, Histogram.Snapshot> entry : snapshot().entrySet()) {
+			if (entry.getValue().getCount() > 0) {
+				builder.append(System.lineSeparator()).append(entry.getKey()).append(": ").append(entry.getValue());
+			}
+		}
+		return builder.toString();
+	}
+
+}
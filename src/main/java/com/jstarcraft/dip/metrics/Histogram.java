@@ -0,0 +1,186 @@
+package com.jstarcraft.dip.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non negative values with a bounded relative error, recording
+ * values without locks.
+ * <p>
+ *
+ * Values below 32 are counted exactly. Larger values are counted in buckets
+ * which split every power of two into 16 equally sized sub buckets, similar to
+ * an HdrHistogram with one significant digit. The width of a bucket is
+ * therefore at most 1/16 of its lower bound and the whole range of long values
+ * is covered by 960 counters.
+ * <p>
+ *
+ * Recording increments a single counter, therefore any number of threads may
+ * record values concurrently. Snapshots are taken without blocking recording
+ * threads and may miss values recorded while the snapshot is taken.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class Histogram {
+
+	/** Number of significant bits of the buckets above the exact range */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** Values below are counted exactly */
+	private static final int EXACT = 2 * SUB_BUCKETS;
+
+	/** The exponent of the first bucket above the exact range */
+	private static final int FIRST_EXPONENT = SUB_BUCKET_BITS + 1;
+
+	private static final int BUCKETS = EXACT + (63 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder total = new LongAdder();
+
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Record a value. Negative values are recorded as 0.
+	 *
+	 * @param value the value to record
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(getIndex(value));
+		total.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Remove all recorded values. Values recorded concurrently may be partially
+	 * removed.
+	 */
+	public void reset() {
+		for (int index = 0; index < BUCKETS; index++) {
+			counts.set(index, 0);
+		}
+		total.reset();
+		max.reset();
+	}
+
+	/**
+	 * @return a copy of the values recorded so far
+	 */
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		long count = 0;
+		for (int index = 0; index < BUCKETS; index++) {
+			copy[index] = counts.get(index);
+			count += copy[index];
+		}
+		return new Snapshot(copy, count, total.sum(), max.get());
+	}
+
+	static int getIndex(long value) {
+		if (value < EXACT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return EXACT + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return the largest value counted by the bucket
+	 */
+	static long getUpperBound(int index) {
+		if (index < EXACT) {
+			return index;
+		}
+		int exponent = FIRST_EXPONENT + (index - EXACT) / SUB_BUCKETS;
+		int subBucket = (index - EXACT) % SUB_BUCKETS;
+		long lowerBound = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**
+	 * The values recorded by a histogram at a point in time
+	 */
+	public static class Snapshot {
+
+		private final long[] counts;
+
+		private final long count;
+
+		private final long total;
+
+		private final long max;
+
+		Snapshot(long[] counts, long count, long total, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.total = total;
+			this.max = max;
+		}
+
+		/**
+		 * @return the number of recorded values
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the sum of all recorded values
+		 */
+		public long getTotal() {
+			return total;
+		}
+
+		/**
+		 * @return the mean of the recorded values or 0 if no value was recorded
+		 */
+		public double getMean() {
+			return count == 0 ? 0 : total / (double) count;
+		}
+
+		/**
+		 * @return the largest recorded value
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * Get the value below or at which the given percentage of the recorded
+		 * values lie. The returned value is the upper bound of the bucket and
+		 * exceeds the exact value by at most 1/16.
+		 *
+		 * @param percentile the percentile [0 - 100]
+		 * @return the value at the percentile or 0 if no value was recorded
+		 */
+		public long getValueAtPercentile(double percentile) {
+			if (percentile < 0 || percentile > 100) {
+				throw new IllegalArgumentException("The percentile has to be within [0 - 100]");
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+			long seen = 0;
+			for (int index = 0; index < counts.length; index++) {
+				seen += counts[index];
+				if (seen >= rank) {
+					return Math.min(getUpperBound(index), max);
+				}
+			}
+			return 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d", count, getMean(), getValueAtPercentile(50), getValueAtPercentile(99), max);
+		}
+
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.jstarcraft.dip.metrics;
+
+/**
+ * Receives the duration of every executed stage of hashing and matching
+ * images. Listeners are set on hashing algorithms, hashing contexts and image
+ * matchers and are invoked on the thread executing the stage, therefore
+ * implementations have to be thread safe and should return quickly.
+ * <p>
+ *
+ * Without a listener the stages are not timed at all.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ * @see HashingMetrics
+ */
+@FunctionalInterface
+public interface MetricsListener {
+
+	/**
+	 * Called after a stage was executed
+	 *
+	 * @param stage the executed stage
+	 * @param nanos the duration of the stage in nanoseconds
+	 */
+	void record(Stage stage, long nanos);
+
+}
@@ -0,0 +1,53 @@
+package com.jstarcraft.dip.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The state of an image matcher was serialized. Only loaded if the flight
+ * recorder is available.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@Name("com.jstarcraft.dip.Persist")
+@Label("Matcher Persisted")
+@Category({ "JStarCraft DIP", "Matching" })
+@Description("Serializing the state of an image matcher to a file")
+final class PersistEvent extends Event {
+
+	@Label("Matcher")
+	Class<?> matcher;
+
+	@Label("Path")
+	String path;
+
+	@Label("Size")
+	@DataAmount
+	long size;
+
+	static Object create() {
+		PersistEvent event = new PersistEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	static void commit(Object handle, Class<?> matcher, String path, long size) {
+		PersistEvent event = (PersistEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.matcher = matcher;
+			event.path = path;
+			event.size = size;
+			event.commit();
+		}
+	}
+
+}
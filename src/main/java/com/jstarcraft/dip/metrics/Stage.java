@@ -0,0 +1,42 @@
+package com.jstarcraft.dip.metrics;
+
+/**
+ * The stages of hashing and matching an image whose durations are reported to
+ * a {@link MetricsListener}.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public enum Stage {
+
+	/** Decoding an image file or stream */
+	DECODE,
+
+	/** Applying the image converters of an algorithm */
+	CONVERT,
+
+	/**
+	 * Scaling the image to the resolution of an algorithm, including the levels of
+	 * the luminance pyramid
+	 */
+	SCALE,
+
+	/** Extracting the color channels of the scaled image */
+	PIXEL,
+
+	/** Computing the hash from the scaled pixels, specific to every algorithm */
+	TRANSFORM,
+
+	/**
+	 * Adding the hashes of an image to the indices of a matcher, including the
+	 * write ahead log
+	 */
+	INDEX,
+
+	/**
+	 * Searching the matches of a single image, including hashing the image but
+	 * not decoding it
+	 */
+	MATCH
+
+}
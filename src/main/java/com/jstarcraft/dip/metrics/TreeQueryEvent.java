@@ -0,0 +1,58 @@
+package com.jstarcraft.dip.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A binary tree was searched for the hashes within a hamming distance. Only
+ * loaded if the flight recorder is available.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+@Name("com.jstarcraft.dip.TreeQuery")
+@Label("Tree Query")
+@Category({ "JStarCraft DIP", "Matching" })
+@Description("Searching a binary tree for the hashes within a hamming distance of one or more needles")
+@StackTrace(false)
+final class TreeQueryEvent extends Event {
+
+	@Label("Needles")
+	int needles;
+
+	@Label("Radius")
+	@Description("The largest hamming distance of the needles")
+	int radius;
+
+	@Label("Visited Nodes")
+	long visitedNodes;
+
+	@Label("Matches")
+	long matches;
+
+	static Object create() {
+		TreeQueryEvent event = new TreeQueryEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	static void commit(Object handle, int needles, int radius, long visitedNodes, long matches) {
+		TreeQueryEvent event = (TreeQueryEvent) handle;
+		event.end();
+		if (event.shouldCommit()) {
+			event.needles = needles;
+			event.radius = radius;
+			event.visitedNodes = visitedNodes;
+			event.matches = matches;
+			event.commit();
+		}
+	}
+
+}
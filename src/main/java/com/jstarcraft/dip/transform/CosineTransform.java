@@ -0,0 +1,175 @@
+package com.jstarcraft.dip.transform;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Two dimensional discrete cosine transform (DCT-II) computing only a
+ * rectangular block of frequencies.
+ * <p>
+ *
+ * The coefficient of the frequency (u, v) of a plane with the dimension width x
+ * height is defined as
+ *
+ * <pre>
+ * C(u, v) = sum_x sum_y plane[y * width + x] * cos(pi * (x + 0.5) * u / width) * cos(pi * (y + 0.5) * v / height)
+ * </pre>
+ *
+ * which equals the unscaled forward transform of JTransforms. Opposed to a fast
+ * transform computing all coefficients, only the requested block is computed by
+ * two small matrix products. This is considerably faster if only a fraction of
+ * the frequencies is required, e.g. the low frequencies used by perceptual
+ * hashes. The cosine basis of each dimension is precomputed and shared between
+ * all transforms.
+ * <p>
+ *
+ * This class is thread safe and does not allocate memory when transforming.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class CosineTransform {
+
+	/** Cosine basis keyed by length, first frequency and frequency count */
+	private static final ConcurrentHashMap<Long, double[]> BASES = new ConcurrentHashMap<>();
+
+	private final int width;
+	private final int height;
+
+	private final int frequencyWidth;
+	private final int frequencyHeight;
+
+	/** basisX[u * width + x] = cos(pi * (x + 0.5) * (firstU + u) / width) */
+	private final double[] basisX;
+	/** basisY[v * height + y] = cos(pi * (y + 0.5) * (firstV + v) / height) */
+	private final double[] basisY;
+
+	/** The plane transformed along the y axis, frequencyHeight x width */
+	private final ThreadLocal<double[]> intermediate;
+
+	/**
+	 * Create a transform computing the frequencies [firstU, firstU +
+	 * frequencyWidth) x [firstV, firstV + frequencyHeight).
+	 *
+	 * @param width           the width of the transformed plane
+	 * @param height          the height of the transformed plane
+	 * @param firstU          the first horizontal frequency
+	 * @param firstV          the first vertical frequency
+	 * @param frequencyWidth  the number of horizontal frequencies
+	 * @param frequencyHeight the number of vertical frequencies
+	 * @throws IllegalArgumentException if the frequencies exceed the dimension of
+	 *                                  the plane
+	 */
+	public CosineTransform(int width, int height, int firstU, int firstV, int frequencyWidth, int frequencyHeight) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("The dimension of the plane has to be positive");
+		}
+		if (firstU < 0 || firstV < 0 || frequencyWidth <= 0 || frequencyHeight <= 0 || firstU + frequencyWidth > width || firstV + frequencyHeight > height) {
+			throw new IllegalArgumentException("The frequencies have to be within the dimension of the plane");
+		}
+		this.width = width;
+		this.height = height;
+		this.frequencyWidth = frequencyWidth;
+		this.frequencyHeight = frequencyHeight;
+		basisX = getBasis(width, firstU, frequencyWidth);
+		basisY = getBasis(height, firstV, frequencyHeight);
+		intermediate = ThreadLocal.withInitial(() -> new double[frequencyHeight * width]);
+	}
+
+	/**
+	 * Compute the coefficients of the plane.
+	 *
+	 * @param plane  the values in row major order
+	 * @param output the array the coefficients are written to in row major order,
+	 *               {@code output[(v - firstV) * frequencyWidth + (u - firstU)]}
+	 */
+	public void transform(double[] plane, double[] output) {
+		transform(plane, 0, output, 0);
+	}
+
+	/**
+	 * Compute the coefficients of a plane stored within a larger array.
+	 *
+	 * @param plane        the array containing the values in row major order
+	 * @param planeOffset  the index of the first value of the plane
+	 * @param output       the array the coefficients are written to in row major
+	 *                     order
+	 * @param outputOffset the index the first coefficient is written to
+	 */
+	public void transform(double[] plane, int planeOffset, double[] output, int outputOffset) {
+		if (plane.length < planeOffset + width * height || output.length < outputOffset + frequencyWidth * frequencyHeight) {
+			throw new IllegalArgumentException("The plane or output is smaller than the dimension of the transform");
+		}
+		double[] rows = intermediate.get();
+
+		// rows[v][x] = sum_y basisY[v][y] * plane[y][x]
+		for (int v = 0; v < frequencyHeight; v++) {
+			int rowOffset = v * width;
+			for (int x = 0; x < width; x++) {
+				rows[rowOffset + x] = 0;
+			}
+			int basisOffset = v * height;
+			for (int y = 0; y < height; y++) {
+				double cosine = basisY[basisOffset + y];
+				int offset = planeOffset + y * width;
+				for (int x = 0; x < width; x++) {
+					rows[rowOffset + x] += cosine * plane[offset + x];
+				}
+			}
+		}
+
+		// output[v][u] = sum_x rows[v][x] * basisX[u][x]
+		for (int v = 0; v < frequencyHeight; v++) {
+			int rowOffset = v * width;
+			for (int u = 0; u < frequencyWidth; u++) {
+				int basisOffset = u * width;
+				double sum = 0;
+				for (int x = 0; x < width; x++) {
+					sum += rows[rowOffset + x] * basisX[basisOffset + x];
+				}
+				output[outputOffset + v * frequencyWidth + u] = sum;
+			}
+		}
+	}
+
+	/**
+	 * @return the width of the transformed plane
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the transformed plane
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the number of horizontal frequencies computed
+	 */
+	public int getFrequencyWidth() {
+		return frequencyWidth;
+	}
+
+	/**
+	 * @return the number of vertical frequencies computed
+	 */
+	public int getFrequencyHeight() {
+		return frequencyHeight;
+	}
+
+	private static double[] getBasis(int length, int first, int count) {
+		long key = ((long) length << 42) | ((long) first << 21) | count;
+		return BASES.computeIfAbsent(key, unused -> {
+			double[] basis = new double[count * length];
+			for (int k = 0; k < count; k++) {
+				for (int n = 0; n < length; n++) {
+					basis[k * length + n] = Math.cos(Math.PI * (n + 0.5) * (first + k) / length);
+				}
+			}
+			return basis;
+		});
+	}
+
+}
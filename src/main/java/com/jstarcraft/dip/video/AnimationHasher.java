@@ -0,0 +1,192 @@
+package com.jstarcraft.dip.video;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.ObjLongConsumer;
+
+import com.jstarcraft.dip.color.FrameReader;
+import com.jstarcraft.dip.hash.FuzzyHash;
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.lsh.HashingAlgorithm;
+
+/**
+ * Hash every frame of animated and multi-page images, e.g. animated GIF or
+ * multi-page TIFF images. {@link HashingAlgorithm#hash(File)} only hashes the
+ * first frame of such images.
+ * <p>
+ *
+ * Frames are decoded one at a time by a {@link FrameReader} on the calling
+ * thread and hashed on a pool of worker threads, which is kept by the hasher
+ * and reused for every image. At most 4 frames per thread are pending at the
+ * same time, after which decoding blocks until the oldest frame is hashed.
+ * Therefore the memory required is independent of the number of frames.
+ * <p>
+ *
+ * The frames can either be hashed to a {@link HashSequence}, which can be
+ * aligned with other sequences by the
+ * {@link com.github.kilianB.matcher.video.VideoMatcher}, or merged to a single
+ * {@link FuzzyHash} representing the mean frame.
+ * <p>
+ *
+ * The hasher is thread safe as long as it is not reconfigured while an image is
+ * hashed.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+public class AnimationHasher {
+
+	private final HashingAlgorithm algorithm;
+
+	private final FrameHashingPool pool = new FrameHashingPool("AnimationHashing");
+
+	/**
+	 * @param algorithm the algorithm hashing the frames
+	 */
+	public AnimationHasher(HashingAlgorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Hash all frames of the image file
+	 *
+	 * @param file the file pointing to the image
+	 * @return the hashes of the frames in display order
+	 * @throws IOException if an error occurs during reading the image
+	 */
+	public HashSequence hash(File file) throws IOException {
+		try (FrameReader reader = createReader(file)) {
+			return hash(reader);
+		}
+	}
+
+	/**
+	 * Hash all frames of the image read from the stream. The stream is not
+	 * closed.
+	 *
+	 * @param stream the stream containing the image
+	 * @return the hashes of the frames in display order
+	 * @throws IOException if an error occurs during reading the image
+	 */
+	public HashSequence hash(InputStream stream) throws IOException {
+		try (FrameReader reader = createReader(stream)) {
+			return hash(reader);
+		}
+	}
+
+	/**
+	 * Merge the hashes of all frames of the image file
+	 *
+	 * @param file the file pointing to the image
+	 * @return the fuzzy hash containing the hashes of all frames
+	 * @throws IOException if an error occurs during reading the image
+	 */
+	public FuzzyHash hashAggregated(File file) throws IOException {
+		try (FrameReader reader = createReader(file)) {
+			return hashAggregated(reader);
+		}
+	}
+
+	/**
+	 * Merge the hashes of all frames of the image read from the stream. The
+	 * stream is not closed.
+	 *
+	 * @param stream the stream containing the image
+	 * @return the fuzzy hash containing the hashes of all frames
+	 * @throws IOException if an error occurs during reading the image
+	 */
+	public FuzzyHash hashAggregated(InputStream stream) throws IOException {
+		try (FrameReader reader = createReader(stream)) {
+			return hashAggregated(reader);
+		}
+	}
+
+	private FrameReader createReader(File file) throws IOException {
+		int[] resolution = HashingAlgorithm.getDecodingResolution(Collections.singleton(algorithm));
+		return new FrameReader(file, resolution[0], resolution[1]);
+	}
+
+	private FrameReader createReader(InputStream stream) throws IOException {
+		int[] resolution = HashingAlgorithm.getDecodingResolution(Collections.singleton(algorithm));
+		return new FrameReader(stream, resolution[0], resolution[1]);
+	}
+
+	private HashSequence hash(FrameReader reader) throws IOException {
+		List<Hash> hashes = new ArrayList<>();
+		List<Long> timestamps = new ArrayList<>();
+		hashFrames(reader, (hash, timestamp) -> {
+			hashes.add(hash);
+			timestamps.add(timestamp);
+		});
+		long[] presentation = new long[timestamps.size()];
+		for (int index = 0; index < presentation.length; index++) {
+			presentation[index] = timestamps.get(index);
+		}
+		return new HashSequence(hashes.toArray(new Hash[hashes.size()]), presentation);
+	}
+
+	private FuzzyHash hashAggregated(FrameReader reader) throws IOException {
+		FuzzyHash fuzzyHash = new FuzzyHash();
+		hashFrames(reader, (hash, timestamp) -> fuzzyHash.merge(hash));
+		return fuzzyHash;
+	}
+
+	/**
+	 * Hash the frames on the worker pool and pass the hashes to the consumer on the
+	 * calling thread in display order
+	 */
+	private void hashFrames(FrameReader reader, ObjLongConsumer<Hash> consumer) throws IOException {
+		try (FrameHashingPool.Pipeline pipeline = pool.pipeline(algorithm, consumer)) {
+			BufferedImage frame;
+			while ((frame = reader.read()) != null) {
+				// Composed frames share the canvas of the reader
+				BufferedImage image = reader.isAnimated() ? new BufferedImage(frame.getColorModel(), frame.copyData(null), frame.isAlphaPremultiplied(), null) : frame;
+				pipeline.submit(image, reader.getTimestamp());
+			}
+			pipeline.finish();
+		}
+	}
+
+	/**
+	 * @return the algorithm hashing the frames
+	 */
+	public HashingAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Set the number of threads hashing the frames. At most 4 frames per thread
+	 * are pending at the same time.
+	 *
+	 * @param parallelism the number of threads
+	 */
+	public void setParallelism(int parallelism) {
+		pool.setParallelism(parallelism);
+	}
+
+	/**
+	 * @return the number of threads hashing the frames
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Hash the frames on the executor instead of the threads of the hasher. The
+	 * executor is not shut down by the hasher. The parallelism still bounds the
+	 * number of pending frames.
+	 *
+	 * @param executor the executor hashing the frames. null to use the threads of
+	 *                 the hasher
+	 */
+	public void setExecutor(Executor executor) {
+		pool.setExecutor(executor);
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.jstarcraft.dip.video;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+
+import com.github.kilianB.Require;
+import com.github.kilianB.concurrency.NamedThreadFactory;
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.lsh.HashingAlgorithm;
+
+/**
+ * The worker threads of a hasher hashing frames decoded on the calling thread.
+ * <p>
+ *
+ * Unless an executor is supplied, the pool lazily creates its own threads once
+ * and reuses them for every video or image hashed. Idle threads are terminated
+ * after a minute, therefore an unused hasher does not keep any threads alive.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ */
+class FrameHashingPool {
+
+	private final String threadName;
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/** The executor supplied by the user. Null to use the own threads */
+	private Executor executor;
+
+	/** Lazily created if no executor is supplied */
+	private ThreadPoolExecutor ownExecutor;
+
+	/**
+	 * @param threadName the prefix of the names of the own threads
+	 */
+	FrameHashingPool(String threadName) {
+		this.threadName = threadName;
+	}
+
+	/**
+	 * Create a pipeline hashing frames on the pool
+	 *
+	 * @param algorithm the algorithm hashing the frames
+	 * @param consumer  receives the hashes and timestamps on the calling thread in
+	 *                  submission order
+	 * @return the pipeline. Has to be closed to cancel pending frames if hashing
+	 *         is aborted
+	 */
+	synchronized Pipeline pipeline(HashingAlgorithm algorithm, ObjLongConsumer<Hash> consumer) {
+		return new Pipeline(algorithm, getExecutor(), parallelism * 4, consumer);
+	}
+
+	synchronized Executor getExecutor() {
+		if (executor != null) {
+			return executor;
+		}
+		if (ownExecutor == null) {
+			ownExecutor = new ThreadPoolExecutor(parallelism, parallelism, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), new NamedThreadFactory(threadName, true));
+			ownExecutor.allowCoreThreadTimeOut(true);
+		}
+		return ownExecutor;
+	}
+
+	synchronized void setExecutor(Executor executor) {
+		this.executor = executor;
+		shutdownOwnExecutor();
+	}
+
+	synchronized void setParallelism(int parallelism) {
+		this.parallelism = Require.positiveValue(parallelism, "The parallelism has to be positive");
+		shutdownOwnExecutor();
+	}
+
+	synchronized int getParallelism() {
+		return parallelism;
+	}
+
+	private void shutdownOwnExecutor() {
+		if (ownExecutor != null) {
+			// Frames already submitted are still hashed
+			ownExecutor.shutdown();
+			ownExecutor = null;
+		}
+	}
+
+	/**
+	 * Hashes frames on an executor while bounding the number of pending frames.
+	 * Once the bound is reached, submitting a frame blocks until the oldest frame
+	 * is hashed, therefore the memory required is independent of the number of
+	 * frames.
+	 */
+	static class Pipeline implements AutoCloseable {
+
+		private final HashingAlgorithm algorithm;
+
+		private final Executor executor;
+
+		private final int maxPending;
+
+		private final ObjLongConsumer<Hash> consumer;
+
+		private final ArrayDeque<CompletableFuture<Hash>> pending = new ArrayDeque<>();
+
+		private final ArrayDeque<Long> pendingTimestamps = new ArrayDeque<>();
+
+		private Pipeline(HashingAlgorithm algorithm, Executor executor, int maxPending, ObjLongConsumer<Hash> consumer) {
+			this.algorithm = algorithm;
+			this.executor = executor;
+			this.maxPending = maxPending;
+			this.consumer = consumer;
+		}
+
+		/**
+		 * Hash the frame. The frame must not be modified afterwards.
+		 *
+		 * @param frame     the frame
+		 * @param timestamp the timestamp of the frame
+		 */
+		void submit(BufferedImage frame, long timestamp) {
+			pending.add(CompletableFuture.supplyAsync(() -> algorithm.hash(frame), executor));
+			pendingTimestamps.add(timestamp);
+			if (pending.size() >= maxPending) {
+				consumer.accept(join(pending.poll()), pendingTimestamps.poll());
+			}
+		}
+
+		/**
+		 * Wait until all submitted frames are hashed
+		 */
+		void finish() {
+			while (!pending.isEmpty()) {
+				consumer.accept(join(pending.poll()), pendingTimestamps.poll());
+			}
+		}
+
+		/**
+		 * Cancel the frames not hashed yet
+		 */
+		@Override
+		public void close() {
+			for (CompletableFuture<Hash> hash : pending) {
+				hash.cancel(false);
+			}
+			pending.clear();
+			pendingTimestamps.clear();
+		}
+
+		private static Hash join(CompletableFuture<Hash> hash) {
+			try {
+				return hash.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw (RuntimeException) cause;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.jstarcraft.dip.video;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.jstarcraft.dip.hash.Hash;
+
+/**
+ * The hashes of the frames sampled from a video or an animated image in
+ * presentation order.
+ * <p>
+ *
+ * All hashes are created by the same hashing algorithm. The timestamp of each
+ * hash is the presentation time of the frame in microseconds.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ * @see VideoHasher
+ * @see AnimationHasher
+ */
+public final class HashSequence implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Hash[] hashes;
+
+	private final long[] timestamps;
+
+	/**
+	 * @param hashes     the hashes of the sampled frames
+	 * @param timestamps the presentation time of the sampled frames in
+	 *                   microseconds
+	 * @throws IllegalArgumentException if the number of hashes and timestamps
+	 *                                  differs or the hashes are created by
+	 *                                  different algorithms
+	 */
+	public HashSequence(Hash[] hashes, long[] timestamps) {
+		if (hashes.length != timestamps.length) {
+			throw new IllegalArgumentException("Every hash requires a timestamp");
+		}
+		for (Hash hash : hashes) {
+			if (hash.getAlgorithmId() != hashes[0].getAlgorithmId()) {
+				throw new IllegalArgumentException("All hashes of a sequence have to be created by the same algorithm");
+			}
+		}
+		this.hashes = hashes.clone();
+		this.timestamps = timestamps.clone();
+	}
+
+	/**
+	 * @return the number of sampled frames
+	 */
+	public int size() {
+		return hashes.length;
+	}
+
+	/**
+	 * @param index the index of the sampled frame
+	 * @return the hash of the frame
+	 */
+	public Hash getHash(int index) {
+		return hashes[index];
+	}
+
+	/**
+	 * @param index the index of the sampled frame
+	 * @return the presentation time of the frame in microseconds
+	 */
+	public long getTimestamp(int index) {
+		return timestamps[index];
+	}
+
+	/**
+	 * Return the frames sampled from a section of the video. The timestamps are
+	 * kept.
+	 *
+	 * @param from the index of the first frame, inclusive
+	 * @param to   the index of the last frame, exclusive
+	 * @return the sequence containing the frames within the range
+	 */
+	public HashSequence subSequence(int from, int to) {
+		return new HashSequence(Arrays.copyOfRange(hashes, from, to), Arrays.copyOfRange(timestamps, from, to));
+	}
+
+	@Override
+	public String toString() {
+		return "HashSequence [frames=" + hashes.length + (hashes.length == 0 ? "" : ", duration=" + (timestamps[timestamps.length - 1] - timestamps[0]) + "us") + "]";
+	}
+
+}
@@ -0,0 +1,282 @@
+package com.jstarcraft.dip.video;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.Java2DFrameConverter;
+
+import com.jstarcraft.dip.color.LuminanceResampler;
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.lsh.HashingAlgorithm;
+
+/**
+ * Hash the frames of a video decoded by FFmpeg.
+ * <p>
+ *
+ * The video is decoded frame by frame on the calling thread. A frame is
+ * sampled if
+ * <ul>
+ * <li>it is the first frame of the video,</li>
+ * <li>the sampling interval elapsed since the last sampled frame or</li>
+ * <li>the mean difference of its luminance to the last sampled frame exceeds
+ * the scene threshold.</li>
+ * </ul>
+ * Sampled frames are hashed on a pool of worker threads, which is kept by the
+ * hasher and reused for every video. At most 4 frames per thread are pending
+ * at the same time, after which decoding blocks until the oldest frame is
+ * hashed. Therefore the memory required is independent of the length of the
+ * video.
+ * <p>
+ *
+ * FFmpeg scales the frames to the resolution required by the hashing
+ * algorithm (see {@link HashingAlgorithm#getDecodingResolution}) while
+ * converting them to RGB, which keeps the cost of sampling and hashing a frame
+ * independent of the resolution of the video.
+ * <p>
+ *
+ * The hasher is thread safe as long as it is not reconfigured while a video
+ * is hashed.
+ *
+ * @author Kilian
+ * @since 3.1.0
+ * @see com.github.kilianB.matcher.video.VideoMatcher
+ */
+public class VideoHasher {
+
+	/** The resolution of the luminance compared to detect scene changes */
+	private static final int SCENE_RESOLUTION = 16;
+
+	private final HashingAlgorithm algorithm;
+
+	/** Microseconds between sampled frames. 0 to disable interval sampling */
+	private long samplingInterval = 1_000_000;
+
+	/** Mean luminance difference of a scene change. 0 to disable */
+	private double sceneThreshold;
+
+	private boolean keyFramesOnly;
+
+	private final FrameHashingPool pool = new FrameHashingPool("VideoHashing");
+
+	/**
+	 * Create a hasher sampling one frame per second
+	 *
+	 * @param algorithm the algorithm hashing the sampled frames
+	 */
+	public VideoHasher(HashingAlgorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Hash the video file
+	 *
+	 * @param video the video file
+	 * @return the hashes of the sampled frames
+	 * @throws IOException if the video can not be decoded
+	 */
+	public HashSequence hash(File video) throws IOException {
+		return hash(new FFmpegFrameGrabber(video));
+	}
+
+	/**
+	 * Hash the video read from the stream. The stream is not closed.
+	 *
+	 * @param video the stream containing the video
+	 * @return the hashes of the sampled frames
+	 * @throws IOException if the video can not be decoded
+	 */
+	public HashSequence hash(InputStream video) throws IOException {
+		return hash(new FFmpegFrameGrabber(video));
+	}
+
+	/**
+	 * Hash the video decoded by the grabber. The grabber may be configured prior
+	 * to invoking this method, but must not be started yet. It is released after
+	 * the video is hashed.
+	 *
+	 * @param grabber the grabber decoding the video
+	 * @return the hashes of the sampled frames
+	 * @throws IOException if the video can not be decoded
+	 */
+	public HashSequence hash(FFmpegFrameGrabber grabber) throws IOException {
+		List<Hash> hashes = new ArrayList<>();
+		List<Long> timestamps = new ArrayList<>();
+		boolean sampled = false;
+		try (FrameHashingPool.Pipeline pipeline = pool.pipeline(algorithm, (hash, timestamp) -> {
+			hashes.add(hash);
+			timestamps.add(timestamp);
+		})) {
+			grabber.start();
+			int[] resolution = HashingAlgorithm.getDecodingResolution(Collections.singleton(algorithm));
+			// Scaled while the frame is converted to RGB. The aspect ratio is irrelevant,
+			// the algorithm rescales the frame to its own resolution anyways
+			grabber.setImageWidth(Math.min(grabber.getImageWidth(), resolution[0]));
+			grabber.setImageHeight(Math.min(grabber.getImageHeight(), resolution[1]));
+
+			Java2DFrameConverter converter = new Java2DFrameConverter();
+			LuminanceResampler resampler = new LuminanceResampler(SCENE_RESOLUTION, SCENE_RESOLUTION);
+			double[] luminance = new double[SCENE_RESOLUTION * SCENE_RESOLUTION];
+			double[] sampledLuminance = new double[luminance.length];
+			long sampledTimestamp = 0;
+			Frame frame;
+			while ((frame = keyFramesOnly ? grabber.grabKeyFrame() : grabber.grabImage()) != null) {
+				if (frame.image == null) {
+					continue;
+				}
+				// The converter reuses the image for all frames
+				BufferedImage image = converter.convert(frame);
+
+				boolean sample = !sampled || samplingInterval > 0 && frame.timestamp - sampledTimestamp >= samplingInterval;
+				if (sceneThreshold > 0) {
+					resampler.getLuminancePlane(image, luminance);
+					sample |= getMeanDifference(luminance, sampledLuminance) > sceneThreshold;
+				}
+				if (!sample) {
+					continue;
+				}
+				if (sceneThreshold > 0) {
+					double[] swap = sampledLuminance;
+					sampledLuminance = luminance;
+					luminance = swap;
+				}
+				sampled = true;
+				sampledTimestamp = frame.timestamp;
+
+				BufferedImage copy = new BufferedImage(image.getColorModel(), image.copyData(null), image.isAlphaPremultiplied(), null);
+				pipeline.submit(copy, frame.timestamp);
+			}
+			pipeline.finish();
+		} finally {
+			try {
+				grabber.stop();
+			} finally {
+				grabber.release();
+			}
+		}
+		long[] presentation = new long[timestamps.size()];
+		for (int index = 0; index < presentation.length; index++) {
+			presentation[index] = timestamps.get(index);
+		}
+		return new HashSequence(hashes.toArray(new Hash[hashes.size()]), presentation);
+	}
+
+	private static double getMeanDifference(double[] luminance, double[] sampledLuminance) {
+		double difference = 0;
+		for (int index = 0; index < luminance.length; index++) {
+			difference += Math.abs(luminance[index] - sampledLuminance[index]);
+		}
+		return difference / luminance.length;
+	}
+
+	/**
+	 * @return the algorithm hashing the sampled frames
+	 */
+	public HashingAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Set the time between two frames sampled regardless of scene changes
+	 *
+	 * @param interval the interval in microseconds. 0 to only sample frames on
+	 *                 scene changes
+	 */
+	public void setSamplingInterval(long interval) {
+		if (interval < 0) {
+			throw new IllegalArgumentException("The sampling interval must not be negative");
+		}
+		this.samplingInterval = interval;
+	}
+
+	/**
+	 * @return the time between two frames sampled regardless of scene changes in
+	 *         microseconds
+	 */
+	public long getSamplingInterval() {
+		return samplingInterval;
+	}
+
+	/**
+	 * Set the threshold of the scene change detection. A frame is sampled if the
+	 * mean absolute difference of its luminance, scaled to 16x16 pixels, to the
+	 * last sampled frame exceeds the threshold. Comparing the frame to the last
+	 * sampled instead of the previous frame also detects gradual transitions.
+	 * <p>
+	 *
+	 * Detecting scene changes requires the luminance of every decoded frame to
+	 * be computed.
+	 *
+	 * @param threshold the threshold in gray levels [0 - 255]. 0 to disable the
+	 *                  scene change detection
+	 */
+	public void setSceneThreshold(double threshold) {
+		if (threshold < 0 || threshold > 255) {
+			throw new IllegalArgumentException("The scene threshold has to be within [0 - 255]");
+		}
+		this.sceneThreshold = threshold;
+	}
+
+	/**
+	 * @return the threshold of the scene change detection in gray levels
+	 */
+	public double getSceneThreshold() {
+		return sceneThreshold;
+	}
+
+	/**
+	 * Only decode the key frames of the video. Skipping the decoding of all
+	 * other frames speeds up hashing by an order of magnitude, but the time
+	 * between sampled frames can not be shorter than the key frame interval of
+	 * the video.
+	 *
+	 * @param keyFramesOnly true to only sample key frames
+	 */
+	public void setKeyFramesOnly(boolean keyFramesOnly) {
+		this.keyFramesOnly = keyFramesOnly;
+	}
+
+	/**
+	 * @return true if only key frames are sampled
+	 */
+	public boolean isKeyFramesOnly() {
+		return keyFramesOnly;
+	}
+
+	/**
+	 * Set the number of threads hashing the sampled frames. At most 4 frames per
+	 * thread are pending at the same time.
+	 *
+	 * @param parallelism the number of threads
+	 */
+	public void setParallelism(int parallelism) {
+		pool.setParallelism(parallelism);
+	}
+
+	/**
+	 * @return the number of threads hashing the sampled frames
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Hash the sampled frames on the executor instead of the threads of the
+	 * hasher. The executor is not shut down by the hasher. The parallelism still
+	 * bounds the number of pending frames.
+	 *
+	 * @param executor the executor hashing the sampled frames. null to use the
+	 *                 threads of the hasher
+	 */
+	public void setExecutor(Executor executor) {
+		pool.setExecutor(executor);
+	}
+
+}
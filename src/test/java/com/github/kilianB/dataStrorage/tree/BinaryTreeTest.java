@@ -4,8 +4,11 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Random;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
@@ -183,6 +186,37 @@ public class BinaryTreeTest {
 		assertEquals(3, binTree.getHashCount());
 	}
 
+	@Test
+	public void searchMultipleNeedles() {
+		Random random = new Random(0);
+		for (int i = 0; i < 2000; i++) {
+			binTree.addHash(createRandomHash(random, 24), i);
+		}
+		List<Hash> needles = new ArrayList<>();
+		int[] distances = new int[50];
+		for (int i = 0; i < distances.length; i++) {
+			needles.add(createRandomHash(random, 24));
+			distances[i] = i % 7 - 1;
+		}
+		List<PriorityQueue<Result>> results = binTree.getElementsWithinHammingDistance(needles, distances);
+		assertEquals(needles.size(), results.size());
+		for (int i = 0; i < distances.length; i++) {
+			if (distances[i] < 0) {
+				assertTrue(results.get(i).isEmpty());
+			} else {
+				assertEquals(new HashSet<>(binTree.getElementsWithinHammingDistance(needles.get(i), distances[i])), new HashSet<>(results.get(i)));
+			}
+		}
+	}
+
+	private Hash createRandomHash(Random random, int bits) {
+		StringBuilder builder = new StringBuilder(bits);
+		for (int index = 0; index < bits; index++) {
+			builder.append(random.nextBoolean() ? '1' : '0');
+		}
+		return TestResources.createHash(builder.toString(), 0);
+	}
+
 	@Nested
 	class NearestNeightbour {
 
@@ -262,5 +296,22 @@ public class BinaryTreeTest {
 			assertTrue(((int) r.value == 0) || (int) r.value == 2);
 			assertTrue(((int) r2.value == 0 || (int) r2.value == 2));
 		}
+
+		@Test
+		public void nearestNeighbours() {
+			Hash needle = TestResources.createHash("00001", 0);
+
+			binTree.addHash(TestResources.createHash("00011", 0), 0);
+			binTree.addHash(TestResources.createHash("00111", 0), 1);
+			binTree.addHash(TestResources.createHash("11110", 0), 2);
+			binTree.addHash(TestResources.createHash("01111", 0), 3);
+
+			List<Result> results = binTree.getNearestNeighbours(needle, 3);
+
+			assertEquals(3, results.size());
+			assertEquals(0, results.get(0).value);
+			assertEquals(1, results.get(1).value);
+			assertEquals(3, results.get(2).value);
+		}
 	}
 }
@@ -0,0 +1,143 @@
+package com.github.kilianB.dataStrorage.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.github.kilianB.TestResources;
+import com.github.kilianB.datastructures.tree.Result;
+import com.github.kilianB.datastructures.tree.binaryTree.BinaryTree;
+import com.github.kilianB.datastructures.tree.binaryTree.CompactBinaryTree;
+import com.jstarcraft.dip.hash.Hash;
+
+class CompactBinaryTreeTest {
+
+	private CompactBinaryTree<Integer> tree;
+
+	@BeforeEach
+	public void createTree() {
+		tree = new CompactBinaryTree<>(true);
+	}
+
+	@Test
+	public void searchExactItem() {
+		Hash hash = TestResources.createHash("101010100011", 0);
+		tree.addHash(hash, 1);
+		PriorityQueue<Result<Integer>> results = tree.getElementsWithinHammingDistance(hash, 100);
+		Result<Integer> r = results.peek();
+		assertEquals(1, r.value);
+		assertEquals(0, r.distance);
+	}
+
+	@Test
+	public void searchDistantItem() {
+		tree.addHash(TestResources.createHash("00001010", 0), 0);
+		Hash needle = TestResources.createHash("10001011", 0);
+		assertEquals(0, tree.getElementsWithinHammingDistance(needle, 1).size());
+		assertEquals(1, tree.getElementsWithinHammingDistance(needle, 2).size());
+	}
+
+	@Test
+	public void duplicateHash() {
+		Hash hash = TestResources.createHash("00001010", 0);
+		tree.addHash(hash, 0);
+		tree.addHash(hash, 1);
+		tree.addHash(TestResources.createHash("00001011", 0), 2);
+		assertEquals(2, tree.getElementsWithinHammingDistance(hash, 0).size());
+		assertEquals(3, tree.getElementsWithinHammingDistance(hash, 1).size());
+		assertEquals(2, tree.getNearestNeighbour(hash).size());
+	}
+
+	@Test
+	public void incompatibleHash() {
+		tree.addHash(TestResources.createHash("00001010", 1), 0);
+		assertThrows(IllegalStateException.class, () -> {
+			tree.addHash(TestResources.createHash("00001010", 2), 0);
+		});
+	}
+
+	@Nested
+	class BinaryTreeEquality {
+
+		private BinaryTree<Integer> binaryTree;
+
+		private Hash[] needles;
+
+		@BeforeEach
+		public void fill() {
+			Random random = new Random(0);
+			binaryTree = new BinaryTree<>(true);
+			Hash[] hashes = new Hash[3000];
+			for (int index = 0; index < hashes.length; index++) {
+				// Add near duplicates to create long shared prefixes
+				Hash hash = index % 3 == 2 ? flipBit(random, hashes[index - 1]) : createRandomHash(random, 72);
+				hashes[index] = hash;
+				binaryTree.addHash(hash, index);
+				tree.addHash(hash, index);
+			}
+			needles = new Hash[20];
+			for (int index = 0; index < needles.length; index++) {
+				needles[index] = index % 2 == 0 ? createRandomHash(random, 72) : flipBit(random, hashes[random.nextInt(hashes.length)]);
+			}
+		}
+
+		@Test
+		public void withinDistance() {
+			for (int distance : new int[] { 0, 3, 14, 24 }) {
+				for (Hash needle : needles) {
+					assertEquals(getValues(binaryTree.getElementsWithinHammingDistance(needle, distance)), getValues(tree.getElementsWithinHammingDistance(needle, distance)));
+				}
+			}
+		}
+
+		@Test
+		public void nearestNeighbour() {
+			for (Hash needle : needles) {
+				List<Result<Integer>> expected = binaryTree.getNearestNeighbour(needle);
+				List<Result<Integer>> actual = tree.getNearestNeighbour(needle);
+				assertEquals(expected.get(0).distance, actual.get(0).distance);
+				assertEquals(getValues(expected), getValues(actual));
+			}
+		}
+
+		@Test
+		public void memoryFootprint() {
+			// The object based tree requires more than 1 kB per hash
+			assertTrue(tree.getMemoryFootprint() / tree.getHashCount() < 100);
+		}
+
+		private Set<Integer> getValues(Iterable<Result<Integer>> results) {
+			Set<Integer> values = new HashSet<>();
+			for (Result<Integer> result : results) {
+				values.add(result.value);
+			}
+			return values;
+		}
+
+		private Hash flipBit(Random random, Hash hash) {
+			long[] words = hash.getHashWords().clone();
+			int bit = random.nextInt(hash.getBitResolution());
+			words[bit >>> 6] ^= 1L << (bit & 63);
+			return new Hash(words, hash.getBitResolution(), hash.getAlgorithmId());
+		}
+
+		private Hash createRandomHash(Random random, int bits) {
+			StringBuilder builder = new StringBuilder(bits);
+			for (int index = 0; index < bits; index++) {
+				builder.append(random.nextBoolean() ? '1' : '0');
+			}
+			return TestResources.createHash(builder.toString(), 0);
+		}
+	}
+
+}
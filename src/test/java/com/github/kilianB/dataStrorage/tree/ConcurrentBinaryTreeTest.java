@@ -0,0 +1,138 @@
+package com.github.kilianB.dataStrorage.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.kilianB.TestResources;
+import com.github.kilianB.datastructures.tree.Result;
+import com.github.kilianB.datastructures.tree.binaryTree.BinaryTree;
+import com.github.kilianB.datastructures.tree.binaryTree.ConcurrentBinaryTree;
+import com.jstarcraft.dip.hash.Hash;
+
+class ConcurrentBinaryTreeTest {
+
+	@Test
+	public void duplicateHash() {
+		ConcurrentBinaryTree<Integer> tree = new ConcurrentBinaryTree<>(true);
+		Hash hash = TestResources.createHash("00001010", 0);
+		tree.addHash(hash, 0);
+		tree.addHash(hash, 1);
+		tree.addHash(TestResources.createHash("00001011", 0), 2);
+		assertEquals(3, tree.getHashCount());
+		assertEquals(2, tree.getElementsWithinHammingDistance(hash, 0).size());
+		assertEquals(3, tree.getElementsWithinHammingDistance(hash, 1).size());
+		assertEquals(2, tree.getNearestNeighbour(hash).size());
+	}
+
+	@Test
+	public void incompatibleHash() {
+		ConcurrentBinaryTree<Integer> tree = new ConcurrentBinaryTree<>(true);
+		tree.addHash(TestResources.createHash("00001010", 1), 0);
+		assertThrows(IllegalStateException.class, () -> {
+			tree.addHash(TestResources.createHash("00001010", 2), 0);
+		});
+	}
+
+	@Test
+	public void equalToBinaryTree() {
+		Random random = new Random(0);
+		BinaryTree<Integer> expected = new BinaryTree<>(true);
+		ConcurrentBinaryTree<Integer> tree = new ConcurrentBinaryTree<>(true, 7);
+		for (int i = 0; i < 1000; i++) {
+			Hash hash = createRandomHash(random, 32);
+			expected.addHash(hash, i);
+			tree.addHash(hash, i);
+		}
+		tree.publish();
+		assertEquals(expected, tree);
+		for (int i = 0; i < 20; i++) {
+			Hash needle = createRandomHash(random, 32);
+			assertEquals(getValues(expected.getElementsWithinHammingDistance(needle, 8)), getValues(tree.getElementsWithinHammingDistance(needle, 8)));
+			assertEquals(getValues(expected.getNearestNeighbour(needle)), getValues(tree.getNearestNeighbour(needle)));
+		}
+	}
+
+	@Test
+	public void snapshotIsolation() {
+		ConcurrentBinaryTree<Integer> tree = new ConcurrentBinaryTree<>(true, 3);
+		Hash hash = TestResources.createHash("00001010", 0);
+		tree.addHash(hash, 0);
+		tree.addHash(hash, 1);
+		assertEquals(0, tree.getHashCount());
+		assertEquals(0, tree.getElementsWithinHammingDistance(hash, 0).size());
+		tree.addHash(hash, 2);
+		assertEquals(3, tree.getHashCount());
+		assertEquals(3, tree.getElementsWithinHammingDistance(hash, 0).size());
+		tree.addHash(hash, 3);
+		assertEquals(3, tree.getElementsWithinHammingDistance(hash, 0).size());
+		tree.publish();
+		assertEquals(4, tree.getElementsWithinHammingDistance(hash, 0).size());
+	}
+
+	@Test
+	public void searchWhileAdding() throws Exception {
+		ConcurrentBinaryTree<Integer> tree = new ConcurrentBinaryTree<>(true, 16);
+		Hash needle = TestResources.createHash("0000000000000000", 0);
+		tree.addHash(needle, -1);
+		tree.publish();
+
+		AtomicBoolean done = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Boolean>> readers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			readers.add(executor.submit(() -> {
+				int lastCount = 0;
+				while (!done.get()) {
+					// The snapshot only grows and always contains the exact match
+					int count = tree.getElementsWithinHammingDistance(needle, 16).size();
+					if (count < lastCount || tree.getNearestNeighbour(needle).get(0).distance != 0) {
+						return false;
+					}
+					lastCount = count;
+				}
+				return true;
+			}));
+		}
+		Random random = new Random(0);
+		for (int i = 0; i < 20000; i++) {
+			tree.addHash(createRandomHash(random, 16), i);
+		}
+		tree.publish();
+		done.set(true);
+		for (Future<Boolean> reader : readers) {
+			assertTrue(reader.get());
+		}
+		executor.shutdown();
+		assertEquals(20001, tree.getElementsWithinHammingDistance(needle, 16).size());
+	}
+
+	private Set<Integer> getValues(Iterable<Result<Integer>> results) {
+		Set<Integer> values = new HashSet<>();
+		for (Result<Integer> result : results) {
+			values.add(result.value);
+		}
+		return values;
+	}
+
+	private Hash createRandomHash(Random random, int bits) {
+		StringBuilder builder = new StringBuilder(bits);
+		for (int index = 0; index < bits; index++) {
+			builder.append(random.nextBoolean() ? '1' : '0');
+		}
+		return TestResources.createHash(builder.toString(), 0);
+	}
+
+}
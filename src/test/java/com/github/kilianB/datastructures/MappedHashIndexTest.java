@@ -0,0 +1,235 @@
+package com.github.kilianB.datastructures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.kilianB.TestResources;
+import com.github.kilianB.datastructures.tree.Result;
+import com.github.kilianB.datastructures.tree.binaryTree.BinaryTree;
+import com.jstarcraft.dip.hash.Hash;
+
+class MappedHashIndexTest {
+
+	private File indexFile;
+
+	private MappedHashIndex index;
+
+	@BeforeEach
+	public void createIndex() throws IOException {
+		indexFile = File.createTempFile("mappedHashIndex", ".idx");
+		indexFile.delete();
+		index = new MappedHashIndex(indexFile, true);
+	}
+
+	@AfterEach
+	public void deleteIndex() throws IOException {
+		index.close();
+		indexFile.delete();
+	}
+
+	@Test
+	public void searchExactItem() {
+		Hash hash = TestResources.createHash("101010100011", 0);
+		index.addHash(hash, "1");
+		Result<String> r = index.getElementsWithinHammingDistance(hash, 0).peek();
+		assertEquals("1", r.value);
+		assertEquals(0, r.distance);
+	}
+
+	@Test
+	public void incompatibleHash() {
+		index.addHash(TestResources.createHash("00001010", 1), "0");
+		assertThrows(IllegalStateException.class, () -> {
+			index.addHash(TestResources.createHash("00001010", 2), "0");
+		});
+	}
+
+	@Test
+	public void incompatibleLength() {
+		index.addHash(TestResources.createHash("00001010", 0), "0");
+		assertThrows(IllegalArgumentException.class, () -> {
+			index.addHash(TestResources.createHash("0000101011", 0), "0");
+		});
+	}
+
+	@Test
+	public void notAnIndex() throws IOException {
+		File other = File.createTempFile("mappedHashIndex", ".idx");
+		try (RandomAccessFile raf = new RandomAccessFile(other, "rw")) {
+			raf.writeLong(42);
+			raf.writeLong(42);
+			raf.writeLong(42);
+			raf.writeLong(42);
+		}
+		assertThrows(IOException.class, () -> {
+			new MappedHashIndex(other, true);
+		});
+		other.delete();
+	}
+
+	@Test
+	public void reopen() throws IOException {
+		BinaryTree<String> tree = fill(2500, 100);
+		index.close();
+		index = new MappedHashIndex(indexFile, true);
+		assertEquals(2500, index.getHashCount());
+		assertEqualResults(tree, 100);
+	}
+
+	@Test
+	public void compact() throws IOException {
+		BinaryTree<String> tree = fill(2500, 64);
+		assertTrue(index.getSegmentCount() > 1);
+		index.compact();
+		assertEquals(1, index.getSegmentCount());
+		assertEquals(2500, index.getHashCount());
+		assertEqualResults(tree, 64);
+	}
+
+	@Test
+	public void compactMultipleWords() throws IOException {
+		BinaryTree<String> tree = fill(2500, 100);
+		index.compact();
+		assertEquals(1, index.getSegmentCount());
+		assertEqualResults(tree, 100);
+		index.close();
+		index = new MappedHashIndex(indexFile, true);
+		assertEqualResults(tree, 100);
+	}
+
+	@Test
+	public void appendAfterCompaction() throws IOException {
+		BinaryTree<String> tree = fill(1500, 64);
+		index.compact();
+		Random random = new Random(1);
+		for (int i = 0; i < 100; i++) {
+			Hash hash = createRandomHash(random, 64);
+			tree.addHash(hash, "appended" + i);
+			index.addHash(hash, "appended" + i);
+		}
+		assertEqualResults(tree, 64);
+	}
+
+	@Test
+	public void forEachValue() throws IOException {
+		fill(1500, 64);
+		index.compact();
+		index.addHash(createRandomHash(new Random(1), 64), "pending");
+		List<String> values = new ArrayList<>();
+		index.forEachValue(values::add);
+		assertEquals(1501, values.size());
+		assertEquals("image0", values.get(0));
+		assertEquals("pending", values.get(1500));
+	}
+
+	@Test
+	public void recoverTruncatedSegment() throws IOException {
+		index.setFlushThreshold(100);
+		fill(300, 64);
+		index.close();
+		long length = indexFile.length();
+		try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+			raf.setLength(length - 16);
+		}
+		index = new MappedHashIndex(indexFile, true);
+		assertEquals(200, index.getHashCount());
+		assertEquals(2, index.getSegmentCount());
+	}
+
+	@Test
+	public void serialization() throws IOException, ClassNotFoundException {
+		BinaryTree<String> tree = fill(500, 64);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+			oos.writeObject(index);
+		}
+		index.close();
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+			index = (MappedHashIndex) ois.readObject();
+		}
+		assertEquals(500, index.getHashCount());
+		assertEqualResults(tree, 64);
+	}
+
+	@Test
+	public void deserializeDeletedFile() throws IOException {
+		fill(500, 64);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+			oos.writeObject(index);
+		}
+		index.close();
+		indexFile.delete();
+		assertThrows(IOException.class, () -> {
+			try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+				ois.readObject();
+			}
+		});
+		assertFalse(indexFile.exists());
+	}
+
+	/**
+	 * Add random hashes to the index and a binary tree used as reference
+	 */
+	private BinaryTree<String> fill(int count, int bits) {
+		index.setFlushThreshold(Math.min(index.getFlushThreshold(), 1000));
+		Random random = new Random(0);
+		BinaryTree<String> tree = new BinaryTree<>(true);
+		for (int i = 0; i < count; i++) {
+			Hash hash = createRandomHash(random, bits);
+			tree.addHash(hash, "image" + i);
+			index.addHash(hash, "image" + i);
+		}
+		return tree;
+	}
+
+	private void assertEqualResults(BinaryTree<String> tree, int bits) {
+		Random random = new Random(2);
+		for (int i = 0; i < 20; i++) {
+			Hash needle = createRandomHash(random, bits);
+			for (int distance : new int[] { 0, 10, 20, 30 }) {
+				assertEquals(getValues(tree.getElementsWithinHammingDistance(needle, distance)), getValues(index.getElementsWithinHammingDistance(needle, distance)));
+			}
+			List<Result<String>> expected = tree.getNearestNeighbour(needle);
+			List<Result<String>> actual = index.getNearestNeighbour(needle);
+			assertEquals(expected.get(0).distance, actual.get(0).distance);
+			assertEquals(getValues(expected), getValues(actual));
+		}
+	}
+
+	private Set<String> getValues(Iterable<Result<String>> results) {
+		Set<String> values = new HashSet<>();
+		for (Result<String> result : results) {
+			values.add(result.value);
+		}
+		return values;
+	}
+
+	private Hash createRandomHash(Random random, int bits) {
+		StringBuilder builder = new StringBuilder(bits);
+		for (int index = 0; index < bits; index++) {
+			builder.append(random.nextBoolean() ? '1' : '0');
+		}
+		return TestResources.createHash(builder.toString(), 0);
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.github.kilianB.datastructures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.github.kilianB.TestResources;
+import com.github.kilianB.datastructures.tree.Result;
+import com.github.kilianB.datastructures.tree.binaryTree.BinaryTree;
+import com.jstarcraft.dip.hash.Hash;
+
+class MultiIndexHashTableTest {
+
+	private MultiIndexHashTable<Integer> table;
+
+	@BeforeEach
+	public void createTable() {
+		table = new MultiIndexHashTable<>(true);
+	}
+
+	@Test
+	public void searchExactItem() {
+		Hash hash = TestResources.createHash("101010100011", 0);
+		table.addHash(hash, 1);
+		PriorityQueue<Result<Integer>> results = table.getElementsWithinHammingDistance(hash, 0);
+		Result<Integer> r = results.peek();
+		assertEquals(1, r.value);
+		assertEquals(0, r.distance);
+	}
+
+	@Test
+	public void searchDistantItem() {
+		Hash hash = TestResources.createHash("00001010", 0);
+		Hash hash1 = TestResources.createHash("10001011", 0);
+		table.addHash(hash, 0);
+		assertEquals(0, table.getElementsWithinHammingDistance(hash1, 1).size());
+		assertEquals(1, table.getElementsWithinHammingDistance(hash1, 2).size());
+	}
+
+	@Test
+	public void incompatibleHash() {
+		table.addHash(TestResources.createHash("00001010", 1), 0);
+		assertThrows(IllegalStateException.class, () -> {
+			table.addHash(TestResources.createHash("00001010", 2), 0);
+		});
+	}
+
+	@Test
+	public void incompatibleLength() {
+		table.addHash(TestResources.createHash("00001010", 0), 0);
+		assertThrows(IllegalArgumentException.class, () -> {
+			table.addHash(TestResources.createHash("0000101011", 0), 0);
+		});
+	}
+
+	@Test
+	public void capacityExceeded() {
+		Hash hash = TestResources.createHash("00001010", 0);
+		table.addHash(hash, 0);
+		// The packed hashes can not grow any further
+		table.hashCount = Integer.MAX_VALUE - 8;
+		assertThrows(IllegalStateException.class, () -> {
+			table.addHash(hash, 1);
+		});
+		assertEquals(1, table.getElementsWithinHammingDistance(hash, 0).size());
+	}
+
+	@Test
+	public void substringLengthOutOfRange() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			new MultiIndexHashTable<>(true, MultiIndexHashTable.MAX_SUBSTRING_LENGTH + 1);
+		});
+	}
+
+	@Nested
+	class BinaryTreeEquality {
+
+		private BinaryTree<Integer> tree;
+
+		private Hash[] needles;
+
+		@BeforeEach
+		public void fill() {
+			Random random = new Random(0);
+			tree = new BinaryTree<>(true);
+			for (int index = 0; index < 3000; index++) {
+				Hash hash = createRandomHash(random, 72);
+				tree.addHash(hash, index);
+				table.addHash(hash, index);
+			}
+			needles = new Hash[20];
+			for (int index = 0; index < needles.length; index++) {
+				needles[index] = createRandomHash(random, 72);
+			}
+		}
+
+		@Test
+		public void tableCount() {
+			assertEquals(5, table.getTableCount());
+		}
+
+		@Test
+		public void withinDistance() {
+			for (int distance : new int[] { 0, 5, 14, 24 }) {
+				for (Hash needle : needles) {
+					assertEquals(getValues(tree.getElementsWithinHammingDistance(needle, distance)), getValues(table.getElementsWithinHammingDistance(needle, distance)));
+				}
+			}
+		}
+
+		@Test
+		public void nearestNeighbour() {
+			for (Hash needle : needles) {
+				List<Result<Integer>> expected = tree.getNearestNeighbour(needle);
+				List<Result<Integer>> actual = table.getNearestNeighbour(needle);
+				assertTrue(!actual.isEmpty());
+				assertEquals(expected.get(0).distance, actual.get(0).distance);
+				assertEquals(getValues(expected), getValues(actual));
+			}
+		}
+
+		private Set<Integer> getValues(Iterable<Result<Integer>> results) {
+			Set<Integer> values = new HashSet<>();
+			for (Result<Integer> result : results) {
+				values.add(result.value);
+			}
+			return values;
+		}
+
+		private Hash createRandomHash(Random random, int bits) {
+			StringBuilder builder = new StringBuilder(bits);
+			for (int index = 0; index < bits; index++) {
+				builder.append(random.nextBoolean() ? '1' : '0');
+			}
+			return TestResources.createHash(builder.toString(), 0);
+		}
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.github.kilianB.datastructures.tree.bkTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.github.kilianB.TestResources;
+import com.github.kilianB.datastructures.tree.Result;
+import com.jstarcraft.dip.hash.Hash;
+
+class BKTreeTest {
+
+	private BKTree<Integer> tree;
+
+	@BeforeEach
+	public void createTree() {
+		tree = new BKTree<>(true);
+	}
+
+	@Test
+	public void searchExactItem() {
+		Hash hash = TestResources.createHash("101010100011", 0);
+		tree.addHash(hash, 1);
+		PriorityQueue<Result<Integer>> results = tree.getElementsWithinHammingDistance(hash, 0);
+		Result<Integer> r = results.peek();
+		assertEquals(1, r.value);
+		assertEquals(0, r.distance);
+	}
+
+	@Test
+	public void duplicateHash() {
+		Hash hash = TestResources.createHash("101010100011", 0);
+		tree.addHash(hash, 1);
+		tree.addHash(hash, 2);
+		assertEquals(2, tree.getHashCount());
+		assertEquals(2, tree.getNearestNeighbour(hash).size());
+	}
+
+	@Test
+	public void searchDistantItem() {
+		tree.addHash(TestResources.createHash("00001010", 0), 0);
+		Hash needle = TestResources.createHash("10001011", 0);
+		assertEquals(0, tree.getElementsWithinHammingDistance(needle, 1).size());
+		assertEquals(1, tree.getElementsWithinHammingDistance(needle, 2).size());
+	}
+
+	@Test
+	public void incompatibleHash() {
+		tree.addHash(TestResources.createHash("00001010", 1), 0);
+		assertThrows(IllegalStateException.class, () -> {
+			tree.addHash(TestResources.createHash("00001010", 2), 0);
+		});
+	}
+
+	@Test
+	public void invalidK() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			tree.getNearestNeighbours(TestResources.createHash("00001010", 0), 0);
+		});
+	}
+
+	@Nested
+	class BruteForceEquality {
+
+		private List<Hash> hashes;
+
+		private Hash[] needles;
+
+		@BeforeEach
+		public void fill() {
+			Random random = new Random(0);
+			hashes = new ArrayList<>();
+			for (int index = 0; index < 2000; index++) {
+				Hash hash = createRandomHash(random, 64);
+				hashes.add(hash);
+				tree.addHash(hash, index);
+			}
+			needles = new Hash[20];
+			for (int index = 0; index < needles.length; index++) {
+				needles[index] = createRandomHash(random, 64);
+			}
+		}
+
+		@Test
+		public void withinDistance() {
+			for (int distance : new int[] { 0, 10, 20, 30 }) {
+				for (Hash needle : needles) {
+					Set<Integer> expected = new HashSet<>();
+					for (int index = 0; index < hashes.size(); index++) {
+						if (hashes.get(index).hammingDistance(needle) <= distance) {
+							expected.add(index);
+						}
+					}
+					assertEquals(expected, getValues(tree.getElementsWithinHammingDistance(needle, distance)));
+				}
+			}
+		}
+
+		@Test
+		public void nearestNeighbour() {
+			for (Hash needle : needles) {
+				int best = Integer.MAX_VALUE;
+				Set<Integer> expected = new HashSet<>();
+				for (int index = 0; index < hashes.size(); index++) {
+					int distance = hashes.get(index).hammingDistance(needle);
+					if (distance < best) {
+						best = distance;
+						expected.clear();
+					}
+					if (distance == best) {
+						expected.add(index);
+					}
+				}
+				assertEquals(expected, getValues(tree.getNearestNeighbour(needle)));
+			}
+		}
+
+		@Test
+		public void nearestNeighbours() {
+			int k = 20;
+			for (Hash needle : needles) {
+				List<Integer> distances = new ArrayList<>();
+				for (Hash hash : hashes) {
+					distances.add(hash.hammingDistance(needle));
+				}
+				distances.sort(null);
+				List<Result<Integer>> results = tree.getNearestNeighbours(needle, k);
+				assertEquals(k, results.size());
+				for (int index = 0; index < k; index++) {
+					Result<Integer> result = results.get(index);
+					assertEquals((double) distances.get(index), result.distance);
+					assertEquals(hashes.get(result.value).hammingDistance(needle), (int) result.distance);
+				}
+			}
+		}
+
+		@Test
+		public void nearestNeighboursExceedingSize() {
+			assertTrue(tree.getNearestNeighbours(needles[0], 5000).size() == hashes.size());
+		}
+
+		private Set<Integer> getValues(Iterable<Result<Integer>> results) {
+			Set<Integer> values = new HashSet<>();
+			for (Result<Integer> result : results) {
+				values.add(result.value);
+			}
+			return values;
+		}
+
+		private Hash createRandomHash(Random random, int bits) {
+			StringBuilder builder = new StringBuilder(bits);
+			for (int index = 0; index < bits; index++) {
+				builder.append(random.nextBoolean() ? '1' : '0');
+			}
+			return TestResources.createHash(builder.toString(), 0);
+		}
+	}
+
+}
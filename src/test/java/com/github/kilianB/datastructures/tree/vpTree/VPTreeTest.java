@@ -0,0 +1,181 @@
+package com.github.kilianB.datastructures.tree.vpTree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import com.github.kilianB.TestResources;
+import com.github.kilianB.datastructures.tree.Result;
+import com.jstarcraft.dip.hash.FuzzyHash;
+import com.jstarcraft.dip.hash.Hash;
+
+class VPTreeTest {
+
+	@Test
+	public void searchExactItem() {
+		VPTree<Integer> tree = new VPTree<>(true);
+		Hash hash = TestResources.createHash("101010100011", 0);
+		tree.addHash(hash, 1);
+		PriorityQueue<Result<Integer>> results = tree.getElementsWithinHammingDistance(hash, 0);
+		Result<Integer> r = results.peek();
+		assertEquals(1, r.value);
+		assertEquals(0, r.distance);
+	}
+
+	@Test
+	public void addAfterQuery() {
+		VPTree<Integer> tree = new VPTree<>(true);
+		Hash hash = TestResources.createHash("101010100011", 0);
+		Hash hash1 = TestResources.createHash("101010100000", 0);
+		tree.addHash(hash, 0);
+		assertEquals(0, tree.getNearestNeighbour(hash1).get(0).value);
+		tree.addHash(hash1, 1);
+		assertEquals(1, tree.getNearestNeighbour(hash1).get(0).value);
+	}
+
+	@Test
+	public void incompatibleHash() {
+		VPTree<Integer> tree = new VPTree<>(true);
+		tree.addHash(TestResources.createHash("00001010", 1), 0);
+		assertThrows(IllegalStateException.class, () -> {
+			tree.addHash(TestResources.createHash("00001010", 2), 0);
+		});
+	}
+
+	@Nested
+	class Hamming {
+
+		private VPTree<Integer> tree;
+
+		private List<Hash> hashes;
+
+		private Hash[] needles;
+
+		@BeforeEach
+		public void fill() {
+			Random random = new Random(0);
+			tree = new VPTree<>(true);
+			hashes = new ArrayList<>();
+			for (int index = 0; index < 2000; index++) {
+				Hash hash = createRandomHash(random, 64);
+				hashes.add(hash);
+				tree.addHash(hash, index);
+			}
+			needles = new Hash[20];
+			for (int index = 0; index < needles.length; index++) {
+				needles[index] = createRandomHash(random, 64);
+			}
+		}
+
+		@Test
+		public void withinDistance() {
+			for (int distance : new int[] { 0, 10, 20, 30 }) {
+				for (Hash needle : needles) {
+					Set<Integer> expected = new HashSet<>();
+					for (int index = 0; index < hashes.size(); index++) {
+						if (hashes.get(index).hammingDistance(needle) <= distance) {
+							expected.add(index);
+						}
+					}
+					Set<Integer> actual = new HashSet<>();
+					for (Result<Integer> result : tree.getElementsWithinHammingDistance(needle, distance)) {
+						actual.add(result.value);
+					}
+					assertEquals(expected, actual);
+				}
+			}
+		}
+
+		@Test
+		public void nearestNeighbours() {
+			int k = 20;
+			for (Hash needle : needles) {
+				List<Integer> distances = new ArrayList<>();
+				for (Hash hash : hashes) {
+					distances.add(hash.hammingDistance(needle));
+				}
+				distances.sort(null);
+				List<Result<Integer>> results = tree.getNearestNeighbours(needle, k);
+				assertEquals(k, results.size());
+				for (int index = 0; index < k; index++) {
+					assertEquals((double) distances.get(index), results.get(index).distance);
+				}
+				assertEquals((double) distances.get(0), tree.getNearestNeighbour(needle).get(0).distance);
+			}
+		}
+	}
+
+	@Nested
+	class Weighted {
+
+		private VPTree<FuzzyHash> tree;
+
+		private List<FuzzyHash> hashes;
+
+		private Hash[] needles;
+
+		@BeforeEach
+		public void fill() {
+			Random random = new Random(0);
+			tree = new VPTree<>(true, HashDistance.WEIGHTED);
+			hashes = new ArrayList<>();
+			for (int index = 0; index < 500; index++) {
+				FuzzyHash fuzzy = new FuzzyHash(createRandomHash(random, 32), createRandomHash(random, 32), createRandomHash(random, 32));
+				hashes.add(fuzzy);
+				tree.addHash(fuzzy, fuzzy);
+			}
+			needles = new Hash[20];
+			for (int index = 0; index < needles.length; index++) {
+				needles[index] = createRandomHash(random, 32);
+			}
+		}
+
+		@Test
+		public void nearestNeighbour() {
+			for (Hash needle : needles) {
+				double best = Double.MAX_VALUE;
+				for (FuzzyHash fuzzy : hashes) {
+					best = Math.min(best, fuzzy.weightedDistance(needle));
+				}
+				List<Result<FuzzyHash>> results = tree.getNearestNeighbour(needle);
+				assertEquals(best, results.get(0).normalizedHammingDistance, 1e-8);
+				assertEquals(best, results.get(0).value.weightedDistance(needle), 1e-8);
+			}
+		}
+
+		@Test
+		public void nearestNeighbours() {
+			int k = 10;
+			for (Hash needle : needles) {
+				List<Double> distances = new ArrayList<>();
+				for (FuzzyHash fuzzy : hashes) {
+					distances.add(fuzzy.weightedDistance(needle));
+				}
+				distances.sort(null);
+				List<Result<FuzzyHash>> results = tree.getNearestNeighbours(needle, k);
+				for (int index = 0; index < k; index++) {
+					assertEquals(distances.get(index), results.get(index).normalizedHammingDistance, 1e-8);
+				}
+			}
+		}
+	}
+
+	private static Hash createRandomHash(Random random, int bits) {
+		StringBuilder builder = new StringBuilder(bits);
+		for (int index = 0; index < bits; index++) {
+			builder.append(random.nextBoolean() ? '1' : '0');
+		}
+		return TestResources.createHash(builder.toString(), 0);
+	}
+
+}
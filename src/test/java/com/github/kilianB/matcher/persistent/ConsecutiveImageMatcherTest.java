@@ -9,13 +9,22 @@ import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.Set;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -23,6 +32,7 @@ import org.junit.jupiter.api.Test;
 
 import com.github.kilianB.datastructures.tree.Result;
 import com.github.kilianB.matcher.TypedImageMatcher.AlgoSettings;
+import com.jstarcraft.dip.color.ImageBackend;
 import com.jstarcraft.dip.lsh.AverageHash;
 import com.jstarcraft.dip.lsh.HashingAlgorithm;
 import com.jstarcraft.dip.lsh.PerceptiveHash;
@@ -91,6 +101,14 @@ class ConsecutiveImageMatcherTest {
 		assertEquals(1, matcher.getAlgorithms().size());
 	}
 
+	@Test
+	public void alterDecodingAfterImageHasAlreadyBeenAdded() {
+		PersitentBinaryTreeMatcher matcher = createMatcherAndAddDefaultTestImages();
+		assertThrows(IllegalStateException.class, () -> {
+			matcher.setSubsampledDecoding(true);
+		});
+	}
+
 	@Test
 	@DisplayName("Empty Matcher")
 	public void noAlgorithm() {
@@ -144,4 +162,256 @@ class ConsecutiveImageMatcherTest {
 		}
 	}
 
+	@Nested
+	class BulkIngestion {
+
+		private List<File> getFiles() throws URISyntaxException {
+			List<File> files = new ArrayList<>();
+			for (String name : new String[] { "ballon.jpg", "copyright.jpg", "highQuality.jpg", "lowQuality.jpg", "thumbnail.jpg" }) {
+				files.add(new File(getClass().getClassLoader().getResource(name).toURI()));
+			}
+			return files;
+		}
+
+		private PersitentBinaryTreeMatcher createMatcher() {
+			PersitentBinaryTreeMatcher matcher = new ConsecutiveMatcher(true);
+			matcher.addHashingAlgorithm(new AverageHash(64), .4);
+			matcher.addHashingAlgorithm(new PerceptiveHash(64), .3);
+			return matcher;
+		}
+
+		@Test
+		public void equalToSerialIngestion() throws Exception {
+			List<File> files = getFiles();
+			PersitentBinaryTreeMatcher serial = createMatcher();
+			for (File file : files) {
+				serial.addImage(file);
+			}
+			PersitentBinaryTreeMatcher parallel = createMatcher();
+			assertEquals(files.size(), parallel.addImages(files, 3));
+
+			for (BufferedImage image : new BufferedImage[] { ballon, highQuality, thumbnail }) {
+				assertEquals(getValues(serial.getMatchingImages(image)), getValues(parallel.getMatchingImages(image)));
+			}
+		}
+
+		@Test
+		public void progress() throws Exception {
+			List<File> files = getFiles();
+			List<Path> added = new ArrayList<>();
+			PersitentBinaryTreeMatcher matcher = createMatcher();
+			matcher.addImages(files.stream().map(File::toPath), 2, (image, count) -> {
+				added.add(image);
+				assertEquals(added.size(), count);
+			});
+			// Insertion happens in the order the images were supplied
+			for (int i = 0; i < files.size(); i++) {
+				assertEquals(files.get(i).toPath(), added.get(i));
+			}
+		}
+
+		@Test
+		public void skipFailedImage() throws Exception {
+			File invalid = File.createTempFile("invalidImage", ".jpg");
+			invalid.deleteOnExit();
+			List<File> files = getFiles();
+			files.add(1, invalid);
+
+			List<Path> failed = new ArrayList<>();
+			PersitentBinaryTreeMatcher matcher = createMatcher();
+			long added = matcher.addImages(files.stream().map(File::toPath), 2, new IngestionListener() {
+				@Override
+				public void imageAdded(Path image, long added) {
+				}
+
+				@Override
+				public boolean imageFailed(Path image, Exception cause) {
+					failed.add(image);
+					return true;
+				}
+			});
+			assertEquals(files.size() - 1, added);
+			assertEquals(invalid.toPath(), failed.get(0));
+
+			assertThrows(IOException.class, () -> {
+				createMatcher().addImages(files, 2);
+			});
+		}
+
+		@Test
+		public void backendDecoding() throws Exception {
+			List<File> files = getFiles();
+			PersitentBinaryTreeMatcher serial = createBackendMatcher();
+			for (File file : files) {
+				serial.addImage(file);
+			}
+			PersitentBinaryTreeMatcher parallel = createBackendMatcher();
+			assertEquals(files.size(), parallel.addImages(files, 3));
+
+			// Added and searched image files are hashed the same way
+			for (File file : files) {
+				PriorityQueue<Result<String>> matches = parallel.getMatchingImages(file);
+				assertEquals(getValues(serial.getMatchingImages(file)), getValues(matches));
+				assertTrue(matches.stream().anyMatch(result -> result.value.equals(file.getAbsolutePath()) && result.distance == 0));
+			}
+			assertThrows(IllegalArgumentException.class, () -> {
+				parallel.getMatchingImages(ballon);
+			});
+		}
+
+		private PersitentBinaryTreeMatcher createBackendMatcher() {
+			PersitentBinaryTreeMatcher matcher = new ConsecutiveMatcher(false);
+			AverageHash jpeg = new AverageHash(64);
+			jpeg.setImageBackend(ImageBackend.JPEG_DC);
+			matcher.addHashingAlgorithm(jpeg, .4);
+			matcher.addHashingAlgorithm(new PerceptiveHash(64), .3);
+			return matcher;
+		}
+
+		private Set<String> getValues(PriorityQueue<Result<String>> results) {
+			Set<String> values = new HashSet<>();
+			for (Result<String> result : results) {
+				values.add(result.value);
+			}
+			return values;
+		}
+	}
+
+	@Nested
+	class Recovery {
+
+		private PersitentBinaryTreeMatcher createMatcher() {
+			PersitentBinaryTreeMatcher matcher = new ConsecutiveMatcher(true);
+			matcher.addHashingAlgorithm(new AverageHash(64), .4);
+			matcher.addHashingAlgorithm(new PerceptiveHash(64), .3);
+			return matcher;
+		}
+
+		@Test
+		public void replayLog() throws IOException {
+			File logFile = File.createTempFile("writeAheadLog", ".log");
+			logFile.delete();
+			try {
+				PersitentBinaryTreeMatcher matcher = createMatcher();
+				matcher.attachLog(new WriteAheadLog(logFile));
+				matcher.addImage("Ballon", ballon);
+				matcher.addImage("Copyright", copyright);
+				matcher.detachLog();
+
+				PersitentBinaryTreeMatcher recovered = createMatcher();
+				assertEquals(2, recovered.attachLog(new WriteAheadLog(logFile)));
+				recovered.detachLog();
+				assertEquals("Ballon", recovered.getMatchingImages(ballon).peek().value);
+			} finally {
+				logFile.delete();
+			}
+		}
+
+		@Test
+		public void skipIncompleteImage() throws IOException {
+			File logFile = File.createTempFile("writeAheadLog", ".log");
+			logFile.delete();
+			try {
+				// Lacks the hash of the perceptive hash
+				try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+					log.append("Ballon", new AverageHash(64).hash(ballon));
+				}
+				PersitentBinaryTreeMatcher matcher = createMatcher();
+				matcher.attachLog(new WriteAheadLog(logFile));
+				matcher.addImage("Copyright", copyright);
+				for (Result<String> result : matcher.getMatchingImages(ballon)) {
+					assertFalse(result.value.equals("Ballon"));
+				}
+
+				// The image can be added again
+				matcher.addImage("Ballon", ballon);
+				matcher.detachLog();
+				assertEquals("Ballon", matcher.getMatchingImages(ballon).peek().value);
+			} finally {
+				logFile.delete();
+			}
+		}
+	}
+
+	@Nested
+	class MemoryMapped {
+
+		private PersitentBinaryTreeMatcher createMatcher(File directory) throws IOException {
+			PersitentBinaryTreeMatcher matcher = new ConsecutiveMatcher(false);
+			matcher.setIndexDirectory(directory);
+			matcher.addHashingAlgorithm(new AverageHash(64), .4);
+			return matcher;
+		}
+
+		@Test
+		public void keepIndexOfOtherMatcher() throws IOException {
+			File directory = Files.createTempDirectory("indices").toFile();
+			try {
+				PersitentBinaryTreeMatcher matcher = createMatcher(directory);
+				matcher.addImage("Ballon", ballon);
+				matcher.compactIndices();
+				assertThrows(IllegalStateException.class, () -> {
+					createMatcher(directory);
+				});
+				assertEquals("Ballon", matcher.getMatchingImages(ballon).peek().value);
+			} finally {
+				for (File file : directory.listFiles()) {
+					file.delete();
+				}
+				directory.delete();
+			}
+		}
+
+		@Test
+		public void reuseEmptyIndex() throws IOException {
+			File directory = Files.createTempDirectory("indices").toFile();
+			try {
+				createMatcher(directory).clearHashingAlgorithms();
+				PersitentBinaryTreeMatcher matcher = createMatcher(directory);
+				matcher.addImage("Ballon", ballon);
+				assertEquals("Ballon", matcher.getMatchingImages(ballon).peek().value);
+			} finally {
+				for (File file : directory.listFiles()) {
+					file.delete();
+				}
+				directory.delete();
+			}
+		}
+	}
+
+	@Nested
+	class BatchQuery {
+
+		private final BufferedImage[] images = { ballon, copyright, highQuality, lowQuality, thumbnail };
+
+		@Test
+		public void consecutiveMatcher() {
+			assertEqualToSingleQueries(createMatcherAndAddDefaultTestImages());
+		}
+
+		@Test
+		public void cumulativeMatcher() {
+			PersitentBinaryTreeMatcher matcher = new CumulativeMatcher(true, 0.4);
+			matcher.addHashingAlgorithm(new AverageHash(64), 1);
+			matcher.addHashingAlgorithm(new PerceptiveHash(64), 1);
+			matcher.addImage("Ballon", ballon);
+			matcher.addImage("Copyright", copyright);
+			matcher.addImage("HighQuality", highQuality);
+			matcher.addImage("LowQuality", lowQuality);
+			matcher.addImage("Thumbnail", thumbnail);
+			assertEqualToSingleQueries(matcher);
+		}
+
+		private void assertEqualToSingleQueries(PersitentBinaryTreeMatcher matcher) {
+			List<PriorityQueue<Result<String>>> results = matcher.getMatchingImages(Arrays.asList(images), 2);
+			assertEquals(images.length, results.size());
+			for (int i = 0; i < images.length; i++) {
+				List<Result<String>> expected = new ArrayList<>(matcher.getMatchingImages(images[i]));
+				List<Result<String>> actual = new ArrayList<>(results.get(i));
+				assertEquals(expected.size(), actual.size());
+				assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+			}
+		}
+	}
+
 }
@@ -0,0 +1,160 @@
+package com.github.kilianB.matcher.persistent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.kilianB.TestResources;
+import com.jstarcraft.dip.hash.Hash;
+
+class WriteAheadLogTest {
+
+	private File logFile;
+
+	@BeforeEach
+	public void createFile() throws IOException {
+		logFile = File.createTempFile("writeAheadLog", ".log");
+		logFile.delete();
+	}
+
+	@AfterEach
+	public void deleteFile() {
+		logFile.delete();
+	}
+
+	@Test
+	public void replay() throws IOException {
+		Hash first = TestResources.createHash("101010100011", 1);
+		Hash second = TestResources.createHash("1" + repeat("01", 50), 2);
+		try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+			log.append("first", first);
+			log.append("second", second);
+			assertEquals(2, log.getRecordCount());
+		}
+		List<String> ids = new ArrayList<>();
+		List<Hash> hashes = new ArrayList<>();
+		try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+			assertEquals(2, log.replay((id, imageHashes) -> {
+				ids.add(id);
+				hashes.add(imageHashes[0]);
+			}));
+		}
+		assertEquals("first", ids.get(0));
+		assertEquals("second", ids.get(1));
+		assertEquals(first, hashes.get(0));
+		assertEquals(second, hashes.get(1));
+	}
+
+	@Test
+	public void replayImage() throws IOException {
+		Hash first = TestResources.createHash("101010100011", 1);
+		Hash second = TestResources.createHash("1" + repeat("01", 50), 2);
+		try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+			log.append("image", first, second);
+			assertEquals(1, log.getRecordCount());
+		}
+		List<Hash> hashes = new ArrayList<>();
+		try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+			assertEquals(1, log.replay((id, imageHashes) -> {
+				hashes.addAll(Arrays.asList(imageHashes));
+			}));
+		}
+		assertEquals(Arrays.asList(first, second), hashes);
+	}
+
+	@Test
+	public void truncateIncompleteImage() throws IOException {
+		try (WriteAheadLog log = new WriteAheadLog(logFile, 1, 0)) {
+			log.append("0", TestResources.createHash("1010", 1), TestResources.createHash("1100", 2));
+			log.append("1", TestResources.createHash("1010", 1), TestResources.createHash("1100", 2));
+		}
+		// Cut into the second hash of the last image
+		try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+			raf.setLength(raf.length() - 12);
+		}
+		List<String> ids = new ArrayList<>();
+		try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+			assertEquals(1, log.replay((id, imageHashes) -> {
+				assertEquals(2, imageHashes.length);
+				ids.add(id);
+			}));
+		}
+		assertEquals(Arrays.asList("0"), ids);
+	}
+
+	@Test
+	public void groupCommit() throws IOException {
+		try (WriteAheadLog log = new WriteAheadLog(logFile, 3, 0)) {
+			long empty = logFile.length();
+			log.append("0", TestResources.createHash("1010", 0));
+			log.append("1", TestResources.createHash("1010", 0));
+			assertEquals(empty, logFile.length());
+			log.append("2", TestResources.createHash("1010", 0));
+			assertTrue(logFile.length() > empty);
+		}
+	}
+
+	@Test
+	public void truncateCorruptedRecord() throws IOException {
+		try (WriteAheadLog log = new WriteAheadLog(logFile, 1, 0)) {
+			for (int i = 0; i < 10; i++) {
+				log.append(Integer.toString(i), TestResources.createHash("10101010", 0));
+			}
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+			raf.setLength(raf.length() - 3);
+		}
+		try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+			assertEquals(9, log.replay((id, imageHashes) -> {
+			}));
+			log.append("9", TestResources.createHash("10101010", 0));
+		}
+		try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+			assertEquals(10, log.replay((id, imageHashes) -> {
+			}));
+		}
+	}
+
+	@Test
+	public void reset() throws IOException {
+		try (WriteAheadLog log = new WriteAheadLog(logFile)) {
+			log.append("0", TestResources.createHash("1010", 0));
+			log.commit();
+			log.reset();
+			assertEquals(0, log.getRecordCount());
+			assertEquals(0, log.replay((id, imageHashes) -> {
+			}));
+		}
+	}
+
+	@Test
+	public void invalidFile() throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+			raf.writeLong(42);
+			raf.writeLong(42);
+		}
+		assertThrows(IOException.class, () -> {
+			new WriteAheadLog(logFile);
+		});
+	}
+
+	private static String repeat(String s, int count) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			builder.append(s);
+		}
+		return builder.toString();
+	}
+
+}
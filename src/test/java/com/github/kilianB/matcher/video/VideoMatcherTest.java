@@ -0,0 +1,178 @@
+package com.github.kilianB.matcher.video;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.video.HashSequence;
+
+class VideoMatcherTest {
+
+	private static final long FRAME_INTERVAL = 1_000_000;
+
+	@Test
+	void alignClip() {
+		Random random = new Random(0);
+		HashSequence video = createSequence(random, 60, 0);
+		HashSequence clip = flipBits(random, video.subSequence(17, 37), 4);
+
+		Alignment alignment = VideoMatcher.align("video", clip, video, 5, 0.2);
+		assertEquals(17, alignment.getOffset());
+		assertEquals(20, alignment.getOverlap());
+		assertEquals(0, alignment.getTimeOffset());
+		assertTrue(alignment.getDistance() <= 4 / 64d);
+	}
+
+	@Test
+	void alignShiftedTimestamps() {
+		Random random = new Random(1);
+		HashSequence video = createSequence(random, 30, 0);
+		HashSequence clip = video.subSequence(10, 20);
+		clip = new HashSequence(getHashes(clip), createTimestamps(clip.size(), 0));
+
+		Alignment alignment = VideoMatcher.align("video", clip, video, 5, 0.1);
+		assertEquals(10, alignment.getOffset());
+		assertEquals(10 * FRAME_INTERVAL, alignment.getTimeOffset());
+		assertEquals(0, alignment.getDistance());
+	}
+
+	@Test
+	void alignPartialOverlap() {
+		Random random = new Random(2);
+		HashSequence video = createSequence(random, 30, 0);
+		HashSequence intro = createSequence(random, 8, 0);
+		Hash[] hashes = new Hash[16];
+		for (int index = 0; index < hashes.length; index++) {
+			hashes[index] = index < 8 ? intro.getHash(index) : video.getHash(index - 8);
+		}
+		// The clip starts with 8 frames not contained in the video
+		HashSequence clip = new HashSequence(hashes, createTimestamps(hashes.length, 0));
+
+		Alignment alignment = VideoMatcher.align("video", clip, video, 8, 0.1);
+		assertEquals(-8, alignment.getOffset());
+		assertEquals(8, alignment.getOverlap());
+		assertEquals(0, alignment.getDistance());
+	}
+
+	@Test
+	void alignIrregularSampling() {
+		Random random = new Random(6);
+		// Frames sampled on scene changes are not evenly spaced
+		Hash[] hashes = new Hash[40];
+		long[] timestamps = new long[hashes.length];
+		for (int index = 0; index < hashes.length; index++) {
+			hashes[index] = new Hash(new long[] { random.nextLong() }, 64, 0);
+			timestamps[index] = index == 0 ? 0 : timestamps[index - 1] + (1 + random.nextInt(4)) * FRAME_INTERVAL;
+		}
+		HashSequence video = new HashSequence(hashes, timestamps);
+
+		// The clip misses every third frame of the video, e.g. a scene change
+		// detected in the video but not in the clip
+		List<Hash> clipHashes = new ArrayList<>();
+		List<Long> clipTimestamps = new ArrayList<>();
+		for (int index = 12; index < 30; index++) {
+			if (index % 3 != 0) {
+				clipHashes.add(video.getHash(index));
+				clipTimestamps.add(video.getTimestamp(index) - video.getTimestamp(12) + 5 * FRAME_INTERVAL);
+			}
+		}
+		long[] shifted = new long[clipTimestamps.size()];
+		for (int index = 0; index < shifted.length; index++) {
+			shifted[index] = clipTimestamps.get(index);
+		}
+		HashSequence clip = new HashSequence(clipHashes.toArray(new Hash[0]), shifted);
+
+		Alignment alignment = VideoMatcher.align("video", clip, video, 5, 0.1);
+		assertEquals(13, alignment.getOffset());
+		assertEquals(clip.size(), alignment.getOverlap());
+		assertEquals(video.getTimestamp(13) - clip.getTimestamp(0), alignment.getTimeOffset());
+		assertEquals(0, alignment.getDistance());
+	}
+
+	@Test
+	void unrelatedClip() {
+		Random random = new Random(3);
+		HashSequence video = createSequence(random, 40, 0);
+		HashSequence clip = createSequence(random, 10, 0);
+		assertNull(VideoMatcher.align("video", clip, video, 5, 0.2));
+	}
+
+	@Test
+	void differentAlgorithms() {
+		Random random = new Random(4);
+		HashSequence video = createSequence(random, 10, 0);
+		HashSequence clip = createSequence(random, 10, 1);
+		assertThrows(IllegalArgumentException.class, () -> VideoMatcher.align("video", clip, video, 5, 0.2));
+	}
+
+	@Test
+	void matchingVideos() {
+		Random random = new Random(5);
+		HashSequence first = createSequence(random, 50, 0);
+		HashSequence second = createSequence(random, 50, 0);
+		HashSequence third = createSequence(random, 50, 0);
+		VideoMatcher matcher = new VideoMatcher(0.15, 5);
+		matcher.addVideo("first", first);
+		matcher.addVideo("second", second);
+		matcher.addVideo("third", third);
+
+		List<Alignment> matches = matcher.getMatchingVideos(flipBits(random, second.subSequence(30, 45), 6));
+		assertEquals(1, matches.size());
+		assertEquals("second", matches.get(0).getId());
+		assertEquals(30, matches.get(0).getOffset());
+
+		assertTrue(matcher.removeVideo("second"));
+		assertTrue(matcher.getMatchingVideos(second.subSequence(30, 45)).isEmpty());
+	}
+
+	private static HashSequence createSequence(Random random, int size, int algorithmId) {
+		Hash[] hashes = new Hash[size];
+		for (int index = 0; index < size; index++) {
+			hashes[index] = new Hash(new long[] { random.nextLong() }, 64, algorithmId);
+		}
+		return new HashSequence(hashes, createTimestamps(size, 0));
+	}
+
+	private static long[] createTimestamps(int size, long start) {
+		long[] timestamps = new long[size];
+		for (int index = 0; index < size; index++) {
+			timestamps[index] = start + index * FRAME_INTERVAL;
+		}
+		return timestamps;
+	}
+
+	private static Hash[] getHashes(HashSequence sequence) {
+		Hash[] hashes = new Hash[sequence.size()];
+		for (int index = 0; index < hashes.length; index++) {
+			hashes[index] = sequence.getHash(index);
+		}
+		return hashes;
+	}
+
+	/**
+	 * Simulate re-encoding by flipping random bits of every hash
+	 */
+	private static HashSequence flipBits(Random random, HashSequence sequence, int bits) {
+		Hash[] hashes = new Hash[sequence.size()];
+		long[] timestamps = new long[sequence.size()];
+		for (int index = 0; index < hashes.length; index++) {
+			Hash hash = sequence.getHash(index);
+			long word = hash.getHashWords()[0];
+			for (int bit = 0; bit < bits; bit++) {
+				word ^= 1L << random.nextInt(64);
+			}
+			hashes[index] = new Hash(new long[] { word }, 64, hash.getAlgorithmId());
+			timestamps[index] = sequence.getTimestamp(index);
+		}
+		return new HashSequence(hashes, timestamps);
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.jstarcraft.dip.color;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+class FrameReaderTest {
+
+	@Test
+	void composeGif() throws IOException {
+		BufferedImage background = createImage(64, 48, Color.BLACK);
+		BufferedImage square = createImage(16, 16, Color.WHITE);
+		byte[] gif = createGif(new BufferedImage[] { background, square, square }, new int[][] { { 0, 0 }, { 8, 8 }, { 32, 24 } }, new String[] { "none", "restoreToBackgroundColor", "none" });
+
+		try (FrameReader reader = new FrameReader(new ByteArrayInputStream(gif), 8, 8)) {
+			assertTrue(reader.isAnimated());
+
+			BufferedImage frame = reader.read();
+			assertEquals(64, frame.getWidth());
+			assertEquals(48, frame.getHeight());
+			assertEquals(Color.BLACK.getRGB(), frame.getRGB(10, 10));
+			assertEquals(0, reader.getTimestamp());
+
+			frame = reader.read();
+			assertEquals(1, reader.getIndex());
+			assertEquals(100_000, reader.getTimestamp());
+			assertEquals(Color.WHITE.getRGB(), frame.getRGB(10, 10));
+			assertEquals(Color.BLACK.getRGB(), frame.getRGB(40, 30));
+
+			// The second frame is cleared before the third frame is drawn
+			frame = reader.read();
+			assertEquals(200_000, reader.getTimestamp());
+			assertEquals(0, frame.getRGB(10, 10));
+			assertEquals(Color.WHITE.getRGB(), frame.getRGB(40, 30));
+
+			assertNull(reader.read());
+		}
+	}
+
+	@Test
+	void restoreToPrevious() throws IOException {
+		BufferedImage background = createImage(32, 32, Color.BLACK);
+		BufferedImage square = createImage(8, 8, Color.WHITE);
+		byte[] gif = createGif(new BufferedImage[] { background, square, square }, new int[][] { { 0, 0 }, { 0, 0 }, { 16, 16 } }, new String[] { "none", "restoreToPrevious", "none" });
+
+		try (FrameReader reader = new FrameReader(new ByteArrayInputStream(gif), 8, 8)) {
+			reader.read();
+			assertEquals(Color.WHITE.getRGB(), reader.read().getRGB(4, 4));
+			BufferedImage frame = reader.read();
+			assertEquals(Color.BLACK.getRGB(), frame.getRGB(4, 4));
+			assertEquals(Color.WHITE.getRGB(), frame.getRGB(20, 20));
+		}
+	}
+
+	@Test
+	void multiPageTiff() throws IOException {
+		Assumptions.assumeTrue(ImageIO.getImageWritersByFormatName("tiff").hasNext(), "No TIFF writer available");
+		BufferedImage[] pages = { createImage(256, 256, Color.RED), createImage(128, 64, Color.GREEN), createImage(300, 200, Color.BLUE) };
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		try (ImageOutputStream stream = ImageIO.createImageOutputStream(encoded)) {
+			writer.setOutput(stream);
+			writer.prepareWriteSequence(null);
+			for (BufferedImage page : pages) {
+				writer.writeToSequence(new IIOImage(page, null, null), null);
+			}
+			writer.endWriteSequence();
+		} finally {
+			writer.dispose();
+		}
+
+		try (FrameReader reader = new FrameReader(new ByteArrayInputStream(encoded.toByteArray()), 32, 32)) {
+			BufferedImage page = reader.read();
+			// Subsampled by 8
+			assertEquals(32, page.getWidth());
+			assertEquals(Color.RED.getRGB(), page.getRGB(0, 0));
+			page = reader.read();
+			assertEquals(64, page.getWidth());
+			assertEquals(Color.GREEN.getRGB(), page.getRGB(0, 0));
+			page = reader.read();
+			assertEquals(Color.BLUE.getRGB(), page.getRGB(0, 0));
+			assertEquals(0, reader.getTimestamp());
+			assertNull(reader.read());
+		}
+	}
+
+	static BufferedImage createImage(int width, int height, Color color) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(color);
+		graphics.fillRect(0, 0, width, height);
+		graphics.dispose();
+		return image;
+	}
+
+	/**
+	 * Encode an animated GIF image with a delay of 100 ms per frame
+	 */
+	static byte[] createGif(BufferedImage[] frames, int[][] positions, String[] disposals) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		try (ImageOutputStream stream = ImageIO.createImageOutputStream(encoded)) {
+			writer.setOutput(stream);
+			writer.prepareWriteSequence(null);
+			for (int index = 0; index < frames.length; index++) {
+				ImageWriteParam parameter = writer.getDefaultWriteParam();
+				IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frames[index]), parameter);
+				String format = metadata.getNativeMetadataFormatName();
+				IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+				IIOMetadataNode descriptor = (IIOMetadataNode) root.getElementsByTagName("ImageDescriptor").item(0);
+				descriptor.setAttribute("imageLeftPosition", Integer.toString(positions[index][0]));
+				descriptor.setAttribute("imageTopPosition", Integer.toString(positions[index][1]));
+				IIOMetadataNode control = (IIOMetadataNode) root.getElementsByTagName("GraphicControlExtension").item(0);
+				control.setAttribute("disposalMethod", disposals[index]);
+				control.setAttribute("delayTime", "10");
+				metadata.setFromTree(format, root);
+				writer.writeToSequence(new IIOImage(frames[index], null, metadata), parameter);
+			}
+			writer.endWriteSequence();
+		} finally {
+			writer.dispose();
+		}
+		return encoded.toByteArray();
+	}
+
+}
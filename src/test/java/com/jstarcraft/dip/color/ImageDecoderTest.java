@@ -0,0 +1,97 @@
+package com.jstarcraft.dip.color;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.PerceptiveHash;
+
+class ImageDecoderTest {
+
+	private static BufferedImage lena;
+
+	@BeforeAll
+	static void loadImage() throws IOException {
+		lena = ImageIO.read(getResource("Lena.png"));
+	}
+
+	@Test
+	void subsampling() {
+		assertEquals(4, ImageDecoder.getSubsampling(512, 512, 128, 128));
+		assertEquals(3, ImageDecoder.getSubsampling(512, 512, 150, 100));
+		assertEquals(1, ImageDecoder.getSubsampling(512, 512, 600, 600));
+		assertEquals(5, ImageDecoder.getSubsampling(5, 5, 0, 0));
+	}
+
+	@Test
+	void subsampledPixels() throws IOException {
+		BufferedImage image = ImageDecoder.read(getResource("Lena.png"), 100, 120);
+		// Subsampled by 4
+		assertEquals(128, image.getWidth());
+		assertEquals(128, image.getHeight());
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				assertEquals(lena.getRGB(x * 4, y * 4), image.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	void fullResolution() throws IOException {
+		// Reusing the reader of the thread
+		for (int i = 0; i < 2; i++) {
+			BufferedImage image = ImageDecoder.read(getResource("Lena.png"), 1000, 1000);
+			assertEquals(lena.getWidth(), image.getWidth());
+			assertEquals(lena.getHeight(), image.getHeight());
+			assertEquals(lena.getRGB(17, 301), image.getRGB(17, 301));
+		}
+	}
+
+	@Test
+	void unsupportedFormat() throws IOException {
+		assertNull(ImageDecoder.read(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 }), 10, 10));
+	}
+
+	@Test
+	void subsampledHash() throws IOException {
+		HashingAlgorithm algorithm = new PerceptiveHash(64);
+		assertFalse(algorithm.isSubsampledDecoding());
+		Hash expected = algorithm.hash(getResource("Lena.png"));
+
+		HashingAlgorithm subsampling = new PerceptiveHash(64);
+		subsampling.setSubsampledDecoding(true);
+		Hash subsampled = subsampling.hash(getResource("Lena.png"));
+		assertTrue(expected.normalizedHammingDistanceFast(subsampled) < 0.15);
+	}
+
+	@Test
+	void subsampledAlgorithmId() throws IOException {
+		HashingAlgorithm subsampling = new PerceptiveHash(64);
+		subsampling.setSubsampledDecoding(true);
+		assertNotEquals(new PerceptiveHash(64).algorithmId(), subsampling.algorithmId());
+		subsampling.hash(getResource("Lena.png"));
+		assertThrows(IllegalStateException.class, () -> {
+			subsampling.setSubsampledDecoding(false);
+		});
+	}
+
+	private static InputStream getResource(String name) {
+		return ImageDecoderTest.class.getClassLoader().getResourceAsStream(name);
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.jstarcraft.dip.color;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class JpegLuminanceTest {
+
+	private static BufferedImage lena;
+
+	@BeforeAll
+	static void loadImage() throws IOException {
+		lena = ImageIO.read(JpegLuminanceTest.class.getClassLoader().getResourceAsStream("Lena.png"));
+	}
+
+	@Test
+	void baseline() throws IOException {
+		assertBlockMeans(encode(lena, false, 0));
+	}
+
+	@Test
+	void grayscale() throws IOException {
+		BufferedImage gray = new BufferedImage(lena.getWidth() - 5, lena.getHeight() - 3, BufferedImage.TYPE_BYTE_GRAY);
+		gray.getGraphics().drawImage(lena, 0, 0, null);
+		assertBlockMeans(encode(gray, false, 0));
+	}
+
+	@Test
+	void progressive() throws IOException {
+		assertBlockMeans(encode(lena, true, 0));
+	}
+
+	@Test
+	void restartInterval() throws IOException {
+		assertBlockMeans(encode(lena, false, 7));
+	}
+
+	@Test
+	void resources() throws IOException {
+		for (String name : new String[] { "ballon.jpg", "highQuality.jpg", "lowQuality.jpg", "copyright.jpg", "thumbnail.jpg" }) {
+			assertBlockMeans(readResource(name));
+		}
+	}
+
+	@Test
+	void unsupportedFormat() throws IOException {
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(lena, "png", png);
+		assertNull(JpegLuminance.read(png.toByteArray()));
+	}
+
+	/**
+	 * The luminance of each block has to equal the mean luminance of the decoded
+	 * block up to the quantization
+	 */
+	private void assertBlockMeans(byte[] encoded) throws IOException {
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(encoded));
+		JpegLuminance luminance = JpegLuminance.read(encoded);
+		assertEquals((image.getWidth() + 7) / 8, luminance.getWidth());
+		assertEquals((image.getHeight() + 7) / 8, luminance.getHeight());
+
+		double deviation = 0;
+		int blocks = 0;
+		for (int y = 0; y < image.getHeight() / 8; y++) {
+			for (int x = 0; x < image.getWidth() / 8; x++) {
+				double mean = 0;
+				for (int yPixel = y * 8; yPixel < y * 8 + 8; yPixel++) {
+					for (int xPixel = x * 8; xPixel < x * 8 + 8; xPixel++) {
+						if (image.getRaster().getNumBands() == 1) {
+							// Gray values are stored without gamma correction
+							mean += image.getRaster().getSample(xPixel, yPixel, 0);
+						} else {
+							int rgb = image.getRGB(xPixel, yPixel);
+							mean += ((rgb >> 16) & 0xFF) * ColorUtility.LUMA_RED + ((rgb >> 8) & 0xFF) * ColorUtility.LUMA_GREEN + (rgb & 0xFF) * ColorUtility.LUMA_BLUE;
+						}
+					}
+				}
+				mean /= 64;
+				deviation += Math.abs(mean - luminance.getPlane()[y * luminance.getWidth() + x]);
+				blocks++;
+			}
+		}
+		assertTrue(deviation / blocks < 1.5, "Mean deviation " + deviation / blocks);
+	}
+
+	private byte[] encode(BufferedImage image, boolean progressive, int restartInterval) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ImageWriteParam parameter = writer.getDefaultWriteParam();
+		parameter.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		parameter.setCompressionQuality(0.8f);
+		if (progressive) {
+			parameter.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+		}
+		IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), parameter);
+		if (restartInterval > 0) {
+			String format = "javax_imageio_jpeg_image_1.0";
+			IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+			IIOMetadataNode dri = new IIOMetadataNode("dri");
+			dri.setAttribute("interval", Integer.toString(restartInterval));
+			IIOMetadataNode markerSequence = (IIOMetadataNode) root.getElementsByTagName("markerSequence").item(0);
+			markerSequence.insertBefore(dri, markerSequence.getFirstChild());
+			metadata.setFromTree(format, root);
+		}
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		try (ImageOutputStream stream = ImageIO.createImageOutputStream(encoded)) {
+			writer.setOutput(stream);
+			writer.write(null, new IIOImage(image, null, metadata), parameter);
+		} finally {
+			writer.dispose();
+		}
+		return encoded.toByteArray();
+	}
+
+	private byte[] readResource(String name) throws IOException {
+		try (InputStream stream = getClass().getClassLoader().getResourceAsStream(name)) {
+			ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = stream.read(buffer)) != -1) {
+				encoded.write(buffer, 0, length);
+			}
+			return encoded.toByteArray();
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.jstarcraft.dip.color;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.dip.color.LuminanceResampler.Filter;
+
+class LuminanceResamplerTest {
+
+	private static BufferedImage lena;
+
+	@BeforeAll
+	static void loadImage() throws IOException {
+		lena = ImageIO.read(LuminanceResamplerTest.class.getClassLoader().getResourceAsStream("Lena.png"));
+	}
+
+	@Test
+	void areaAverage() {
+		BufferedImage image = new BufferedImage(4, 2, BufferedImage.TYPE_INT_RGB);
+		int[] gray = { 0, 10, 20, 30, 40, 50, 60, 70 };
+		for (int i = 0; i < gray.length; i++) {
+			image.setRGB(i % 4, i / 4, gray[i] << 16 | gray[i] << 8 | gray[i]);
+		}
+		double[] plane = new LuminanceResampler(2, 1).getLuminancePlane(image, (double[]) null);
+		assertEquals((0 + 10 + 40 + 50) / 4d, plane[0], 1e-9);
+		assertEquals((20 + 30 + 60 + 70) / 4d, plane[1], 1e-9);
+
+		// Target pixels covering a fraction of a source pixel
+		plane = new LuminanceResampler(3, 1).getLuminancePlane(image, (double[]) null);
+		double third = 4 / 3d;
+		assertEquals((20 + 30 * (third - 1)) / third, plane[0], 1e-9);
+	}
+
+	@Test
+	void boxFilter() {
+		BufferedImage image = new BufferedImage(3, 1, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, 0x000000);
+		image.setRGB(1, 0, 0x303030);
+		image.setRGB(2, 0, 0x606060);
+		double[] plane = new LuminanceResampler(2, 1, Filter.BOX, 1).getLuminancePlane(image, (double[]) null);
+		// Pixel centers 0.5 | 1.5 and 2.5
+		assertEquals(0, plane[0], 1e-9);
+		assertEquals(0x48, plane[1], 1e-9);
+	}
+
+	@Test
+	void enlarge() {
+		BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_3BYTE_BGR);
+		image.setRGB(0, 0, 0xFF0000);
+		for (Filter filter : Filter.values()) {
+			int[] plane = new LuminanceResampler(5, 3, filter, 1).getLuminancePlane(image, (int[]) null);
+			for (int scalar : plane) {
+				assertEquals((int) (255 * ColorUtility.LUMA_RED), scalar);
+			}
+		}
+	}
+
+	@Test
+	void rasterLayouts() {
+		Random random = new Random(0);
+		BufferedImage source = new BufferedImage(37, 23, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < source.getWidth(); x++) {
+			for (int y = 0; y < source.getHeight(); y++) {
+				source.setRGB(x, y, random.nextInt(1 << 24));
+			}
+		}
+		LuminanceResampler resampler = new LuminanceResampler(8, 5);
+		double[] expected = resampler.getLuminancePlane(source, (double[]) null);
+		int[] types = { BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_USHORT_565_RGB };
+		for (int type : types) {
+			BufferedImage image = new BufferedImage(source.getWidth(), source.getHeight(), type);
+			Graphics g = image.getGraphics();
+			g.drawImage(source, 0, 0, null);
+			g.dispose();
+			double[] actual = resampler.getLuminancePlane(image, (double[]) null);
+			// 565 drops the lower bits of each channel
+			assertArrayEquals(expected, actual, type == BufferedImage.TYPE_USHORT_565_RGB ? 8 : 1e-9);
+		}
+	}
+
+	@Test
+	void subImages() {
+		Random random = new Random(0);
+		BufferedImage source = new BufferedImage(37, 23, BufferedImage.TYPE_INT_RGB);
+		BufferedImage noise = new BufferedImage(50, 40, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < noise.getWidth(); x++) {
+			for (int y = 0; y < noise.getHeight(); y++) {
+				noise.setRGB(x, y, random.nextInt(1 << 24));
+				if (x < source.getWidth() && y < source.getHeight()) {
+					source.setRGB(x, y, random.nextInt(1 << 24));
+				}
+			}
+		}
+		LuminanceResampler resampler = new LuminanceResampler(8, 5);
+		double[] expected = resampler.getLuminancePlane(source, (double[]) null);
+		int[] types = { BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR };
+		for (int type : types) {
+			// The sub image shares the raster of its parent with an offset and stride
+			BufferedImage parent = new BufferedImage(noise.getWidth(), noise.getHeight(), type);
+			Graphics g = parent.getGraphics();
+			g.drawImage(noise, 0, 0, null);
+			g.drawImage(source, 5, 3, null);
+			g.dispose();
+			BufferedImage image = parent.getSubimage(5, 3, source.getWidth(), source.getHeight());
+			assertArrayEquals(expected, resampler.getLuminancePlane(image, (double[]) null), 1e-9);
+		}
+	}
+
+	@Test
+	void matchesColorPixel() {
+		// Without scaling the plane equals the luminance of the pixels
+		int[] plane = new LuminanceResampler(lena.getWidth(), lena.getHeight()).getLuminancePlane(lena, (int[]) null);
+		assertArrayEquals(ColorPixel.convert(lena).getLuminanceVector(), plane);
+	}
+
+	@Test
+	void parallelBands() {
+		double[] expected = new LuminanceResampler(33, 17).getLuminancePlane(lena, (double[]) null);
+		double[] actual = new LuminanceResampler(33, 17, Filter.AREA, 4).getLuminancePlane(lena, (double[]) null);
+		assertArrayEquals(expected, actual, 0);
+	}
+
+	@Test
+	void resamplePlane() {
+		double[] source = { 0, 10, 20, 30, 40, 50, 60, 70 };
+		double[] plane = new LuminanceResampler(2, 1).getLuminancePlane(source, 4, 2, (double[]) null);
+		assertEquals(25, plane[0], 1e-9);
+		assertEquals(45, plane[1], 1e-9);
+		assertArrayEquals(new int[] { 25, 45 }, new LuminanceResampler(2, 1).getLuminancePlane(source, 4, 2, (int[]) null));
+	}
+
+	@Test
+	void reusePlane() {
+		LuminanceResampler resampler = new LuminanceResampler(8, 8);
+		int[] plane = new int[64];
+		assertSame(plane, resampler.getLuminancePlane(lena, plane));
+		double[] doublePlane = new double[64];
+		assertSame(doublePlane, resampler.getLuminancePlane(lena, doublePlane));
+	}
+
+	@Test
+	void luminancePixel() {
+		int[] plane = new LuminanceResampler(8, 4).getLuminancePlane(lena, (int[]) null);
+		LuminancePixel pixel = new LuminancePixel(8, 4, plane);
+		int[][] matrix = pixel.getLuminanceMatrix();
+		for (int x = 0; x < 8; x++) {
+			for (int y = 0; y < 4; y++) {
+				assertEquals(plane[y * 8 + x], matrix[x][y]);
+				assertEquals(plane[y * 8 + x], pixel.getRedScalar(x, y));
+			}
+		}
+	}
+
+}
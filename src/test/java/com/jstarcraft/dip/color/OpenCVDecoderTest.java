@@ -0,0 +1,85 @@
+package com.jstarcraft.dip.color;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.lsh.AverageHash;
+import com.jstarcraft.dip.lsh.DifferenceHash;
+import com.jstarcraft.dip.lsh.DifferenceHash.Gradient;
+import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.PerceptiveHash;
+
+class OpenCVDecoderTest {
+
+	@BeforeEach
+	void requireOpenCV() {
+		Assumptions.assumeTrue(OpenCVDecoder.isAvailable(), "OpenCV is not available on this platform");
+	}
+
+	@Test
+	void luminance() throws IOException {
+		for (String name : new String[] { "ballon.jpg", "Lena.png" }) {
+			byte[] encoded = readResource(name);
+			LuminancePixel pixel = OpenCVDecoder.readLuminance(encoded, 32, 32, 128, 128);
+			assertEquals(32, pixel.getWidth());
+			assertEquals(32, pixel.getHeight());
+
+			BufferedImage image = ImageIO.read(getClass().getClassLoader().getResourceAsStream(name));
+			int[] expected = new LuminanceResampler(32, 32).getLuminancePlane(image, (int[]) null);
+			double deviation = 0;
+			for (int index = 0; index < expected.length; index++) {
+				deviation += Math.abs(expected[index] - pixel.getGrayscaleScalar(index));
+			}
+			assertTrue(deviation / expected.length < 3, name);
+		}
+	}
+
+	@Test
+	void unsupportedFormat() throws IOException {
+		assertNull(OpenCVDecoder.readLuminance(new byte[] { 1, 2, 3, 4 }, 8, 8, 8, 8));
+	}
+
+	@Test
+	void tolerance() throws IOException {
+		HashingAlgorithm[] algorithms = { new AverageHash(64), new PerceptiveHash(64), new DifferenceHash(64, Gradient.Horizontal) };
+		HashingAlgorithm[] decoding = { new AverageHash(64), new PerceptiveHash(64), new DifferenceHash(64, Gradient.Horizontal) };
+		for (int i = 0; i < algorithms.length; i++) {
+			algorithms[i].setImageBackend(ImageBackend.JAVA2D);
+			decoding[i].setImageBackend(ImageBackend.OPENCV);
+		}
+		for (String name : new String[] { "ballon.jpg", "Lena.png", "highQuality.jpg" }) {
+			for (int i = 0; i < algorithms.length; i++) {
+				Hash expected = algorithms[i].hash(getClass().getClassLoader().getResourceAsStream(name));
+				Hash hash = decoding[i].hash(getClass().getClassLoader().getResourceAsStream(name));
+				// The backend is part of the algorithm id
+				assertTrue(expected.normalizedHammingDistanceFast(hash) <= OpenCVDecoder.TOLERANCE, name + " " + algorithms[i]);
+			}
+		}
+	}
+
+	private byte[] readResource(String name) throws IOException {
+		try (InputStream stream = getClass().getClassLoader().getResourceAsStream(name)) {
+			ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = stream.read(buffer)) != -1) {
+				encoded.write(buffer, 0, length);
+			}
+			return encoded.toByteArray();
+		}
+	}
+
+}
@@ -14,6 +14,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import com.github.kilianB.StringUtil;
 import com.jstarcraft.dip.lsh.AverageHash;
 
 class HashTest {
@@ -150,6 +151,52 @@ class HashTest {
 
 	}
 
+	@Nested
+	class PackedWords {
+
+		@Test
+		@DisplayName("Words Round Trip")
+		public void roundTrip() {
+			BigInteger value = new BigInteger("1" + StringUtil.multiplyChar("01", 70), 2);
+			Hash hash0 = new Hash(value, 141, 0);
+			Hash hash1 = new Hash(hash0.getHashWords(), 141, 0);
+			assertAll(() -> {
+				assertEquals(3, hash0.getHashWords().length);
+			}, () -> {
+				assertEquals(value, hash1.getHashValue());
+			}, () -> {
+				assertEquals(hash0, hash1);
+			}, () -> {
+				assertEquals(hash0.hashCode(), hash1.hashCode());
+			});
+		}
+
+		@Test
+		@DisplayName("Distance Multiple Words")
+		public void distanceMultipleWords() {
+			String bits = "1" + StringUtil.multiplyChar("0", 127);
+			String bits1 = "1" + StringUtil.multiplyChar("0", 63) + StringUtil.multiplyChar("1", 64);
+			Hash hash0 = new Hash(new BigInteger(bits, 2), bits.length(), 0);
+			Hash hash1 = new Hash(new BigInteger(bits1, 2), bits1.length(), 0);
+			assertAll(() -> {
+				assertEquals(64, hash0.hammingDistanceFast(hash1));
+			}, () -> {
+				assertEquals(64, hash0.hammingDistanceFast(hash1.getHashValue()));
+			});
+		}
+
+		@Test
+		@DisplayName("Bit Above Word Boundary")
+		public void bitAboveWordBoundary() {
+			Hash hash0 = new Hash(BigInteger.ONE.shiftLeft(70), 71, 0);
+			assertAll(() -> {
+				assertTrue(hash0.getBit(70));
+			}, () -> {
+				assertFalse(hash0.getBit(6));
+			});
+		}
+	}
+
 	@Nested
 	class TestBit {
 
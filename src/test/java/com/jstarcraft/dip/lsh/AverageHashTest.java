@@ -29,9 +29,9 @@ class AverageHashTest {
 		@DisplayName("Consistent AlgorithmIds")
 		public void consistency() {
 			assertAll(() -> {
-				assertEquals(538597315, new AverageHash(14).algorithmId());
+				assertEquals(-483352412, new AverageHash(14).algorithmId()); // Was 538597315
 			}, () -> {
-				assertEquals(538628067, new AverageHash(25).algorithmId());
+				assertEquals(-482399100, new AverageHash(25).algorithmId()); // Was 538628067
 			});
 		}
 
@@ -44,6 +44,19 @@ class AverageHashTest {
 				assertNotEquals(-1105480383, new AverageHash(14).algorithmId());
 			});
 		}
+
+		/**
+		 * The luminance of 3.1.0 is area averaged, hashes of 3.0.0 are incompatible
+		 */
+		@Test
+		@DisplayName("Consistent AlgorithmIds v 3.0.0 collision")
+		public void notVersionThree() {
+			assertAll(() -> {
+				assertNotEquals(538597315, new AverageHash(14).algorithmId());
+			}, () -> {
+				assertNotEquals(538628067, new AverageHash(25).algorithmId());
+			});
+		}
 	}
 
 	/**
@@ -73,12 +86,12 @@ class AverageHashTest {
 
 		@Override
 		protected double differenceBallonHqHash() {
-			return 77;
+			return 64;
 		}
 
 		@Override
 		protected double normDifferenceBallonHqHash() {
-			return 77 / 132d;
+			return 64 / 132d;
 		}
 	}
 
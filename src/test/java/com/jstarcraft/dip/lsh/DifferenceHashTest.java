@@ -42,17 +42,17 @@ class DifferenceHashTest {
 		public void consistency() {
 
 			assertAll(() -> {
-				assertEquals(1799343929, new DifferenceHash(14, Gradient.Horizontal).algorithmId());
+				assertEquals(-54913042, new DifferenceHash(14, Gradient.Horizontal).algorithmId()); // Was 1799343929
 			}, () -> {
-				assertEquals(1829820122, new DifferenceHash(25, Gradient.Horizontal).algorithmId());
+				assertEquals(889848941, new DifferenceHash(25, Gradient.Horizontal).algorithmId()); // Was 1829820122
 			}, () -> {
-				assertEquals(636932775, new DifferenceHash(14, Gradient.Vertical).algorithmId());
+				assertEquals(-1729920448, new DifferenceHash(14, Gradient.Vertical).algorithmId()); // Was 636932775
 			}, () -> {
-				assertEquals(667408968, new DifferenceHash(25, Gradient.Vertical).algorithmId());
+				assertEquals(-785158465, new DifferenceHash(25, Gradient.Vertical).algorithmId()); // Was 667408968
 			}, () -> {
-				assertEquals(-1338502776, new DifferenceHash(14, Gradient.Diagonal).algorithmId());
+				assertEquals(1456086911, new DifferenceHash(14, Gradient.Diagonal).algorithmId()); // Was -1338502776
 			}, () -> {
-				assertEquals(-1308026583, new DifferenceHash(25, Gradient.Diagonal).algorithmId());
+				assertEquals(-1894118402, new DifferenceHash(25, Gradient.Diagonal).algorithmId()); // Was -1308026583
 			});
 		}
 
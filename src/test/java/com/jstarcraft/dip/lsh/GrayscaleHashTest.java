@@ -26,9 +26,9 @@ class GrayscaleHashTest {
         @DisplayName("Consistent AlgorithmIds")
         public void consistency() {
             assertAll(() -> {
-                assertEquals(471804845, new GrayscaleHash(14).algorithmId());
+                assertEquals(1741048314, new GrayscaleHash(14).algorithmId()); // Was 471804845
             }, () -> {
-                assertEquals(471835597, new GrayscaleHash(25).algorithmId());
+                assertEquals(1742001626, new GrayscaleHash(25).algorithmId()); // Was 471835597
             });
         }
 
@@ -54,12 +54,12 @@ class GrayscaleHashTest {
 
         @Override
         protected double differenceBallonHqHash() {
-            return 76;
+            return 64;
         }
 
         @Override
         protected double normDifferenceBallonHqHash() {
-            return 76 / 132d;
+            return 64 / 132d;
         }
 
     }
@@ -0,0 +1,61 @@
+package com.jstarcraft.dip.lsh;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.BigInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class HashBuilderTest {
+
+    @Test
+    @DisplayName("Same Value As String Representation")
+    public void bigInteger() {
+        HashBuilder builder = new HashBuilder(8);
+        builder.prependOne();
+        builder.prependZero();
+        builder.prependZero();
+        builder.prependOne();
+        builder.prependOne();
+        assertEquals(new BigInteger("11001", 2), builder.toBigInteger());
+    }
+
+    @Test
+    @DisplayName("Grow Past Initial Size")
+    public void grow() {
+        HashBuilder builder = new HashBuilder(1);
+        for (int index = 0; index < 130; index++) {
+            builder.prependOne();
+        }
+        assertAll(() -> {
+            assertEquals(130, builder.getLength());
+        }, () -> {
+            assertArrayEquals(new long[] { -1L, -1L, 3L }, builder.toWords());
+        }, () -> {
+            assertEquals(BigInteger.ONE.shiftLeft(130).subtract(BigInteger.ONE), builder.toBigInteger());
+        });
+    }
+
+    @Test
+    @DisplayName("Reset Clears Bits")
+    public void reset() {
+        HashBuilder builder = HashBuilder.getInstance(64);
+        builder.prependOne();
+        builder.prependOne();
+        HashBuilder reused = HashBuilder.getInstance(64);
+        reused.prependZero();
+        reused.prependOne();
+        assertAll(() -> {
+            assertSame(builder, reused);
+        }, () -> {
+            assertArrayEquals(new long[] { 2L }, reused.toWords());
+        }, () -> {
+            assertEquals(2, reused.toHash(0).getBitResolution());
+        });
+    }
+
+}
@@ -0,0 +1,171 @@
+package com.jstarcraft.dip.lsh;
+
+import static com.github.kilianB.TestResources.ballon;
+import static com.github.kilianB.TestResources.lenna;
+import static com.github.kilianB.TestResources.thumbnail;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.dip.color.ImageBackend;
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.lsh.DifferenceHash.Gradient;
+import com.jstarcraft.dip.lsh.kernel.Kernel;
+
+class HashingContextTest {
+
+	@Test
+	void equalToImageHash() {
+		HashingAlgorithm[] algorithms = createAlgorithms();
+		for (BufferedImage image : new BufferedImage[] { ballon, thumbnail, createNoise(2000, 1300) }) {
+			HashingContext context = new HashingContext(image);
+			for (HashingAlgorithm algorithm : algorithms) {
+				Hash hash = algorithm.hash(context);
+				assertEquals(algorithm.hash(image), hash, algorithm.toString());
+				assertEquals(algorithm.hash(image).getClass(), hash.getClass());
+			}
+		}
+	}
+
+	@Test
+	void parallelResampling() {
+		BufferedImage image = createNoise(1500, 900);
+		HashingAlgorithm hasher = new PerceptiveHash(64);
+		Hash expected = hasher.hash(image);
+		assertEquals(expected, hasher.hash(new HashingContext(image, 4)));
+	}
+
+	@Test
+	void sharedPixels() {
+		HashingContext context = new HashingContext(ballon);
+		AverageHash first = new AverageHash(64);
+		AverageHash second = new AverageHash(64);
+		assertSame(context.getPixel(first), context.getPixel(second));
+		assertNotSame(context.getPixel(first), context.getPixel(new AverageHash(256)));
+
+		// Converters are applied once per distinct list of converters
+		AverageHash filtered = new AverageHash(64);
+		filtered.addConverter(Kernel.boxFilterNormalized(3, 3));
+		AverageHash filtered1 = new AverageHash(64);
+		filtered1.addConverter(Kernel.boxFilterNormalized(3, 3));
+		assertNotSame(context.getPixel(first), context.getPixel(filtered));
+		assertSame(context.getPixel(filtered), context.getPixel(filtered1));
+	}
+
+	@Test
+	void jpegLuminance() throws IOException {
+		BufferedImage image = new BufferedImage(2048, 1536, BufferedImage.TYPE_INT_RGB);
+		image.getGraphics().drawImage(lenna, 0, 0, image.getWidth(), image.getHeight(), null);
+		byte[] encoded = encodeJpeg(image);
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoded));
+
+		HashingAlgorithm[] algorithms = { new AverageHash(64), new PerceptiveHash(64), new DifferenceHash(64, Gradient.Horizontal) };
+		HashingAlgorithm[] decoding = { new AverageHash(64), new PerceptiveHash(64), new DifferenceHash(64, Gradient.Horizontal) };
+		for (int i = 0; i < algorithms.length; i++) {
+			algorithms[i].setImageBackend(ImageBackend.JAVA2D);
+			decoding[i].setImageBackend(ImageBackend.JPEG_DC);
+			Hash hash = decoding[i].hash(new HashingContext(encoded));
+			assertEquals(hash, decoding[i].hash(new ByteArrayInputStream(encoded)));
+			// The backend is part of the algorithm id
+			Hash expected = algorithms[i].hash(decoded);
+			assertTrue(hash.normalizedHammingDistanceFast(expected) < 0.1, algorithms[i].toString());
+			assertEquals(expected.getClass(), hash.getClass());
+		}
+	}
+
+	@Test
+	void rejectDecodedImage() {
+		AverageHash algorithm = new AverageHash(64);
+		algorithm.setImageBackend(ImageBackend.JPEG_DC);
+		assertThrows(IllegalArgumentException.class, () -> {
+			algorithm.hash(ballon);
+		});
+		assertThrows(IllegalArgumentException.class, () -> {
+			algorithm.hash(new HashingContext(ballon));
+		});
+	}
+
+	@Test
+	void jpegFallback() throws IOException {
+		// Too small for the block luminance and not a luminance algorithm
+		byte[] encoded = encodeJpeg(thumbnail);
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoded));
+		HashingAlgorithm[] algorithms = { new PerceptiveHash(64), new MedianHash(64) };
+		HashingAlgorithm[] decoding = { new PerceptiveHash(64), new MedianHash(64) };
+		for (int i = 0; i < algorithms.length; i++) {
+			algorithms[i].setImageBackend(ImageBackend.JAVA2D);
+			decoding[i].setImageBackend(ImageBackend.JPEG_DC);
+			assertEquals(0, algorithms[i].hash(decoded).hammingDistanceFast(decoding[i].hash(new HashingContext(encoded))));
+		}
+	}
+
+	@Test
+	void backendAlgorithmId() {
+		AverageHash jpeg = new AverageHash(64);
+		jpeg.setImageBackend(ImageBackend.JPEG_DC);
+		assertNotEquals(new AverageHash(64).algorithmId(), jpeg.algorithmId());
+		assertThrows(IllegalStateException.class, () -> {
+			jpeg.setImageBackend(ImageBackend.JAVA2D);
+		});
+
+		// Algorithms applying converters are not decoded by the backend
+		AverageHash filtered = new AverageHash(64);
+		filtered.addConverter(Kernel.boxFilterNormalized(3, 3));
+		filtered.setImageBackend(ImageBackend.JPEG_DC);
+		AverageHash filteredDefault = new AverageHash(64);
+		filteredDefault.addConverter(Kernel.boxFilterNormalized(3, 3));
+		assertEquals(filteredDefault.algorithmId(), filtered.algorithmId());
+	}
+
+	@Test
+	void resolveDefaultBackend() {
+		AverageHash algorithm = new AverageHash(64);
+		ImageBackend.setDefault(ImageBackend.JPEG_DC);
+		try {
+			algorithm.algorithmId();
+		} finally {
+			ImageBackend.setDefault(ImageBackend.JAVA2D);
+		}
+		assertEquals(ImageBackend.JPEG_DC, algorithm.getImageBackend());
+		AverageHash jpeg = new AverageHash(64);
+		jpeg.setImageBackend(ImageBackend.JPEG_DC);
+		assertEquals(jpeg.algorithmId(), algorithm.algorithmId());
+	}
+
+	private byte[] encodeJpeg(BufferedImage image) throws IOException {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpg", encoded);
+		return encoded.toByteArray();
+	}
+
+	private HashingAlgorithm[] createAlgorithms() {
+		HashingAlgorithm filtered = new PerceptiveHash(32);
+		filtered.addConverter(Kernel.boxFilterNormalized(3, 3));
+		return new HashingAlgorithm[] { new AverageHash(64), new AverageHash(1024), new PerceptiveHash(64), new DifferenceHash(64, Gradient.Diagonal), new GrayscaleHash(64), new RotPHash(64), new WaveletHash(32, 3), filtered };
+	}
+
+	private BufferedImage createNoise(int width, int height) {
+		Random random = new Random(0);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				image.setRGB(x, y, random.nextInt(1 << 24));
+			}
+		}
+		return image;
+	}
+
+}
@@ -33,9 +33,9 @@ class HogHashTest {
 		public void consistency() {
 
 			assertAll(() -> {
-				assertEquals(-789235684, new HogHash(14).algorithmId());
+				assertEquals(1303497579, new HogHash(14).algorithmId()); // Was -789235684
 			}, () -> {
-				assertEquals(-730130340, new HogHash(25).algorithmId());
+				assertEquals(-1159204053, new HogHash(25).algorithmId()); // Was -730130340
 			});
 		}
 
@@ -74,12 +74,12 @@ class HogHashTest {
 
 		@Override
 		protected double differenceBallonHqHash() {
-			return 50;
+			return 64;
 		}
 
 		@Override
 		protected double normDifferenceBallonHqHash() {
-			return 50 / 144d;
+			return 64 / 144d;
 		}
 	}
 
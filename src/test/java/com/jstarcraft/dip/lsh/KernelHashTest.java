@@ -31,9 +31,9 @@ class KernelHashTest {
         @DisplayName("Consistent AlgorithmIds")
         public void consistency() {
             assertAll(() -> {
-                assertEquals(1045402787, new KernelHash(14).algorithmId());
+                assertEquals(-1952251964, new KernelHash(14).algorithmId()); // Was 1045402787
             }, () -> {
-                assertEquals(1074955459, new KernelHash(25).algorithmId());
+                assertEquals(-1036119132, new KernelHash(25).algorithmId()); // Was 1074955459
             });
         }
 
@@ -92,12 +92,12 @@ class KernelHashTest {
 
         @Override
         protected double differenceBallonHqHash() {
-            return 77;
+            return 72;
         }
 
         @Override
         protected double normDifferenceBallonHqHash() {
-            return 77 / 132d;
+            return 72 / 132d;
         }
     }
 
@@ -110,12 +110,12 @@ class KernelHashTest {
 
         @Override
         protected double differenceBallonHqHash() {
-            return 79;
+            return 71;
         }
 
         @Override
         protected double normDifferenceBallonHqHash() {
-            return 79 / 132d;
+            return 71 / 132d;
         }
     }
 
@@ -128,12 +128,12 @@ class KernelHashTest {
 
         @Override
         protected double differenceBallonHqHash() {
-            return 73;
+            return 71;
         }
 
         @Override
         protected double normDifferenceBallonHqHash() {
-            return 73 / 132d;
+            return 71 / 132d;
         }
     }
 
@@ -30,9 +30,9 @@ class MedianHashTest {
 		public void consistency() {
 
 			assertAll(() -> {
-				assertEquals(552703146, new MedianHash(14).algorithmId());
+				assertEquals(-46071651, new MedianHash(14).algorithmId()); // Was 552703146
 			}, () -> {
-				assertEquals(552733898, new MedianHash(25).algorithmId());
+				assertEquals(-45118339, new MedianHash(25).algorithmId()); // Was 552733898
 			});
 		}
 
@@ -58,12 +58,12 @@ class MedianHashTest {
 
 		@Override
 		protected double differenceBallonHqHash() {
-			return 78;
+			return 64;
 		}
 
 		@Override
 		protected double normDifferenceBallonHqHash() {
-			return 78 / 132d;
+			return 64 / 132d;
 		}
 
 	}
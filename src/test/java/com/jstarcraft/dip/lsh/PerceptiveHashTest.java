@@ -27,9 +27,9 @@ class PerceptiveHashTest {
 		public void consistency() {
 
 			assertAll(() -> {
-				assertEquals(2038088856, new PerceptiveHash(14).algorithmId()); // Was 748566082
+				assertEquals(-1243754897, new PerceptiveHash(14).algorithmId()); // Was 2038088856
 			}, () -> {
-				assertEquals(2041902104, new PerceptiveHash(25).algorithmId()); // Was 748566093
+				assertEquals(-1125544209, new PerceptiveHash(25).algorithmId()); // Was 2041902104
 			});
 		}
 
@@ -55,12 +55,12 @@ class PerceptiveHashTest {
 
 		@Override
 		protected double differenceBallonHqHash() {
-			return 67;
+			return 68;
 		}
 
 		@Override
 		protected double normDifferenceBallonHqHash() {
-			return 67 / 132d;
+			return 68 / 132d;
 		}
 	}
 
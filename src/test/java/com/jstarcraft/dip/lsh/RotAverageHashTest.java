@@ -27,9 +27,9 @@ class RotAverageHashTest {
 	public void consistency() {
 
 		assertAll(() -> {
-			assertEquals(1505795238, new RotAverageHash(14).algorithmId());
+			assertEquals(-564987871, new RotAverageHash(14).algorithmId()); // Was 1505795238
 		}, () -> {
-			assertEquals(1506471782, new RotAverageHash(25).algorithmId());
+			assertEquals(-544015007, new RotAverageHash(25).algorithmId()); // Was 1506471782
 		});
 	}
 
@@ -53,12 +53,12 @@ class RotAverageHashTest {
 
 		@Override
 		protected double differenceBallonHqHash() {
-			return 65;
+			return 66;
 		}
 
 		@Override
 		protected double normDifferenceBallonHqHash() {
-			return 65 / 128d;
+			return 66 / 128d;
 		}
 	}
 }
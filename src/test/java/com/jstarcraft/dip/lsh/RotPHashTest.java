@@ -32,9 +32,9 @@ class RotPHashTest {
 		public void consistency() {
 
 			assertAll(() -> {
-				assertEquals(1665648520, new RotPHash(14, false).algorithmId());
+				assertEquals(95496575, new RotPHash(14, false).algorithmId()); // Was 1665648520
 			}, () -> {
-				assertEquals(1667549378, new RotPHash(25, true).algorithmId());
+				assertEquals(154423173, new RotPHash(25, true).algorithmId()); // Was 1667549378
 			});
 		}
 
@@ -83,12 +83,12 @@ class RotPHashTest {
 
 		@Override
 		protected double differenceBallonHqHash() {
-			return 54;
+			return 51;
 		}
 
 		@Override
 		protected double normDifferenceBallonHqHash() {
-			return 54 / 137d;
+			return 51 / 137d;
 		}
 
 	}
@@ -33,9 +33,9 @@ class HogHashAngularEncodedTest {
         @DisplayName("Consistent AlgorithmIds")
         public void consistency() {
             assertAll(() -> {
-                assertEquals(373104456, new HogHashAngularEncoded(14).algorithmId());
+                assertEquals(-1318663745, new HogHashAngularEncoded(14).algorithmId()); // Was 373104456
             }, () -> {
-                assertEquals(432209800, new HogHashAngularEncoded(25).algorithmId());
+                assertEquals(513601919, new HogHashAngularEncoded(25).algorithmId()); // Was 432209800
             });
         }
 
@@ -69,12 +69,12 @@ class HogHashAngularEncodedTest {
 
         @Override
         protected double differenceBallonHqHash() {
-            return 71;
+            return 58;
         }
 
         @Override
         protected double normDifferenceBallonHqHash() {
-            return 71 / 144d;
+            return 58 / 144d;
         }
     }
 
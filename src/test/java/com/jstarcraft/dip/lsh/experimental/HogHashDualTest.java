@@ -34,9 +34,9 @@ class HogHashDualTest {
         public void consistency() {
 
             assertAll(() -> {
-                assertEquals(1521777976, new HogHashDual(14).algorithmId());
+                assertEquals(-69522993, new HogHashDual(14).algorithmId()); // Was 1521777976
             }, () -> {
-                assertEquals(1580883320, new HogHashDual(25).algorithmId());
+                assertEquals(1762742671, new HogHashDual(25).algorithmId()); // Was 1580883320
             });
         }
 
@@ -71,12 +71,12 @@ class HogHashDualTest {
 
         @Override
         protected double differenceBallonHqHash() {
-            return 66;
+            return 80;
         }
 
         @Override
         protected double normDifferenceBallonHqHash() {
-            return 66 / 144d;
+            return 80 / 144d;
         }
     }
 
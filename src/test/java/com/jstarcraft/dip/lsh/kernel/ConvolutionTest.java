@@ -0,0 +1,125 @@
+package com.jstarcraft.dip.lsh.kernel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.dip.color.ColorPixel;
+import com.jstarcraft.dip.lsh.kernel.Kernel.EdgeHandlingStrategy;
+
+class ConvolutionTest {
+
+	@Test
+	void equalToCalcValue() {
+		double[][] input = createInput(300, 41);
+		// Wrapping only supports masks with a radius of 1
+		double[][] mask = createMask(3, 3);
+		for (EdgeHandlingStrategy edgeHandling : EdgeHandlingStrategy.values()) {
+			Kernel kernel = new Kernel(mask, edgeHandling);
+			assertFalse(new Convolution(mask, edgeHandling).isSeparable());
+			double[][] result = kernel.apply(input);
+			for (int y = 0; y < input.length; y++) {
+				for (int x = 0; x < input[0].length; x++) {
+					assertEquals(kernel.calcValue(input, x, y), result[y][x], 0, edgeHandling.name());
+				}
+			}
+		}
+	}
+
+	@Test
+	void separable() {
+		double[][] input = createInput(70, 290);
+		Kernel[] kernels = { Kernel.gaussianFilter(5, 5, 2), Kernel.boxFilterNormalized(3, 7), new Kernel(new double[][] { { 1, 0, -1 }, { 2, 0, -2 }, { 1, 0, -1 } }) };
+		for (Kernel kernel : kernels) {
+			assertTrue(new Convolution(kernel.mask, kernel.edgeHandling).isSeparable());
+			double[][] result = kernel.apply(input);
+			for (int y = 0; y < input.length; y++) {
+				for (int x = 0; x < input[0].length; x++) {
+					assertEquals(kernel.calcValue(input, x, y), result[y][x], 1e-9);
+				}
+			}
+		}
+	}
+
+	@Test
+	void parallelBands() {
+		double[][] input = createInput(200, 300);
+		for (Kernel kernel : new Kernel[] { Kernel.gaussianFilter(5, 5, 2), new Kernel(createMask(3, 3)) }) {
+			double[][] expected = kernel.apply(input);
+			kernel.setParallelism(4);
+			assertArrayEquals(expected, kernel.apply(input));
+		}
+	}
+
+	@Test
+	void interleavedChannels() {
+		double[][] first = createInput(33, 20);
+		double[][] second = new double[33][20];
+		double[] raster = new double[33 * 20 * 2];
+		for (int y = 0; y < 33; y++) {
+			for (int x = 0; x < 20; x++) {
+				second[y][x] = 255 - first[y][x];
+				raster[(y * 20 + x) * 2] = first[y][x];
+				raster[(y * 20 + x) * 2 + 1] = second[y][x];
+			}
+		}
+		double[][] mask = createMask(5, 3);
+		double[] result = new Convolution(mask, EdgeHandlingStrategy.MIRROR).apply(raster, 20, 33, 2, 1);
+		Kernel kernel = new Kernel(mask, EdgeHandlingStrategy.MIRROR);
+		double[][] firstResult = kernel.apply(first);
+		double[][] secondResult = kernel.apply(second);
+		for (int y = 0; y < 33; y++) {
+			for (int x = 0; x < 20; x++) {
+				assertEquals(firstResult[y][x], result[(y * 20 + x) * 2]);
+				assertEquals(secondResult[y][x], result[(y * 20 + x) * 2 + 1]);
+			}
+		}
+	}
+
+	@Test
+	void convertEqualToChannelMatrices() {
+		Random random = new Random(0);
+		BufferedImage image = new BufferedImage(37, 290, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < image.getWidth(); x++) {
+			for (int y = 0; y < image.getHeight(); y++) {
+				image.setRGB(x, y, random.nextInt(1 << 24));
+			}
+		}
+		ColorPixel pixel = ColorPixel.convert(image);
+		for (Kernel kernel : new Kernel[] { new Kernel(createMask(3, 5), true), new MultiKernel(createMask(1, 3), createMask(5, 1)), new MaximumKernel(3, 3) }) {
+			ColorPixel converted = ColorPixel.convert(kernel.convert(image));
+			assertArrayEquals(kernel.applyInt(pixel.getRedMatrix()), converted.getRedMatrix());
+			assertArrayEquals(kernel.applyInt(pixel.getGreenMatrix()), converted.getGreenMatrix());
+			assertArrayEquals(kernel.applyInt(pixel.getBlueMatrix()), converted.getBlueMatrix());
+		}
+	}
+
+	private double[][] createInput(int height, int width) {
+		Random random = new Random(height * 31 + width);
+		double[][] input = new double[height][width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				input[y][x] = random.nextInt(256);
+			}
+		}
+		return input;
+	}
+
+	private double[][] createMask(int height, int width) {
+		Random random = new Random(height * 31 + width);
+		double[][] mask = new double[height][width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				mask[y][x] = random.nextDouble() / (width * height);
+			}
+		}
+		return mask;
+	}
+
+}
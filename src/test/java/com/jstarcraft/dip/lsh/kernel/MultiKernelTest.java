@@ -0,0 +1,85 @@
+package com.jstarcraft.dip.lsh.kernel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.dip.lsh.kernel.Kernel.EdgeHandlingStrategy;
+
+class MultiKernelTest {
+
+	@Test
+	void composeLinearKernels() {
+		Kernel gaussian = Kernel.gaussianFilter(5, 5, 2);
+		Kernel edge = new Kernel(new double[][] { { 1, 0, -1 }, { 2, 0, -2 }, { 1, 0, -1 } });
+		Kernel box = Kernel.boxFilterNormalized(3, 3);
+		MultiKernel kernel = new MultiKernel(gaussian, edge, box);
+		assertEquals(1, kernel.getPasses());
+
+		// Equal to applying the kernels one after another apart from the border
+		double[][] input = createInput(40, 30);
+		double[][] expected = box.apply(edge.apply(gaussian.apply(input)));
+		double[][] result = kernel.apply(input);
+		for (int y = 4; y < input.length - 4; y++) {
+			for (int x = 4; x < input[0].length - 4; x++) {
+				assertEquals(expected[y][x], result[y][x], 1e-9);
+			}
+		}
+	}
+
+	@Test
+	void composeAxes() {
+		// Masks along different axes are composed without affecting the border
+		double[][] input = createInput(20, 25);
+		for (EdgeHandlingStrategy edgeHandling : new EdgeHandlingStrategy[] { EdgeHandlingStrategy.EXPAND, EdgeHandlingStrategy.MIRROR }) {
+			Kernel horizontal = new Kernel(new double[][] { { 1, 2, 3, 4, 5 } }, edgeHandling);
+			Kernel vertical = new Kernel(new double[][] { { 1 }, { -2 }, { 1 } }, edgeHandling);
+			MultiKernel kernel = new MultiKernel(horizontal, vertical);
+			assertEquals(1, kernel.getPasses());
+			double[][] expected = vertical.apply(horizontal.apply(input));
+			double[][] result = kernel.apply(input);
+			for (int y = 0; y < input.length; y++) {
+				assertArrayEquals(expected[y], result[y], 1e-9);
+			}
+		}
+	}
+
+	@Test
+	void nonLinearBarrier() {
+		MultiKernel kernel = new MultiKernel(Kernel.boxFilterNormalized(3, 3), new MedianKernel(3, 3), Kernel.boxFilterNormalized(3, 3), Kernel.gaussianFilter(3, 3, 1));
+		assertEquals(3, kernel.getPasses());
+	}
+
+	@Test
+	void noComposition() {
+		// Composing two non separable masks increases the cost
+		double[][] mask = { { 1, 2, 1 }, { 0, 1, 0 }, { 3, 0, 1 } };
+		assertEquals(2, new MultiKernel(mask, mask).getPasses());
+
+		EdgeHandlingStrategy[] edgeHandling = { EdgeHandlingStrategy.NO_OP, EdgeHandlingStrategy.NO_OP };
+		assertEquals(2, new MultiKernel(edgeHandling, new double[][] { { 1, 1, 1 } }, new double[][] { { 1 }, { 1 }, { 1 } }).getPasses());
+	}
+
+	@Test
+	void singlePass() {
+		int[][] input = { { 0, 10, 20 }, { 30, 40, 50 } };
+		MultiKernel kernel = new MultiKernel(new double[][] { { 0, 1, 0 } }, new double[][] { { 0, 2, 0 } });
+		assertEquals(1, kernel.getPasses());
+		assertArrayEquals(new int[][] { { 0, 20, 40 }, { 60, 80, 100 } }, kernel.applyInt(input));
+	}
+
+	private double[][] createInput(int height, int width) {
+		Random random = new Random(height * 31 + width);
+		double[][] input = new double[height][width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				input[y][x] = random.nextInt(256);
+			}
+		}
+		return input;
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.jstarcraft.dip.lsh.kernel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.dip.lsh.kernel.Kernel.EdgeHandlingStrategy;
+
+class RankFilterTest {
+
+	@Test
+	void uniformMask() {
+		assertTrue(RankFilter.isUniform(new double[][] { { 2, 2, 2 }, { 2, 2, 2 } }));
+		assertFalse(RankFilter.isUniform(new double[][] { { 1, 3, 1 } }));
+		assertFalse(RankFilter.isUniform(new double[][] { { -1, -1, -1 } }));
+		assertFalse(RankFilter.isUniform(new double[][] { { 0 } }));
+	}
+
+	@Test
+	void median() {
+		double[][] input = { { 5, 4, 1, 3, 6 } };
+		assertArrayEquals(new double[][] { { 5, 4, 3, 3, 6 } }, new MedianKernel(1, 3).apply(input));
+	}
+
+	@Test
+	void equalToCalcValue() {
+		double[][] input = createInput(37, 29);
+		for (EdgeHandlingStrategy edgeHandling : new EdgeHandlingStrategy[] { EdgeHandlingStrategy.EXPAND, EdgeHandlingStrategy.MIRROR, EdgeHandlingStrategy.NO_OP }) {
+			for (int[] size : new int[][] { { 1, 1 }, { 3, 3 }, { 5, 3 }, { 1, 7 }, { 7, 7 } }) {
+				Kernel[] kernels = { new MedianKernel(size[0], size[1]), new MinimumKernel(size[0], size[1]), new MaximumKernel(size[0], size[1]) };
+				for (Kernel kernel : kernels) {
+					kernel.edgeHandling = edgeHandling;
+					double[][] result = kernel.apply(input);
+					for (int y = 0; y < input.length; y++) {
+						for (int x = 0; x < input[0].length; x++) {
+							assertEquals(kernel.calcValue(input, x, y), result[y][x], 0, kernel + " " + edgeHandling);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void wrap() {
+		double[][] input = createInput(12, 9);
+		Kernel kernel = new MaximumKernel(3, 3);
+		kernel.edgeHandling = EdgeHandlingStrategy.WRAP;
+		double[][] result = kernel.apply(input);
+		for (int y = 0; y < input.length; y++) {
+			for (int x = 0; x < input[0].length; x++) {
+				assertEquals(kernel.calcValue(input, x, y), result[y][x]);
+			}
+		}
+	}
+
+	@Test
+	void medianRequires8Bit() {
+		double[] input = { 0.5, 1, 2 };
+		assertNull(RankFilter.median(input, 3, 1, 3, 1, EdgeHandlingStrategy.EXPAND));
+		input[0] = 256;
+		assertNull(RankFilter.median(input, 3, 1, 3, 1, EdgeHandlingStrategy.EXPAND));
+
+		// Falls back to sorting
+		double[][] result = new MedianKernel(1, 3).apply(new double[][] { { 0.5, 0.25, 3 } });
+		assertArrayEquals(new double[][] { { 0.5, 0.5, 3 } }, result);
+	}
+
+	private double[][] createInput(int height, int width) {
+		Random random = new Random(height * 31 + width);
+		double[][] input = new double[height][width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				input[y][x] = random.nextInt(256);
+			}
+		}
+		return input;
+	}
+
+}
@@ -0,0 +1,87 @@
+package com.jstarcraft.dip.metrics;
+
+import static com.github.kilianB.TestResources.ballon;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.kilianB.datastructures.tree.binaryTree.BinaryTree;
+import com.github.kilianB.matcher.persistent.ConsecutiveMatcher;
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.lsh.AverageHash;
+import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.kernel.Kernel;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class FlightRecorderEventsTest {
+
+	@Test
+	void disabledWithoutRecording() {
+		// Recordings started on the command line or by other tests may enable the events
+		assumeTrue(!FlightRecorderEvents.isAvailable() || FlightRecorder.getFlightRecorder().getRecordings().isEmpty());
+		assertEquals(null, FlightRecorderEvents.beginHash());
+		assertEquals(null, FlightRecorderEvents.beginTreeQuery());
+	}
+
+	@Test
+	void recordEvents() throws IOException {
+		assumeTrue(FlightRecorderEvents.isAvailable());
+
+		Path recordingFile = Files.createTempFile("dip", ".jfr");
+		File matcherFile = File.createTempFile("dip", ".ser");
+		matcherFile.delete();
+		Recording recording = new Recording();
+		try {
+			for (String name : new String[] { "Hash", "Convert", "TreeQuery", "Persist" }) {
+				recording.enable("com.jstarcraft.dip." + name).withoutThreshold();
+			}
+			recording.start();
+
+			HashingAlgorithm hasher = new AverageHash(64);
+			hasher.addConverter(Kernel.boxFilterNormalized(3, 3));
+			Hash hash = hasher.hash(ballon);
+
+			BinaryTree<String> tree = new BinaryTree<>(true);
+			tree.addHash(hash, "ballon");
+			tree.addHash(new Hash(hash.getHashValue().flipBit(0), hash.getBitResolution(), hash.getAlgorithmId()), "flipped");
+			tree.addHash(new Hash(BigInteger.ZERO, hash.getBitResolution(), hash.getAlgorithmId()), "zero");
+			tree.getElementsWithinHammingDistance(hash, 2);
+
+			new ConsecutiveMatcher(false).serializeState(matcherFile);
+
+			recording.stop();
+			recording.dump(recordingFile);
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+			List<String> names = events.stream().map(event -> event.getEventType().getName()).collect(Collectors.toList());
+			assertTrue(names.contains("com.jstarcraft.dip.Hash"), names.toString());
+			assertTrue(names.contains("com.jstarcraft.dip.Convert"), names.toString());
+			assertTrue(names.contains("com.jstarcraft.dip.Persist"), names.toString());
+
+			RecordedEvent query = events.stream().filter(event -> event.getEventType().getName().equals("com.jstarcraft.dip.TreeQuery")).findFirst().get();
+			assertEquals(1, query.getInt("needles"));
+			assertEquals(2, query.getInt("radius"));
+			assertEquals(2, query.getLong("matches"));
+			assertTrue(query.getLong("visitedNodes") > hash.getBitResolution());
+		} finally {
+			recording.close();
+			Files.deleteIfExists(recordingFile);
+			matcherFile.delete();
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.jstarcraft.dip.metrics;
+
+import static com.github.kilianB.TestResources.ballon;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.kilianB.matcher.persistent.ConsecutiveMatcher;
+import com.jstarcraft.dip.lsh.AverageHash;
+import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.HashingContext;
+import com.jstarcraft.dip.lsh.PerceptiveHash;
+import com.jstarcraft.dip.lsh.kernel.Kernel;
+
+class HashingMetricsTest {
+
+	@Test
+	void hashStream() throws IOException {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		ImageIO.write(ballon, "png", encoded);
+
+		HashingMetrics metrics = new HashingMetrics();
+		HashingAlgorithm hasher = new AverageHash(64);
+		hasher.addConverter(Kernel.boxFilterNormalized(3, 3));
+		hasher.setMetricsListener(metrics);
+		hasher.hash(new ByteArrayInputStream(encoded.toByteArray()));
+
+		assertEquals(1, metrics.getSnapshot(Stage.DECODE).getCount());
+		assertEquals(1, metrics.getSnapshot(Stage.CONVERT).getCount());
+		assertEquals(1, metrics.getSnapshot(Stage.SCALE).getCount());
+		assertEquals(1, metrics.getSnapshot(Stage.TRANSFORM).getCount());
+		assertEquals(0, metrics.getSnapshot(Stage.PIXEL).getCount());
+
+		metrics.reset();
+		assertEquals(0, metrics.getSnapshot(Stage.DECODE).getCount());
+	}
+
+	@Test
+	void colorPixel() {
+		HashingMetrics metrics = new HashingMetrics();
+		HashingAlgorithm hasher = new PerceptiveHash(64);
+		hasher.setMetricsListener(metrics);
+		hasher.hash(ballon);
+		// PerceptiveHash only accesses the luminance
+		assertEquals(0, metrics.getSnapshot(Stage.PIXEL).getCount());
+		assertEquals(1, metrics.getSnapshot(Stage.TRANSFORM).getCount());
+	}
+
+	@Test
+	void contextListenerTakesPrecedence() {
+		HashingMetrics algorithmMetrics = new HashingMetrics();
+		HashingMetrics contextMetrics = new HashingMetrics();
+		HashingAlgorithm first = new AverageHash(64);
+		HashingAlgorithm second = new PerceptiveHash(64);
+		first.setMetricsListener(algorithmMetrics);
+		second.setMetricsListener(algorithmMetrics);
+
+		HashingContext context = new HashingContext(ballon);
+		context.setMetricsListener(contextMetrics);
+		first.hash(context);
+		second.hash(context);
+
+		assertEquals(0, algorithmMetrics.getSnapshot(Stage.TRANSFORM).getCount());
+		assertEquals(2, contextMetrics.getSnapshot(Stage.TRANSFORM).getCount());
+		// The luminance pyramid is shared
+		assertEquals(2, contextMetrics.getSnapshot(Stage.SCALE).getCount());
+	}
+
+	@Test
+	void matcher() {
+		HashingMetrics metrics = new HashingMetrics();
+		ConsecutiveMatcher matcher = new ConsecutiveMatcher(false);
+		matcher.addHashingAlgorithm(new AverageHash(64), .4);
+		matcher.addHashingAlgorithm(new PerceptiveHash(64), .3);
+		matcher.setMetricsListener(metrics);
+
+		matcher.addImage("ballon", ballon);
+		matcher.getMatchingImages(ballon);
+
+		assertEquals(1, metrics.getSnapshot(Stage.INDEX).getCount());
+		assertEquals(1, metrics.getSnapshot(Stage.MATCH).getCount());
+		assertEquals(4, metrics.getSnapshot(Stage.TRANSFORM).getCount());
+	}
+
+	@Test
+	void disabled() {
+		HashingAlgorithm hasher = new AverageHash(64);
+		HashingMetrics metrics = new HashingMetrics();
+		hasher.setMetricsListener(metrics);
+		hasher.setMetricsListener(null);
+		hasher.hash(ballon);
+		assertEquals(0, metrics.getSnapshot(Stage.TRANSFORM).getCount());
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.jstarcraft.dip.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+
+	@Test
+	void exactSmallValues() {
+		Histogram histogram = new Histogram();
+		for (int value = 1; value <= 20; value++) {
+			histogram.record(value);
+		}
+		Histogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(20, snapshot.getCount());
+		assertEquals(210, snapshot.getTotal());
+		assertEquals(10.5, snapshot.getMean());
+		assertEquals(20, snapshot.getMax());
+		assertEquals(10, snapshot.getValueAtPercentile(50));
+		assertEquals(1, snapshot.getValueAtPercentile(0));
+		assertEquals(20, snapshot.getValueAtPercentile(100));
+	}
+
+	@Test
+	void boundedRelativeError() {
+		Random random = new Random(0);
+		for (int i = 0; i < 10000; i++) {
+			long value = random.nextLong() >>> (1 + random.nextInt(62));
+			int index = Histogram.getIndex(value);
+			long upperBound = Histogram.getUpperBound(index);
+			assertTrue(value <= upperBound, value + " " + upperBound);
+			assertTrue(upperBound - value <= value / 16, value + " " + upperBound);
+			if (index > 0) {
+				assertTrue(Histogram.getUpperBound(index - 1) < value);
+			}
+		}
+		assertEquals(Long.MAX_VALUE, Histogram.getUpperBound(Histogram.getIndex(Long.MAX_VALUE)));
+	}
+
+	@Test
+	void percentiles() {
+		Histogram histogram = new Histogram();
+		for (int value = 1; value <= 100_000; value++) {
+			histogram.record(value);
+		}
+		Histogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(50_000, snapshot.getValueAtPercentile(50), 50_000 / 16d);
+		assertEquals(99_000, snapshot.getValueAtPercentile(99), 99_000 / 16d);
+		assertEquals(100_000, snapshot.getValueAtPercentile(100));
+		assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(101));
+	}
+
+	@Test
+	void concurrentRecording() {
+		Histogram histogram = new Histogram();
+		IntStream.range(0, 100_000).parallel().forEach(histogram::record);
+		Histogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(100_000, snapshot.getCount());
+		assertEquals(99_999L * 100_000 / 2, snapshot.getTotal());
+		assertEquals(99_999, snapshot.getMax());
+	}
+
+	@Test
+	void reset() {
+		Histogram histogram = new Histogram();
+		histogram.record(1000);
+		histogram.reset();
+		Histogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getMax());
+		assertEquals(0, snapshot.getValueAtPercentile(50));
+	}
+
+}
@@ -0,0 +1,82 @@
+package com.jstarcraft.dip.transform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CosineTransformTest {
+
+	@Test
+	void equalToDefinition() {
+		Random random = new Random(0);
+		int width = 13;
+		int height = 9;
+		double[] plane = new double[width * height];
+		for (int i = 0; i < plane.length; i++) {
+			plane[i] = random.nextDouble();
+		}
+		CosineTransform transform = new CosineTransform(width, height, 1, 2, 5, 4);
+		double[] output = new double[20];
+		transform.transform(plane, output);
+		for (int v = 0; v < 4; v++) {
+			for (int u = 0; u < 5; u++) {
+				assertEquals(getCoefficient(plane, width, height, u + 1, v + 2), output[v * 5 + u], 1e-9);
+			}
+		}
+	}
+
+	@Test
+	void constantPlane() {
+		double[] plane = new double[64];
+		Arrays.fill(plane, 2);
+		CosineTransform transform = new CosineTransform(8, 8, 0, 0, 8, 8);
+		double[] output = new double[64];
+		transform.transform(plane, output);
+		// Only the dc coefficient is set
+		assertEquals(128, output[0], 1e-9);
+		for (int i = 1; i < output.length; i++) {
+			assertEquals(0, output[i], 1e-9);
+		}
+	}
+
+	@Test
+	void planeOffset() {
+		Random random = new Random(0);
+		double[] values = new double[40];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextDouble();
+		}
+		// One dimensional transform of the values [10, 35)
+		CosineTransform transform = new CosineTransform(25, 1, 2, 0, 3, 1);
+		double[] output = new double[5];
+		transform.transform(values, 10, output, 2);
+		double[] plane = Arrays.copyOfRange(values, 10, 35);
+		for (int u = 0; u < 3; u++) {
+			assertEquals(getCoefficient(plane, 25, 1, u + 2, 0), output[2 + u], 1e-9);
+		}
+		assertEquals(0, output[0]);
+		assertEquals(0, output[1]);
+	}
+
+	@Test
+	void frequenciesOutOfBounds() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			new CosineTransform(8, 8, 1, 1, 8, 2);
+		});
+	}
+
+	private double getCoefficient(double[] plane, int width, int height, int u, int v) {
+		double sum = 0;
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				sum += plane[y * width + x] * Math.cos(Math.PI * (x + 0.5) * u / width) * Math.cos(Math.PI * (y + 0.5) * v / height);
+			}
+		}
+		return sum;
+	}
+
+}
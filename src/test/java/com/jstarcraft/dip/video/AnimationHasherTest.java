@@ -0,0 +1,132 @@
+package com.jstarcraft.dip.video;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.jstarcraft.dip.color.FrameReader;
+import com.jstarcraft.dip.hash.FuzzyHash;
+import com.jstarcraft.dip.hash.Hash;
+import com.jstarcraft.dip.lsh.HashingAlgorithm;
+import com.jstarcraft.dip.lsh.PerceptiveHash;
+
+class AnimationHasherTest {
+
+	private static final String[] FRAMES = { "Lenna.png", "Lenna90.png", "Lenna180.png", "Lenna270.png", "ballon.jpg", "highQuality.jpg" };
+
+	private static byte[] gif;
+
+	@BeforeAll
+	static void createAnimation() throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		try (ImageOutputStream stream = ImageIO.createImageOutputStream(encoded)) {
+			writer.setOutput(stream);
+			writer.prepareWriteSequence(null);
+			for (String name : FRAMES) {
+				BufferedImage source = ImageIO.read(AnimationHasherTest.class.getClassLoader().getResourceAsStream(name));
+				BufferedImage frame = new BufferedImage(128, 128, BufferedImage.TYPE_INT_RGB);
+				frame.getGraphics().drawImage(source, 0, 0, 128, 128, null);
+				ImageWriteParam parameter = writer.getDefaultWriteParam();
+				IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), parameter);
+				String format = metadata.getNativeMetadataFormatName();
+				IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+				IIOMetadataNode control = (IIOMetadataNode) root.getElementsByTagName("GraphicControlExtension").item(0);
+				control.setAttribute("delayTime", "5");
+				metadata.setFromTree(format, root);
+				writer.writeToSequence(new IIOImage(frame, null, metadata), parameter);
+			}
+			writer.endWriteSequence();
+		} finally {
+			writer.dispose();
+		}
+		gif = encoded.toByteArray();
+	}
+
+	@Test
+	void hashAllFrames() throws IOException {
+		HashingAlgorithm algorithm = new PerceptiveHash(64);
+		List<Hash> expected = hashFrames(algorithm);
+
+		AnimationHasher hasher = new AnimationHasher(algorithm);
+		hasher.setParallelism(2);
+		HashSequence sequence = hasher.hash(new ByteArrayInputStream(gif));
+		assertEquals(FRAMES.length, sequence.size());
+		for (int index = 0; index < FRAMES.length; index++) {
+			assertEquals(expected.get(index), sequence.getHash(index));
+			assertEquals(index * 50_000L, sequence.getTimestamp(index));
+		}
+	}
+
+	@Test
+	void hashAggregated() throws IOException {
+		HashingAlgorithm algorithm = new PerceptiveHash(64);
+		List<Hash> expected = hashFrames(algorithm);
+
+		FuzzyHash fuzzyHash = new AnimationHasher(algorithm).hashAggregated(new ByteArrayInputStream(gif));
+		assertEquals(FRAMES.length, fuzzyHash.getAddedCount());
+		assertEquals(new FuzzyHash(expected.toArray(new Hash[0])).getHashValue(), fuzzyHash.getHashValue());
+		assertTrue(fuzzyHash.weightedDistance(expected.get(0)) < 0.5);
+	}
+
+	@Test
+	void hashOnExecutor() throws IOException {
+		HashingAlgorithm algorithm = new PerceptiveHash(64);
+		List<Hash> expected = hashFrames(algorithm);
+
+		AtomicInteger tasks = new AtomicInteger();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			AnimationHasher hasher = new AnimationHasher(algorithm);
+			hasher.setParallelism(1);
+			hasher.setExecutor(task -> {
+				tasks.incrementAndGet();
+				executor.execute(task);
+			});
+			for (int repetition = 0; repetition < 2; repetition++) {
+				HashSequence sequence = hasher.hash(new ByteArrayInputStream(gif));
+				for (int index = 0; index < FRAMES.length; index++) {
+					assertEquals(expected.get(index), sequence.getHash(index));
+				}
+			}
+			assertEquals(2 * FRAMES.length, tasks.get());
+			assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static List<Hash> hashFrames(HashingAlgorithm algorithm) throws IOException {
+		List<Hash> hashes = new ArrayList<>();
+		try (FrameReader reader = new FrameReader(new ByteArrayInputStream(gif), 32, 32)) {
+			BufferedImage frame;
+			while ((frame = reader.read()) != null) {
+				hashes.add(algorithm.hash(frame));
+			}
+		}
+		return hashes;
+	}
+
+}